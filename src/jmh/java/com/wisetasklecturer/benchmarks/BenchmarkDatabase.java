@@ -0,0 +1,132 @@
+package com.wisetasklecturer.benchmarks;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import org.h2.jdbcx.JdbcDataSource;
+import com.wisetasklecturer.TestDatabase;
+import com.wisetasklecturer.entities.AssessmentWeeks;
+
+/**
+ * An embedded (in-memory H2, MySQL mode) database with the tables of {@link TestDatabase},
+ * seeded with the data of a semester: every lecturer is the primary lecturer of
+ * modulesPerLecturer modules, every module has three assessments (one of which has no dates
+ * set yet) and every assessment has the five tasks of its workflow steps.
+ * @author Theofanis Gkoufas
+ *
+ */
+public final class BenchmarkDatabase {
+
+	public static final int ASSESSMENTS_PER_MODULE = 3;
+
+	public static final int TASKS_PER_ASSESSMENT = 5;
+
+	private static final AtomicInteger DATABASES = new AtomicInteger();
+
+	private static final String[] TYPES = {"PROJECT", "QUIZ", "REPORT", "FINAL_EXAM", "ASSESSED_LAB"};
+
+	private static final String[] WEEKS = {"00000001111111000", "00000100000000000", "00000000000011111"};
+
+	private BenchmarkDatabase() {
+	}
+
+	/**
+	 * Creates and seeds a new database.
+	 * @param lecturers The number of lecturers (with ids 1 to lecturers).
+	 * @param modulesPerLecturer The number of modules of every lecturer.
+	 * @return The data source of the database, which lives until the JVM exits.
+	 * @throws SQLException If the database could not be created.
+	 */
+	public static DataSource create(int lecturers, int modulesPerLecturer) throws SQLException {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:benchmark" + DATABASES.incrementAndGet()
+				+ ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+		try (Connection connection = dataSource.getConnection()) {
+			TestDatabase.createTables(connection);
+			seed(connection, lecturers, modulesPerLecturer);
+		}
+		return dataSource;
+	}
+
+	private static void seed(Connection connection, int lecturers, int modulesPerLecturer) throws SQLException {
+		connection.setAutoCommit(false);
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("INSERT INTO users (user_id, username, email) VALUES (0, 'admin', 'admin@example.com')");
+			statement.execute("INSERT INTO entries (entry_id, user_id) VALUES (1, 0)");
+			statement.execute("INSERT INTO settings (settings_id, entry_FK, week1_begin_date, time_to_send_notif) "
+					+ "VALUES (1, 1, DATE '2022-02-07', '09:00:00')");
+		}
+		try (PreparedStatement users = connection.prepareStatement(
+					 "INSERT INTO users (user_id, username, email) VALUES (?, ?, ?)");
+			 PreparedStatement modules = connection.prepareStatement("INSERT INTO modules (module_id, module_name, "
+					 + "curriculum, primary_lecturer, module_belongsTo_entry) VALUES (?, ?, ?, ?, 1)");
+			 PreparedStatement mappings = connection.prepareStatement(
+					 "INSERT INTO lecturer_modules VALUES (?, ?, 'PRIMARY')");
+			 PreparedStatement assessments = connection.prepareStatement(
+					 "INSERT INTO assessments (assessment_id, assessment_type, assessment_weeks, assessment_weight, "
+					 + "areDatesSet, assessment_upload_date, assessment_deadline_date, assessment_belongsTo_module, "
+					 + "assessment_weeks_mask, assessment_first_week, assessment_last_week) "
+					 + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+			 PreparedStatement tasks = connection.prepareStatement("INSERT INTO tasks (task_id, task_description, "
+					 + "date_to_send, isCompleted, task_belongs_to_assessment) VALUES (?, ?, ?, ?, ?)")) {
+			int moduleId = 0;
+			int assessmentId = 0;
+			int taskId = 0;
+			for (int lecturer = 1; lecturer <= lecturers; lecturer++) {
+				users.setInt(1, lecturer);
+				users.setString(2, "lecturer" + lecturer);
+				users.setString(3, "lecturer" + lecturer + "@example.com");
+				users.addBatch();
+				for (int m = 0; m < modulesPerLecturer; m++) {
+					moduleId++;
+					modules.setInt(1, moduleId);
+					modules.setString(2, "Continuous and Agile Software Engineering " + moduleId);
+					modules.setString(3, moduleId % 2 == 0 ? "WM" : "CS");
+					modules.setString(4, "lecturer" + lecturer);
+					modules.addBatch();
+					mappings.setInt(1, lecturer);
+					mappings.setInt(2, moduleId);
+					mappings.addBatch();
+					for (int a = 0; a < ASSESSMENTS_PER_MODULE; a++) {
+						assessmentId++;
+						boolean datesSet = a != 0;
+						assessments.setInt(1, assessmentId);
+						assessments.setString(2, TYPES[assessmentId % TYPES.length]);
+						assessments.setString(3, WEEKS[a]);
+						assessments.setInt(4, 20 + 10 * a);
+						assessments.setInt(5, datesSet ? 1 : 0);
+						assessments.setDate(6, datesSet ? java.sql.Date.valueOf("2022-03-14") : null);
+						assessments.setDate(7, datesSet ? java.sql.Date.valueOf("2022-04-01") : null);
+						assessments.setInt(8, moduleId);
+						// the columns that MySQL generates from assessment_weeks (db/004_assessment_weeks_mask.sql)
+						AssessmentWeeks weeks = AssessmentWeeks.parse(WEEKS[a]);
+						assessments.setInt(9, weeks.toMask());
+						assessments.setInt(10, weeks.firstWeek());
+						assessments.setInt(11, weeks.lastWeek());
+						assessments.addBatch();
+						for (int step = 1; step <= TASKS_PER_ASSESSMENT; step++) {
+							taskId++;
+							tasks.setInt(1, taskId);
+							tasks.setString(2, "Step " + step + ": complete the workflow step of the assessment");
+							tasks.setDate(3, java.sql.Date.valueOf(java.time.LocalDate.of(2022, 3, 1).plusDays(taskId % 90)));
+							tasks.setInt(4, step <= 2 ? 1 : 0);
+							tasks.setInt(5, assessmentId);
+							tasks.addBatch();
+						}
+					}
+				}
+				users.executeBatch();
+				modules.executeBatch();
+				mappings.executeBatch();
+				assessments.executeBatch();
+				tasks.executeBatch();
+			}
+		}
+		connection.commit();
+		connection.setAutoCommit(true);
+	}
+
+}
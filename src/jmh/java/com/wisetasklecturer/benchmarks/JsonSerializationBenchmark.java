@@ -0,0 +1,108 @@
+package com.wisetasklecturer.benchmarks;
+
+import java.io.IOException;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.wisetasklecturer.entities.AssessmentWeeks;
+import com.wisetasklecturer.entities.PendingTaskToSet;
+import com.wisetasklecturer.entities.PendingTasksToSet;
+import com.wisetasklecturer.entities.TaskToDo;
+import com.wisetasklecturer.entities.TasksToDo;
+
+/**
+ * Measures the Jackson serialization of the response wrappers (TasksToDo, PendingTasksToSet),
+ * with an object mapper that is configured like the one of Spring Boot, both through the
+ * mapper (like the message converter does) and through a writer that is created once.
+ * @author Theofanis Gkoufas
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+	@Param({"50", "500"})
+	private int tasks;
+
+	private ObjectMapper objectMapper;
+
+	private ObjectWriter tasksToDoWriter;
+
+	private TasksToDo tasksToDo;
+
+	private PendingTasksToSet pendingTasksToSet;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		// the dates are written as strings, like Spring Boot configures its mapper by default
+		objectMapper = Jackson2ObjectMapperBuilder.json()
+				.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+				.build();
+		tasksToDoWriter = objectMapper.writerFor(TasksToDo.class);
+		tasksToDo = new TasksToDo();
+		tasksToDo.setTasksToDo(new ArrayList<TaskToDo>(tasks));
+		pendingTasksToSet = new PendingTasksToSet();
+		pendingTasksToSet.setPendingTasksToSetList(new ArrayList<PendingTaskToSet>(tasks));
+		LocalDate week1 = LocalDate.parse("2022-02-07");
+		AssessmentWeeks weeks = AssessmentWeeks.parse("00000001111111000");
+		for (int i = 1; i <= tasks; i++) {
+			tasksToDo.getTasksToDo().add(TaskToDo.builder()
+					.taskId(i)
+					.taskDescription("Step " + (i % 5 + 1) + ": complete the workflow step of the assessment")
+					.dateToSend(week1.plusDays(i % 90))
+					.moduleName("Continuous and Agile Software Engineering " + i)
+					.curriculum("WM")
+					.assessmentType("PROJECT")
+					.build());
+			pendingTasksToSet.getPendingTasksToSetList().add(PendingTaskToSet.builder()
+					.moduleName("Continuous and Agile Software Engineering " + i)
+					.curriculum("WM")
+					.assessmentType("PROJECT")
+					.assessmentWeeks(weeks.toString())
+					.assessmentId(i)
+					.week1BeginDate(Date.valueOf(week1))
+					.assessmentWeight(40)
+					.assessmentWeeksMask(weeks.toMask())
+					.windowStartDate(weeks.startDate(week1))
+					.windowEndDate(weeks.endDate(week1))
+					.build());
+		}
+	}
+
+	@Benchmark
+	public byte[] writeTasksToDo() throws IOException {
+		return objectMapper.writeValueAsBytes(tasksToDo);
+	}
+
+	@Benchmark
+	public byte[] writeTasksToDoWithWriter() throws IOException {
+		return tasksToDoWriter.writeValueAsBytes(tasksToDo);
+	}
+
+	@Benchmark
+	public byte[] writePendingTasksToSet() throws IOException {
+		return objectMapper.writeValueAsBytes(pendingTasksToSet);
+	}
+
+}
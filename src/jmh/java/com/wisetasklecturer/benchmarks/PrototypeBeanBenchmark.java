@@ -0,0 +1,97 @@
+package com.wisetasklecturer.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Scope;
+import com.wisetasklecturer.entities.PendingTaskToSet;
+import com.wisetasklecturer.entities.PendingTasksToSet;
+import com.wisetasklecturer.entities.TaskToDo;
+import com.wisetasklecturer.entities.TasksToDo;
+
+/**
+ * Measures the allocation of the response wrappers (TasksToDo, PendingTasksToSet) as
+ * prototype beans, i.e. context.getBean(TasksToDo.class) like the services do, compared
+ * with plain constructors.
+ * @author Theofanis Gkoufas
+ *
+ */
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrototypeBeanBenchmark {
+
+	private AnnotationConfigApplicationContext context;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		context = new AnnotationConfigApplicationContext(Lists.class, TasksToDo.class, PendingTasksToSet.class);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public TasksToDo getTasksToDoBean() {
+		return context.getBean(TasksToDo.class);
+	}
+
+	@Benchmark
+	public TasksToDo newTasksToDo() {
+		TasksToDo tasksToDo = new TasksToDo();
+		tasksToDo.setTasksToDo(new ArrayList<TaskToDo>());
+		return tasksToDo;
+	}
+
+	@Benchmark
+	public PendingTasksToSet getPendingTasksToSetBean() {
+		return context.getBean(PendingTasksToSet.class);
+	}
+
+	@Benchmark
+	public PendingTasksToSet newPendingTasksToSet() {
+		PendingTasksToSet pendingTasksToSet = new PendingTasksToSet();
+		pendingTasksToSet.setPendingTasksToSetList(new ArrayList<PendingTaskToSet>());
+		return pendingTasksToSet;
+	}
+
+	/**
+	 * The list beans of AppConfig that the wrappers are autowired with.
+	 */
+	@Configuration
+	public static class Lists {
+
+		@Bean("tasksToDoList")
+		@Scope("prototype")
+		public List<TaskToDo> getTasksToDoList() {
+			return new ArrayList<TaskToDo>();
+		}
+
+		@Bean("pendingTasksList")
+		@Scope("prototype")
+		public List<PendingTaskToSet> getPendingTaskToSetList() {
+			return new ArrayList<PendingTaskToSet>();
+		}
+
+	}
+
+}
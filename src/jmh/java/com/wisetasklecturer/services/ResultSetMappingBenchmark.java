@@ -0,0 +1,155 @@
+package com.wisetasklecturer.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import com.wisetasklecturer.benchmarks.BenchmarkDatabase;
+import com.wisetasklecturer.entities.PendingTaskToSet;
+import com.wisetasklecturer.entities.TaskToDo;
+
+/**
+ * Measures the queries of the pending tasks and of the to-do tasks of a lecturer along with
+ * the mapping of their rows (ResultSet -> PendingTaskToSet/TaskToDo), and the mapping alone
+ * (from rows that have already been read into memory), against an embedded database.
+ * @author Theofanis Gkoufas
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultSetMappingBenchmark {
+
+	@Param({"200"})
+	private int lecturers;
+
+	/*
+	 * Every module adds one pending task and (ASSESSMENTS_PER_MODULE * 3) to-do tasks
+	 * to the results of a lecturer.
+	 */
+	@Param({"5", "40"})
+	private int modulesPerLecturer;
+
+	private DataSource dataSource;
+
+	private String daysToSetQuery;
+
+	private String tasksToDoQuery;
+
+	private CachedRowSet pendingTaskRows;
+
+	private CachedRowSet taskToDoRows;
+
+	private int nextLecturer;
+
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		dataSource = BenchmarkDatabase.create(lecturers, modulesPerLecturer);
+		LecturerServices lecturerServices = new LecturerServices();
+		lecturerServices.lecturerResolution = LecturerResolution.INDEXED;
+		daysToSetQuery = lecturerServices.daysToSetQuery() + " ORDER BY A.assessment_id";
+		tasksToDoQuery = lecturerServices.tasksToDoQuery() + " ORDER BY T.date_to_send, T.task_id";
+		pendingTaskRows = readRows(daysToSetQuery);
+		taskToDoRows = readRows(tasksToDoQuery);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		try (Connection connection = dataSource.getConnection()) {
+			connection.createStatement().execute("SHUTDOWN");
+		}
+	}
+
+	private CachedRowSet readRows(String sql) throws SQLException {
+		CachedRowSet rows = RowSetProvider.newFactory().createCachedRowSet();
+		try (Connection connection = dataSource.getConnection();
+			 PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setInt(1, 1);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				rows.populate(resultSet);
+			}
+		}
+		return rows;
+	}
+
+	/*
+	 * The lecturers are queried in turn, so that every invocation reads different rows.
+	 */
+	private int nextLecturer() {
+		nextLecturer = nextLecturer % lecturers + 1;
+		return nextLecturer;
+	}
+
+	@Benchmark
+	public List<PendingTaskToSet> queryAndMapPendingTasks() throws SQLException {
+		List<PendingTaskToSet> pendingTasks = new ArrayList<PendingTaskToSet>();
+		try (Connection connection = dataSource.getConnection();
+			 PreparedStatement statement = connection.prepareStatement(daysToSetQuery)) {
+			statement.setInt(1, nextLecturer());
+			try (ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {
+					pendingTasks.add(LecturerServices.toPendingTaskToSet(resultSet));
+				}
+			}
+		}
+		return pendingTasks;
+	}
+
+	@Benchmark
+	public List<TaskToDo> queryAndMapTasksToDo() throws SQLException {
+		List<TaskToDo> tasks = new ArrayList<TaskToDo>();
+		try (Connection connection = dataSource.getConnection();
+			 PreparedStatement statement = connection.prepareStatement(tasksToDoQuery)) {
+			statement.setInt(1, nextLecturer());
+			try (ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {
+					tasks.add(LecturerServices.toTaskToDo(resultSet));
+				}
+			}
+		}
+		return tasks;
+	}
+
+	@Benchmark
+	public List<PendingTaskToSet> mapPendingTasks() throws SQLException {
+		List<PendingTaskToSet> pendingTasks = new ArrayList<PendingTaskToSet>(pendingTaskRows.size());
+		pendingTaskRows.beforeFirst();
+		while (pendingTaskRows.next()) {
+			pendingTasks.add(LecturerServices.toPendingTaskToSet(pendingTaskRows));
+		}
+		return pendingTasks;
+	}
+
+	@Benchmark
+	public List<TaskToDo> mapTasksToDo() throws SQLException {
+		List<TaskToDo> tasks = new ArrayList<TaskToDo>(taskToDoRows.size());
+		taskToDoRows.beforeFirst();
+		while (taskToDoRows.next()) {
+			tasks.add(LecturerServices.toTaskToDo(taskToDoRows));
+		}
+		return tasks;
+	}
+
+}
@@ -1,32 +1,87 @@
 package com.wisetasklecturer;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Timer;
-import javax.sql.DataSource;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.Scope;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.client.RestTemplate;
 import com.wisetasklecturer.entities.Entry;
 import com.wisetasklecturer.entities.PendingTaskToSet;
 import com.wisetasklecturer.entities.Task;
 import com.wisetasklecturer.entities.TaskToDo;
+import com.wisetasklecturer.monitoring.ConnectionPoolMetrics;
+import com.wisetasklecturer.monitoring.HttpClientPoolMetrics;
+import com.wisetasklecturer.monitoring.SlowQueryLog;
+import com.wisetasklecturer.monitoring.TracingDataSource;
+import com.wisetasklecturer.services.CircuitBreaker;
+import com.wisetasklecturer.services.DownstreamService;
+import com.zaxxer.hikari.HikariDataSource;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 
 @Configuration
 public class AppConfig {
 
+	/*
+	 * Previously a DriverManagerDataSource was used, which opens a brand new connection
+	 * to MySQL every time that getConnection() is called. The pool below is shared by the
+	 * hand-written queries of the LecturerServices and by JPA (TasksRepository), and it is
+	 * configured through the spring.datasource.hikari.* properties.
+	 */
 	@Bean("dataSource")
-	public DataSource getDataSource() {
-		DriverManagerDataSource dmds = new DriverManagerDataSource();
-		dmds.setUsername("newuser");
-		dmds.setPassword("9876543!@");
-		dmds.setDriverClassName("com.mysql.cj.jdbc.Driver");
-		dmds.setUrl("jdbc:mysql://localhost:3306/catmms");
-		return dmds;
+	@ConfigurationProperties("spring.datasource.hikari")
+	public HikariDataSource getDataSource(DataSourceProperties properties) {
+		HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+				.type(HikariDataSource.class)
+				.build();
+		dataSource.setMetricsTrackerFactory(getConnectionPoolMetrics());
+		return dataSource;
+	}
+	
+	/*
+	 * Wraps the pool in a TracingDataSource (once the pool has been configured), so that
+	 * every statement of the JDBC queries and of JPA goes through the slow query log. The
+	 * post processor has to be static, and the log is only looked up once the pool is created.
+	 */
+	@Bean
+	public static BeanPostProcessor getSlowQueryTracing(ObjectProvider<SlowQueryLog> slowQueryLog) {
+		return new BeanPostProcessor() {
+
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				if (bean instanceof HikariDataSource && slowQueryLog.getObject().isEnabled()) {
+					return new TracingDataSource((HikariDataSource) bean, slowQueryLog.getObject());
+				}
+				return bean;
+			}
+		};
+	}
+	
+	@Bean
+	public ConnectionPoolMetrics getConnectionPoolMetrics() {
+		return new ConnectionPoolMetrics();
 	}
 	
 	@Bean("entriesList")
@@ -36,20 +91,122 @@ public class AppConfig {
 		return list;
 	}
 	
+	/*
+	 * The calls to the users and to the admin microservices; each one of them has its own
+	 * RestTemplate (with its own timeouts), circuit breaker and bulkhead, configured by the
+	 * wisetask.users-service.* and wisetask.admin-service.* properties. The RestTemplates are
+	 * created by the builder of Spring Boot, which instruments them, so that every call is
+	 * timed (http.client.requests, tagged by the uri template, the status and the outcome).
+	 */
+	@Bean("usersService")
+	public DownstreamService getUsersService(RestTemplateBuilder builder, CloseableHttpClient httpClient,
+											 Environment environment) {
+		return createDownstreamService("users", builder, httpClient, environment);
+	}
+	
+	@Bean("adminService")
+	public DownstreamService getAdminService(RestTemplateBuilder builder, CloseableHttpClient httpClient,
+											 Environment environment) {
+		return createDownstreamService("admin", builder, httpClient, environment);
+	}
+	
+	private static DownstreamService createDownstreamService(String name, RestTemplateBuilder builder,
+															 CloseableHttpClient httpClient, Environment environment) {
+		String prefix = "wisetask." + name + "-service.";
+		int connectionRequestTimeout = environment.getProperty(
+				"wisetask.http-client.connection-request-timeout-millis", Integer.class, 500);
+		RestTemplate restTemplate = builder
+				.requestFactory(() -> {
+					HttpComponentsClientHttpRequestFactory requestFactory =
+							new HttpComponentsClientHttpRequestFactory(httpClient);
+					requestFactory.setConnectionRequestTimeout(connectionRequestTimeout);
+					return requestFactory;
+				})
+				.setConnectTimeout(Duration.ofMillis(
+						environment.getProperty(prefix + "connect-timeout-millis", Long.class, 1000L)))
+				.setReadTimeout(Duration.ofMillis(
+						environment.getProperty(prefix + "read-timeout-millis", Long.class, 3000L)))
+				.build();
+		CircuitBreaker circuitBreaker = new CircuitBreaker(
+				environment.getProperty(prefix + "failure-threshold", Integer.class, 5),
+				environment.getProperty(prefix + "open-seconds", Long.class, 30L), TimeUnit.SECONDS);
+		return new DownstreamService(name, restTemplate, circuitBreaker,
+				environment.getProperty(prefix + "max-concurrent-calls", Integer.class, 10),
+				environment.getProperty(prefix + "max-wait-millis", Long.class, 100L),
+				environment.getProperty(prefix + "fallback-enabled", Boolean.class, true));
+	}
+	
+	/*
+	 * Previously the RestTemplate used a SimpleClientHttpRequestFactory, i.e. HttpURLConnection,
+	 * which keeps at most 5 idle connections per host (http.maxConnections), so under load most
+	 * calls opened a new connection (and an ephemeral port) of their own. The calls of both
+	 * services now share the pool below, whose connections are kept alive between the calls.
+	 * The per-route maximum should not be lower than the max-concurrent-calls of the bulkhead
+	 * of a service, otherwise the calls would also queue for a connection.
+	 */
 	@Bean
-	public RestTemplate getRestTemplate() {
-		return new RestTemplate();
+	public PoolingHttpClientConnectionManager getHttpClientConnectionManager(
+			@Value("${wisetask.http-client.max-connections:50}") int maxConnections,
+			@Value("${wisetask.http-client.max-connections-per-route:20}") int maxConnectionsPerRoute,
+			@Value("${wisetask.http-client.validate-after-inactivity-millis:2000}") int validateAfterInactivityMillis) {
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(maxConnections);
+		connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+		// a connection that has been idle for a while is checked before it is reused, in case the service closed it
+		connectionManager.setValidateAfterInactivity(validateAfterInactivityMillis);
+		return connectionManager;
+	}
+	
+	/*
+	 * A connection is kept alive for as long as the service allows it (its Keep-Alive header)
+	 * but no longer than keep-alive-seconds, and a background thread closes the connections
+	 * that have been idle for max-idle-seconds. The client asks for gzip (or deflate) encoded
+	 * responses and decodes them, since its content compression is on by default.
+	 */
+	@Bean
+	public CloseableHttpClient getHttpClient(PoolingHttpClientConnectionManager connectionManager,
+			@Value("${wisetask.http-client.keep-alive-seconds:30}") long keepAliveSeconds,
+			@Value("${wisetask.http-client.max-idle-seconds:10}") long maxIdleSeconds) {
+		long keepAliveMillis = TimeUnit.SECONDS.toMillis(keepAliveSeconds);
+		return HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setKeepAliveStrategy((response, context) -> {
+					long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+					return duration > 0 ? Math.min(duration, keepAliveMillis) : keepAliveMillis;
+				})
+				.evictExpiredConnections()
+				.evictIdleConnections(maxIdleSeconds, TimeUnit.SECONDS)
+				.disableCookieManagement()
+				.build();
+	}
+	
+	@Bean
+	public HttpClientPoolMetrics getHttpClientPoolMetrics(PoolingHttpClientConnectionManager connectionManager) {
+		return new HttpClientPoolMetrics(connectionManager);
 	}
 
+	/*
+	 * The uploads are read with the streaming API of the ServletFileUpload (getItemIterator),
+	 * which hands over the content of every part as it arrives, so the factory below is only
+	 * used by parseRequest(). The size limits apply to both of them.
+	 */
 	@Bean
-	public ServletFileUpload getServletFileUpload() {
-		ServletFileUpload upload = new ServletFileUpload(getDiskFileItemFactory());
+	public ServletFileUpload getServletFileUpload(
+			@Value("${wisetask.upload.max-file-size:50MB}") DataSize maxFileSize,
+			@Value("${wisetask.upload.max-request-size:60MB}") DataSize maxRequestSize,
+			DiskFileItemFactory diskFileItemFactory) {
+		ServletFileUpload upload = new ServletFileUpload(diskFileItemFactory);
+		upload.setFileSizeMax(maxFileSize.toBytes());
+		upload.setSizeMax(maxRequestSize.toBytes());
 		return upload;
 	}
 
 	@Bean
-	public DiskFileItemFactory getDiskFileItemFactory() {
-		return new DiskFileItemFactory();
+	public DiskFileItemFactory getDiskFileItemFactory(
+			@Value("${wisetask.upload.in-memory-threshold:1MB}") DataSize inMemoryThreshold) {
+		DiskFileItemFactory factory = new DiskFileItemFactory();
+		factory.setSizeThreshold((int) inMemoryThreshold.toBytes());
+		return factory;
 	}
 	
 	@Bean("pendingTasksList")
@@ -70,10 +227,65 @@ public class AppConfig {
 		return new ArrayList<String>();
 	}
 	
-	@Bean
-	@Scope("prototype")
-	public Timer getTimer() {
-		return new Timer();
+	/*
+	 * Bounded executor that runs one of the two queries of the lecturer dashboard, while the
+	 * other one runs on the request thread. When it is saturated the query runs on the
+	 * request thread as well (so the two queries are simply executed one after the other).
+	 */
+	@Bean("dashboardExecutor")
+	public ThreadPoolTaskExecutor getDashboardExecutor(
+			@Value("${wisetask.dashboard.pool-size:8}") int poolSize,
+			@Value("${wisetask.dashboard.queue-capacity:50}") int queueCapacity) {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(poolSize);
+		executor.setMaxPoolSize(poolSize);
+		executor.setQueueCapacity(queueCapacity);
+		executor.setThreadNamePrefix("dashboard-");
+		executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+		return executor;
+	}
+	
+	/*
+	 * Executor of the workbook imports; each import uses two threads (one that parses the
+	 * workbook and one that inserts the rows) and the number of imports that may run at
+	 * the same time is limited by the ExcelImportService, so it never runs out of threads.
+	 * The small queue only holds the parts of an import that was started while the threads
+	 * of a finished import were returning to the pool.
+	 */
+	@Bean("importExecutor")
+	public ThreadPoolTaskExecutor getImportExecutor(
+			@Value("${wisetask.import.concurrent-imports:2}") int concurrentImports) {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(2 * concurrentImports);
+		executor.setMaxPoolSize(2 * concurrentImports);
+		executor.setQueueCapacity(2 * concurrentImports);
+		executor.setThreadNamePrefix("import-");
+		return executor;
+	}
+	
+	/*
+	 * Executor that sends the emails of the due tasks; each one of its threads uses its own
+	 * SMTP connection, so its size limits the connections to the mail server.
+	 */
+	@Bean("mailExecutor")
+	public ThreadPoolTaskExecutor getMailExecutor(@Value("${wisetask.mail.concurrency:4}") int concurrency) {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(concurrency);
+		executor.setMaxPoolSize(concurrency);
+		executor.setThreadNamePrefix("mail-");
+		return executor;
+	}
+	
+	/*
+	 * Spring Boot only creates its own task executor (used for the asynchronous requests, e.g.
+	 * the streaming responses) when there is no other executor, so since we define the one
+	 * above we have to define it here as well.
+	 */
+	@Lazy
+	@Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+				  AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+	public ThreadPoolTaskExecutor getApplicationTaskExecutor(TaskExecutorBuilder builder) {
+		return builder.build();
 	}
 	
 	@Bean("tasksToDoList")
@@ -0,0 +1,33 @@
+package com.wisetasklecturer.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import com.wisetasklecturer.entities.DispatchReport;
+import com.wisetasklecturer.services.TaskEmailDispatcher;
+
+/**
+ * The rest controller that contains url-endpoints for emailing the due tasks
+ * to the lecturers.
+ * @author Theofanis Gkoufas
+ *
+ */
+@RestController
+@RequestMapping(value = "/dispatch")
+public class DispatchController {
+
+	@Autowired
+	TaskEmailDispatcher taskEmailDispatcher;
+	
+	/**
+	 * Emails all the tasks that are due and have not been sent yet, as one digest per lecturer.
+	 * @return The outcome of the run; the digests that were sent/failed and the number of
+	 * messages sent per second.
+	 */
+	@RequestMapping(value = "/dueTasks", method = RequestMethod.POST)
+	public DispatchReport dispatchDueTasks() {
+		return taskEmailDispatcher.dispatchDueTasks();
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.wisetasklecturer.controllers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import javax.servlet.http.HttpServletRequest;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadBase;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import com.wisetasklecturer.entities.ImportProgress;
+import com.wisetasklecturer.services.ExcelImportService;
+
+/**
+ * The rest controller that contains url-endpoints for importing the modules, assessments
+ * and tasks of a semester in bulk, from a workbook (.xlsx).
+ * @author Theofanis Gkoufas
+ *
+ */
+@RestController
+@CrossOrigin(origins = {"http://localhost:8025", "http://localhost:8026", "http://localhost:8028"})
+@RequestMapping(value = "/imports")
+public class ImportController {
+
+	@Autowired
+	ServletFileUpload servletFileUpload;
+	
+	@Autowired
+	ExcelImportService excelImportService;
+	
+	/**
+	 * Starts importing a workbook, which is uploaded as a multipart/form-data request.
+	 * The workbook may contain the sheets 'modules', 'assessments' and 'tasks' (see the
+	 * README for their columns), and it is imported in the background. The parts of the
+	 * request are streamed (they are not stored before they reach the import), and the
+	 * size of the workbook is limited by wisetask.upload.max-file-size.
+	 * @param request The multipart request, which should contain the workbook as a file.
+	 * @return The progress of the import (with status 202), which includes the id that its
+	 * progress can be retrieved with.
+	 */
+	@RequestMapping(value = "/workbook", method = RequestMethod.POST)
+	public ResponseEntity<ImportProgress> importWorkbook(HttpServletRequest request) {
+		if (!ServletFileUpload.isMultipartContent(request)) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The workbook should be uploaded as multipart/form-data");
+		}
+		try {
+			FileItemIterator items = servletFileUpload.getItemIterator(request);
+			while (items.hasNext()) {
+				FileItemStream item = items.next();
+				if (!item.isFormField()) {
+					try (InputStream content = item.openStream()) {
+						return ResponseEntity.status(HttpStatus.ACCEPTED)
+								.body(excelImportService.startImport(content, item.getName()));
+					}
+				}
+			}
+		} catch (FileUploadBase.SizeLimitExceededException | FileUploadBase.FileSizeLimitExceededException e) {
+			throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage(), e);
+		} catch (FileUploadBase.FileUploadIOException e) {
+			// thrown while reading a part that exceeds the size limits
+			HttpStatus status = e.getCause() instanceof FileUploadBase.SizeLimitExceededException
+					|| e.getCause() instanceof FileUploadBase.FileSizeLimitExceededException
+					? HttpStatus.PAYLOAD_TOO_LARGE : HttpStatus.BAD_REQUEST;
+			throw new ResponseStatusException(status, e.getCause().getMessage(), e);
+		} catch (FileUploadException | IOException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The upload could not be read", e);
+		}
+		throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The request does not contain a workbook");
+	}
+	
+	/**
+	 * Retrieves the progress of an import.
+	 * @param importId The id that was returned when the import was started.
+	 * @return The progress of the import, including the rows that could not be imported.
+	 */
+	@RequestMapping(value = "/{importId}", method = RequestMethod.GET)
+	public ImportProgress getImportProgress(@PathVariable(name = "importId") String importId) {
+		return excelImportService.getProgress(importId);
+	}
+
+}
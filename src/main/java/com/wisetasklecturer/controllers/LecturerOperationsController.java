@@ -2,14 +2,21 @@ package com.wisetasklecturer.controllers;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import com.wisetasklecturer.entities.*;
 import com.wisetasklecturer.services.LecturerServices;
 
@@ -24,29 +31,120 @@ import com.wisetasklecturer.services.LecturerServices;
 @RequestMapping(value = "/lecturers")
 public class LecturerOperationsController {
 	
+	private static final String DAYS_TO_SET = "daysToSet";
+	
+	private static final String TASKS_TO_DO = "tasksToDo";
+	
+	private static final String DASHBOARD = "dashboard";
+	
 	@Autowired
 	LecturerServices lecturerServices;
 	
 	/**
 	 * Retrieves the tasks (basically the assessments) for which the lecturer should set the upload
-	 * and the deadline dates.
+	 * and the deadline dates. When a cursor or a page size is given, the tasks are
+	 * retrieved in pages (ordered by the assessment id).
 	 * @param lecturerID The id of the lecturer.
+	 * @param cursor The cursor (nextCursor) returned along with the previous page.
+	 * @param pageSize The maximum number of tasks of the page.
+	 * @param week When given, only the tasks whose assessment takes place during this week
+	 * of the semester are retrieved.
+	 * @param webRequest The request, used for answering with 304 (Not Modified) when
+	 * the client already has the latest version (If-None-Match).
 	 * @return The tasks for which the lecturer should set the upload/deadline dates.
 	 */
 	@RequestMapping(value = "/retrieveDaysToSet/{id}", method = RequestMethod.GET)
-	public PendingTasksToSet retrieveDaysToSet(@PathVariable(name = "id") int lecturerID) {
-		return lecturerServices.retrieveDaysToSet(lecturerID);
+	public PendingTasksToSet retrieveDaysToSet(@PathVariable(name = "id") int lecturerID,
+											   @RequestParam(name = "cursor", required = false) String cursor,
+											   @RequestParam(name = "size", required = false) Integer pageSize,
+											   @RequestParam(name = "week", required = false) Integer week,
+											   WebRequest webRequest) {
+		if (webRequest.checkNotModified(lecturerServices.getVersionTag(DAYS_TO_SET, lecturerID))) {
+			return null;
+		}
+		if (week != null) {
+			return lecturerServices.retrieveDaysToSetInWeek(lecturerID, week, cursor, pageSize == null ? 0 : pageSize);
+		}
+		if (cursor == null && pageSize == null) {
+			return lecturerServices.retrieveDaysToSet(lecturerID);
+		}
+		return lecturerServices.retrieveDaysToSet(lecturerID, cursor, pageSize == null ? 0 : pageSize);
+	}
+	
+	/**
+	 * Retrieves all the tasks for which the lecturer should set the upload and the deadline
+	 * dates, by streaming them as json while they are read from the database (the json is
+	 * identical to the one of {@link #retrieveDaysToSet(int, String, Integer, Integer, WebRequest)}).
+	 * @param lecturerID The id of the lecturer.
+	 * @param webRequest The request, used for answering with 304 (Not Modified) when
+	 * the client already has the latest version (If-None-Match).
+	 * @return The body that writes the tasks to the response.
+	 */
+	@RequestMapping(value = "/retrieveDaysToSet/{id}", method = RequestMethod.GET, params = "stream=true")
+	public ResponseEntity<StreamingResponseBody> streamDaysToSet(@PathVariable(name = "id") int lecturerID,
+																 WebRequest webRequest) {
+		if (webRequest.checkNotModified(lecturerServices.getVersionTag(DAYS_TO_SET, lecturerID))) {
+			return null;
+		}
+		return ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_JSON)
+				.body(out -> lecturerServices.streamDaysToSet(lecturerID, out));
 	}
 	
 	/**
 	 * Inserts the upload/deadline dates that are set by the lecturer for a particular assessment.
 	 * @param requiredData A map that should include two elements namely; uploadDate and deadlineDate.
+	 * @param generateTasks Whether the tasks of the workflow steps of the assessment should be
+	 * generated from the settings of its entry, in the same transaction.
+	 * @return The outcome of setting the dates, including the ids of the generated tasks.
 	 */
 	@RequestMapping(value = "/uploadSettedDates", method = RequestMethod.PUT)
-	public void uploadSettedDates(@RequestBody Map<String, Object> requiredData) {
-		lecturerServices.updateSettedDates((String) requiredData.get("uploadDate"),
-										   (String) requiredData.get("deadlineDate"),
-										   Integer.parseInt((String)requiredData.get("assessmentID")));
+	public SettedDatesResult uploadSettedDates(@RequestBody Map<String, Object> requiredData,
+											   @RequestParam(name = "generateTasks", defaultValue = "false")
+											   boolean generateTasks) {
+		return lecturerServices.updateSettedDates((String) requiredData.get("uploadDate"),
+												  (String) requiredData.get("deadlineDate"),
+												  Integer.parseInt((String)requiredData.get("assessmentID")),
+												  generateTasks);
+	}
+	
+	/**
+	 * Inserts the upload/deadline dates that are set by the lecturer for many assessments
+	 * at once. The dates of all the assessments are updated together, in one transaction.
+	 * @param requiredData A list of maps, each one of them should include three elements
+	 * namely; assessmentID, uploadDate and deadlineDate.
+	 * @param generateTasks Whether the tasks of the workflow steps of every updated assessment
+	 * should be generated from the settings of its entry, as one batch in the same transaction.
+	 * @return The outcome for each assessment (UPDATED, NOT_FOUND or INVALID), in the same
+	 * order as the given dates. An element whose assessmentID is missing or is not a number
+	 * is INVALID, without affecting the rest of them.
+	 */
+	@RequestMapping(value = "/uploadSettedDates/batch", method = RequestMethod.PUT)
+	public List<SettedDatesResult> uploadSettedDates(@RequestBody List<Map<String, Object>> requiredData,
+													 @RequestParam(name = "generateTasks", defaultValue = "false")
+													 boolean generateTasks) {
+		List<SettedDates> settedDates = new ArrayList<SettedDates>(requiredData.size());
+		for (Map<String, Object> dates : requiredData) {
+			settedDates.add(SettedDates.builder()
+					.assessmentId(parseAssessmentId(dates.get("assessmentID")))
+					.uploadDate((String) dates.get("uploadDate"))
+					.deadlineDate((String) dates.get("deadlineDate"))
+					.build());
+		}
+		return lecturerServices.updateSettedDates(settedDates, generateTasks);
+	}
+	
+	/**
+	 * Parses the id of an assessment, given either as a number or as a string.
+	 * @param assessmentID The id, as it was given in the request.
+	 * @return The id, or null if it is missing or is not a number.
+	 */
+	private static Integer parseAssessmentId(Object assessmentID) {
+		try {
+			return Integer.valueOf(String.valueOf(assessmentID));
+		} catch (NumberFormatException e) {
+			return null;
+		}
 	}
 	
 	/**
@@ -71,13 +169,88 @@ public class LecturerOperationsController {
 	}
 	
 	/**
-	 * Retrieves the to-do tasks that belong to a lecturer.
+	 * Creates many tasks (that may belong to different assessments) with a single request.
+	 * The tasks are inserted all together, in one transaction.
+	 * @param tasksDetailsAndAsmntIds A list of maps, each one of them should include the
+	 * same elements as the ones of {@link #addTask(Map)}; assessmentID, taskDescription,
+	 * and dateToSend.
+	 * @return The ids of the created tasks, in the same order as the given tasks.
+	 */
+	@RequestMapping(value = "/tasks/batch", method = RequestMethod.POST)
+	public List<Integer> addTasks(@RequestBody List<Map<String, Object>> tasksDetailsAndAsmntIds) {
+		DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+		List<Task> newTasks = new ArrayList<Task>(tasksDetailsAndAsmntIds.size());
+		for (Map<String, Object> taskDetailsAndAsmntId : tasksDetailsAndAsmntIds) {
+			Assessment assessment = new Assessment();
+			assessment.setAssessmentId((int) taskDetailsAndAsmntId.get("assessmentID"));
+			newTasks.add(Task.builder()
+					.taskDescription((String) taskDetailsAndAsmntId.get("taskDescription"))
+					.dateToSend(LocalDate.parse((String)taskDetailsAndAsmntId.get("dateToSend"), dtf))
+					.taskBelongsToAssessment(assessment)
+					.emailAddressToSend(null)
+					.build());
+		}
+		return lecturerServices.addTasks(newTasks);
+	}
+	
+	/**
+	 * Retrieves the to-do tasks that belong to a lecturer. When a cursor or a page size
+	 * is given, the tasks are retrieved in pages (ordered by the date to send and the id).
 	 * @param lecturerID The primary key of the lecturer.
+	 * @param cursor The cursor (nextCursor) returned along with the previous page.
+	 * @param pageSize The maximum number of tasks of the page.
+	 * @param webRequest The request, used for answering with 304 (Not Modified) when
+	 * the client already has the latest version (If-None-Match).
 	 * @return A TasksToDo object containing a list of to-do tasks.
 	 */
 	@RequestMapping(value = "/getTasksToDo/{id}", method = RequestMethod.GET)
-	public TasksToDo getTasksToDo(@PathVariable(name = "id") int lecturerID) {
-		return lecturerServices.getTasksToDo(lecturerID);
+	public TasksToDo getTasksToDo(@PathVariable(name = "id") int lecturerID,
+								  @RequestParam(name = "cursor", required = false) String cursor,
+								  @RequestParam(name = "size", required = false) Integer pageSize,
+								  WebRequest webRequest) {
+		if (webRequest.checkNotModified(lecturerServices.getVersionTag(TASKS_TO_DO, lecturerID))) {
+			return null;
+		}
+		if (cursor == null && pageSize == null) {
+			return lecturerServices.getTasksToDo(lecturerID);
+		}
+		return lecturerServices.getTasksToDo(lecturerID, cursor, pageSize == null ? 0 : pageSize);
+	}
+	
+	/**
+	 * Retrieves all the to-do tasks that belong to a lecturer, by streaming them as json
+	 * while they are read from the database (the json is identical to the one of
+	 * {@link #getTasksToDo(int, String, Integer, WebRequest)}).
+	 * @param lecturerID The primary key of the lecturer.
+	 * @param webRequest The request, used for answering with 304 (Not Modified) when
+	 * the client already has the latest version (If-None-Match).
+	 * @return The body that writes the tasks to the response.
+	 */
+	@RequestMapping(value = "/getTasksToDo/{id}", method = RequestMethod.GET, params = "stream=true")
+	public ResponseEntity<StreamingResponseBody> streamTasksToDo(@PathVariable(name = "id") int lecturerID,
+																 WebRequest webRequest) {
+		if (webRequest.checkNotModified(lecturerServices.getVersionTag(TASKS_TO_DO, lecturerID))) {
+			return null;
+		}
+		return ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_JSON)
+				.body(out -> lecturerServices.streamTasksToDo(lecturerID, out));
+	}
+	
+	/**
+	 * Retrieves both the tasks for which the lecturer should set the upload/deadline dates
+	 * and the to-do tasks of the lecturer, with a single request.
+	 * @param lecturerID The id of the lecturer.
+	 * @param webRequest The request, used for answering with 304 (Not Modified) when
+	 * the client already has the latest version (If-None-Match).
+	 * @return The dashboard of the lecturer, containing both lists of tasks.
+	 */
+	@RequestMapping(value = "/{id}/dashboard", method = RequestMethod.GET)
+	public LecturerDashboard getDashboard(@PathVariable(name = "id") int lecturerID, WebRequest webRequest) {
+		if (webRequest.checkNotModified(lecturerServices.getVersionTag(DASHBOARD, lecturerID))) {
+			return null;
+		}
+		return lecturerServices.getDashboard(lecturerID);
 	}
 	
 	/**
@@ -89,5 +262,35 @@ public class LecturerOperationsController {
 	public void changeTaskVisibility(@PathVariable(name = "taskID") int taskID) {
 		lecturerServices.changeTaskVisibility(taskID);
 	}
+	
+	/**
+	 * Changes the visibility of many tasks at once (e.g. when all the to-do tasks are
+	 * marked as done), so that none of them is displayed as a to-do task any more.
+	 * @param taskIDs The ids of the tasks whose completion status should change.
+	 * @return The ids of the given tasks that do not exist (empty if all of them exist).
+	 */
+	@RequestMapping(value = "/changeTaskVisibility", method = RequestMethod.PUT)
+	public List<Integer> changeTasksVisibility(@RequestBody List<Integer> taskIDs) {
+		return lecturerServices.changeTasksVisibility(taskIDs);
+	}
+	
+	/**
+	 * Removes a user from the cache of users, so that the changes made to that user
+	 * (e.g. the username) are visible by this service. It should be called by the
+	 * users service whenever a user is updated.
+	 * @param userID The id of the user that has changed.
+	 */
+	@RequestMapping(value = "/cachedUsers/{id}", method = RequestMethod.DELETE)
+	public void invalidateCachedUser(@PathVariable(name = "id") int userID) {
+		lecturerServices.invalidateCachedUser(userID);
+	}
+	
+	/**
+	 * Removes all the users from the cache of users.
+	 */
+	@RequestMapping(value = "/cachedUsers", method = RequestMethod.DELETE)
+	public void invalidateCachedUsers() {
+		lecturerServices.invalidateCachedUsers();
+	}
 
 }
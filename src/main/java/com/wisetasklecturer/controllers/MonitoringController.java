@@ -0,0 +1,150 @@
+package com.wisetasklecturer.controllers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import com.wisetasklecturer.monitoring.ConnectionPoolMetrics;
+import com.wisetasklecturer.monitoring.HttpClientPoolMetrics;
+import com.wisetasklecturer.monitoring.SlowQueryLog;
+import com.wisetasklecturer.services.DownstreamService;
+import com.wisetasklecturer.services.SettingsOffsetsCache;
+import com.wisetasklecturer.services.TaskSendScheduler;
+import com.wisetasklecturer.services.TasksToDoProjection;
+import com.wisetasklecturer.services.UserCache;
+
+/**
+ * The rest controller that exposes the runtime statistics of the microservice
+ * (e.g. the state of the connection pool), so that they can be inspected while
+ * the service is running.
+ * @author Theofanis Gkoufas
+ *
+ */
+@RestController
+@RequestMapping(value = "/monitoring")
+public class MonitoringController {
+
+	@Autowired
+	ConnectionPoolMetrics connectionPoolMetrics;
+	
+	@Autowired
+	UserCache userCache;
+	
+	@Autowired
+	TasksToDoProjection tasksToDoProjection;
+	
+	@Autowired
+	TaskSendScheduler taskSendScheduler;
+	
+	@Autowired
+	SettingsOffsetsCache settingsOffsetsCache;
+	
+	@Autowired
+	SlowQueryLog slowQueryLog;
+	
+	@Autowired
+	HttpClientPoolMetrics httpClientPoolMetrics;
+	
+	@Autowired
+	@Qualifier("usersService")
+	DownstreamService usersService;
+	
+	@Autowired
+	@Qualifier("adminService")
+	DownstreamService adminService;
+
+	/**
+	 * Retrieves the statistics of the database connection pool.
+	 * @return A map containing the active/idle connections, the time spent waiting
+	 * for a connection and the number of timeouts.
+	 */
+	@RequestMapping(value = "/connectionPool", method = RequestMethod.GET)
+	public Map<String, Object> getConnectionPoolStats() {
+		return connectionPoolMetrics.snapshot();
+	}
+	
+	/**
+	 * Retrieves the statistics of the cache that holds the users retrieved from the
+	 * users service.
+	 * @return A map containing the hits, misses and load times of the cache.
+	 */
+	@RequestMapping(value = "/userCache", method = RequestMethod.GET)
+	public Map<String, Object> getUserCacheStats() {
+		return userCache.snapshot();
+	}
+	
+	/**
+	 * Retrieves the statistics of the in-memory projection of the to-do tasks.
+	 * @return A map containing the number of lecturers/tasks in the projection, and the
+	 * number of requests served from it.
+	 */
+	@RequestMapping(value = "/tasksToDoProjection", method = RequestMethod.GET)
+	public Map<String, Object> getTasksToDoProjectionStats() {
+		return tasksToDoProjection.snapshot();
+	}
+	
+	/**
+	 * Retrieves the statistics of the scheduler of the task emails.
+	 * @return A map containing the number of scheduled tasks, the schedule lag and the
+	 * runs of the dispatcher.
+	 */
+	@RequestMapping(value = "/scheduler", method = RequestMethod.GET)
+	public Map<String, Object> getSchedulerStats() {
+		return taskSendScheduler.snapshot();
+	}
+	
+	/**
+	 * Retrieves the statistics of the cache of the compiled settings (step offsets).
+	 * @return A map containing the number of cached entries, hits, misses and invalidations.
+	 */
+	@RequestMapping(value = "/settingsCache", method = RequestMethod.GET)
+	public Map<String, Object> getSettingsCacheStats() {
+		return settingsOffsetsCache.snapshot();
+	}
+	
+	/**
+	 * Retrieves the statements that were slower than wisetask.slow-sql.threshold-millis (or
+	 * that failed), along with their bind parameters and the method that executed them.
+	 * @return A map containing the number of statements that were executed, were slow or
+	 * failed, and the last slow queries (newest first).
+	 */
+	@RequestMapping(value = "/slowQueries", method = RequestMethod.GET)
+	public Map<String, Object> getSlowQueries() {
+		return slowQueryLog.snapshot();
+	}
+	
+	/**
+	 * Empties the buffer of the slow queries.
+	 */
+	@RequestMapping(value = "/slowQueries", method = RequestMethod.DELETE)
+	public void clearSlowQueries() {
+		slowQueryLog.clear();
+	}
+	
+	/**
+	 * Retrieves the statistics of the calls to the users and to the admin microservices.
+	 * @return A map containing, for each service, the state of its circuit breaker, the free
+	 * permits of its bulkhead and the number of calls per outcome.
+	 */
+	@RequestMapping(value = "/downstream", method = RequestMethod.GET)
+	public Map<String, Object> getDownstreamStats() {
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		stats.put("users", usersService.snapshot());
+		stats.put("admin", adminService.snapshot());
+		return stats;
+	}
+	
+	/**
+	 * Retrieves the statistics of the pool of the connections to the other microservices.
+	 * @return A map containing the leased and idle connections and the pending calls, in
+	 * total and per service.
+	 */
+	@RequestMapping(value = "/httpClientPool", method = RequestMethod.GET)
+	public Map<String, Object> getHttpClientPoolStats() {
+		return httpClientPoolMetrics.snapshot();
+	}
+
+}
@@ -0,0 +1,40 @@
+package com.wisetasklecturer.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import com.wisetasklecturer.services.SettingsOffsetsCache;
+
+/**
+ * The rest controller that contains url-endpoints for the admin service, which notify
+ * this service that the settings of entries have changed.
+ * @author Theofanis Gkoufas
+ *
+ */
+@RestController
+@RequestMapping(value = "/settings")
+public class SettingsController {
+
+	@Autowired
+	SettingsOffsetsCache settingsOffsetsCache;
+	
+	/**
+	 * Removes the cached step offsets of an entry, after its settings have changed.
+	 * @param entryId The id of the entry.
+	 */
+	@RequestMapping(value = "/{entryId}/offsets", method = RequestMethod.DELETE)
+	public void invalidateOffsets(@PathVariable(name = "entryId") int entryId) {
+		settingsOffsetsCache.invalidate(entryId);
+	}
+	
+	/**
+	 * Removes the cached step offsets of all the entries.
+	 */
+	@RequestMapping(value = "/offsets", method = RequestMethod.DELETE)
+	public void invalidateAllOffsets() {
+		settingsOffsetsCache.invalidateAll();
+	}
+
+}
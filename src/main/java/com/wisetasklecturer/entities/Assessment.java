@@ -62,4 +62,11 @@ public class Assessment {
 	@JsonIgnore
 	@OneToMany(mappedBy = "taskBelongsToAssessment", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
 	private List<Task> tasks;
+	
+	/**
+	 * @return The weeks of the assessment as a bitmask (assessment_weeks_mask).
+	 */
+	public AssessmentWeeks assessmentWeeks() {
+		return AssessmentWeeks.parse(weeks);
+	}
 }
\ No newline at end of file
@@ -8,7 +8,27 @@ package com.wisetasklecturer.entities;
  */
 public enum AssessmentType {
 
-	ASSESSED_LAB, DEBATE, DEMO_TEACHING, FINAL_EXAM, ORAL_EXAMINATION, PORTFOLIO,
-	PRESENTATION, PROJECT, QUIZ, REPORT, SELF_REFLECTION, OTHER;
+	ASSESSED_LAB("assessedL"), DEBATE("debate"), DEMO_TEACHING("demoT"), FINAL_EXAM("finalExam"),
+	ORAL_EXAMINATION("oralExam"), PORTFOLIO("portfolio"), PRESENTATION("presentation"),
+	PROJECT("project"), QUIZ("quiz"), REPORT("report"), SELF_REFLECTION("selfReflect"), OTHER("other");
 	
-}
\ No newline at end of file
+	/*
+	 * The prefix of the columns of the settings table that hold the offsets of the
+	 * workflow steps of this type (e.g. quiz_step1_preDaysUntilReady).
+	 */
+	private final String settingsPrefix;
+	
+	private AssessmentType(String settingsPrefix) {
+		this.settingsPrefix = settingsPrefix;
+	}
+	
+	/**
+	 * @param step The workflow step.
+	 * @return The column of the settings table that holds the offset (in days) of the
+	 * step for this type of assessment.
+	 */
+	public String settingsColumn(WorkflowStep step) {
+		return settingsPrefix + "_" + step.getColumnSuffix();
+	}
+	
+}
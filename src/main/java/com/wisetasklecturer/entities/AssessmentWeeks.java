@@ -0,0 +1,185 @@
+package com.wisetasklecturer.entities;
+
+import java.time.LocalDate;
+
+/**
+ * The weeks of the semester during which an assessment takes place, held as an integer
+ * bitmask instead of the '0'/'1' string of assessments.assessment_weeks (the first character
+ * of the string, i.e. week 1, is the lowest bit). Instances are immutable.
+ * @author Theofanis Gkoufas
+ *
+ */
+public final class AssessmentWeeks {
+
+	/**
+	 * The number of weeks that a bitmask can hold (assessments.assessment_weeks_mask is an
+	 * unsigned int).
+	 */
+	public static final int MAX_WEEKS = 32;
+
+	/**
+	 * The usual number of weeks of a semester, which is the minimum length of the string
+	 * form of the weeks.
+	 */
+	public static final int SEMESTER_WEEKS = 17;
+
+	private static final AssessmentWeeks NONE = new AssessmentWeeks(0);
+
+	private final int mask;
+
+	private AssessmentWeeks(int mask) {
+		this.mask = mask;
+	}
+
+	/**
+	 * @param mask The bitmask of the weeks.
+	 * @return The weeks.
+	 */
+	public static AssessmentWeeks valueOf(int mask) {
+		return mask == 0 ? NONE : new AssessmentWeeks(mask);
+	}
+
+	/**
+	 * @param weeks The weeks as a string of 0s and 1s, where the character at index i
+	 * stands for week i + 1 (null stands for no weeks).
+	 * @return The weeks.
+	 * @throws IllegalArgumentException If the string contains any other character, or is
+	 * longer than {@value #MAX_WEEKS} characters.
+	 */
+	public static AssessmentWeeks parse(String weeks) {
+		if (weeks == null) {
+			return NONE;
+		}
+		if (weeks.length() > MAX_WEEKS) {
+			throw new IllegalArgumentException("The weeks should be at most " + MAX_WEEKS + " characters: " + weeks);
+		}
+		int mask = 0;
+		for (int i = 0; i < weeks.length(); i++) {
+			char week = weeks.charAt(i);
+			if (week == '1') {
+				mask |= 1 << i;
+			} else if (week != '0') {
+				throw new IllegalArgumentException("The weeks should only contain 0s and 1s: " + weeks);
+			}
+		}
+		return valueOf(mask);
+	}
+
+	/**
+	 * @param week A week (1 to {@value #MAX_WEEKS}).
+	 * @return The bitmask that only contains the week, for queries like
+	 * (assessment_weeks_mask &amp; ?) &lt;&gt; 0.
+	 */
+	public static int weekMask(int week) {
+		checkWeek(week);
+		return 1 << (week - 1);
+	}
+
+	private static void checkWeek(int week) {
+		if (week < 1 || week > MAX_WEEKS) {
+			throw new IllegalArgumentException("The week should be between 1 and " + MAX_WEEKS + ": " + week);
+		}
+	}
+
+	/**
+	 * @param week A week (1 to {@value #MAX_WEEKS}).
+	 * @return Whether the assessment takes place during the week.
+	 */
+	public boolean get(int week) {
+		return (mask & weekMask(week)) != 0;
+	}
+
+	/**
+	 * @param week A week (1 to {@value #MAX_WEEKS}).
+	 * @return The weeks along with the given one.
+	 */
+	public AssessmentWeeks set(int week) {
+		return valueOf(mask | weekMask(week));
+	}
+
+	/**
+	 * @param week A week (1 to {@value #MAX_WEEKS}).
+	 * @return The weeks without the given one.
+	 */
+	public AssessmentWeeks clear(int week) {
+		return valueOf(mask & ~weekMask(week));
+	}
+
+	/**
+	 * @param fromWeek The week to start from (1 to {@value #MAX_WEEKS}).
+	 * @return The first week that is set, starting from the given one, or 0 if there is none.
+	 */
+	public int nextSetWeek(int fromWeek) {
+		checkWeek(fromWeek);
+		int remaining = mask & (-1 << (fromWeek - 1));
+		return remaining == 0 ? 0 : Integer.numberOfTrailingZeros(remaining) + 1;
+	}
+
+	/**
+	 * @return The first week of the assessment, or 0 if there are no weeks.
+	 */
+	public int firstWeek() {
+		return mask == 0 ? 0 : Integer.numberOfTrailingZeros(mask) + 1;
+	}
+
+	/**
+	 * @return The last week of the assessment, or 0 if there are no weeks.
+	 */
+	public int lastWeek() {
+		return MAX_WEEKS - Integer.numberOfLeadingZeros(mask);
+	}
+
+	/**
+	 * @return The number of weeks of the assessment.
+	 */
+	public int cardinality() {
+		return Integer.bitCount(mask);
+	}
+
+	public boolean isEmpty() {
+		return mask == 0;
+	}
+
+	/**
+	 * @param week1BeginDate The first day of week 1 of the semester.
+	 * @return The first day of the first week of the assessment, or null if there are no weeks.
+	 */
+	public LocalDate startDate(LocalDate week1BeginDate) {
+		return mask == 0 || week1BeginDate == null ? null : week1BeginDate.plusWeeks(firstWeek() - 1);
+	}
+
+	/**
+	 * @param week1BeginDate The first day of week 1 of the semester.
+	 * @return The last day of the last week of the assessment, or null if there are no weeks.
+	 */
+	public LocalDate endDate(LocalDate week1BeginDate) {
+		return mask == 0 || week1BeginDate == null ? null : week1BeginDate.plusWeeks(lastWeek()).minusDays(1);
+	}
+
+	public int toMask() {
+		return mask;
+	}
+
+	/**
+	 * @return The weeks as a string of 0s and 1s, of at least {@value #SEMESTER_WEEKS} characters.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder weeks = new StringBuilder(MAX_WEEKS);
+		for (int week = 1; week <= Math.max(SEMESTER_WEEKS, lastWeek()); week++) {
+			weeks.append(get(week) ? '1' : '0');
+		}
+		return weeks.toString();
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof AssessmentWeeks && ((AssessmentWeeks) other).mask == mask;
+	}
+
+	@Override
+	public int hashCode() {
+		return mask;
+	}
+
+}
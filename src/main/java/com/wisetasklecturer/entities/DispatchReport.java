@@ -0,0 +1,34 @@
+package com.wisetasklecturer.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * An entity class representing the outcome of a run of the dispatcher that emails
+ * the due tasks to the lecturers.
+ * @author Theofanis Gkoufas
+ *
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DispatchReport {
+	
+	private long dueTasks;
+	
+	private long digestsSent;
+	
+	private long digestsFailed;
+	
+	private long tasksMarkedSent;
+	
+	private long retries;
+	
+	private long elapsedMillis;
+	
+	private double messagesPerSecond;
+	
+}
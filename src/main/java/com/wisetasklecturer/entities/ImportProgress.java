@@ -0,0 +1,73 @@
+package com.wisetasklecturer.entities;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * An entity class representing the progress (or the outcome) of importing a workbook
+ * of modules, assessments and tasks.
+ * @author Theofanis Gkoufas
+ *
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportProgress {
+	
+	/**
+	 * The possible states of an import.
+	 */
+	public enum Status {
+		RUNNING, COMPLETED, FAILED;
+	}
+	
+	private String importId;
+	
+	private String fileName;
+	
+	private Status status;
+	
+	private String currentSheet;
+	
+	private long rowsRead;
+	
+	private long rowsImported;
+	
+	private long rowsRejected;
+	
+	private long batchesCommitted;
+	
+	private LocalDateTime startedAt;
+	
+	private LocalDateTime finishedAt;
+	
+	private String failure;
+	
+	/*
+	 * Only the first errors are kept (see wisetask.import.maximum-errors), the rest of
+	 * them are only counted in rowsRejected.
+	 */
+	private List<ImportError> errors;
+	
+	/**
+	 * A row of the workbook that could not be imported.
+	 */
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class ImportError {
+		
+		private String sheet;
+		
+		private int row;
+		
+		private String message;
+		
+	}
+	
+}
@@ -0,0 +1,24 @@
+package com.wisetasklecturer.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * An entity class representing the dashboard of a lecturer, which contains both the
+ * pending tasks whose dates should be set and the to-do tasks.
+ * @author Theofanis Gkoufas
+ *
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LecturerDashboard {
+	
+	private PendingTasksToSet pendingTasksToSet;
+	
+	private TasksToDo tasksToDo;
+	
+}
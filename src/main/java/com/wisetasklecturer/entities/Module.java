@@ -39,6 +39,11 @@ public class Module {
 	@Column(name = "module_code")
 	private String moduleCode;
 	
+	/*
+	 * The lecturers below are also stored in the lecturer_modules table (by user id), which
+	 * is what the lecturer queries use. That table is kept in sync with these two columns
+	 * by database triggers (see db/001_lecturer_modules.sql).
+	 */
 	@Column(name = "primary_lecturer")
 	private String primaryLecturer;
 	
@@ -1,6 +1,7 @@
 package com.wisetasklecturer.entities;
 
 import java.sql.Date;
+import java.time.LocalDate;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -29,4 +30,19 @@ public class PendingTaskToSet {
 	
 	private int assessmentWeight;
 	
+	/**
+	 * The weeks of the assessment as a bitmask, where week 1 is the lowest bit.
+	 */
+	private int assessmentWeeksMask;
+	
+	/**
+	 * The first day of the first week of the assessment.
+	 */
+	private LocalDate windowStartDate;
+	
+	/**
+	 * The last day of the last week of the assessment.
+	 */
+	private LocalDate windowEndDate;
+	
 }
\ No newline at end of file
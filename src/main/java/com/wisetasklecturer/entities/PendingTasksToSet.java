@@ -5,11 +5,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 /**
- * A class containing a list of pending tasks as its only field.
+ * A class containing a list of pending tasks, and the cursor of the next page
+ * when the tasks are retrieved in pages.
  * @author Theofanis Gkoufas
  *
  */
@@ -23,4 +25,12 @@ public class PendingTasksToSet {
 	@Qualifier("pendingTasksList")
 	private List<PendingTaskToSet> pendingTasksToSetList;
 	
+	
+	/*
+	 * The cursor of the next page, which is only included in the json when the tasks
+	 * are retrieved in pages and there are more tasks to retrieve.
+	 */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private String nextCursor;
+
 }
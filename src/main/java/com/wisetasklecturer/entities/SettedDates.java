@@ -0,0 +1,29 @@
+package com.wisetasklecturer.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * An entity class representing the upload/deadline dates that a lecturer has set
+ * for a particular assessment.
+ * @author Theofanis Gkoufas
+ *
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SettedDates {
+	
+	/**
+	 * The id of the assessment, or null if the request did not give a valid one.
+	 */
+	private Integer assessmentId;
+	
+	private String uploadDate;
+	
+	private String deadlineDate;
+	
+}
@@ -0,0 +1,45 @@
+package com.wisetasklecturer.entities;
+
+import java.util.List;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * An entity class representing the outcome of setting the upload/deadline dates
+ * of a particular assessment.
+ * @author Theofanis Gkoufas
+ *
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SettedDatesResult {
+	
+	/**
+	 * The possible outcomes of setting the dates of an assessment.
+	 */
+	public enum Status {
+		UPDATED, NOT_FOUND, INVALID;
+	}
+	
+	/**
+	 * The id of the assessment, or null if the request did not give a valid one.
+	 */
+	private Integer assessmentId;
+	
+	private Status status;
+	
+	private String message;
+	
+	/**
+	 * The ids of the tasks of the workflow steps that were generated for the assessment,
+	 * only when the generation of the tasks was requested.
+	 */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private List<Integer> generatedTaskIds;
+	
+}
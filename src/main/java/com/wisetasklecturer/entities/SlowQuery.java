@@ -0,0 +1,49 @@
+package com.wisetasklecturer.entities;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * An entity class representing a statement that was slower than the threshold of the
+ * slow query log (or that failed), along with its bind parameters and the method that
+ * executed it.
+ * @author Theofanis Gkoufas
+ *
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlowQuery {
+
+	private LocalDateTime executedAt;
+
+	private String sql;
+
+	/*
+	 * The parameters as they are logged, i.e. the strings are redacted unless the
+	 * wisetask.slow-sql.redact-parameters property is false.
+	 */
+	private List<String> parameters;
+
+	private String caller;
+
+	private double executionMillis;
+
+	private double fetchMillis;
+
+	private double totalMillis;
+
+	private long rows;
+
+	private int batchSize;
+
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private String error;
+
+}
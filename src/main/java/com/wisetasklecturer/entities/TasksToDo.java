@@ -5,11 +5,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 /**
- * A class containing a list of tasks to do as its only field.
+ * A class containing a list of tasks to do, and the cursor of the next page
+ * when the tasks are retrieved in pages.
  * @author Theofanis Gkoufas
  *
  */
@@ -22,5 +24,12 @@ public class TasksToDo {
 	@Autowired
 	@Qualifier("tasksToDoList")
 	private List<TaskToDo> tasksToDo;
+	
+	/*
+	 * The cursor of the next page, which is only included in the json when the tasks
+	 * are retrieved in pages and there are more tasks to retrieve.
+	 */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private String nextCursor;
 
 }
@@ -0,0 +1,75 @@
+package com.wisetasklecturer.entities;
+
+import java.time.LocalDate;
+
+/**
+ * The five steps of the workflow of an assessment, for which a task is sent to the
+ * lecturer. The date of every step is an offset (in days, held by the settings of
+ * the entry for every type of assessment) from the upload date of the assessment
+ * (steps 1 and 2, which come before it) or from its deadline date (steps 3 to 5).
+ * @author Theofanis Gkoufas
+ *
+ */
+public enum WorkflowStep {
+
+	READY(1, "step1_preDaysUntilReady", false, "Have the assessment ready"),
+	MODERATION(2, "step2_preModSend", false, "Send the assessment to the moderator"),
+	CORRECTION(3, "step3_postCorrectionDays", true, "Complete the correction of the assessment"),
+	POST_MODERATION(4, "step4_postModSend", true, "Send the corrected assessment to the moderator"),
+	GRADES_UPLOAD(5, "step5_gradesUpload", true, "Upload the grades of the assessment");
+	
+	private final int number;
+	
+	private final String columnSuffix;
+	
+	private final boolean afterDeadline;
+	
+	private final String description;
+	
+	private WorkflowStep(int number, String columnSuffix, boolean afterDeadline, String description) {
+		this.number = number;
+		this.columnSuffix = columnSuffix;
+		this.afterDeadline = afterDeadline;
+		this.description = description;
+	}
+	
+	/**
+	 * @param number The number of the step (1 to 5), as stored in tasks.workflow_step.
+	 * @return The step, or null if there is no step with that number.
+	 */
+	public static WorkflowStep of(int number) {
+		for (WorkflowStep step : values()) {
+			if (step.number == number) {
+				return step;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Calculates the date that the task of this step should be sent.
+	 * @param uploadDate The upload date of the assessment.
+	 * @param deadlineDate The deadline date of the assessment.
+	 * @param offsetDays The offset of the step, from the settings of the entry.
+	 * @return The date to send the task.
+	 */
+	public LocalDate dateToSend(LocalDate uploadDate, LocalDate deadlineDate, int offsetDays) {
+		return afterDeadline ? deadlineDate.plusDays(offsetDays) : uploadDate.minusDays(offsetDays);
+	}
+	
+	/**
+	 * @return The description of the task of this step.
+	 */
+	public String getTaskDescription() {
+		return "Step " + number + ": " + description;
+	}
+	
+	public int getNumber() {
+		return number;
+	}
+	
+	public String getColumnSuffix() {
+		return columnSuffix;
+	}
+	
+}
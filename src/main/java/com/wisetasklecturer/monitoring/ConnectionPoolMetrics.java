@@ -0,0 +1,128 @@
+package com.wisetasklecturer.monitoring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Collects the statistics of the connection pool that backs the service's DataSource.
+ * Hikari calls the tracker created by this factory every time that a connection is
+ * acquired, released, created or when a request for a connection times out, so we can
+ * report how long the requests had to wait for a connection next to the current
+ * number of active/idle connections.
+ *
+ * The same statistics are published as meters (wisetask.datasource.*), since Spring Boot
+ * only binds the metrics of a Hikari pool that has no tracker factory of its own.
+ * @author Theofanis Gkoufas
+ *
+ */
+public class ConnectionPoolMetrics implements MetricsTrackerFactory, MeterBinder {
+
+	private final LongAdder acquisitions = new LongAdder();
+
+	private final LongAdder acquireNanos = new LongAdder();
+
+	private final LongAccumulator maxAcquireNanos = new LongAccumulator(Long::max, 0);
+
+	private final LongAdder timeouts = new LongAdder();
+
+	private final LongAdder connectionsCreated = new LongAdder();
+
+	private final LongAdder usageMillis = new LongAdder();
+
+	private volatile String poolName;
+
+	private volatile PoolStats poolStats;
+
+	private volatile Timer acquireTimer;
+
+	@Override
+	public IMetricsTracker create(String poolName, PoolStats poolStats) {
+		this.poolName = poolName;
+		this.poolStats = poolStats;
+		return new IMetricsTracker() {
+
+			@Override
+			public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+				acquisitions.increment();
+				acquireNanos.add(elapsedAcquiredNanos);
+				maxAcquireNanos.accumulate(elapsedAcquiredNanos);
+				Timer timer = acquireTimer;
+				if (timer != null) {
+					timer.record(elapsedAcquiredNanos, TimeUnit.NANOSECONDS);
+				}
+			}
+
+			@Override
+			public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+				usageMillis.add(elapsedBorrowedMillis);
+			}
+
+			@Override
+			public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+				connectionsCreated.increment();
+			}
+
+			@Override
+			public void recordConnectionTimeout() {
+				timeouts.increment();
+			}
+		};
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		acquireTimer = Timer.builder("wisetask.datasource.acquire")
+				.description("The time that the requests waited for a connection of the pool")
+				.register(registry);
+		Gauge.builder("wisetask.datasource.connections.active", this,
+					  metrics -> metrics.poolStats == null ? 0 : metrics.poolStats.getActiveConnections())
+			 .register(registry);
+		Gauge.builder("wisetask.datasource.connections.idle", this,
+					  metrics -> metrics.poolStats == null ? 0 : metrics.poolStats.getIdleConnections())
+			 .register(registry);
+		Gauge.builder("wisetask.datasource.connections.pending", this,
+					  metrics -> metrics.poolStats == null ? 0 : metrics.poolStats.getPendingThreads())
+			 .description("The number of threads that are waiting for a connection")
+			 .register(registry);
+		FunctionCounter.builder("wisetask.datasource.timeouts", timeouts, LongAdder::sum)
+					   .description("The requests for a connection that timed out")
+					   .register(registry);
+	}
+
+	/**
+	 * Creates a snapshot of the pool statistics.
+	 * @return A map containing the current state of the pool as well as the accumulated
+	 * wait times and timeouts since the pool was started.
+	 */
+	public Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+		PoolStats stats = poolStats;
+		long acquired = acquisitions.sum();
+		snapshot.put("poolName", poolName);
+		snapshot.put("active", stats == null ? 0 : stats.getActiveConnections());
+		snapshot.put("idle", stats == null ? 0 : stats.getIdleConnections());
+		snapshot.put("total", stats == null ? 0 : stats.getTotalConnections());
+		snapshot.put("max", stats == null ? 0 : stats.getMaxConnections());
+		snapshot.put("threadsAwaitingConnection", stats == null ? 0 : stats.getPendingThreads());
+		snapshot.put("acquisitions", acquired);
+		snapshot.put("averageWaitMillis", acquired == 0 ? 0.0
+				: (double) TimeUnit.NANOSECONDS.toMicros(acquireNanos.sum()) / acquired / 1000);
+		snapshot.put("maxWaitMillis", TimeUnit.NANOSECONDS.toMillis(maxAcquireNanos.get()));
+		snapshot.put("timeouts", timeouts.sum());
+		snapshot.put("connectionsCreated", connectionsCreated.sum());
+		snapshot.put("averageUsageMillis", acquired == 0 ? 0.0 : (double) usageMillis.sum() / acquired);
+		return snapshot;
+	}
+
+}
@@ -0,0 +1,75 @@
+package com.wisetasklecturer.monitoring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Reports the statistics of the pool of the connections to the users and to the admin
+ * microservices, i.e. the connections that are leased by a call, the idle connections that
+ * are kept alive for the next calls and the calls that are waiting for a connection.
+ *
+ * The statistics of the whole pool are published as meters (wisetask.http.client.*), and
+ * the snapshot also breaks them down per route (host and port of a service).
+ * @author Theofanis Gkoufas
+ *
+ */
+public class HttpClientPoolMetrics implements MeterBinder {
+
+	private final PoolingHttpClientConnectionManager connectionManager;
+
+	public HttpClientPoolMetrics(PoolingHttpClientConnectionManager connectionManager) {
+		this.connectionManager = connectionManager;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		registerGauge(registry, "wisetask.http.client.connections.leased", PoolStats::getLeased,
+				"The connections that are used by a call");
+		registerGauge(registry, "wisetask.http.client.connections.available", PoolStats::getAvailable,
+				"The idle connections that are kept alive");
+		registerGauge(registry, "wisetask.http.client.connections.pending", PoolStats::getPending,
+				"The calls that are waiting for a connection");
+		registerGauge(registry, "wisetask.http.client.connections.max", PoolStats::getMax,
+				"The maximum number of connections of the pool");
+	}
+
+	private void registerGauge(MeterRegistry registry, String name, ToIntFunction<PoolStats> statistic,
+							   String description) {
+		Gauge.builder(name, connectionManager, manager -> statistic.applyAsInt(manager.getTotalStats()))
+			 .description(description)
+			 .register(registry);
+	}
+
+	/**
+	 * Creates a snapshot of the pool statistics.
+	 * @return A map containing the leased, available (idle) and maximum connections and the
+	 * pending calls of the whole pool, along with the same statistics for every route.
+	 */
+	public Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = toMap(connectionManager.getTotalStats());
+		snapshot.put("maxPerRoute", connectionManager.getDefaultMaxPerRoute());
+		Map<String, Object> routes = new LinkedHashMap<String, Object>();
+		for (HttpRoute route : connectionManager.getRoutes()) {
+			routes.put(route.getTargetHost().toHostString(), toMap(connectionManager.getStats(route)));
+		}
+		snapshot.put("routes", routes);
+		return snapshot;
+	}
+
+	private static Map<String, Object> toMap(PoolStats stats) {
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		map.put("leased", stats.getLeased());
+		map.put("available", stats.getAvailable());
+		map.put("pending", stats.getPending());
+		map.put("max", stats.getMax());
+		return map;
+	}
+
+}
@@ -0,0 +1,51 @@
+package com.wisetasklecturer.monitoring;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Times the queries and the updates of the services, tagged by the name of the query
+ * and by its outcome (SUCCESS or ERROR).
+ *
+ * Most of the read paths of the LecturerServices only print the exception of a failed
+ * query and return an empty result, so the outcome is the only way to tell a lecturer
+ * without tasks from a query that failed. The timers are published as wisetask.queries,
+ * and their histograms/SLO buckets are configured with the management.metrics.distribution.*
+ * properties like the ones of any other meter.
+ * @author Theofanis Gkoufas
+ *
+ */
+@Component
+public class QueryMetrics {
+
+	public static final String TIMER = "wisetask.queries";
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	/**
+	 * Starts timing a query.
+	 * @param query The name of the query (e.g. tasksToDo).
+	 * @return The timer of the query, which records its duration once it is closed.
+	 */
+	public QueryTimer time(String query) {
+		return new QueryTimer(this, query, Timer.start(meterRegistry));
+	}
+
+	/**
+	 * Records the duration of a query.
+	 * @param sample The sample that was started when the query started.
+	 * @param query The name of the query.
+	 * @param succeeded Whether the query succeeded.
+	 */
+	void record(Timer.Sample sample, String query, boolean succeeded) {
+		sample.stop(Timer.builder(TIMER)
+				.description("The duration of the queries and the updates of the lecturer operations")
+				.tag("query", query)
+				.tag("outcome", succeeded ? "SUCCESS" : "ERROR")
+				.register(meterRegistry));
+	}
+
+}
@@ -0,0 +1,51 @@
+package com.wisetasklecturer.monitoring;
+
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Times a single query (see {@link QueryMetrics#time(String)}). The duration is recorded
+ * when the timer is closed, so it should be the first resource of the try-with-resources
+ * statement of the query, and the outcome is SUCCESS only if {@link #success()} has been
+ * called by then, e.g.
+ * <pre>
+ * try (QueryTimer timer = queryMetrics.time("tasksToDo");
+ *      Connection connection = dataSource.getConnection()) {
+ *     ...
+ *     timer.success();
+ * }
+ * </pre>
+ * @author Theofanis Gkoufas
+ *
+ */
+public final class QueryTimer implements AutoCloseable {
+
+	private final QueryMetrics queryMetrics;
+
+	private final String query;
+
+	private final Timer.Sample sample;
+
+	private boolean succeeded;
+
+	QueryTimer(QueryMetrics queryMetrics, String query, Timer.Sample sample) {
+		this.queryMetrics = queryMetrics;
+		this.query = query;
+		this.sample = sample;
+	}
+
+	/**
+	 * Marks the query as succeeded.
+	 */
+	public void success() {
+		succeeded = true;
+	}
+
+	/**
+	 * Records the duration of the query, along with its outcome.
+	 */
+	@Override
+	public void close() {
+		queryMetrics.record(sample, query, succeeded);
+	}
+
+}
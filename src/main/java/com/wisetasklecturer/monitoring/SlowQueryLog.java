@@ -0,0 +1,223 @@
+package com.wisetasklecturer.monitoring;
+
+import java.time.LocalDateTime;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import com.wisetasklecturer.entities.SlowQuery;
+
+/**
+ * Keeps the statements that are executed through the service's DataSource (see
+ * {@link TracingDataSource}) and are slower than threshold-millis, or that fail.
+ *
+ * Every such statement is logged along with its bind parameters, its row count and the
+ * method of the service that executed it, and the last buffer-size of them are kept in a
+ * ring buffer, which is exposed by GET /monitoring/slowQueries. The strings among the
+ * parameters are redacted (only their length and their LIKE wildcards are kept), since
+ * they may be usernames or email addresses.
+ * @author Theofanis Gkoufas
+ *
+ */
+@Component
+public class SlowQueryLog {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SlowQueryLog.class);
+
+	private static final String PACKAGE = "com.wisetasklecturer.";
+
+	private static final String MONITORING_PACKAGE = "com.wisetasklecturer.monitoring.";
+
+	private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+	@Value("${wisetask.slow-sql.enabled:true}")
+	private boolean enabled;
+
+	@Value("${wisetask.slow-sql.threshold-millis:200}")
+	private long thresholdMillis;
+
+	@Value("${wisetask.slow-sql.buffer-size:100}")
+	private int bufferSize;
+
+	@Value("${wisetask.slow-sql.redact-parameters:true}")
+	private boolean redactParameters;
+
+	private long thresholdNanos;
+
+	/*
+	 * The ring buffer; next is the total number of slow queries that were added, so the
+	 * newest one is at (next - 1) % length. Both are guarded by the buffer itself, which
+	 * is only locked for the (rare) slow queries.
+	 */
+	private SlowQuery[] buffer;
+
+	private long next;
+
+	private final LongAdder statements = new LongAdder();
+
+	private final LongAdder slowStatements = new LongAdder();
+
+	private final LongAdder failedStatements = new LongAdder();
+
+	private final LongAdder totalNanos = new LongAdder();
+
+	@PostConstruct
+	public void init() {
+		thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+		buffer = new SlowQuery[Math.max(1, bufferSize)];
+	}
+
+	/**
+	 * @return Whether the statements should be traced at all.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Records an executed statement, which is logged and kept if it is slow or if it failed.
+	 * It is called by the thread that executed the statement, so that its caller can be found.
+	 * @param sql The statement.
+	 * @param parameters The bind parameters (the parameter i is at index i - 1).
+	 * @param batchSize The number of statements of the batch, or zero if it was not a batch.
+	 * @param executionNanos The time that the statement took to execute.
+	 * @param fetchNanos The time that the rows of its result set took to fetch.
+	 * @param rows The number of the rows that were fetched or updated.
+	 * @param error The exception of the statement if it failed, otherwise null.
+	 */
+	public void record(String sql, List<Object> parameters, int batchSize, long executionNanos,
+					   long fetchNanos, long rows, Throwable error) {
+		long elapsedNanos = executionNanos + fetchNanos;
+		statements.increment();
+		totalNanos.add(elapsedNanos);
+		if (error != null) {
+			failedStatements.increment();
+		} else if (elapsedNanos >= thresholdNanos) {
+			slowStatements.increment();
+		} else {
+			return;
+		}
+		List<String> renderedParameters = new ArrayList<String>(parameters.size());
+		for (Object parameter : parameters) {
+			renderedParameters.add(render(parameter, redactParameters));
+		}
+		SlowQuery slowQuery = SlowQuery.builder()
+				.executedAt(LocalDateTime.now())
+				.sql(sql)
+				.parameters(renderedParameters)
+				.caller(caller())
+				.executionMillis(executionNanos / 1e6)
+				.fetchMillis(fetchNanos / 1e6)
+				.totalMillis(elapsedNanos / 1e6)
+				.rows(rows)
+				.batchSize(batchSize)
+				.error(error == null ? null : error.toString())
+				.build();
+		synchronized (buffer) {
+			buffer[(int) (next++ % buffer.length)] = slowQuery;
+		}
+		if (error != null) {
+			LOGGER.warn("Failed SQL ({} ms) at {}: {} | parameters {} | {}", slowQuery.getTotalMillis(),
+					slowQuery.getCaller(), sql, renderedParameters, slowQuery.getError());
+		} else {
+			LOGGER.warn("Slow SQL ({} ms: execution {} ms, fetch {} ms, {} rows{}) at {}: {} | parameters {}",
+					slowQuery.getTotalMillis(), slowQuery.getExecutionMillis(), slowQuery.getFetchMillis(),
+					rows, batchSize > 0 ? ", batch of " + batchSize : "", slowQuery.getCaller(), sql,
+					renderedParameters);
+		}
+	}
+
+	/**
+	 * Renders a bind parameter for the log.
+	 * @param value The parameter.
+	 * @param redact Whether a string should be replaced by its length (keeping its LIKE
+	 * wildcards at the start and the end, e.g. '%&lt;8 chars&gt;%').
+	 * @return The rendered parameter.
+	 */
+	static String render(Object value, boolean redact) {
+		if (value == null) {
+			return "NULL";
+		}
+		if (value instanceof Number || value instanceof Boolean || value instanceof java.util.Date
+				|| value instanceof Temporal) {
+			return value.toString();
+		}
+		if (value instanceof String) {
+			String string = (String) value;
+			if (!redact) {
+				return "'" + string + "'";
+			}
+			int start = string.startsWith("%") ? 1 : 0;
+			int end = string.length() > start && string.endsWith("%") ? string.length() - 1 : string.length();
+			return "'" + string.substring(0, start) + "<" + (end - start) + " chars>" + string.substring(end) + "'";
+		}
+		return "<" + value.getClass().getSimpleName() + ">";
+	}
+
+	/**
+	 * Finds the method of the service that executed the statement, which is the first method
+	 * of the service (outside of this package) on the stack of the current thread.
+	 * @return The method as Class.method:line, or unknown if it was not called by the service.
+	 */
+	private static String caller() {
+		return STACK_WALKER.walk(frames -> frames
+				.filter(frame -> frame.getClassName().startsWith(PACKAGE)
+						&& !frame.getClassName().startsWith(MONITORING_PACKAGE))
+				.findFirst()
+				.map(frame -> frame.getClassName().substring(PACKAGE.length()) + "."
+						+ frame.getMethodName() + ":" + frame.getLineNumber())
+				.orElse("unknown"));
+	}
+
+	/**
+	 * @return The slow (and the failed) queries in the ring buffer, newest first.
+	 */
+	public List<SlowQuery> recent() {
+		List<SlowQuery> recent = new ArrayList<SlowQuery>();
+		synchronized (buffer) {
+			for (long i = next - 1; i >= 0 && i >= next - buffer.length; i--) {
+				recent.add(buffer[(int) (i % buffer.length)]);
+			}
+		}
+		return recent;
+	}
+
+	/**
+	 * Empties the ring buffer (the counts of the statements are kept).
+	 */
+	public void clear() {
+		synchronized (buffer) {
+			for (int i = 0; i < buffer.length; i++) {
+				buffer[i] = null;
+			}
+			next = 0;
+		}
+	}
+
+	/**
+	 * Creates a snapshot of the slow query log.
+	 * @return A map containing the number of statements that were executed, were slow or
+	 * failed, along with the slow queries of the ring buffer (newest first).
+	 */
+	public Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+		long executed = statements.sum();
+		snapshot.put("enabled", enabled);
+		snapshot.put("thresholdMillis", thresholdMillis);
+		snapshot.put("statements", executed);
+		snapshot.put("slowStatements", slowStatements.sum());
+		snapshot.put("failedStatements", failedStatements.sum());
+		snapshot.put("averageMillis", executed == 0 ? 0.0 : totalNanos.sum() / 1e6 / executed);
+		snapshot.put("slowQueries", recent());
+		return snapshot;
+	}
+
+}
@@ -0,0 +1,336 @@
+package com.wisetasklecturer.monitoring;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * A DataSource that traces every statement executed through the connections of another
+ * one (the connection pool), for the {@link SlowQueryLog}.
+ *
+ * The connections, statements and result sets are wrapped by dynamic proxies, which keep
+ * the bind parameters of the statements and measure the time that every statement took
+ * to execute and the time that its rows took to fetch (the calls to ResultSet.next()).
+ * A query is recorded once all of its rows have been fetched or its result set (or its
+ * statement) is closed, and any other statement as soon as it has been executed. The
+ * proxies equal only themselves, and the statements and result sets return the proxies of
+ * their connection and statement (as the result sets of execute() are traced as well).
+ * @author Theofanis Gkoufas
+ *
+ */
+public class TracingDataSource extends DelegatingDataSource implements AutoCloseable {
+
+	private final SlowQueryLog slowQueryLog;
+
+	public TracingDataSource(DataSource targetDataSource, SlowQueryLog slowQueryLog) {
+		super(targetDataSource);
+		this.slowQueryLog = slowQueryLog;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return trace(super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return trace(super.getConnection(username, password));
+	}
+
+	/*
+	 * The pool is a bean of the context, so it has to be closed along with the context (a
+	 * DelegatingDataSource does not close its target).
+	 */
+	@Override
+	public void close() throws Exception {
+		if (getTargetDataSource() instanceof AutoCloseable) {
+			((AutoCloseable) getTargetDataSource()).close();
+		}
+	}
+
+	private Connection trace(Connection connection) {
+		return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Connection.class},
+				new ConnectionHandler(connection));
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getTargetException();
+		}
+	}
+
+	/**
+	 * Answers equals and hashCode by the identity of the proxy (the target does not know
+	 * about its proxy, so otherwise a proxy would not even equal itself) and leaves any
+	 * other method to the handler.
+	 */
+	private abstract static class ProxyHandler implements InvocationHandler {
+
+		@Override
+		public final Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (method.getName().equals("equals") && method.getParameterCount() == 1) {
+				return proxy == args[0];
+			}
+			if (method.getName().equals("hashCode") && method.getParameterCount() == 0) {
+				return System.identityHashCode(proxy);
+			}
+			return handle(proxy, method, args);
+		}
+
+		abstract Object handle(Object proxy, Method method, Object[] args) throws Throwable;
+
+	}
+
+	private final class ConnectionHandler extends ProxyHandler {
+
+		private final Connection target;
+
+		private ConnectionHandler(Connection target) {
+			this.target = target;
+		}
+
+		@Override
+		Object handle(Object proxy, Method method, Object[] args) throws Throwable {
+			Object result = TracingDataSource.invoke(target, method, args);
+			Class<?> type;
+			if (result instanceof CallableStatement) {
+				type = CallableStatement.class;
+			} else if (result instanceof PreparedStatement) {
+				type = PreparedStatement.class;
+			} else if (result instanceof Statement) {
+				type = Statement.class;
+			} else {
+				return result;
+			}
+			// prepareStatement/prepareCall take the sql as their first argument, createStatement does not
+			String sql = method.getName().startsWith("prepare") ? (String) args[0] : null;
+			return Proxy.newProxyInstance(TracingDataSource.class.getClassLoader(), new Class<?>[] {type},
+					new StatementHandler((Statement) result, (Connection) proxy, sql));
+		}
+
+	}
+
+	/**
+	 * Traces the executions of a statement; only one of them may be open (i.e. have a result
+	 * set whose rows are being fetched) at a time, as with JDBC itself.
+	 */
+	private final class StatementHandler extends ProxyHandler {
+
+		private final Statement target;
+
+		private final Connection connection;
+
+		private String sql;
+
+		private final List<Object> parameters = new ArrayList<Object>();
+
+		private int batchSize;
+
+		private Execution execution;
+
+		private StatementHandler(Statement target, Connection connection, String sql) {
+			this.target = target;
+			this.connection = connection;
+			this.sql = sql;
+		}
+
+		@Override
+		Object handle(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.startsWith("execute")) {
+				return execute((Statement) proxy, method, args);
+			}
+			if (name.equals("getConnection")) {
+				return connection;
+			}
+			if (name.equals("getResultSet")) {
+				// the result set of the last execute(), whose rows are traced like those of executeQuery()
+				Object result = TracingDataSource.invoke(target, method, args);
+				return result == null ? null : trace((ResultSet) result, (Statement) proxy);
+			}
+			if (name.equals("getMoreResults")) {
+				finish();
+			} else if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+				// setNull(index, sqlType) is the only setter whose second argument is not the value
+				setParameter((Integer) args[0], name.equals("setNull") ? null : args[1]);
+			} else if (name.equals("clearParameters")) {
+				parameters.clear();
+			} else if (name.equals("addBatch")) {
+				batchSize++;
+				if (args != null && sql == null) {
+					sql = (String) args[0];
+				}
+			} else if (name.equals("clearBatch")) {
+				batchSize = 0;
+			} else if (name.equals("close")) {
+				finish();
+			}
+			return TracingDataSource.invoke(target, method, args);
+		}
+
+		private void setParameter(int index, Object value) {
+			while (parameters.size() < index) {
+				parameters.add(null);
+			}
+			parameters.set(index - 1, value);
+		}
+
+		private Object execute(Statement proxy, Method method, Object[] args) throws Throwable {
+			finish();
+			String executedSql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+			List<Object> executedParameters = parameters.isEmpty() ? Collections.emptyList()
+																	: new ArrayList<Object>(parameters);
+			boolean batch = method.getName().startsWith("executeBatch")
+					|| method.getName().startsWith("executeLargeBatch");
+			Execution current = new Execution(executedSql, executedParameters, batch ? batchSize : 0);
+			if (batch) {
+				batchSize = 0;
+			}
+			long start = System.nanoTime();
+			Object result;
+			try {
+				result = TracingDataSource.invoke(target, method, args);
+			} catch (Throwable e) {
+				current.executionNanos = System.nanoTime() - start;
+				current.finish(e);
+				throw e;
+			}
+			current.executionNanos = System.nanoTime() - start;
+			if (result instanceof ResultSet) {
+				execution = current;
+				return trace((ResultSet) result, proxy);
+			}
+			if (Boolean.TRUE.equals(result)) {
+				// execute() returned a result set, which is finished once its rows are fetched through getResultSet()
+				execution = current;
+				return result;
+			}
+			if (result instanceof Number) {
+				current.rows = ((Number) result).longValue();
+			} else if (result instanceof int[]) {
+				for (int count : (int[]) result) {
+					current.rows += Math.max(0, count);
+				}
+			} else if (result instanceof long[]) {
+				for (long count : (long[]) result) {
+					current.rows += Math.max(0, count);
+				}
+			}
+			current.finish(null);
+			return result;
+		}
+
+		private ResultSet trace(ResultSet resultSet, Statement proxy) {
+			return (ResultSet) Proxy.newProxyInstance(TracingDataSource.class.getClassLoader(),
+					new Class<?>[] {ResultSet.class}, new ResultSetHandler(resultSet, proxy, execution));
+		}
+
+		private void finish() {
+			if (execution != null) {
+				execution.finish(null);
+				execution = null;
+			}
+		}
+
+	}
+
+	private final class ResultSetHandler extends ProxyHandler {
+
+		private final ResultSet target;
+
+		private final Statement statement;
+
+		private final Execution execution;
+
+		private ResultSetHandler(ResultSet target, Statement statement, Execution execution) {
+			this.target = target;
+			this.statement = statement;
+			this.execution = execution;
+		}
+
+		@Override
+		Object handle(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("getStatement")) {
+				return statement;
+			}
+			if (execution == null) {
+				// a result set of the statement whose execution has already been finished
+				return TracingDataSource.invoke(target, method, args);
+			}
+			if (name.equals("next")) {
+				long start = System.nanoTime();
+				Object hasRow;
+				try {
+					hasRow = TracingDataSource.invoke(target, method, args);
+				} catch (Throwable e) {
+					execution.fetchNanos += System.nanoTime() - start;
+					execution.finish(e);
+					throw e;
+				}
+				execution.fetchNanos += System.nanoTime() - start;
+				if (Boolean.TRUE.equals(hasRow)) {
+					execution.rows++;
+				} else {
+					execution.finish(null);
+				}
+				return hasRow;
+			}
+			if (name.equals("close")) {
+				execution.finish(null);
+			}
+			return TracingDataSource.invoke(target, method, args);
+		}
+
+	}
+
+	/**
+	 * An execution of a statement, which is recorded once (when it is finished).
+	 */
+	private final class Execution {
+
+		private final String sql;
+
+		private final List<Object> parameters;
+
+		private final int batchSize;
+
+		private long executionNanos;
+
+		private long fetchNanos;
+
+		private long rows;
+
+		private boolean finished;
+
+		private Execution(String sql, List<Object> parameters, int batchSize) {
+			this.sql = sql;
+			this.parameters = parameters;
+			this.batchSize = batchSize;
+		}
+
+		private void finish(Throwable error) {
+			if (finished) {
+				return;
+			}
+			finished = true;
+			slowQueryLog.record(sql, parameters, batchSize, executionNanos, fetchNanos, rows, error);
+		}
+
+	}
+
+}
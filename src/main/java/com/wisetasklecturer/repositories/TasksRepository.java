@@ -1,7 +1,13 @@
 package com.wisetasklecturer.repositories;
 
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import com.wisetasklecturer.entities.Task;
 
 /**
@@ -10,5 +16,33 @@ import com.wisetasklecturer.entities.Task;
  */
 @Repository
 public interface TasksRepository extends CrudRepository<Task, Integer> {
+	
+	/**
+	 * Marks a task as completed with a single update statement (without loading the task).
+	 * @param taskId The id of the task.
+	 * @return The number of tasks that matched the id (zero if the task does not exist).
+	 */
+	@Modifying
+	@Transactional
+	@Query("UPDATE Task T SET T.isCompleted = true WHERE T.taskId = :taskId")
+	int markAsCompleted(@Param("taskId") int taskId);
+	
+	/**
+	 * Marks many tasks as completed with a single update statement.
+	 * @param taskIds The ids of the tasks.
+	 * @return The number of tasks that matched the ids.
+	 */
+	@Modifying
+	@Transactional
+	@Query("UPDATE Task T SET T.isCompleted = true WHERE T.taskId IN :taskIds")
+	int markAsCompleted(@Param("taskIds") Collection<Integer> taskIds);
+	
+	/**
+	 * Finds which of the given tasks exist.
+	 * @param taskIds The ids of the tasks that we are looking for.
+	 * @return The ids of the tasks that exist.
+	 */
+	@Query("SELECT T.taskId FROM Task T WHERE T.taskId IN :taskIds")
+	List<Integer> findExistingIds(@Param("taskIds") Collection<Integer> taskIds);
 
 }
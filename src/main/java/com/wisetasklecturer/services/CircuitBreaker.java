@@ -0,0 +1,140 @@
+package com.wisetasklecturer.services;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A circuit breaker, which stops the calls to a service that keeps failing.
+ *
+ * The breaker is CLOSED (calls are allowed) until failure-threshold calls fail in a row, at
+ * which point it is OPEN and every call is rejected straight away, without waiting for a
+ * service that is most probably down. Once open-duration has passed the breaker is
+ * HALF_OPEN; a single trial call is allowed, which closes the breaker if it succeeds and
+ * opens it again (for another open-duration) if it fails. The success of any other call
+ * (e.g. one that was allowed before the breaker opened but finished late) does not close it.
+ * @author Theofanis Gkoufas
+ *
+ */
+public final class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final int failureThreshold;
+
+	private final long openNanos;
+
+	/*
+	 * The state, along with the failures in a row, the time that the breaker opened and
+	 * the thread of the trial call of the half-open state (if it is in progress), is
+	 * guarded by this.
+	 */
+	private State state = State.CLOSED;
+
+	private int consecutiveFailures;
+
+	private long openedAtNanos;
+
+	private Thread trialThread;
+
+	private long timesOpened;
+
+	/**
+	 * Creates a closed circuit breaker.
+	 * @param failureThreshold The number of calls that should fail in a row to open the breaker.
+	 * @param openDuration The time that the breaker stays open before a trial call is allowed.
+	 * @param unit The unit of the open duration.
+	 */
+	public CircuitBreaker(int failureThreshold, long openDuration, TimeUnit unit) {
+		this.failureThreshold = Math.max(1, failureThreshold);
+		this.openNanos = unit.toNanos(openDuration);
+	}
+
+	/**
+	 * Asks for the permission to call the service. Every call that is allowed should be
+	 * followed by {@link #onSuccess()}, {@link #onFailure()} or {@link #release()}, on the
+	 * thread that made the call.
+	 * @return Whether the call is allowed.
+	 */
+	public synchronized boolean tryAcquire() {
+		switch (state) {
+		case CLOSED:
+			return true;
+		case OPEN:
+			if (System.nanoTime() - openedAtNanos < openNanos) {
+				return false;
+			}
+			state = State.HALF_OPEN;
+			trialThread = Thread.currentThread();
+			return true;
+		default:
+			// only one trial call at a time, the rest are rejected until it finishes
+			if (trialThread != null) {
+				return false;
+			}
+			trialThread = Thread.currentThread();
+			return true;
+		}
+	}
+
+	/**
+	 * Gives back a permission of {@link #tryAcquire()} whose call was never made, so that
+	 * it is neither a success nor a failure (e.g. the trial call of a half-open breaker).
+	 */
+	public synchronized void release() {
+		if (trialThread == Thread.currentThread()) {
+			trialThread = null;
+		}
+	}
+
+	/**
+	 * Records a call that succeeded, which resets the failures in a row of a closed breaker
+	 * and closes a half-open one if it was the trial call. A call that succeeded while the
+	 * breaker is open was allowed before it opened, so it leaves the breaker open.
+	 */
+	public synchronized void onSuccess() {
+		if (state == State.OPEN) {
+			return;
+		}
+		if (state == State.HALF_OPEN) {
+			if (trialThread != Thread.currentThread()) {
+				return;
+			}
+			trialThread = null;
+		}
+		consecutiveFailures = 0;
+		state = State.CLOSED;
+	}
+
+	/**
+	 * Records a call that failed, which opens the breaker if it was the trial call or if
+	 * failure-threshold calls have failed in a row.
+	 */
+	public synchronized void onFailure() {
+		consecutiveFailures++;
+		if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+			if (state != State.OPEN) {
+				timesOpened++;
+			}
+			state = State.OPEN;
+			openedAtNanos = System.nanoTime();
+			trialThread = null;
+		}
+	}
+
+	/**
+	 * @return The current state (an open breaker whose open duration has passed is only
+	 * reported as HALF_OPEN once a call has been allowed through it).
+	 */
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * @return The number of times that the breaker has opened.
+	 */
+	public synchronized long getTimesOpened() {
+		return timesOpened;
+	}
+
+}
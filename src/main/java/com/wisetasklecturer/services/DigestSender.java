@@ -0,0 +1,171 @@
+package com.wisetasklecturer.services;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sends the digests of the due tasks over SMTP.
+ *
+ * The digests are split in chunks of messages-per-connection messages, and every chunk is
+ * sent with a single call to {@link JavaMailSender#send(MimeMessage...)}, which sends all of
+ * them over the same SMTP connection. The chunks are sent in parallel by the mailExecutor,
+ * so at most wisetask.mail.concurrency connections are open at the same time. The messages
+ * that fail are sent again (over a new connection) after an exponential backoff.
+ * @author Theofanis Gkoufas
+ *
+ */
+@Component
+public class DigestSender {
+
+	@Autowired(required = false)
+	JavaMailSender mailSender;
+
+	@Autowired
+	@Qualifier("mailExecutor")
+	Executor mailExecutor;
+
+	@Value("${wisetask.mail.from:wisetask@localhost}")
+	private String from;
+
+	@Value("${wisetask.mail.messages-per-connection:50}")
+	private int messagesPerConnection;
+
+	@Value("${wisetask.mail.max-attempts:3}")
+	private int maxAttempts;
+
+	@Value("${wisetask.mail.initial-backoff-millis:500}")
+	private long initialBackoffMillis;
+
+	/**
+	 * @return Whether a mail server has been configured (spring.mail.host).
+	 */
+	public boolean isConfigured() {
+		return mailSender != null;
+	}
+
+	/**
+	 * Sends digests, waiting until all of them have either been sent or failed.
+	 * @param digests The digests.
+	 * @param onSent Called with the digests of every chunk that were sent (from the
+	 * threads of the mailExecutor, as soon as they are sent).
+	 * @return The outcome of sending the digests.
+	 */
+	Result send(List<TaskDigest> digests, Consumer<List<TaskDigest>> onSent) {
+		Result result = new Result();
+		List<CompletableFuture<Void>> chunks = new ArrayList<CompletableFuture<Void>>();
+		for (int from = 0; from < digests.size(); from += messagesPerConnection) {
+			List<TaskDigest> chunk = digests.subList(from, Math.min(digests.size(), from + messagesPerConnection));
+			chunks.add(CompletableFuture.runAsync(() -> sendChunk(chunk, onSent, result), mailExecutor));
+		}
+		CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0])).join();
+		return result;
+	}
+
+	private void sendChunk(List<TaskDigest> chunk, Consumer<List<TaskDigest>> onSent, Result result) {
+		List<TaskDigest> pending = new ArrayList<TaskDigest>(chunk);
+		for (int attempt = 1; !pending.isEmpty(); attempt++) {
+			List<MimeMessage> messages = new ArrayList<MimeMessage>(pending.size());
+			try {
+				for (TaskDigest digest : pending) {
+					messages.add(toMessage(digest));
+				}
+			} catch (MessagingException e) {
+				// the digest itself is invalid (e.g. a malformed address), so it is not retried
+				e.printStackTrace();
+				result.failed.addAndGet(pending.size());
+				return;
+			}
+			Set<Integer> failedIndexes = new HashSet<Integer>();
+			try {
+				mailSender.send(messages.toArray(new MimeMessage[0]));
+			} catch (MailSendException e) {
+				for (Object failedMessage : e.getFailedMessages().keySet()) {
+					failedIndexes.add(messages.indexOf(failedMessage));
+				}
+				if (failedIndexes.isEmpty()) {
+					// the connection itself failed, so none of the messages was sent
+					for (int i = 0; i < messages.size(); i++) {
+						failedIndexes.add(i);
+					}
+				}
+			} catch (MailException e) {
+				for (int i = 0; i < messages.size(); i++) {
+					failedIndexes.add(i);
+				}
+			}
+			List<TaskDigest> sent = new ArrayList<TaskDigest>(pending.size());
+			List<TaskDigest> failed = new ArrayList<TaskDigest>(failedIndexes.size());
+			for (int i = 0; i < pending.size(); i++) {
+				(failedIndexes.contains(i) ? failed : sent).add(pending.get(i));
+			}
+			if (!sent.isEmpty()) {
+				result.sent.addAndGet(sent.size());
+				onSent.accept(sent);
+			}
+			if (failed.isEmpty()) {
+				return;
+			}
+			if (attempt >= maxAttempts || !backOff(attempt)) {
+				result.failed.addAndGet(failed.size());
+				return;
+			}
+			result.retries.addAndGet(failed.size());
+			pending = failed;
+		}
+	}
+
+	private MimeMessage toMessage(TaskDigest digest) throws MessagingException {
+		MimeMessage message = mailSender.createMimeMessage();
+		MimeMessageHelper helper = new MimeMessageHelper(message, "UTF-8");
+		helper.setFrom(from);
+		helper.setTo(digest.getRecipient());
+		helper.setSubject(digest.subject());
+		helper.setText(digest.body());
+		return message;
+	}
+
+	/**
+	 * Waits before the next attempt, twice as long as before the previous one.
+	 * @return Whether we should try again, which is false if the thread was interrupted.
+	 */
+	private boolean backOff(int attempt) {
+		try {
+			Thread.sleep(initialBackoffMillis << (attempt - 1));
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * The number of digests that were sent/failed, and the number of digests that had
+	 * to be sent again.
+	 */
+	static final class Result {
+
+		final AtomicLong sent = new AtomicLong();
+
+		final AtomicLong failed = new AtomicLong();
+
+		final AtomicLong retries = new AtomicLong();
+
+	}
+
+}
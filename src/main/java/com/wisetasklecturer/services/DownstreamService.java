@@ -0,0 +1,197 @@
+package com.wisetasklecturer.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * One of the microservices that this service calls (the users service or the admin service),
+ * along with the protections of the calls to it.
+ *
+ * The RestTemplate of every service has its own connect/read timeouts, so a service that
+ * hangs cannot hold a request thread forever. At most max-concurrent-calls threads may wait
+ * on the service at the same time (bulkhead); a thread that cannot get a permit within
+ * max-wait-millis is rejected, so a slow service cannot take all the threads of Tomcat.
+ * The calls also go through a {@link CircuitBreaker}, which rejects them straight away once
+ * the service has failed repeatedly. A call that is rejected or fails is answered by the
+ * fallback of the caller (if there is one), otherwise with status 503.
+ *
+ * The responses with a 4xx status are returned by the service itself, so they are passed
+ * on to the caller and do not count as failures of the service. Only the errors of the
+ * RestTemplate (including its timeouts) count as failures; any other exception is thrown by
+ * the call of the caller itself, so it is passed on as it is and leaves the breaker as it was.
+ * @author Theofanis Gkoufas
+ *
+ */
+public class DownstreamService implements MeterBinder {
+
+	private final String name;
+
+	private final RestTemplate restTemplate;
+
+	private final CircuitBreaker circuitBreaker;
+
+	private final Semaphore bulkhead;
+
+	private final int maxConcurrentCalls;
+
+	private final long maxWaitMillis;
+
+	private final boolean fallbackEnabled;
+
+	private final LongAdder successes = new LongAdder();
+
+	private final LongAdder failures = new LongAdder();
+
+	private final LongAdder rejectedByCircuitBreaker = new LongAdder();
+
+	private final LongAdder rejectedByBulkhead = new LongAdder();
+
+	private final LongAdder fallbacks = new LongAdder();
+
+	/**
+	 * @param name The name of the service (e.g. users), which tags its metrics.
+	 * @param restTemplate The RestTemplate that calls the service, with its timeouts.
+	 * @param circuitBreaker The circuit breaker of the calls.
+	 * @param maxConcurrentCalls The maximum number of threads that may call the service at once.
+	 * @param maxWaitMillis The time that a thread may wait for one of the other calls to finish.
+	 * @param fallbackEnabled Whether the fallbacks of the callers should be used.
+	 */
+	public DownstreamService(String name, RestTemplate restTemplate, CircuitBreaker circuitBreaker,
+							 int maxConcurrentCalls, long maxWaitMillis, boolean fallbackEnabled) {
+		this.name = name;
+		this.restTemplate = restTemplate;
+		this.circuitBreaker = circuitBreaker;
+		this.maxConcurrentCalls = maxConcurrentCalls;
+		this.bulkhead = new Semaphore(maxConcurrentCalls);
+		this.maxWaitMillis = maxWaitMillis;
+		this.fallbackEnabled = fallbackEnabled;
+	}
+
+	/**
+	 * Calls the service.
+	 * @param call The call, given the RestTemplate of the service.
+	 * @param fallback The result of the call if it is rejected or fails (e.g. the data from the
+	 * shared tables), or null if there is none.
+	 * @return The result of the call, or of the fallback.
+	 * @throws ResponseStatusException With status 503 if the call is rejected or fails and there
+	 * is no fallback (or the fallbacks are disabled).
+	 * @throws HttpClientErrorException If the service responded with a 4xx status.
+	 */
+	public <T> T call(Function<RestTemplate, T> call, Supplier<T> fallback) {
+		if (!circuitBreaker.tryAcquire()) {
+			rejectedByCircuitBreaker.increment();
+			return fallback(fallback, "the circuit breaker is open", null);
+		}
+		boolean acquired;
+		try {
+			acquired = bulkhead.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			acquired = false;
+		}
+		if (!acquired) {
+			rejectedByBulkhead.increment();
+			// the call was never made, so e.g. the trial call of a half-open breaker is given back
+			circuitBreaker.release();
+			return fallback(fallback, "too many calls are waiting on it", null);
+		}
+		try {
+			T result = call.apply(restTemplate);
+			successes.increment();
+			circuitBreaker.onSuccess();
+			return result;
+		} catch (HttpClientErrorException e) {
+			successes.increment();
+			circuitBreaker.onSuccess();
+			throw e;
+		} catch (RestClientException e) {
+			failures.increment();
+			circuitBreaker.onFailure();
+			return fallback(fallback, e.getMessage(), e);
+		} catch (RuntimeException | Error e) {
+			// e.g. the caller failed to map the response, which says nothing about the service
+			circuitBreaker.release();
+			throw e;
+		} finally {
+			bulkhead.release();
+		}
+	}
+
+	private <T> T fallback(Supplier<T> fallback, String reason, Exception cause) {
+		if (fallback == null || !fallbackEnabled) {
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+					"The " + name + " service is unavailable (" + reason + ")", cause);
+		}
+		fallbacks.increment();
+		return fallback.get();
+	}
+
+	/**
+	 * @return The state of the circuit breaker.
+	 */
+	public CircuitBreaker.State getState() {
+		return circuitBreaker.getState();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("wisetask.downstream.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+			 .description("The state of the circuit breaker (0 closed, 1 open, 2 half open)")
+			 .tag("service", name)
+			 .register(registry);
+		FunctionCounter.builder("wisetask.downstream.circuit.opened", circuitBreaker, CircuitBreaker::getTimesOpened)
+					   .tag("service", name)
+					   .register(registry);
+		Gauge.builder("wisetask.downstream.bulkhead.available", bulkhead, Semaphore::availablePermits)
+			 .tag("service", name)
+			 .register(registry);
+		registerCalls(registry, "success", successes);
+		registerCalls(registry, "failure", failures);
+		registerCalls(registry, "rejected_circuit_breaker", rejectedByCircuitBreaker);
+		registerCalls(registry, "rejected_bulkhead", rejectedByBulkhead);
+		FunctionCounter.builder("wisetask.downstream.fallbacks", fallbacks, LongAdder::sum)
+					   .tag("service", name)
+					   .register(registry);
+	}
+
+	private void registerCalls(MeterRegistry registry, String outcome, LongAdder calls) {
+		FunctionCounter.builder("wisetask.downstream.calls", calls, LongAdder::sum)
+					   .tag("service", name)
+					   .tag("outcome", outcome)
+					   .register(registry);
+	}
+
+	/**
+	 * Creates a snapshot of the statistics of the calls to the service.
+	 * @return A map containing the state of the circuit breaker, the free permits of the
+	 * bulkhead and the number of calls per outcome.
+	 */
+	public Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+		snapshot.put("state", circuitBreaker.getState());
+		snapshot.put("timesOpened", circuitBreaker.getTimesOpened());
+		snapshot.put("availablePermits", bulkhead.availablePermits());
+		snapshot.put("maxConcurrentCalls", maxConcurrentCalls);
+		snapshot.put("successes", successes.sum());
+		snapshot.put("failures", failures.sum());
+		snapshot.put("rejectedByCircuitBreaker", rejectedByCircuitBreaker.sum());
+		snapshot.put("rejectedByBulkhead", rejectedByBulkhead.sum());
+		snapshot.put("fallbacks", fallbacks.sum());
+		return snapshot;
+	}
+
+}
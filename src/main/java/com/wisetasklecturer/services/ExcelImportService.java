@@ -0,0 +1,207 @@
+package com.wisetasklecturer.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+import com.wisetasklecturer.entities.ImportProgress;
+
+/**
+ * A service class that imports workbooks (.xlsx) of modules, assessments and tasks
+ * in the background (see {@link ImportJob}), and keeps track of their progress.
+ * @author Theofanis Gkoufas
+ *
+ */
+@Service
+public class ExcelImportService {
+
+	@Autowired
+	ApplicationContext context;
+
+	@Autowired
+	@Qualifier("importExecutor")
+	Executor importExecutor;
+
+	@Autowired
+	TasksToDoProjection tasksToDoProjection;
+
+	@Autowired
+	TaskSendScheduler taskSendScheduler;
+
+	@Value("${wisetask.upload.in-memory-threshold:1MB}")
+	private DataSize inMemoryThreshold;
+
+	@Value("${wisetask.import.batch-size:500}")
+	private int batchSize;
+
+	@Value("${wisetask.import.queue-capacity:1000}")
+	private int queueCapacity;
+
+	@Value("${wisetask.import.maximum-errors:100}")
+	private int maximumErrors;
+
+	@Value("${wisetask.import.concurrent-imports:2}")
+	private int concurrentImports;
+
+	@Value("${wisetask.import.retained-imports:50}")
+	private int retainedImports;
+
+	private Semaphore runningImports;
+
+	/*
+	 * The running imports along with the most recently finished ones, in the order that
+	 * they were started. All the accesses are synchronized on the map itself.
+	 */
+	private final Map<String, ImportJob> imports = new LinkedHashMap<String, ImportJob>();
+
+	@PostConstruct
+	public void init() {
+		runningImports = new Semaphore(concurrentImports);
+	}
+
+	/**
+	 * Starts importing a workbook. A workbook of up to wisetask.upload.in-memory-threshold
+	 * bytes is kept in memory, while a larger one is copied to a temporary file (which is
+	 * deleted once the import has finished), since the parts of an .xlsx file (which is a
+	 * zip archive) can only be read in any order from a file.
+	 * @param content The content of the workbook, which is read until its end.
+	 * @param fileName The name of the uploaded file.
+	 * @return The progress of the import, which includes the id that its progress can be
+	 * retrieved with.
+	 * @throws IOException If the content could not be read.
+	 * @throws ResponseStatusException With status 503 when the maximum number of imports
+	 * are already running (or the threads of the import could not be started).
+	 */
+	public ImportProgress startImport(InputStream content, String fileName) throws IOException {
+		if (!runningImports.tryAcquire()) {
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+					"Too many imports are running, please try again later");
+		}
+		// the permit is released once both parts have returned, i.e. their threads are free
+		AtomicInteger runningParts = new AtomicInteger(2);
+		Runnable partReturned = () -> {
+			if (runningParts.decrementAndGet() == 0) {
+				runningImports.release();
+			}
+		};
+		File workbook = null;
+		ImportJob job;
+		try {
+			Callable<OPCPackage> opener;
+			byte[] head = content.readNBytes((int) inMemoryThreshold.toBytes() + 1);
+			if (head.length <= inMemoryThreshold.toBytes()) {
+				opener = () -> OPCPackage.open(new ByteArrayInputStream(head));
+			} else {
+				workbook = File.createTempFile("import-", ".xlsx");
+				try (OutputStream output = new FileOutputStream(workbook)) {
+					output.write(head);
+					content.transferTo(output);
+				}
+				String path = workbook.getPath();
+				opener = () -> OPCPackage.open(path, PackageAccess.READ);
+			}
+			File importedWorkbook = workbook;
+			job = new ImportJob(UUID.randomUUID().toString(), fileName, opener,
+					context.getBean(DataSource.class), batchSize, queueCapacity, maximumErrors,
+					taskSendScheduler::scheduleTasks, () -> {
+						if (importedWorkbook != null) {
+							importedWorkbook.delete();
+						}
+						tasksToDoProjection.invalidateAll();
+					});
+			try {
+				importExecutor.execute(() -> {
+					try {
+						job.write();
+					} finally {
+						partReturned.run();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				throw busy(e);
+			}
+		} catch (IOException | RuntimeException e) {
+			if (workbook != null) {
+				workbook.delete();
+			}
+			runningImports.release();
+			throw e;
+		}
+		try {
+			importExecutor.execute(() -> {
+				try {
+					job.parse();
+				} finally {
+					partReturned.run();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// the writer is already waiting for the rows; it deletes the workbook once it finishes
+			job.skipParse("The workbook could not be read: " + e.getMessage());
+			partReturned.run();
+			throw busy(e);
+		}
+		register(job);
+		return job.progress();
+	}
+
+	private static ResponseStatusException busy(RejectedExecutionException e) {
+		return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+				"Too many imports are running, please try again later", e);
+	}
+	
+	/**
+	 * Retrieves the progress of an import.
+	 * @param importId The id of the import.
+	 * @return The progress of the import.
+	 * @throws ResponseStatusException With status 404 if there is no such import (or it
+	 * has finished a long time ago).
+	 */
+	public ImportProgress getProgress(String importId) {
+		ImportJob job;
+		synchronized (imports) {
+			job = imports.get(importId);
+		}
+		if (job == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "There is no import with id " + importId);
+		}
+		return job.progress();
+	}
+
+	private void register(ImportJob job) {
+		synchronized (imports) {
+			imports.put(job.getImportId(), job);
+			int finishedToRemove = imports.size() - retainedImports;
+			for (Iterator<ImportJob> jobs = imports.values().iterator(); jobs.hasNext() && finishedToRemove > 0;) {
+				if (jobs.next().isFinished()) {
+					jobs.remove();
+					finishedToRemove--;
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,651 @@
+package com.wisetasklecturer.services;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import javax.sql.DataSource;
+import javax.xml.parsers.SAXParserFactory;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import com.wisetasklecturer.entities.AssessmentWeeks;
+import com.wisetasklecturer.entities.AssessmentType;
+import com.wisetasklecturer.entities.ImportProgress;
+import com.wisetasklecturer.entities.ImportProgress.ImportError;
+
+/**
+ * A single import of a workbook (.xlsx) of modules, assessments and tasks.
+ *
+ * The import is made of two parts that run on different threads; {@link #parse()} reads
+ * the rows of the sheets with the event (SAX) model of POI, so the sheets are never loaded
+ * in memory, and hands them over to {@link #write()} through a bounded queue. The writer
+ * inserts the rows in batches, committing every batch, so the memory that is used does not
+ * depend on the size of the workbook. The sheets are read in the order modules, assessments,
+ * tasks, since the assessments refer to the modules (by module_code) and the tasks refer to
+ * the assessments (by module_code and assessment_type).
+ * @author Theofanis Gkoufas
+ *
+ */
+class ImportJob {
+
+	/**
+	 * The sheets of the workbook that are imported, in the order that they are imported.
+	 */
+	enum Sheet {
+
+		MODULES("INSERT INTO modules (module_code, module_name, curriculum, primary_lecturer, "
+				+ "moderator_lecturer, module_belongsTo_entry) VALUES (?, ?, ?, ?, ?, ?)",
+				"module_code", "module_name", "entry_id"),
+
+		ASSESSMENTS("INSERT INTO assessments (assessment_type, assessment_weight, assessment_weeks, "
+				+ "assessment_upload_date, assessment_deadline_date, areDatesSet, "
+				+ "assessment_belongsTo_module) VALUES (?, ?, ?, ?, ?, ?, ?)",
+				"module_code", "assessment_type", "assessment_weight", "assessment_weeks"),
+
+		TASKS("INSERT INTO tasks (task_description, date_to_send, isCompleted, "
+				+ "task_belongs_to_assessment) VALUES (?, ?, 0, ?)",
+				"module_code", "assessment_type", "task_description", "date_to_send");
+
+		private final String insert;
+
+		private final List<String> requiredColumns;
+
+		Sheet(String insert, String... requiredColumns) {
+			this.insert = insert;
+			this.requiredColumns = Arrays.asList(requiredColumns);
+		}
+
+		String sheetName() {
+			return name().toLowerCase(Locale.ROOT);
+		}
+
+	}
+
+	/**
+	 * A row of a sheet, with its values by (lower case) column name.
+	 */
+	static final class Row {
+
+		final Sheet sheet;
+
+		final int number;
+
+		final Map<String, String> values;
+
+		Row(Sheet sheet, int number, Map<String, String> values) {
+			this.sheet = sheet;
+			this.number = number;
+			this.values = values;
+		}
+
+	}
+
+	/*
+	 * Marks the end of the rows, so that the writer knows that the parser has finished.
+	 */
+	private static final Row END = new Row(null, 0, Collections.emptyMap());
+
+	private final String importId;
+
+	private final String fileName;
+
+	/*
+	 * Opens the workbook, which is either kept in memory or stored in a temporary file.
+	 */
+	private final Callable<OPCPackage> workbook;
+
+	private final DataSource dataSource;
+
+	private final int batchSize;
+
+	private final int maximumErrors;
+
+	private final BlockingQueue<Row> rows;
+
+	private final Consumer<List<Integer>> onTasksInserted;
+
+	private final Runnable onFinished;
+
+	private final AtomicLong rowsRead = new AtomicLong();
+
+	private final AtomicLong rowsImported = new AtomicLong();
+
+	private final AtomicLong rowsRejected = new AtomicLong();
+
+	private final AtomicLong batchesCommitted = new AtomicLong();
+
+	private final List<ImportError> errors = Collections.synchronizedList(new ArrayList<ImportError>());
+
+	/*
+	 * The parser and the writer; the import is finished once both of them have finished.
+	 */
+	private final AtomicInteger runningParts = new AtomicInteger(2);
+
+	private final LocalDateTime startedAt = LocalDateTime.now();
+
+	private volatile LocalDateTime finishedAt;
+
+	private volatile ImportProgress.Status status = ImportProgress.Status.RUNNING;
+
+	private volatile String currentSheet;
+
+	private volatile String failure;
+
+	private volatile boolean writerFinished;
+
+	/*
+	 * The ids of the modules (by module_code) and of the assessments (by module id and
+	 * assessment type) that are referred to by the imported rows, either because they were
+	 * imported or because they were found in the database. Only used by the writer.
+	 */
+	private final Map<String, Integer> moduleIds = new HashMap<String, Integer>();
+
+	private final Map<String, Integer> assessmentIds = new HashMap<String, Integer>();
+
+	ImportJob(String importId, String fileName, Callable<OPCPackage> workbook, DataSource dataSource, int batchSize,
+			  int queueCapacity, int maximumErrors, Consumer<List<Integer>> onTasksInserted, Runnable onFinished) {
+		this.importId = importId;
+		this.fileName = fileName;
+		this.workbook = workbook;
+		this.dataSource = dataSource;
+		this.batchSize = batchSize;
+		this.maximumErrors = maximumErrors;
+		this.rows = new ArrayBlockingQueue<Row>(queueCapacity);
+		this.onTasksInserted = onTasksInserted;
+		this.onFinished = onFinished;
+	}
+
+	String getImportId() {
+		return importId;
+	}
+
+	boolean isFinished() {
+		return finishedAt != null;
+	}
+
+	/**
+	 * Creates a snapshot of the progress of the import.
+	 * @return The progress of the import.
+	 */
+	ImportProgress progress() {
+		List<ImportError> firstErrors;
+		synchronized (errors) {
+			firstErrors = new ArrayList<ImportError>(errors);
+		}
+		return ImportProgress.builder()
+				.importId(importId)
+				.fileName(fileName)
+				.status(status)
+				.currentSheet(currentSheet)
+				.rowsRead(rowsRead.get())
+				.rowsImported(rowsImported.get())
+				.rowsRejected(rowsRejected.get())
+				.batchesCommitted(batchesCommitted.get())
+				.startedAt(startedAt)
+				.finishedAt(finishedAt)
+				.failure(failure)
+				.errors(firstErrors)
+				.build();
+	}
+
+	/**
+	 * Reads the rows of the workbook and hands them over to the writer.
+	 */
+	void parse() {
+		try {
+			OPCPackage workbookPackage = workbook.call();
+			try {
+				XSSFReader reader = new XSSFReader(workbookPackage);
+				ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(workbookPackage);
+				StylesTable styles = reader.getStylesTable();
+				for (Sheet sheet : Sheet.values()) {
+					XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+					while (sheets.hasNext() && !writerFinished) {
+						try (InputStream sheetData = sheets.next()) {
+							if (sheet.sheetName().equalsIgnoreCase(sheets.getSheetName().trim())) {
+								currentSheet = sheets.getSheetName();
+								parseSheet(sheet, sheetData, styles, strings);
+							}
+						}
+					}
+				}
+			} finally {
+				// the package is only read, so it must not be saved by close()
+				workbookPackage.revert();
+			}
+		} catch (Exception e) {
+			fail("The workbook could not be read: " + e.getMessage());
+		} finally {
+			enqueue(END);
+			partFinished();
+		}
+	}
+
+	/**
+	 * Finishes the parser part without reading the workbook, e.g. because its thread could
+	 * not be started, so that the writer (which waits for the rows) fails the import and
+	 * finishes as well.
+	 * @param message The reason that the import failed.
+	 */
+	void skipParse(String message) {
+		fail(message);
+		enqueue(END);
+		partFinished();
+	}
+
+	private void parseSheet(Sheet sheet, InputStream sheetData, StylesTable styles,
+							ReadOnlySharedStringsTable strings) throws Exception {
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+		XMLReader xmlReader = factory.newSAXParser().getXMLReader();
+		xmlReader.setContentHandler(new XSSFSheetXMLHandler(styles, strings, new RowHandler(sheet),
+				new IsoDateFormatter(), false));
+		xmlReader.parse(new InputSource(sheetData));
+	}
+
+	/**
+	 * Hands a row over to the writer, waiting while the queue is full.
+	 * @param row The row.
+	 * @return Whether the row was handed over, which is false when the writer has stopped.
+	 */
+	private boolean enqueue(Row row) {
+		try {
+			while (!writerFinished) {
+				if (rows.offer(row, 100, TimeUnit.MILLISECONDS)) {
+					return true;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return false;
+	}
+
+	/**
+	 * Inserts the rows handed over by the parser, in batches.
+	 */
+	void write() {
+		try (Connection connection = dataSource.getConnection()) {
+			connection.setAutoCommit(false);
+			try {
+				List<Row> batch = new ArrayList<Row>(batchSize);
+				Row row;
+				while ((row = rows.take()) != END) {
+					// a batch never spans two sheets, since each sheet refers to the previous ones
+					if (!batch.isEmpty() && (batch.size() == batchSize || batch.get(0).sheet != row.sheet)) {
+						insert(connection, batch);
+						batch.clear();
+					}
+					batch.add(row);
+				}
+				insert(connection, batch);
+			} finally {
+				connection.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			fail("The rows could not be inserted: " + e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			fail("The import was interrupted");
+		} finally {
+			writerFinished = true;
+			rows.clear();
+			partFinished();
+		}
+	}
+
+	private void insert(Connection connection, List<Row> batch) throws SQLException {
+		List<Row> validRows = new ArrayList<Row>(batch.size());
+		List<Object[]> parameters = new ArrayList<Object[]>(batch.size());
+		for (Row row : batch) {
+			try {
+				parameters.add(toParameters(connection, row));
+				validRows.add(row);
+			} catch (IllegalArgumentException e) {
+				reject(row, e.getMessage());
+			}
+		}
+		if (validRows.isEmpty()) {
+			return;
+		}
+		try {
+			insert(connection, validRows, parameters);
+		} catch (SQLException e) {
+			connection.rollback();
+			if (!connection.isValid(5)) {
+				throw e;
+			}
+			// the rows are inserted again one by one, to find out which of them failed
+			for (int i = 0; i < validRows.size(); i++) {
+				try {
+					insert(connection, validRows.subList(i, i + 1), parameters.subList(i, i + 1));
+				} catch (SQLException rowException) {
+					connection.rollback();
+					reject(validRows.get(i), rowException.getMessage());
+				}
+			}
+		}
+	}
+
+	private void insert(Connection connection, List<Row> validRows, List<Object[]> parameters) throws SQLException {
+		Sheet sheet = validRows.get(0).sheet;
+		List<Integer> ids = new ArrayList<Integer>(validRows.size());
+		try (PreparedStatement statement = connection.prepareStatement(sheet.insert, Statement.RETURN_GENERATED_KEYS)) {
+			for (Object[] rowParameters : parameters) {
+				for (int i = 0; i < rowParameters.length; i++) {
+					statement.setObject(i + 1, rowParameters[i]);
+				}
+				statement.addBatch();
+			}
+			statement.executeBatch();
+			try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+				while (generatedKeys.next()) {
+					ids.add(generatedKeys.getInt(1));
+				}
+			}
+		}
+		connection.commit();
+		for (int i = 0; i < validRows.size() && i < ids.size(); i++) {
+			Map<String, String> values = validRows.get(i).values;
+			if (sheet == Sheet.MODULES) {
+				moduleIds.put(values.get("module_code"), ids.get(i));
+			} else if (sheet == Sheet.ASSESSMENTS) {
+				assessmentIds.put(assessmentKey((int) parameters.get(i)[6], (String) parameters.get(i)[0]), ids.get(i));
+			}
+		}
+		rowsImported.addAndGet(validRows.size());
+		batchesCommitted.incrementAndGet();
+		if (sheet == Sheet.TASKS) {
+			onTasksInserted.accept(ids);
+		}
+	}
+
+	/**
+	 * Validates a row and converts it to the parameters of the insert statement of its sheet.
+	 * @param connection The connection, used for finding the modules/assessments that
+	 * were not imported by this import.
+	 * @param row The row.
+	 * @return The parameters of the insert statement.
+	 * @throws IllegalArgumentException If the row is not valid.
+	 * @throws SQLException If the modules/assessments could not be looked up.
+	 */
+	private Object[] toParameters(Connection connection, Row row) throws SQLException {
+		Map<String, String> values = row.values;
+		switch (row.sheet) {
+		case MODULES:
+			return new Object[] {
+					required(values, "module_code"),
+					required(values, "module_name"),
+					values.get("curriculum"),
+					values.get("primary_lecturer"),
+					values.get("moderator_lecturer"),
+					integer(values, "entry_id")
+			};
+		case ASSESSMENTS:
+			int moduleId = moduleId(connection, required(values, "module_code"));
+			String weeks = required(values, "assessment_weeks");
+			if (!weeks.matches("[01]+")) {
+				throw new IllegalArgumentException("assessment_weeks should only contain 0s and 1s: " + weeks);
+			}
+			if (weeks.length() > AssessmentWeeks.MAX_WEEKS) {
+				throw new IllegalArgumentException("assessment_weeks should be at most "
+						+ AssessmentWeeks.MAX_WEEKS + " weeks: " + weeks);
+			}
+			int weight = integer(values, "assessment_weight");
+			if (weight < 0 || weight > 100) {
+				throw new IllegalArgumentException("assessment_weight should be between 0 and 100: " + weight);
+			}
+			LocalDate uploadDate = date(values, "upload_date");
+			LocalDate deadlineDate = date(values, "deadline_date");
+			if ((uploadDate == null) != (deadlineDate == null)) {
+				throw new IllegalArgumentException("upload_date and deadline_date should be given together");
+			}
+			if (uploadDate != null && deadlineDate.isBefore(uploadDate)) {
+				throw new IllegalArgumentException("deadline_date is before upload_date");
+			}
+			return new Object[] {
+					assessmentType(values).name(),
+					weight,
+					weeks,
+					uploadDate != null ? java.sql.Date.valueOf(uploadDate) : null,
+					deadlineDate != null ? java.sql.Date.valueOf(deadlineDate) : null,
+					uploadDate != null ? 1 : 0,
+					moduleId
+			};
+		default:
+			int assessmentId = assessmentId(connection, moduleId(connection, required(values, "module_code")),
+					assessmentType(values));
+			LocalDate dateToSend = date(values, "date_to_send");
+			if (dateToSend == null) {
+				throw new IllegalArgumentException("date_to_send is missing");
+			}
+			return new Object[] {
+					required(values, "task_description"),
+					java.sql.Date.valueOf(dateToSend),
+					assessmentId
+			};
+		}
+	}
+
+	private int moduleId(Connection connection, String moduleCode) throws SQLException {
+		Integer moduleId = moduleIds.get(moduleCode);
+		if (moduleId == null) {
+			moduleId = lookup(connection, "SELECT module_id FROM modules WHERE module_code = ? "
+					+ "ORDER BY module_id DESC LIMIT 1", moduleCode);
+			// unknown codes are remembered as well (as 0), so they are only looked up once
+			moduleIds.put(moduleCode, moduleId);
+		}
+		if (moduleId == 0) {
+			throw new IllegalArgumentException("Unknown module_code: " + moduleCode);
+		}
+		return moduleId;
+	}
+
+	private int assessmentId(Connection connection, int moduleId, AssessmentType type) throws SQLException {
+		String key = assessmentKey(moduleId, type.name());
+		Integer assessmentId = assessmentIds.get(key);
+		if (assessmentId == null) {
+			assessmentId = lookup(connection, "SELECT assessment_id FROM assessments "
+					+ "WHERE assessment_belongsTo_module = ? AND assessment_type = ? "
+					+ "ORDER BY assessment_id DESC LIMIT 1", moduleId, type.name());
+			assessmentIds.put(key, assessmentId);
+		}
+		if (assessmentId == 0) {
+			throw new IllegalArgumentException("The module has no assessment of type " + type);
+		}
+		return assessmentId;
+	}
+
+	private static int lookup(Connection connection, String sql, Object... parameters) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			for (int i = 0; i < parameters.length; i++) {
+				statement.setObject(i + 1, parameters[i]);
+			}
+			try (ResultSet resultSet = statement.executeQuery()) {
+				return resultSet.next() ? resultSet.getInt(1) : 0;
+			}
+		}
+	}
+
+	private static String assessmentKey(int moduleId, String type) {
+		return moduleId + ":" + type;
+	}
+
+	private static String required(Map<String, String> values, String column) {
+		String value = values.get(column);
+		if (value == null || value.isEmpty()) {
+			throw new IllegalArgumentException(column + " is missing");
+		}
+		return value;
+	}
+
+	private static int integer(Map<String, String> values, String column) {
+		String value = required(values, column);
+		try {
+			// numeric cells may be formatted with decimals (e.g. 40.0)
+			return new java.math.BigDecimal(value).intValueExact();
+		} catch (ArithmeticException | NumberFormatException e) {
+			throw new IllegalArgumentException(column + " is not a whole number: " + value);
+		}
+	}
+
+	private static LocalDate date(Map<String, String> values, String column) {
+		String value = values.get(column);
+		if (value == null || value.isEmpty()) {
+			return null;
+		}
+		try {
+			return LocalDate.parse(value);
+		} catch (DateTimeParseException e) {
+			throw new IllegalArgumentException(column + " is not a date (yyyy-MM-dd): " + value);
+		}
+	}
+
+	private static AssessmentType assessmentType(Map<String, String> values) {
+		String value = required(values, "assessment_type");
+		try {
+			return AssessmentType.valueOf(value.trim().toUpperCase(Locale.ROOT).replace(' ', '_'));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown assessment_type: " + value);
+		}
+	}
+
+	private void reject(Row row, String message) {
+		rowsRejected.incrementAndGet();
+		synchronized (errors) {
+			if (errors.size() < maximumErrors) {
+				errors.add(new ImportError(row.sheet.sheetName(), row.number, message));
+			}
+		}
+	}
+
+	private void fail(String message) {
+		if (failure == null) {
+			failure = message;
+		}
+		status = ImportProgress.Status.FAILED;
+	}
+
+	private void partFinished() {
+		if (runningParts.decrementAndGet() == 0) {
+			if (status == ImportProgress.Status.RUNNING) {
+				status = ImportProgress.Status.COMPLETED;
+			}
+			currentSheet = null;
+			finishedAt = LocalDateTime.now();
+			onFinished.run();
+		}
+	}
+
+	/**
+	 * Receives the cells of a sheet from the SAX parser. The first row of every sheet
+	 * contains the column names, and the rest of the rows are handed over to the writer.
+	 */
+	private class RowHandler implements SheetContentsHandler {
+
+		private final Sheet sheet;
+
+		private final Map<Integer, String> columns = new HashMap<Integer, String>();
+
+		private boolean headerRead;
+
+		private int rowNumber;
+
+		private Map<String, String> values;
+
+		private RowHandler(Sheet sheet) {
+			this.sheet = sheet;
+		}
+
+		@Override
+		public void startRow(int rowNum) {
+			rowNumber = rowNum + 1;
+			values = new HashMap<String, String>();
+		}
+
+		@Override
+		public void endRow() {
+			if (!headerRead) {
+				headerRead = true;
+				List<String> missingColumns = new ArrayList<String>(sheet.requiredColumns);
+				missingColumns.removeAll(columns.values());
+				if (!missingColumns.isEmpty()) {
+					throw new IllegalArgumentException("The sheet " + sheet.sheetName()
+							+ " is missing the columns " + missingColumns);
+				}
+			} else if (!values.isEmpty()) {
+				rowsRead.incrementAndGet();
+				if (!enqueue(new Row(sheet, rowNumber, values))) {
+					throw new IllegalStateException("The import was stopped");
+				}
+			}
+		}
+
+		@Override
+		public void cell(String cellReference, String formattedValue) {
+			if (formattedValue == null || formattedValue.trim().isEmpty()) {
+				return;
+			}
+			int column = new CellReference(cellReference).getCol();
+			if (!headerRead) {
+				columns.put(column, formattedValue.trim().toLowerCase(Locale.ROOT));
+			} else if (columns.containsKey(column)) {
+				values.put(columns.get(column), formattedValue.trim());
+			}
+		}
+
+		@Override
+		public void headerFooter(String text, boolean isHeader, String tagName) {
+		}
+
+	}
+
+	/**
+	 * Formats the cells that contain dates as yyyy-MM-dd, no matter how they are
+	 * displayed in the workbook.
+	 */
+	private static class IsoDateFormatter extends DataFormatter {
+
+		@Override
+		public String formatRawCellContents(double value, int formatIndex, String formatString,
+											boolean use1904Windowing) {
+			if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+				return DateUtil.getJavaDate(value, use1904Windowing).toInstant()
+						.atZone(ZoneId.systemDefault()).toLocalDate().toString();
+			}
+			return super.formatRawCellContents(value, formatIndex, formatString, use1904Windowing);
+		}
+
+	}
+
+}
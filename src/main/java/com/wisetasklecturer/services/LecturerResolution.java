@@ -0,0 +1,28 @@
+package com.wisetasklecturer.services;
+
+/**
+ * The ways in which the service can find out which modules belong to a lecturer.
+ * @author Theofanis Gkoufas
+ *
+ */
+public enum LecturerResolution {
+	
+	/**
+	 * The modules of the lecturer are found through the lecturer_modules table, which
+	 * is indexed by the id of the lecturer (see db/001_lecturer_modules.sql).
+	 */
+	INDEXED,
+	
+	/**
+	 * The username of the lecturer is read from the users table of the shared
+	 * schema, as part of the query that retrieves the data.
+	 */
+	LOCAL,
+	
+	/**
+	 * The username of the lecturer is requested from the users microservice. Used
+	 * when the users table lives in a different schema than the modules.
+	 */
+	REMOTE;
+	
+}
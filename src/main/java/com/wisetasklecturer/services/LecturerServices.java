@@ -1,15 +1,42 @@
 package com.wisetasklecturer.services;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import javax.sql.DataSource;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.wisetasklecturer.entities.*;
+import com.wisetasklecturer.monitoring.QueryMetrics;
+import com.wisetasklecturer.monitoring.QueryTimer;
 import com.wisetasklecturer.repositories.TasksRepository;
 import lombok.NoArgsConstructor;
 
@@ -29,6 +56,54 @@ public class LecturerServices {
 	@Autowired
 	TasksRepository tasksRepository;
 	
+	@Autowired
+	UserCache userCache;
+	
+	@Value("${wisetask.lecturer-resolution:INDEXED}")
+	LecturerResolution lecturerResolution;
+	
+	@Value("${wisetask.users-service.url:http://localhost:8028}")
+	private String usersServiceUrl;
+	
+	@Value("${wisetask.admin-service.url:http://localhost:8026}")
+	private String adminServiceUrl;
+	
+	@Value("${wisetask.pagination.default-page-size:50}")
+	int defaultPageSize;
+	
+	@Value("${wisetask.pagination.maximum-page-size:500}")
+	int maximumPageSize;
+	
+	@Value("${wisetask.streaming.fetch-size:500}")
+	int streamingFetchSize;
+	
+	@Autowired
+	ObjectMapper objectMapper;
+	
+	@Autowired
+	@Qualifier("dashboardExecutor")
+	Executor dashboardExecutor;
+	
+	@Autowired
+	TasksToDoProjection tasksToDoProjection;
+	
+	@Autowired
+	TaskSendScheduler taskSendScheduler;
+	
+	@Autowired
+	SettingsOffsetsCache settingsOffsetsCache;
+	
+	@Autowired
+	QueryMetrics queryMetrics;
+	
+	@Autowired
+	@Qualifier("usersService")
+	DownstreamService usersService;
+	
+	@Autowired
+	@Qualifier("adminService")
+	DownstreamService adminService;
+	
 	/**
 	 * Retrieves all the pending tasks whose upload and deadline dates needs to be set
 	 * by the lecturer.
@@ -36,52 +111,382 @@ public class LecturerServices {
 	 * @return The tasks for which the lecturer should set the upload/deadline dates.
 	 */
 	public PendingTasksToSet retrieveDaysToSet(int lecturerID) {
-		User lecturerUser = requestUser(lecturerID);
+		return queryDaysToSet(lecturerParameter(lecturerID), null, 0);
+	}
+	
+	/**
+	 * Retrieves a page of the pending tasks whose upload and deadline dates needs to be set
+	 * by the lecturer. The tasks are ordered by the id of their assessment.
+	 * @param lecturerID The id of the lecturer that should set the dates.
+	 * @param cursor The cursor that was returned along with the previous page, or null
+	 * for the first page.
+	 * @param pageSize The maximum number of tasks of the page. If it is not positive the
+	 * default page size is used.
+	 * @return The tasks of the page, along with the cursor of the next page (if there is one).
+	 */
+	public PendingTasksToSet retrieveDaysToSet(int lecturerID, String cursor, int pageSize) {
+		return queryDaysToSet(lecturerParameter(lecturerID), cursor, pageSize(pageSize), 0);
+	}
+	
+	/**
+	 * Retrieves the pending tasks whose upload and deadline dates needs to be set by the
+	 * lecturer, and whose assessment takes place during a particular week of the semester.
+	 * The assessments are selected by their first/last week and weeks bitmask (see
+	 * db/004_assessment_weeks_mask.sql), instead of parsing their weeks.
+	 * @param lecturerID The id of the lecturer that should set the dates.
+	 * @param week The week of the semester (1 to {@value AssessmentWeeks#MAX_WEEKS}).
+	 * @param cursor The cursor that was returned along with the previous page, or null
+	 * for the first page.
+	 * @param pageSize The maximum number of tasks of the page. If it is not positive (and
+	 * there is no cursor) all the tasks are retrieved.
+	 * @return The tasks of the week, along with the cursor of the next page (if there is one).
+	 * @throws ResponseStatusException With status 400 if the week is out of range.
+	 */
+	public PendingTasksToSet retrieveDaysToSetInWeek(int lecturerID, int week, String cursor, int pageSize) {
+		if (week < 1 || week > AssessmentWeeks.MAX_WEEKS) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"The week should be between 1 and " + AssessmentWeeks.MAX_WEEKS);
+		}
+		int limit = cursor == null && pageSize <= 0 ? 0 : pageSize(pageSize);
+		return queryDaysToSet(lecturerParameter(lecturerID), cursor, limit, week);
+	}
+	
+	private PendingTasksToSet queryDaysToSet(Object lecturer, String cursor, int limit) {
+		return queryDaysToSet(lecturer, cursor, limit, 0);
+	}
+	
+	private PendingTasksToSet queryDaysToSet(Object lecturer, String cursor, int limit, int week) {
+		// the cursor is validated first, so that an invalid one is answered without touching the database
+		Integer lastAssessmentId = cursor == null ? null : cursorAssessmentId(cursor);
+		List<Object> parameters = new ArrayList<Object>();
+		parameters.add(lecturer);
 		DataSource dataSource = context.getBean(DataSource.class);
 		PendingTasksToSet pendingTasksToSet = context.getBean(PendingTasksToSet.class);
-		String sql = "SELECT M.module_name, M.curriculum, A.assessment_type, "
-				   + "A.assessment_weeks, A.assessment_id, S.week1_begin_date, A.assessment_weight "
-				   + "FROM modules M, assessments A, entries E, users U, settings S"
-				   + " WHERE E.entry_id = M.module_belongsTo_entry AND "
-				   + "M.module_id = A.assessment_belongsTo_module AND "
-				   + "U.user_id = E.user_id AND "
-				   + "E.entry_id = S.entry_FK AND "
-				   + "M.primary_lecturer LIKE ? AND "
-				   + "A.areDatesSet = 0";
-		try {
-			Connection conn = dataSource.getConnection();
-			PreparedStatement statement = conn.prepareStatement(sql);
-			statement.setString(1, "%" + lecturerUser.getUsername() + "%");
+		String sql = daysToSetQuery();
+		if (week > 0) {
+			// the span of the weeks narrows the rows down (indexed), the bit of the week in the
+			// bitmask excludes the gaps (with arithmetic, which both MySQL and H2 support)
+			sql += " AND A.assessment_first_week <= ? AND A.assessment_last_week >= ?"
+				 + " AND MOD(FLOOR(A.assessment_weeks_mask / ?), 2) = 1";
+			parameters.add(week);
+			parameters.add(week);
+			parameters.add(Integer.toUnsignedLong(AssessmentWeeks.weekMask(week)));
+		}
+		if (lastAssessmentId != null) {
+			sql += " AND A.assessment_id > ?";
+			parameters.add(lastAssessmentId);
+		}
+		sql += " ORDER BY A.assessment_id";
+		if (limit > 0) {
+			// one more row than needed, to find out whether there is a next page
+			sql += " LIMIT ?";
+			parameters.add(limit + 1);
+		}
+		// try-with-resources makes sure that the connection is given back to the pool
+		try (QueryTimer timer = queryMetrics.time(week > 0 ? "daysToSetInWeek" : "daysToSet");
+			 Connection conn = dataSource.getConnection();
+			 PreparedStatement statement = conn.prepareStatement(sql)) {
+			for (int i = 0; i < parameters.size(); i++) {
+				statement.setObject(i + 1, parameters.get(i));
+			}
 			ResultSet resultSet = statement.executeQuery();
+			List<PendingTaskToSet> pendingTasks = pendingTasksToSet.getPendingTasksToSetList();
 			while(resultSet.next()) {
-				pendingTasksToSet.getPendingTasksToSetList()
-											.add((PendingTaskToSet.builder()
-												.moduleName(resultSet.getString(1))
-												.curriculum(resultSet.getString(2))
-												.assessmentType(resultSet.getString(3))
-												.assessmentWeeks(resultSet.getString(4))
-												.assessmentId(resultSet.getInt(5))
-												.week1BeginDate(resultSet.getDate(6))
-												.assessmentWeight(resultSet.getInt(7))
-												.build()));
-			}
-			statement.close();
-			conn.close();
+				if (limit > 0 && pendingTasks.size() == limit) {
+					PendingTaskToSet last = pendingTasks.get(pendingTasks.size() - 1);
+					pendingTasksToSet.setNextCursor(PageCursor.encode(last.getAssessmentId()));
+					break;
+				}
+				pendingTasks.add(toPendingTaskToSet(resultSet));
+			}
+			timer.success();
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
 		return pendingTasksToSet;
 	}
+	
+	/**
+	 * Reads the id of the assessment of the last pending task of the previous page out of a cursor.
+	 * @param cursor The cursor that was returned along with the previous page.
+	 * @return The id of the assessment.
+	 * @throws ResponseStatusException With status 400 if the cursor is not valid.
+	 */
+	private int cursorAssessmentId(String cursor) {
+		String[] lastKey = PageCursor.decode(cursor, 1);
+		try {
+			return Integer.parseInt(lastKey[0]);
+		} catch (NumberFormatException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor: " + cursor);
+		}
+	}
+	
+	/**
+	 * Writes all the pending tasks whose upload and deadline dates needs to be set by the
+	 * lecturer as json, while they are read from the database. Unlike {@link #retrieveDaysToSet(int)},
+	 * the tasks are never collected in memory, so the memory used does not depend on the
+	 * number of the tasks. The json is identical to the one of a PendingTasksToSet object.
+	 * @param lecturerID The id of the lecturer that should set the dates.
+	 * @param out The stream where the json is written to.
+	 * @throws IOException If the tasks cannot be read or written.
+	 */
+	public void streamDaysToSet(int lecturerID, OutputStream out) throws IOException {
+		Object lecturer = lecturerParameter(lecturerID);
+		ObjectWriter rowWriter = objectMapper.writerFor(PendingTaskToSet.class)
+											 .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		DataSource dataSource = context.getBean(DataSource.class);
+		// the time includes writing the json, since the rows are written while they are read
+		try (QueryTimer timer = queryMetrics.time("daysToSetStream");
+			 Connection conn = dataSource.getConnection();
+			 PreparedStatement statement = prepareStreamingStatement(conn,
+					 daysToSetQuery() + " ORDER BY A.assessment_id");
+			 JsonGenerator generator = createGenerator(out)) {
+			statement.setObject(1, lecturer);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				generator.writeStartObject();
+				generator.writeArrayFieldStart("pendingTasksToSetList");
+				while(resultSet.next()) {
+					rowWriter.writeValue(generator, toPendingTaskToSet(resultSet));
+				}
+				generator.writeEndArray();
+				generator.writeEndObject();
+			}
+			timer.success();
+		} catch (SQLException e) {
+			throw new IOException("The pending tasks could not be retrieved", e);
+		}
+	}
+	
+	/**
+	 * Creates the query that retrieves the pending tasks of a lecturer (without any
+	 * ordering). The only parameter of the query is the one of {@link #lecturerCondition()}.
+	 * @return The query.
+	 */
+	String daysToSetQuery() {
+		return "SELECT M.module_name, M.curriculum, A.assessment_type, "
+			 + "A.assessment_weeks, A.assessment_id, S.week1_begin_date, A.assessment_weight, "
+			 + "A.assessment_weeks_mask "
+			 + "FROM modules M, assessments A, entries E, users U, settings S"
+			 + " WHERE E.entry_id = M.module_belongsTo_entry AND "
+			 + "M.module_id = A.assessment_belongsTo_module AND "
+			 + "U.user_id = E.user_id AND "
+			 + "E.entry_id = S.entry_FK AND "
+			 + lecturerCondition() + " AND "
+			 + "A.areDatesSet = 0";
+	}
+	
+	/**
+	 * Prepares a forward-only, read-only statement whose rows are fetched from the
+	 * database in chunks (of streamingFetchSize rows) instead of all at once.
+	 * @param connection The connection that should be used.
+	 * @param sql The query.
+	 * @return The prepared statement.
+	 * @throws SQLException If the statement cannot be prepared.
+	 */
+	private PreparedStatement prepareStreamingStatement(Connection connection, String sql) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement(sql,
+				ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		statement.setFetchSize(streamingFetchSize);
+		return statement;
+	}
+	
+	/**
+	 * Creates a json generator that writes to the given stream, without closing it.
+	 * The generator does not complete the json when it is closed, so that a response
+	 * that failed in the middle is not mistaken for a complete one.
+	 * @param out The stream where the json is written to.
+	 * @return The json generator.
+	 * @throws IOException If the generator cannot be created.
+	 */
+	private JsonGenerator createGenerator(OutputStream out) throws IOException {
+		JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+		generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+		return generator;
+	}
+	
+	/**
+	 * Creates a pending task out of the current row of the result set of the
+	 * pending tasks query.
+	 * @param resultSet The result set positioned at the row of the pending task.
+	 * @return The pending task.
+	 * @throws SQLException If a column cannot be read.
+	 */
+	static PendingTaskToSet toPendingTaskToSet(ResultSet resultSet) throws SQLException {
+		String weeks = resultSet.getString(4);
+		java.sql.Date week1BeginDate = resultSet.getDate(6);
+		// the mask is generated from the weeks by the database (unsigned, and 0 if the weeks
+		// are not valid, in which case they are returned without the computed window)
+		AssessmentWeeks assessmentWeeks = AssessmentWeeks.valueOf((int) resultSet.getLong(8));
+		LocalDate week1 = week1BeginDate == null ? null : week1BeginDate.toLocalDate();
+		return PendingTaskToSet.builder()
+				.moduleName(resultSet.getString(1))
+				.curriculum(resultSet.getString(2))
+				.assessmentType(resultSet.getString(3))
+				.assessmentWeeks(weeks)
+				.assessmentId(resultSet.getInt(5))
+				.week1BeginDate(week1BeginDate)
+				.assessmentWeight(resultSet.getInt(7))
+				.assessmentWeeksMask(assessmentWeeks.toMask())
+				.windowStartDate(assessmentWeeks.startDate(week1))
+				.windowEndDate(assessmentWeeks.endDate(week1))
+				.build();
+	}
+	
+	/**
+	 * Finds the size of a page of a paginated request.
+	 * @param requestedPageSize The page size requested by the client.
+	 * @return The requested page size limited to the maximum page size, or the default
+	 * page size if the client has not requested a (positive) page size.
+	 */
+	private int pageSize(int requestedPageSize) {
+		if (requestedPageSize <= 0) {
+			return defaultPageSize;
+		}
+		return Math.min(requestedPageSize, maximumPageSize);
+	}
 
 	/**
-	 * Retrieves the user given the id.
+	 * Creates the condition that restricts a query to the modules of a lecturer (the
+	 * modules table is referred to as M). The condition has a single parameter, whose
+	 * value is created by {@link #lecturerParameter(int)}.
+	 * When the lecturers are resolved through the lecturer_modules table (or locally), no
+	 * call to the users service is needed.
+	 * @return The condition that should be included in the where clause of the query.
+	 */
+	private String lecturerCondition() {
+		if (lecturerResolution == LecturerResolution.INDEXED) {
+			return "M.module_id IN (SELECT LM.module_id FROM lecturer_modules LM "
+				 + "WHERE LM.user_id = ? AND LM.lecturer_role = 'PRIMARY')";
+		}
+		if (lecturerResolution == LecturerResolution.LOCAL) {
+			return "M.primary_lecturer LIKE CONCAT('%', "
+				 + "(SELECT LU.username FROM users LU WHERE LU.user_id = ?), '%')";
+		}
+		return "M.primary_lecturer LIKE ?";
+	}
+	
+	/**
+	 * Creates the value of the parameter used by the condition of {@link #lecturerCondition()}.
+	 * @param lecturerID The id of the lecturer.
+	 * @return The id of the lecturer, unless the lecturers are resolved remotely in which
+	 * case the pattern with the username retrieved from the users service.
+	 */
+	private Object lecturerParameter(int lecturerID) {
+		if (lecturerResolution != LecturerResolution.REMOTE) {
+			return lecturerID;
+		}
+		return "%" + requestUser(lecturerID).getUsername() + "%";
+	}
+	
+	/**
+	 * Creates the version tag (ETag) of the data of a lecturer. The tag changes whenever
+	 * the data may have changed, so a client whose copy has the same tag does not need to
+	 * retrieve the data again.
+	 *
+	 * The tag is derived from the modules of the lecturer, along with their settings,
+	 * assessments and tasks: the number of the assessments and the tasks (which changes when
+	 * one of them is deleted) and the time that the last of the rows changed (see
+	 * db/006_updated_at.sql). So the tag of a lecturer only changes when the data of the
+	 * lecturer changes, whichever instance of the service (or other microservice) changed it.
+	 * @param resource The name of the data (e.g. tasksToDo).
+	 * @param lecturerID The id of the lecturer.
+	 * @return The version tag, or null if it could not be created (in which case the data
+	 * should be retrieved as if it has changed).
+	 */
+	public String getVersionTag(String resource, int lecturerID) {
+		Object lecturer = lecturerParameter(lecturerID);
+		DataSource dataSource = context.getBean(DataSource.class);
+		String sql = "SELECT COUNT(DISTINCT A.assessment_id), COUNT(DISTINCT T.task_id), MAX(M.updated_at), "
+				   + "MAX(S.updated_at), MAX(A.updated_at), MAX(T.updated_at) "
+				   + "FROM modules M LEFT JOIN settings S ON S.entry_FK = M.module_belongsTo_entry "
+				   + "LEFT JOIN assessments A ON A.assessment_belongsTo_module = M.module_id "
+				   + "LEFT JOIN tasks T ON T.task_belongs_to_assessment = A.assessment_id "
+				   + "WHERE " + lecturerCondition();
+		// try-with-resources makes sure that the connection is given back to the pool
+		try (QueryTimer timer = queryMetrics.time("versionTag");
+			 Connection conn = dataSource.getConnection();
+			 PreparedStatement statement = conn.prepareStatement(sql)) {
+			statement.setObject(1, lecturer);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				resultSet.next();
+				long lastUpdated = 0;
+				for (int column = 3; column <= 6; column++) {
+					Timestamp updated = resultSet.getTimestamp(column);
+					if (updated != null) {
+						lastUpdated = Math.max(lastUpdated, updated.getTime());
+					}
+				}
+				timer.success();
+				return "\"" + resource + "-" + lecturerID + "-" + resultSet.getLong(1) + "-" + resultSet.getLong(2)
+						+ "-" + Long.toString(lastUpdated, 36) + "\"";
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+	
+	/**
+	 * Retrieves the user given the id. The users are cached, so the users service is
+	 * only called when the user is not already cached (or if it has expired). If the users
+	 * service is unavailable, the user is read from the shared users table instead.
 	 * @param lecturerID The id of the user that we want to get.
 	 * @return The user whose id matches the one given as an argument.
+	 * @throws ResponseStatusException With status 503 if the users service is unavailable
+	 * and the user cannot be read from the users table either.
 	 */
 	private User requestUser(int lecturerID) {
-		RestTemplate bean = context.getBean(RestTemplate.class);
-		return bean.getForObject("http://localhost:8028/users/" + lecturerID, User.class);
-	} 
+		return userCache.get(lecturerID, id -> usersService.call(
+				// a uri template, so that the metrics of the calls are not tagged with every id
+				restTemplate -> restTemplate.getForObject(usersServiceUrl + "/users/{id}", User.class, id),
+				() -> localUser(id)));
+	}
+	
+	/**
+	 * Reads a user from the shared users table (the fallback of the users service).
+	 * @param userId The id of the user.
+	 * @return The user (without the password).
+	 * @throws ResponseStatusException With status 503 if the user cannot be read.
+	 */
+	private User localUser(int userId) {
+		DataSource dataSource = context.getBean(DataSource.class);
+		try (Connection connection = dataSource.getConnection();
+			 PreparedStatement statement = connection.prepareStatement(
+					 "SELECT user_id, username, user_type, email FROM users WHERE user_id = ?")) {
+			statement.setInt(1, userId);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				if (resultSet.next()) {
+					return User.builder()
+							.userId(resultSet.getInt(1))
+							.username(resultSet.getString(2))
+							.userType(resultSet.getString(3) == null ? null : UserType.valueOf(resultSet.getString(3)))
+							.email(resultSet.getString(4))
+							.build();
+				}
+			}
+		} catch (SQLException | IllegalArgumentException e) {
+			e.printStackTrace();
+		}
+		throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+				"The users service is unavailable and the user " + userId + " could not be read locally");
+	}
+	
+	/**
+	 * Removes a user from the users cache, so that the next request will retrieve
+	 * the user's details again from the users service.
+	 * @param userID The id of the user that has changed.
+	 */
+	public void invalidateCachedUser(int userID) {
+		userCache.invalidate(userID);
+	}
+	
+	/**
+	 * Removes all the users from the users cache.
+	 */
+	public void invalidateCachedUsers() {
+		userCache.invalidateAll();
+	}
 	
 	/**
 	 * Inserts the upload/deadline dates that are set by the lecturer for a particular assessment.
@@ -90,25 +495,256 @@ public class LecturerServices {
 	 * @param deadlineDate The date when the particular assignment should finish.
 	 * @param assessmentID The id of the assessment that relates to this task (each task basically
 	 * is related to an assignment).
+	 * @throws ResponseStatusException With status 404 if there is no such assessment, and
+	 * with status 400 if the dates are invalid.
 	 */
 	public void updateSettedDates(String uploadDate, String deadlineDate, int assessmentID) {
+		updateSettedDates(uploadDate, deadlineDate, assessmentID, false);
+	}
+	
+	/**
+	 * Inserts the upload/deadline dates that are set by the lecturer for a particular
+	 * assessment and, if requested, generates the tasks of its workflow steps (see
+	 * {@link #updateSettedDates(List, boolean)}).
+	 * @param uploadDate The upload date (yyyy-MM-dd).
+	 * @param deadlineDate The deadline date (yyyy-MM-dd).
+	 * @param assessmentID The id of the assessment.
+	 * @param generateTasks Whether the tasks of the workflow steps should be generated.
+	 * @return The outcome of setting the dates, including the ids of the generated tasks.
+	 * @throws ResponseStatusException With status 404 if there is no such assessment, and
+	 * with status 400 if the dates are invalid.
+	 */
+	public SettedDatesResult updateSettedDates(String uploadDate, String deadlineDate, int assessmentID,
+											   boolean generateTasks) {
+		SettedDatesResult result = updateSettedDates(Collections.singletonList(SettedDates.builder()
+				.assessmentId(assessmentID)
+				.uploadDate(uploadDate)
+				.deadlineDate(deadlineDate)
+				.build()), generateTasks).get(0);
+		if (result.getStatus() == SettedDatesResult.Status.NOT_FOUND) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "There is no assessment with id " + assessmentID);
+		}
+		if (result.getStatus() == SettedDatesResult.Status.INVALID) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, result.getMessage());
+		}
+		return result;
+	}
+	
+	/**
+	 * Inserts the upload/deadline dates that are set by the lecturer for many assessments.
+	 * All the dates are validated first, and then the assessments with valid dates are
+	 * updated as a single JDBC batch within one transaction.
+	 * @param settedDates The upload/deadline dates of each assessment.
+	 * @return The outcome for each assessment, in the same order as the given dates.
+	 */
+	public List<SettedDatesResult> updateSettedDates(List<SettedDates> settedDates) {
+		return updateSettedDates(settedDates, false);
+	}
+	
+	/**
+	 * Inserts the upload/deadline dates that are set by the lecturer for many assessments,
+	 * and optionally generates the tasks of the workflow steps of every updated assessment,
+	 * in the same transaction. The date of every task is calculated from the new dates and
+	 * the offsets of the settings of the entry of the assessment (see {@link WorkflowStep}),
+	 * and all the tasks are inserted as a single JDBC batch. The generated tasks that have
+	 * been neither completed nor sent yet are replaced when the dates are set again.
+	 * @param settedDates The upload/deadline dates of each assessment.
+	 * @param generateTasks Whether the tasks of the workflow steps should be generated
+	 * (tasks.workflow_step, see db/003_task_workflow_step.sql).
+	 * @return The outcome for each assessment, in the same order as the given dates.
+	 */
+	public List<SettedDatesResult> updateSettedDates(List<SettedDates> settedDates, boolean generateTasks) {
+		List<SettedDatesResult> results = new ArrayList<SettedDatesResult>(settedDates.size());
+		List<SettedDatesResult> toUpdate = new ArrayList<SettedDatesResult>();
+		List<LocalDate[]> validDates = new ArrayList<LocalDate[]>();
+		for (SettedDates dates : settedDates) {
+			SettedDatesResult result = SettedDatesResult.builder()
+					.assessmentId(dates.getAssessmentId())
+					.build();
+			if (dates.getAssessmentId() == null) {
+				result.setStatus(SettedDatesResult.Status.INVALID);
+				result.setMessage("The assessmentID should be a number");
+				results.add(result);
+				continue;
+			}
+			try {
+				LocalDate uploadDate = LocalDate.parse(dates.getUploadDate());
+				LocalDate deadlineDate = LocalDate.parse(dates.getDeadlineDate());
+				if (deadlineDate.isBefore(uploadDate)) {
+					result.setStatus(SettedDatesResult.Status.INVALID);
+					result.setMessage("The deadline date is before the upload date");
+				} else {
+					toUpdate.add(result);
+					validDates.add(new LocalDate[] {uploadDate, deadlineDate});
+				}
+			} catch (DateTimeParseException | NullPointerException e) {
+				result.setStatus(SettedDatesResult.Status.INVALID);
+				result.setMessage("The dates should have the format yyyy-MM-dd");
+			}
+			results.add(result);
+		}
+		if (toUpdate.isEmpty()) {
+			return results;
+		}
+		List<Integer> newTaskIds = new ArrayList<Integer>();
+		List<Integer> replacedTaskIds = new ArrayList<Integer>();
 		DataSource dataSource = context.getBean("dataSource", DataSource.class);
-		Connection connection;
-		try {
-			connection = dataSource.getConnection();
-			PreparedStatement statement = connection.prepareStatement(
+		try (QueryTimer timer = queryMetrics.time(generateTasks ? "settedDatesBatchWithTasks" : "settedDatesBatch");
+			 Connection connection = dataSource.getConnection()) {
+			connection.setAutoCommit(false);
+			try (PreparedStatement statement = connection.prepareStatement(
 					"UPDATE assessments SET assessment_upload_date = ? "
 					+ ", assessment_deadline_date = ? "
 					+ ", areDatesSet = 1 "
-					+ "WHERE assessment_id = ?");
-			statement.setDate(1, java.sql.Date.valueOf(uploadDate));
-			statement.setDate(2, java.sql.Date.valueOf(deadlineDate));
-			statement.setInt(3, assessmentID);
-			statement.executeUpdate();
-			statement.close();
-			connection.close();
+					+ "WHERE assessment_id = ?")) {
+				for (int i = 0; i < toUpdate.size(); i++) {
+					statement.setDate(1, java.sql.Date.valueOf(validDates.get(i)[0]));
+					statement.setDate(2, java.sql.Date.valueOf(validDates.get(i)[1]));
+					statement.setInt(3, toUpdate.get(i).getAssessmentId());
+					statement.addBatch();
+				}
+				int[] updateCounts = statement.executeBatch();
+				Map<Integer, LocalDate[]> updatedDates = new LinkedHashMap<Integer, LocalDate[]>();
+				for (int i = 0; i < toUpdate.size(); i++) {
+					toUpdate.get(i).setStatus(updateCounts[i] == 0 ? SettedDatesResult.Status.NOT_FOUND
+																   : SettedDatesResult.Status.UPDATED);
+					if (updateCounts[i] != 0) {
+						updatedDates.put(toUpdate.get(i).getAssessmentId(), validDates.get(i));
+					}
+				}
+				if (generateTasks && !updatedDates.isEmpty()) {
+					Map<Integer, List<Integer>> generatedTaskIds = generateStepTasks(connection, updatedDates,
+																					 replacedTaskIds);
+					for (SettedDatesResult result : toUpdate) {
+						if (result.getStatus() == SettedDatesResult.Status.UPDATED) {
+							List<Integer> taskIds = generatedTaskIds.getOrDefault(result.getAssessmentId(),
+																				  Collections.emptyList());
+							result.setGeneratedTaskIds(taskIds);
+							newTaskIds.addAll(taskIds);
+						}
+					}
+				}
+				connection.commit();
+				timer.success();
+			} catch (SQLException | RuntimeException e) {
+				connection.rollback();
+				throw e;
+			} finally {
+				connection.setAutoCommit(true);
+			}
 		} catch (SQLException e) {
-			e.printStackTrace();
+			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "The dates could not be updated", e);
+		}
+		if (!replacedTaskIds.isEmpty()) {
+			tasksToDoProjection.remove(replacedTaskIds);
+			taskSendScheduler.cancelTasks(replacedTaskIds);
+		}
+		projectNewTasks(newTaskIds);
+		taskSendScheduler.scheduleTasks(newTaskIds);
+		return results;
+	}
+	
+	/**
+	 * Generates the tasks of the workflow steps of assessments whose dates were just updated.
+	 * A step is skipped if the assessment already has a generated task for it that has been
+	 * completed or sent (to any of the lecturers); any other generated task of the assessment is deleted and generated
+	 * again with the new dates. Assessments whose entry has no settings get no tasks.
+	 * @param connection The connection of the transaction that updated the dates.
+	 * @param updatedDates The new upload/deadline dates of each assessment.
+	 * @param replacedTaskIds Filled with the ids of the tasks that were deleted.
+	 * @return The ids of the generated tasks of each assessment.
+	 * @throws SQLException If any of the statements fails (the caller rolls back).
+	 */
+	private Map<Integer, List<Integer>> generateStepTasks(Connection connection, Map<Integer, LocalDate[]> updatedDates,
+														  List<Integer> replacedTaskIds) throws SQLException {
+		List<Integer> assessmentIds = new ArrayList<Integer>(updatedDates.keySet());
+		Map<Integer, Set<WorkflowStep>> keptSteps = new HashMap<Integer, Set<WorkflowStep>>();
+		try (PreparedStatement statement = connection.prepareStatement(
+				"SELECT task_id, task_belongs_to_assessment, workflow_step, "
+				+ "(isCompleted = 0 AND email_sent_at IS NULL AND NOT EXISTS (SELECT 1 FROM task_emails E "
+				+ "WHERE E.task_id = tasks.task_id AND E.sent_at IS NOT NULL)) FROM tasks "
+				+ "WHERE workflow_step IS NOT NULL AND task_belongs_to_assessment IN ("
+				+ placeholders(assessmentIds.size()) + ")")) {
+			for (int i = 0; i < assessmentIds.size(); i++) {
+				statement.setInt(i + 1, assessmentIds.get(i));
+			}
+			try (ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {
+					if (resultSet.getBoolean(4)) {
+						replacedTaskIds.add(resultSet.getInt(1));
+					} else {
+						keptSteps.computeIfAbsent(resultSet.getInt(2), assessmentId -> new HashSet<WorkflowStep>())
+								 .add(WorkflowStep.of(resultSet.getInt(3)));
+					}
+				}
+			}
+		}
+		if (!replacedTaskIds.isEmpty()) {
+			try (PreparedStatement statement = connection.prepareStatement(
+					"DELETE FROM tasks WHERE task_id IN (" + placeholders(replacedTaskIds.size()) + ")")) {
+				for (int i = 0; i < replacedTaskIds.size(); i++) {
+					statement.setInt(i + 1, replacedTaskIds.get(i));
+				}
+				statement.executeUpdate();
+			}
+		}
+		// the type and the entry of every assessment, so that the dates come from the offsets
+		List<Object[]> assessments = new ArrayList<Object[]>(assessmentIds.size());
+		Set<Integer> entryIds = new HashSet<Integer>();
+		try (PreparedStatement statement = connection.prepareStatement(
+				"SELECT A.assessment_id, A.assessment_type, M.module_belongsTo_entry FROM assessments A "
+				+ "JOIN modules M ON A.assessment_belongsTo_module = M.module_id "
+				+ "WHERE A.assessment_id IN (" + placeholders(assessmentIds.size()) + ")")) {
+			for (int i = 0; i < assessmentIds.size(); i++) {
+				statement.setInt(i + 1, assessmentIds.get(i));
+			}
+			try (ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {
+					assessments.add(new Object[] {resultSet.getInt(1),
+							AssessmentType.valueOf(resultSet.getString(2)), resultSet.getInt(3)});
+					entryIds.add(resultSet.getInt(3));
+				}
+			}
+		}
+		Map<Integer, StepOffsets> offsetsOfEntries = settingsOffsetsCache.getAll(connection, entryIds);
+		Map<Integer, List<Integer>> generatedTaskIds = new HashMap<Integer, List<Integer>>();
+		List<Integer> taskAssessments = new ArrayList<Integer>();
+		try (PreparedStatement insert = connection.prepareStatement(
+				"INSERT INTO tasks (task_description, date_to_send, isCompleted, "
+				+ "task_belongs_to_assessment, workflow_step) VALUES (?, ?, 0, ?, ?)",
+				Statement.RETURN_GENERATED_KEYS)) {
+			for (Object[] assessment : assessments) {
+				int assessmentId = (Integer) assessment[0];
+				AssessmentType assessmentType = (AssessmentType) assessment[1];
+				StepOffsets offsets = offsetsOfEntries.get((Integer) assessment[2]);
+				if (offsets == null) {
+					continue;
+				}
+				LocalDate[] dates = updatedDates.get(assessmentId);
+				Set<WorkflowStep> kept = keptSteps.getOrDefault(assessmentId, Collections.emptySet());
+				for (WorkflowStep step : WorkflowStep.values()) {
+					if (kept.contains(step)) {
+						continue;
+					}
+					insert.setString(1, step.getTaskDescription());
+					insert.setDate(2, java.sql.Date.valueOf(offsets.dateToSend(assessmentType, step, dates[0], dates[1])));
+					insert.setInt(3, assessmentId);
+					insert.setInt(4, step.getNumber());
+					insert.addBatch();
+					taskAssessments.add(assessmentId);
+				}
+			}
+			if (taskAssessments.isEmpty()) {
+				return generatedTaskIds;
+			}
+			insert.executeBatch();
+			try (ResultSet generatedKeys = insert.getGeneratedKeys()) {
+				for (int i = 0; generatedKeys.next(); i++) {
+					generatedTaskIds.computeIfAbsent(taskAssessments.get(i), assessmentId -> new ArrayList<Integer>())
+									.add(generatedKeys.getInt(1));
+				}
+			}
+			return generatedTaskIds;
 		}
 	}
 	
@@ -117,19 +753,203 @@ public class LecturerServices {
 	 * @param task The task to be inserted.
 	 */
 	public void addTask(Task task) {
-		tasksRepository.save(task);
+		try (QueryTimer timer = queryMetrics.time("addTask")) {
+			tasksRepository.save(task);
+			timer.success();
+		}
+		projectNewTasks(Collections.singletonList(task.getTaskId()));
+		taskSendScheduler.scheduleTasks(Collections.singletonList(task.getTaskId()));
+	}
+	
+	/**
+	 * Inserts many tasks (that may belong to different assessments) in the database, as a
+	 * single JDBC batch within one transaction. Either all the tasks are inserted or none.
+	 * @param tasks The tasks to be inserted. The assessment of each task only needs to
+	 * contain the assessment id.
+	 * @return The ids of the inserted tasks, in the same order as the given tasks.
+	 */
+	public List<Integer> addTasks(List<Task> tasks) {
+		List<Integer> taskIds = new ArrayList<Integer>(tasks.size());
+		if (tasks.isEmpty()) {
+			return taskIds;
+		}
+		Set<Integer> assessmentIds = new LinkedHashSet<Integer>();
+		for (Task task : tasks) {
+			assessmentIds.add(task.getTaskBelongsToAssessment().getAssessmentId());
+		}
+		DataSource dataSource = context.getBean(DataSource.class);
+		try (QueryTimer timer = queryMetrics.time("addTasks");
+			 Connection connection = dataSource.getConnection()) {
+			connection.setAutoCommit(false);
+			try {
+				// every distinct assessment is resolved once, with a single query
+				assessmentIds.removeAll(findExistingAssessments(connection, assessmentIds));
+				if (!assessmentIds.isEmpty()) {
+					throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+							"Unknown assessments: " + assessmentIds);
+				}
+				try (PreparedStatement statement = connection.prepareStatement(
+						"INSERT INTO tasks (task_description, date_to_send, isCompleted, "
+						+ "task_belongs_to_assessment) VALUES (?, ?, 0, ?)", Statement.RETURN_GENERATED_KEYS)) {
+					for (Task task : tasks) {
+						statement.setString(1, task.getTaskDescription());
+						statement.setDate(2, java.sql.Date.valueOf(task.getDateToSend()));
+						statement.setInt(3, task.getTaskBelongsToAssessment().getAssessmentId());
+						statement.addBatch();
+					}
+					statement.executeBatch();
+					try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+						while (generatedKeys.next()) {
+							taskIds.add(generatedKeys.getInt(1));
+						}
+					}
+				}
+				connection.commit();
+				timer.success();
+			} catch (SQLException | RuntimeException e) {
+				connection.rollback();
+				throw e;
+			} finally {
+				connection.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "The tasks could not be inserted", e);
+		}
+		projectNewTasks(taskIds);
+		taskSendScheduler.scheduleTasks(taskIds);
+		return taskIds;
 	}
 	
 	/**
-	 * Retrieves an assessment given an assessment id.
+	 * Adds newly inserted tasks to the in-memory projection of the to-do tasks of their
+	 * lecturers. The lecturers of the tasks can only be found through the lecturer_modules
+	 * table, so with any other lecturer resolution the projection is simply invalidated.
+	 * @param taskIds The ids of the new tasks.
+	 */
+	private void projectNewTasks(List<Integer> taskIds) {
+		if (!tasksToDoProjection.isEnabled() || tasksToDoProjection.isEmpty() || taskIds.isEmpty()) {
+			return;
+		}
+		if (lecturerResolution != LecturerResolution.INDEXED) {
+			tasksToDoProjection.invalidateAll();
+			return;
+		}
+		String sql = "SELECT T.task_description, T.date_to_send, "
+				+ "M.module_name, M.curriculum, A.assessment_type, "
+				+ "T.task_id, LM.user_id "
+				+ "FROM tasks T, users U, assessments A, modules M, entries E, settings S, lecturer_modules LM "
+				+ "WHERE T.task_belongs_to_assessment = A.assessment_id "
+				+ "AND A.assessment_belongsTo_module = M.module_id "
+				+ "AND M.module_belongsTo_entry = E.entry_id "
+				+ "AND S.entry_FK = E.entry_id "
+				+ "AND E.user_id = U.user_id "
+				+ "AND LM.module_id = M.module_id AND LM.lecturer_role = 'PRIMARY' "
+				+ "AND T.isCompleted = 0 "
+				+ "AND T.task_id IN (" + placeholders(taskIds.size()) + ")";
+		Map<Integer, List<TaskToDo>> tasksOfLecturers = new HashMap<Integer, List<TaskToDo>>();
+		DataSource dataSource = context.getBean(DataSource.class);
+		try (QueryTimer timer = queryMetrics.time("projectNewTasks");
+			 Connection connection = dataSource.getConnection();
+			 PreparedStatement statement = connection.prepareStatement(sql)) {
+			for (int i = 0; i < taskIds.size(); i++) {
+				statement.setInt(i + 1, taskIds.get(i));
+			}
+			try (ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {
+					tasksOfLecturers.computeIfAbsent(resultSet.getInt(7), lecturerID -> new ArrayList<TaskToDo>())
+									.add(toTaskToDo(resultSet));
+				}
+			}
+			timer.success();
+			tasksToDoProjection.add(tasksOfLecturers);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			tasksToDoProjection.invalidateAll();
+		}
+	}
+	
+	/**
+	 * Finds which of the given assessments exist.
+	 * @param connection The connection that should be used.
+	 * @param assessmentIds The ids of the assessments that we are looking for.
+	 * @return The ids of the assessments that exist.
+	 * @throws SQLException If the query fails.
+	 */
+	private Set<Integer> findExistingAssessments(Connection connection, Collection<Integer> assessmentIds)
+			throws SQLException {
+		Set<Integer> existing = new HashSet<Integer>();
+		try (PreparedStatement statement = connection.prepareStatement(
+				"SELECT assessment_id FROM assessments WHERE assessment_id IN ("
+				+ placeholders(assessmentIds.size()) + ")")) {
+			int index = 1;
+			for (Integer assessmentId : assessmentIds) {
+				statement.setInt(index++, assessmentId);
+			}
+			try (ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {
+					existing.add(resultSet.getInt(1));
+				}
+			}
+		}
+		return existing;
+	}
+	
+	/**
+	 * Creates the parameter placeholders of an IN clause.
+	 * @param count The number of parameters.
+	 * @return The placeholders separated by commas, e.g. "?, ?, ?".
+	 */
+	static String placeholders(int count) {
+		return String.join(", ", Collections.nCopies(count, "?"));
+	}
+	
+	/**
+	 * Retrieves an assessment given an assessment id. If the admin service is unavailable,
+	 * the assessment is read from the shared assessments table instead.
 	 * @param assessmentId The id of the assessment that we wish to retrieve.
 	 * @return The assessment that matches the id given as a parameter.
+	 * @throws ResponseStatusException With status 503 if the admin service is unavailable
+	 * and the assessment cannot be read from the assessments table either.
 	 */
 	public Assessment getAssessment(int assessmentId) {
-		RestTemplate restTemplate = context.getBean(RestTemplate.class);
-		Assessment assessment = restTemplate.getForObject("http://localhost:8026/admin/assessments/" + assessmentId, 
-								  Assessment.class);
-		return assessment;
+		return adminService.call(
+				restTemplate -> restTemplate.getForObject(adminServiceUrl + "/admin/assessments/{id}",
+														  Assessment.class, assessmentId),
+				() -> localAssessment(assessmentId));
+	}
+	
+	/**
+	 * Reads an assessment from the shared assessments table (the fallback of the admin service).
+	 * @param assessmentId The id of the assessment.
+	 * @return The assessment.
+	 * @throws ResponseStatusException With status 503 if the assessment cannot be read.
+	 */
+	private Assessment localAssessment(int assessmentId) {
+		DataSource dataSource = context.getBean(DataSource.class);
+		try (Connection connection = dataSource.getConnection();
+			 PreparedStatement statement = connection.prepareStatement(
+					 "SELECT assessment_id, assessment_type, assessment_weight, assessment_weeks, "
+					 + "assessment_upload_date, assessment_deadline_date FROM assessments WHERE assessment_id = ?")) {
+			statement.setInt(1, assessmentId);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				if (resultSet.next()) {
+					Assessment assessment = new Assessment();
+					assessment.setAssessmentId(resultSet.getInt(1));
+					assessment.setAssessmentType(AssessmentType.valueOf(resultSet.getString(2)));
+					assessment.setAssessmentWeight(resultSet.getInt(3));
+					assessment.setWeeks(resultSet.getString(4));
+					java.sql.Date uploadDate = resultSet.getDate(5);
+					java.sql.Date deadlineDate = resultSet.getDate(6);
+					assessment.setUploadDate(uploadDate == null ? null : uploadDate.toLocalDate());
+					assessment.setDeadlineDate(deadlineDate == null ? null : deadlineDate.toLocalDate());
+					return assessment;
+				}
+			}
+		} catch (SQLException | IllegalArgumentException e) {
+			e.printStackTrace();
+		}
+		throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+				"The admin service is unavailable and the assessment " + assessmentId + " could not be read locally");
 	}
 	
 	/**
@@ -139,38 +959,99 @@ public class LecturerServices {
 	 * should be performed by the corresponding lecturer.
 	 */
 	public TasksToDo getTasksToDo(int lecturerID) {
-		User lecturer = getLecturerBasedOnId(lecturerID);
-		DataSource dataSource = context.getBean(DataSource.class);
+		if (tasksToDoProjection.isEnabled()) {
+			return pageOfTasksToDo(projectedTasksToDo(lecturerID, null), null, 0);
+		}
+		return queryTasksToDo(lecturerParameter(lecturerID), null, 0);
+	}
+	
+	/**
+	 * Retrieves a page of the to-do tasks that a lecturer should perform. The tasks are
+	 * ordered by the date that they should be sent and then by their id.
+	 * @param lecturerID The id of the lecturer whose to-do list we wish to find.
+	 * @param cursor The cursor that was returned along with the previous page, or null
+	 * for the first page.
+	 * @param pageSize The maximum number of tasks of the page. If it is not positive the
+	 * default page size is used.
+	 * @return A TasksToDo instance, containing the to-do tasks of the page along with the
+	 * cursor of the next page (if there is one).
+	 */
+	public TasksToDo getTasksToDo(int lecturerID, String cursor, int pageSize) {
+		if (tasksToDoProjection.isEnabled()) {
+			return pageOfTasksToDo(projectedTasksToDo(lecturerID, null), cursor, pageSize(pageSize));
+		}
+		return queryTasksToDo(lecturerParameter(lecturerID), cursor, pageSize(pageSize));
+	}
+	
+	/**
+	 * Retrieves the to-do tasks of a lecturer from the in-memory projection, which only
+	 * queries the database when the tasks are not in the projection (or should be reconciled).
+	 * @param lecturerID The id of the lecturer whose to-do list we wish to find.
+	 * @param lecturer The parameter of {@link #lecturerCondition()} for the lecturer, or
+	 * null if it has not been created yet.
+	 * @return All the to-do tasks of the lecturer, ordered by the date to send and the id.
+	 */
+	private List<TaskToDo> projectedTasksToDo(int lecturerID, Object lecturer) {
+		return tasksToDoProjection.get(lecturerID, () -> {
+			TasksToDo tasksToDo = context.getBean(TasksToDo.class);
+			try {
+				loadTasksToDo(lecturer != null ? lecturer : lecturerParameter(lecturerID), null, 0, tasksToDo);
+			} catch (SQLException e) {
+				// the projection must not keep an empty list in place of the tasks that failed to load
+				throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+												  "The to-do tasks could not be retrieved", e);
+			}
+			return tasksToDo.getTasksToDo();
+		});
+	}
+	
+	/**
+	 * Creates a page out of the (ordered) to-do tasks of a lecturer.
+	 * @param tasks All the to-do tasks of the lecturer, ordered by the date to send and the id.
+	 * @param cursor The cursor that was returned along with the previous page, or null
+	 * for the first page.
+	 * @param limit The maximum number of tasks of the page, or zero for all the tasks.
+	 * @return A TasksToDo instance, containing the to-do tasks of the page along with the
+	 * cursor of the next page (if there is one).
+	 */
+	private TasksToDo pageOfTasksToDo(List<TaskToDo> tasks, String cursor, int limit) {
 		TasksToDo tasksToDo = context.getBean(TasksToDo.class);
-		Connection connection;
-		String sql = "SELECT T.task_description, T.date_to_send, "
-				+ "M.module_name, M.curriculum, A.assessment_type, "
-				+ "T.task_id "
-				+ "FROM tasks T, users U, assessments A, modules M, entries E, settings S "
-				+ "WHERE T.task_belongs_to_assessment = A.assessment_id "
-				+ "AND A.assessment_belongsTo_module = M.module_id "
-				+ "AND M.module_belongsTo_entry = E.entry_id "
-				+ "AND S.entry_FK = E.entry_id "
-				+ "AND E.user_id = U.user_id "
-				+ "AND M.primary_lecturer LIKE ? "
-				+ "AND T.isCompleted = 0";
+		int from = 0;
+		if (cursor != null) {
+			int position = Collections.binarySearch(tasks, cursorKey(cursor), TasksToDoProjection.ORDER);
+			from = position >= 0 ? position + 1 : -position - 1;
+		}
+		int to = limit > 0 ? Math.min(tasks.size(), from + limit) : tasks.size();
+		tasksToDo.getTasksToDo().addAll(tasks.subList(from, to));
+		if (to < tasks.size()) {
+			TaskToDo last = tasks.get(to - 1);
+			tasksToDo.setNextCursor(PageCursor.encode(last.getDateToSend(), last.getTaskId()));
+		}
+		return tasksToDo;
+	}
+	
+	/**
+	 * Reads the last to-do task of the previous page out of a cursor.
+	 * @param cursor The cursor that was returned along with the previous page.
+	 * @return A to-do task that only contains the date to send and the id.
+	 * @throws ResponseStatusException With status 400 if the cursor is not valid.
+	 */
+	private TaskToDo cursorKey(String cursor) {
+		String[] lastKey = PageCursor.decode(cursor, 2);
 		try {
-			connection = dataSource.getConnection();
-			PreparedStatement statement = connection.prepareStatement(sql);
-			statement.setString(1, "%" + lecturer.getUsername() + "%");
-			ResultSet resultSet = statement.executeQuery();
-			while(resultSet.next()) {
-				tasksToDo.getTasksToDo().add(TaskToDo.builder()
-						.taskDescription(resultSet.getString(1))
-						.dateToSend(resultSet.getDate(2).toLocalDate())
-						.moduleName(resultSet.getString(3))
-						.curriculum(resultSet.getString(4))
-						.assessmentType(resultSet.getString(5))
-						.taskId(resultSet.getInt(6))
-						.build());
-			}
-			statement.close();
-			connection.close();
+			return TaskToDo.builder()
+					.dateToSend(LocalDate.parse(lastKey[0]))
+					.taskId(Integer.parseInt(lastKey[1]))
+					.build();
+		} catch (DateTimeParseException | NumberFormatException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor: " + cursor);
+		}
+	}
+	
+	private TasksToDo queryTasksToDo(Object lecturer, String cursor, int limit) {
+		TasksToDo tasksToDo = context.getBean(TasksToDo.class);
+		try {
+			loadTasksToDo(lecturer, cursor, limit, tasksToDo);
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
@@ -178,26 +1059,187 @@ public class LecturerServices {
 	}
 	
 	/**
-	 * Retrieves a lecturer given an id.
-	 * @param lecturerID The id of the lecturer that we wish to retrieve.
-	 * @return The lecturer that matches the given id.
+	 * Queries the database for (a page of) the to-do tasks of a lecturer.
+	 * @param lecturer The parameter of {@link #lecturerCondition()} for the lecturer.
+	 * @param cursor The cursor that was returned along with the previous page, or null
+	 * for the first page.
+	 * @param limit The maximum number of tasks of the page, or zero for all the tasks.
+	 * @param tasksToDo The instance that the tasks (and the cursor of the next page) are added to.
+	 * @throws SQLException If the query failed, in which case tasksToDo may contain some of the tasks.
 	 */
-	private User getLecturerBasedOnId(int lecturerID) {
-		RestTemplate restTemplate = context.getBean(RestTemplate.class);
-		User lecturer = restTemplate.getForObject("http://localhost:8028/users/" + lecturerID, User.class);
-		return lecturer;
+	private void loadTasksToDo(Object lecturer, String cursor, int limit, TasksToDo tasksToDo) throws SQLException {
+		List<Object> parameters = new ArrayList<Object>();
+		parameters.add(lecturer);
+		DataSource dataSource = context.getBean(DataSource.class);
+		String sql = tasksToDoQuery();
+		if (cursor != null) {
+			TaskToDo lastTask = cursorKey(cursor);
+			java.sql.Date lastDateToSend = java.sql.Date.valueOf(lastTask.getDateToSend());
+			sql += " AND (T.date_to_send > ? OR (T.date_to_send = ? AND T.task_id > ?))";
+			parameters.add(lastDateToSend);
+			parameters.add(lastDateToSend);
+			parameters.add(lastTask.getTaskId());
+		}
+		sql += " ORDER BY T.date_to_send, T.task_id";
+		if (limit > 0) {
+			sql += " LIMIT ?";
+			parameters.add(limit + 1);
+		}
+		try (QueryTimer timer = queryMetrics.time("tasksToDo");
+			 Connection connection = dataSource.getConnection();
+			 PreparedStatement statement = connection.prepareStatement(sql)) {
+			for (int i = 0; i < parameters.size(); i++) {
+				statement.setObject(i + 1, parameters.get(i));
+			}
+			ResultSet resultSet = statement.executeQuery();
+			List<TaskToDo> tasks = tasksToDo.getTasksToDo();
+			while(resultSet.next()) {
+				if (limit > 0 && tasks.size() == limit) {
+					TaskToDo last = tasks.get(tasks.size() - 1);
+					tasksToDo.setNextCursor(PageCursor.encode(last.getDateToSend(), last.getTaskId()));
+					break;
+				}
+				tasks.add(toTaskToDo(resultSet));
+			}
+			timer.success();
+		}
 	}
-
+	
+	/**
+	 * Writes all the to-do tasks that a lecturer should perform as json, while they are
+	 * read from the database. Unlike {@link #getTasksToDo(int)}, the tasks are never
+	 * collected in memory, so the memory used does not depend on the number of the tasks.
+	 * The json is identical to the one of a TasksToDo object.
+	 * @param lecturerID The id of the lecturer whose to-do list we wish to find.
+	 * @param out The stream where the json is written to.
+	 * @throws IOException If the tasks cannot be read or written.
+	 */
+	public void streamTasksToDo(int lecturerID, OutputStream out) throws IOException {
+		Object lecturer = lecturerParameter(lecturerID);
+		ObjectWriter rowWriter = objectMapper.writerFor(TaskToDo.class)
+											 .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		DataSource dataSource = context.getBean(DataSource.class);
+		try (QueryTimer timer = queryMetrics.time("tasksToDoStream");
+			 Connection connection = dataSource.getConnection();
+			 PreparedStatement statement = prepareStreamingStatement(connection,
+					 tasksToDoQuery() + " ORDER BY T.date_to_send, T.task_id");
+			 JsonGenerator generator = createGenerator(out)) {
+			statement.setObject(1, lecturer);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				generator.writeStartObject();
+				generator.writeArrayFieldStart("tasksToDo");
+				while(resultSet.next()) {
+					rowWriter.writeValue(generator, toTaskToDo(resultSet));
+				}
+				generator.writeEndArray();
+				generator.writeEndObject();
+			}
+			timer.success();
+		} catch (SQLException e) {
+			throw new IOException("The to-do tasks could not be retrieved", e);
+		}
+	}
+	
+	/**
+	 * Creates the query that retrieves the to-do tasks of a lecturer (without any
+	 * ordering). The only parameter of the query is the one of {@link #lecturerCondition()}.
+	 * @return The query.
+	 */
+	String tasksToDoQuery() {
+		return "SELECT T.task_description, T.date_to_send, "
+			 + "M.module_name, M.curriculum, A.assessment_type, "
+			 + "T.task_id "
+			 + "FROM tasks T, users U, assessments A, modules M, entries E, settings S "
+			 + "WHERE T.task_belongs_to_assessment = A.assessment_id "
+			 + "AND A.assessment_belongsTo_module = M.module_id "
+			 + "AND M.module_belongsTo_entry = E.entry_id "
+			 + "AND S.entry_FK = E.entry_id "
+			 + "AND E.user_id = U.user_id "
+			 + "AND " + lecturerCondition() + " "
+			 + "AND T.isCompleted = 0";
+	}
+	
+	/**
+	 * Creates a to-do task out of the current row of the result set of the
+	 * to-do tasks query.
+	 * @param resultSet The result set positioned at the row of the to-do task.
+	 * @return The to-do task.
+	 * @throws SQLException If a column cannot be read.
+	 */
+	static TaskToDo toTaskToDo(ResultSet resultSet) throws SQLException {
+		return TaskToDo.builder()
+				.taskDescription(resultSet.getString(1))
+				.dateToSend(resultSet.getDate(2).toLocalDate())
+				.moduleName(resultSet.getString(3))
+				.curriculum(resultSet.getString(4))
+				.assessmentType(resultSet.getString(5))
+				.taskId(resultSet.getInt(6))
+				.build();
+	}
+	
+	/**
+	 * Retrieves both the pending tasks whose dates should be set and the to-do tasks of a
+	 * lecturer. The lecturer is resolved once, and the two queries are executed in parallel
+	 * (one of them on the dashboard executor).
+	 * @param lecturerID The id of the lecturer.
+	 * @return The dashboard of the lecturer, containing both lists of tasks.
+	 */
+	public LecturerDashboard getDashboard(int lecturerID) {
+		Object lecturer = lecturerParameter(lecturerID);
+		CompletableFuture<PendingTasksToSet> pendingTasksToSet =
+				CompletableFuture.supplyAsync(() -> queryDaysToSet(lecturer, null, 0), dashboardExecutor);
+		TasksToDo tasksToDo = tasksToDoProjection.isEnabled()
+				? pageOfTasksToDo(projectedTasksToDo(lecturerID, lecturer), null, 0)
+				: queryTasksToDo(lecturer, null, 0);
+		return LecturerDashboard.builder()
+				.pendingTasksToSet(pendingTasksToSet.join())
+				.tasksToDo(tasksToDo)
+				.build();
+	}
+	
 	/**
 	 * Changes a task's visibility so that it won't be displayed
 	 * in as a to-do task. Basically the task's status changes to
 	 * true (meaning that the task has been fulfilled).
 	 * @param taskID The task whose visibility we want to change.
+	 * @throws ResponseStatusException With status 404 if the task does not exist.
 	 */
 	public void changeTaskVisibility(int taskID) {
-		Task task = tasksRepository.findById(taskID).get();
-		task.setCompleted(true);
-		tasksRepository.save(task);
+		int completed;
+		try (QueryTimer timer = queryMetrics.time("completeTask")) {
+			completed = tasksRepository.markAsCompleted(taskID);
+			timer.success();
+		}
+		if (completed == 0) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "There is no task with id " + taskID);
+		}
+		tasksToDoProjection.remove(Collections.singletonList(taskID));
+		taskSendScheduler.cancelTasks(Collections.singletonList(taskID));
+	}
+	
+	/**
+	 * Changes the visibility of many tasks at once (with a single statement), so that
+	 * none of them will be displayed as a to-do task.
+	 * @param taskIDs The tasks whose visibility we want to change.
+	 * @return The ids of the given tasks that do not exist (empty if all of them exist).
+	 */
+	public List<Integer> changeTasksVisibility(Collection<Integer> taskIDs) {
+		Set<Integer> distinctTaskIDs = new LinkedHashSet<Integer>(taskIDs);
+		if (distinctTaskIDs.isEmpty()) {
+			return new ArrayList<Integer>();
+		}
+		int completed;
+		try (QueryTimer timer = queryMetrics.time("completeTasks")) {
+			completed = tasksRepository.markAsCompleted(distinctTaskIDs);
+			timer.success();
+		}
+		tasksToDoProjection.remove(distinctTaskIDs);
+		taskSendScheduler.cancelTasks(distinctTaskIDs);
+		if (completed < distinctTaskIDs.size()) {
+			distinctTaskIDs.removeAll(tasksRepository.findExistingIds(distinctTaskIDs));
+			return new ArrayList<Integer>(distinctTaskIDs);
+		}
+		return new ArrayList<Integer>();
 	}
 	
 }
@@ -0,0 +1,59 @@
+package com.wisetasklecturer.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Encodes/decodes the opaque cursors used by the paginated (keyset) endpoints. A cursor
+ * holds the values of the sort key of the last element of a page, so the next page
+ * starts right after it without having to skip (OFFSET) the previous rows.
+ * @author Theofanis Gkoufas
+ *
+ */
+final class PageCursor {
+
+	private static final String SEPARATOR = "|";
+
+	private PageCursor() {
+	}
+
+	/**
+	 * Creates a cursor out of the values of a sort key.
+	 * @param values The values of the sort key of the last element of a page.
+	 * @return The cursor that should be sent to the client.
+	 */
+	static String encode(Object... values) {
+		StringBuilder builder = new StringBuilder();
+		for (Object value : values) {
+			if (builder.length() > 0) {
+				builder.append(SEPARATOR);
+			}
+			builder.append(value);
+		}
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString(builder.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Reads the values of a sort key out of a cursor.
+	 * @param cursor The cursor that was sent by the client.
+	 * @param expectedValues The number of values that the cursor should contain.
+	 * @return The values of the sort key.
+	 * @throws ResponseStatusException With status 400 if the cursor is not valid.
+	 */
+	static String[] decode(String cursor, int expectedValues) {
+		try {
+			String[] values = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+					.split("\\" + SEPARATOR, -1);
+			if (values.length == expectedValues) {
+				return values;
+			}
+		} catch (IllegalArgumentException e) {
+			// handled below, like any other malformed cursor
+		}
+		throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor: " + cursor);
+	}
+
+}
@@ -0,0 +1,155 @@
+package com.wisetasklecturer.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * An in-process cache of the compiled settings ({@link StepOffsets}) of the entries.
+ *
+ * The settings of an entry are only changed by the admin service, which should invalidate
+ * them (DELETE /settings/{entryId}/offsets) after every change; in case it does not, the
+ * cached offsets also expire after ttl-seconds. The entries that are missing are loaded
+ * together, with a single query.
+ * @author Theofanis Gkoufas
+ *
+ */
+@Component
+public class SettingsOffsetsCache {
+
+	@Value("${wisetask.settings-cache.ttl-seconds:600}")
+	private long ttlSeconds;
+
+	private final Map<Integer, Cached> cache = new ConcurrentHashMap<Integer, Cached>();
+
+	/*
+	 * Incremented by every invalidation, so that settings which were loaded while they were
+	 * being invalidated are not cached. It is only incremented while holding the lock, which
+	 * the loaded settings are also cached under, so that they cannot be cached right after
+	 * an invalidation has checked the cache.
+	 */
+	private final AtomicLong generation = new AtomicLong();
+
+	private final Object lock = new Object();
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder invalidations = new LongAdder();
+
+	/**
+	 * Retrieves the offsets of entries, loading the ones that are not cached.
+	 * @param connection The connection used for loading the missing entries (it may be in
+	 * the middle of a transaction).
+	 * @param entryIds The ids of the entries.
+	 * @return The offsets of every entry that has settings.
+	 * @throws SQLException If the settings could not be loaded.
+	 */
+	public Map<Integer, StepOffsets> getAll(Connection connection, Collection<Integer> entryIds) throws SQLException {
+		Map<Integer, StepOffsets> offsets = new HashMap<Integer, StepOffsets>();
+		List<Integer> missing = new ArrayList<Integer>();
+		long now = System.nanoTime();
+		for (Integer entryId : entryIds) {
+			Cached cached = cache.get(entryId);
+			if (cached != null && now - cached.loadedAt < TimeUnit.SECONDS.toNanos(ttlSeconds)) {
+				hits.increment();
+				offsets.put(entryId, cached.offsets);
+			} else if (!missing.contains(entryId)) {
+				misses.increment();
+				missing.add(entryId);
+			}
+		}
+		if (missing.isEmpty()) {
+			return offsets;
+		}
+		long loadGeneration = generation.get();
+		List<StepOffsets> loaded = new ArrayList<StepOffsets>(missing.size());
+		try (PreparedStatement statement = connection.prepareStatement(
+				"SELECT * FROM settings WHERE entry_FK IN (" + LecturerServices.placeholders(missing.size()) + ")")) {
+			for (int i = 0; i < missing.size(); i++) {
+				statement.setInt(i + 1, missing.get(i));
+			}
+			try (ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {
+					loaded.add(StepOffsets.compile(resultSet));
+				}
+			}
+		}
+		synchronized (lock) {
+			if (generation.get() == loadGeneration) {
+				for (StepOffsets entryOffsets : loaded) {
+					cache.put(entryOffsets.getEntryId(), new Cached(entryOffsets, now));
+				}
+			}
+		}
+		for (StepOffsets entryOffsets : loaded) {
+			offsets.put(entryOffsets.getEntryId(), entryOffsets);
+		}
+		return offsets;
+	}
+
+	/**
+	 * Removes the offsets of an entry, e.g. because its settings have changed.
+	 * @param entryId The id of the entry.
+	 */
+	public void invalidate(int entryId) {
+		invalidations.increment();
+		synchronized (lock) {
+			generation.incrementAndGet();
+			cache.remove(entryId);
+		}
+	}
+
+	/**
+	 * Removes the offsets of all the entries.
+	 */
+	public void invalidateAll() {
+		invalidations.increment();
+		synchronized (lock) {
+			generation.incrementAndGet();
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Creates a snapshot of the statistics of the cache.
+	 * @return A map containing the number of cached entries, hits, misses and invalidations.
+	 */
+	public Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+		snapshot.put("size", cache.size());
+		snapshot.put("hits", hits.sum());
+		snapshot.put("misses", misses.sum());
+		snapshot.put("invalidations", invalidations.sum());
+		snapshot.put("ttlSeconds", ttlSeconds);
+		return snapshot;
+	}
+
+	private static final class Cached {
+
+		private final StepOffsets offsets;
+
+		private final long loadedAt;
+
+		private Cached(StepOffsets offsets, long loadedAt) {
+			this.offsets = offsets;
+			this.loadedAt = loadedAt;
+		}
+
+	}
+
+}
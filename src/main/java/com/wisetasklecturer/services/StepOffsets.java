@@ -0,0 +1,89 @@
+package com.wisetasklecturer.services;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import com.wisetasklecturer.entities.AssessmentType;
+import com.wisetasklecturer.entities.WorkflowStep;
+
+/**
+ * The compiled form of the settings of an entry: the offsets (in days) of the workflow
+ * steps of every type of assessment, held by an immutable AssessmentType x step matrix
+ * instead of the 60 separate columns of the settings table.
+ * @author Theofanis Gkoufas
+ *
+ */
+public final class StepOffsets {
+
+	private static final int STEPS = WorkflowStep.values().length;
+
+	private final int entryId;
+
+	/*
+	 * The offset of a step of a type is at [type.ordinal() * STEPS + step.ordinal()].
+	 */
+	private final int[] offsets;
+
+	private StepOffsets(int entryId, int[] offsets) {
+		this.entryId = entryId;
+		this.offsets = offsets;
+	}
+
+	/**
+	 * Compiles the settings of an entry.
+	 * @param resultSet A result set positioned on a row of the settings table (or of any
+	 * query that selects all of its columns).
+	 * @return The offsets of the entry of the row.
+	 * @throws SQLException If a column of the settings is missing.
+	 */
+	static StepOffsets compile(ResultSet resultSet) throws SQLException {
+		int[] offsets = new int[AssessmentType.values().length * STEPS];
+		for (AssessmentType type : AssessmentType.values()) {
+			for (WorkflowStep step : WorkflowStep.values()) {
+				offsets[type.ordinal() * STEPS + step.ordinal()] = resultSet.getInt(type.settingsColumn(step));
+			}
+		}
+		return new StepOffsets(resultSet.getInt("entry_FK"), offsets);
+	}
+
+	/**
+	 * Creates the offsets of an entry from a matrix.
+	 * @param entryId The id of the entry.
+	 * @param offsets The offsets, indexed by the ordinal of the type and then by the
+	 * ordinal of the step.
+	 * @return The offsets of the entry.
+	 */
+	static StepOffsets of(int entryId, int[][] offsets) {
+		int[] compiled = new int[AssessmentType.values().length * STEPS];
+		for (int type = 0; type < offsets.length; type++) {
+			System.arraycopy(offsets[type], 0, compiled, type * STEPS, STEPS);
+		}
+		return new StepOffsets(entryId, compiled);
+	}
+
+	/**
+	 * @param type The type of the assessment.
+	 * @param step The workflow step.
+	 * @return The offset of the step (in days).
+	 */
+	public int offset(AssessmentType type, WorkflowStep step) {
+		return offsets[type.ordinal() * STEPS + step.ordinal()];
+	}
+
+	/**
+	 * Calculates the date that the task of a step should be sent.
+	 * @param type The type of the assessment.
+	 * @param step The workflow step.
+	 * @param uploadDate The upload date of the assessment.
+	 * @param deadlineDate The deadline date of the assessment.
+	 * @return The date to send the task.
+	 */
+	public LocalDate dateToSend(AssessmentType type, WorkflowStep step, LocalDate uploadDate, LocalDate deadlineDate) {
+		return step.dateToSend(uploadDate, deadlineDate, offset(type, step));
+	}
+
+	public int getEntryId() {
+		return entryId;
+	}
+
+}
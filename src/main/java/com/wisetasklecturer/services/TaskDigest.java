@@ -0,0 +1,47 @@
+package com.wisetasklecturer.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import com.wisetasklecturer.entities.TaskToDo;
+
+/**
+ * The due tasks of a single recipient, which are sent to them as one email.
+ * @author Theofanis Gkoufas
+ *
+ */
+final class TaskDigest {
+
+	private final String recipient;
+
+	private final List<TaskToDo> tasks = new ArrayList<TaskToDo>();
+
+	TaskDigest(String recipient) {
+		this.recipient = recipient;
+	}
+
+	String getRecipient() {
+		return recipient;
+	}
+
+	List<TaskToDo> getTasks() {
+		return tasks;
+	}
+
+	String subject() {
+		return "WiseTask: " + tasks.size() + (tasks.size() == 1 ? " task is" : " tasks are") + " due";
+	}
+
+	String body() {
+		StringBuilder body = new StringBuilder("The following tasks are due:\n\n");
+		for (TaskToDo task : tasks) {
+			body.append("- ").append(task.getDateToSend())
+				.append(" | ").append(task.getModuleName())
+				.append(" (").append(task.getCurriculum()).append(") | ")
+				.append(task.getAssessmentType())
+				.append(" | ").append(task.getTaskDescription())
+				.append('\n');
+		}
+		return body.toString();
+	}
+
+}
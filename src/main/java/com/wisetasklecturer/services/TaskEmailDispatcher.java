@@ -0,0 +1,320 @@
+package com.wisetasklecturer.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import com.wisetasklecturer.entities.DispatchReport;
+import com.wisetasklecturer.entities.TaskToDo;
+
+/**
+ * A service class that emails the due tasks to the (primary) lecturers of their modules.
+ *
+ * A task is due once its date to send has come and the time to send the notifications of
+ * its entry (settings.time_to_send_notif) has passed. Every run first claims the emails
+ * (task and lecturer) that are due and have not been sent (see db/005_task_emails.sql), so
+ * that the emails claimed by a run are never sent by another run, even on another instance
+ * of the service. The claimed emails are then selected in pages, ordered by the email address
+ * of the lecturer, so that all the tasks of a lecturer are sent as one digest. The emails of
+ * the digests that were sent are marked as sent, and a task is marked as sent
+ * (tasks.email_sent_at) once it has been sent to all of its lecturers. The claims that were
+ * not sent are released at the end of the run, so the next run sends them again, and the
+ * {@link TaskSendScheduler} knows that they have already been attempted.
+ * @author Theofanis Gkoufas
+ *
+ */
+@Service
+public class TaskEmailDispatcher {
+
+	private static final DateTimeFormatter TIME_TO_SEND = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+	/*
+	 * The claimed_by of the emails that a run claimed but did not send.
+	 */
+	static final String RELEASED = "released";
+
+	@Autowired
+	ApplicationContext context;
+
+	@Autowired
+	DigestSender digestSender;
+
+	@Value("${wisetask.mail.page-size:500}")
+	private int pageSize;
+
+	@Value("${wisetask.mail.claim-timeout-minutes:60}")
+	private long claimTimeoutMinutes;
+
+	private final AtomicBoolean running = new AtomicBoolean();
+
+	private volatile LocalDateTime lastRunStartedAt;
+
+	/**
+	 * Emails all the tasks that are due and have not been sent yet.
+	 * @return The outcome of the run, including the number of messages sent per second.
+	 * @throws ResponseStatusException With status 503 if no mail server is configured, and
+	 * with status 409 if the dispatcher is already running.
+	 */
+	public DispatchReport dispatchDueTasks() {
+		if (!digestSender.isConfigured()) {
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "No mail server is configured (spring.mail.host)");
+		}
+		if (!running.compareAndSet(false, true)) {
+			throw new ResponseStatusException(HttpStatus.CONFLICT, "The due tasks are already being dispatched");
+		}
+		try {
+			LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+			DispatchReport report = dispatch(UUID.randomUUID().toString(), now);
+			lastRunStartedAt = now;
+			return report;
+		} finally {
+			running.set(false);
+		}
+	}
+
+	/**
+	 * @return The time that the last (finished) run started, or null if no run has finished
+	 * yet; every email that was due at that time was either sent by the run or could not be sent.
+	 */
+	public LocalDateTime getLastRunStartedAt() {
+		return lastRunStartedAt;
+	}
+
+	private DispatchReport dispatch(String runId, LocalDateTime now) {
+		long start = System.nanoTime();
+		long dueTasks = 0;
+		AtomicLong tasksMarkedSent = new AtomicLong();
+		DigestSender.Result total = new DigestSender.Result();
+		DataSource dataSource = context.getBean(DataSource.class);
+		String lastRecipient = "";
+		int lastTaskId = 0;
+		TaskDigest current = null;
+		try {
+			try (Connection connection = dataSource.getConnection()) {
+				claim(connection, runId, now);
+			}
+			boolean lastPage = false;
+			while (!lastPage) {
+				List<TaskDigest> completeDigests = new ArrayList<TaskDigest>();
+				int rows = 0;
+				// every page is read on its own connection, which is given back before the digests
+				// are sent, so that no connection is held while waiting for the mail server
+				try (Connection connection = dataSource.getConnection();
+					 PreparedStatement statement = connection.prepareStatement(claimedEmailsQuery())) {
+					statement.setString(1, runId);
+					statement.setString(2, lastRecipient);
+					statement.setString(3, lastRecipient);
+					statement.setInt(4, lastTaskId);
+					statement.setInt(5, pageSize);
+					try (ResultSet resultSet = statement.executeQuery()) {
+						while (resultSet.next()) {
+							rows++;
+							lastRecipient = resultSet.getString(1);
+							lastTaskId = resultSet.getInt(2);
+							if (current == null || !current.getRecipient().equals(lastRecipient)) {
+								if (current != null) {
+									completeDigests.add(current);
+								}
+								current = new TaskDigest(lastRecipient);
+							}
+							current.getTasks().add(TaskToDo.builder()
+									.taskId(lastTaskId)
+									.taskDescription(resultSet.getString(3))
+									.dateToSend(resultSet.getDate(4).toLocalDate())
+									.moduleName(resultSet.getString(5))
+									.curriculum(resultSet.getString(6))
+									.assessmentType(resultSet.getString(7))
+									.build());
+						}
+					}
+				}
+				dueTasks += rows;
+				lastPage = rows < pageSize;
+				// the digest of the last recipient of the page may continue in the next page
+				if (lastPage && current != null) {
+					completeDigests.add(current);
+					current = null;
+				}
+				if (!completeDigests.isEmpty()) {
+					DigestSender.Result result = digestSender.send(completeDigests,
+							sent -> tasksMarkedSent.addAndGet(markAsSent(dataSource, runId, sent, now)));
+					total.sent.addAndGet(result.sent.get());
+					total.failed.addAndGet(result.failed.get());
+					total.retries.addAndGet(result.retries.get());
+				}
+			}
+		} catch (SQLException e) {
+			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "The due tasks could not be retrieved", e);
+		} finally {
+			release(dataSource, runId);
+		}
+		long elapsedNanos = System.nanoTime() - start;
+		return DispatchReport.builder()
+				.dueTasks(dueTasks)
+				.digestsSent(total.sent.get())
+				.digestsFailed(total.failed.get())
+				.tasksMarkedSent(tasksMarkedSent.get())
+				.retries(total.retries.get())
+				.elapsedMillis(elapsedNanos / 1_000_000)
+				.messagesPerSecond(elapsedNanos == 0 ? 0 : total.sent.get() * 1e9 / elapsedNanos)
+				.build();
+	}
+
+	/*
+	 * Claims the emails that are due and neither sent nor claimed by another run. INSERT IGNORE
+	 * skips the emails whose row was inserted in the meantime by another run, so every email is
+	 * claimed by exactly one run. A task is due once its date has come and, on that date, once
+	 * the time to send the notifications of its entry has passed.
+	 */
+	private static String claimQuery() {
+		return "INSERT IGNORE INTO task_emails (task_id, user_id, claimed_by, claimed_at) "
+				+ "SELECT T.task_id, LM.user_id, ?, ? "
+				+ "FROM tasks T "
+				+ "JOIN assessments A ON T.task_belongs_to_assessment = A.assessment_id "
+				+ "JOIN modules M ON A.assessment_belongsTo_module = M.module_id "
+				+ "JOIN settings S ON S.entry_FK = M.module_belongsTo_entry "
+				+ "JOIN lecturer_modules LM ON LM.module_id = M.module_id AND LM.lecturer_role = 'PRIMARY' "
+				+ "JOIN users U ON U.user_id = LM.user_id "
+				+ "WHERE T.isCompleted = 0 AND T.email_sent_at IS NULL "
+				+ "AND (T.date_to_send < ? OR (T.date_to_send = ? "
+				+ "AND (S.time_to_send_notif IS NULL OR S.time_to_send_notif <= ?))) "
+				+ "AND U.email IS NOT NULL AND U.email <> '' "
+				+ "AND NOT EXISTS (SELECT 1 FROM task_emails E WHERE E.task_id = T.task_id AND E.user_id = LM.user_id)";
+	}
+
+	/*
+	 * The pages of the emails claimed by a run, read with the (email, task_id) of the last row
+	 * of the previous page.
+	 */
+	private static String claimedEmailsQuery() {
+		return "SELECT U.email, T.task_id, T.task_description, T.date_to_send, "
+				+ "M.module_name, M.curriculum, A.assessment_type "
+				+ "FROM task_emails E "
+				+ "JOIN tasks T ON T.task_id = E.task_id "
+				+ "JOIN assessments A ON T.task_belongs_to_assessment = A.assessment_id "
+				+ "JOIN modules M ON A.assessment_belongsTo_module = M.module_id "
+				+ "JOIN users U ON U.user_id = E.user_id "
+				+ "WHERE E.claimed_by = ? AND E.sent_at IS NULL AND T.isCompleted = 0 "
+				+ "AND U.email IS NOT NULL AND U.email <> '' "
+				+ "AND (U.email > ? OR (U.email = ? AND T.task_id > ?)) "
+				+ "ORDER BY U.email, T.task_id "
+				+ "LIMIT ?";
+	}
+
+	/**
+	 * Claims the due emails for a run, along with the emails that were released by a previous
+	 * run and the emails that were claimed by a run that did not send them within
+	 * claim-timeout-minutes (e.g. because its instance stopped).
+	 * @param connection The connection.
+	 * @param runId The id of the run.
+	 * @param now The time that the run started.
+	 * @throws SQLException If the emails could not be claimed.
+	 */
+	private void claim(Connection connection, String runId, LocalDateTime now) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(
+				"UPDATE task_emails SET claimed_by = ?, claimed_at = ? "
+				+ "WHERE sent_at IS NULL AND (claimed_by = ? OR claimed_at < ?)")) {
+			statement.setString(1, runId);
+			statement.setTimestamp(2, Timestamp.valueOf(now));
+			statement.setString(3, RELEASED);
+			statement.setTimestamp(4, Timestamp.valueOf(now.minusMinutes(claimTimeoutMinutes)));
+			statement.executeUpdate();
+		}
+		try (PreparedStatement statement = connection.prepareStatement(claimQuery())) {
+			java.sql.Date today = java.sql.Date.valueOf(now.toLocalDate());
+			statement.setString(1, runId);
+			statement.setTimestamp(2, Timestamp.valueOf(now));
+			statement.setDate(3, today);
+			statement.setDate(4, today);
+			statement.setString(5, LocalTime.from(now).format(TIME_TO_SEND));
+			statement.executeUpdate();
+		}
+	}
+
+	/**
+	 * Releases the emails that a run claimed but did not send (because they failed, or their
+	 * task was completed in the meantime), so that the next run claims them again. Their rows
+	 * are kept (with the time that they were claimed), as the record of a failed attempt.
+	 * @param dataSource The data source.
+	 * @param runId The id of the run.
+	 */
+	private static void release(DataSource dataSource, String runId) {
+		try (Connection connection = dataSource.getConnection();
+			 PreparedStatement statement = connection.prepareStatement(
+				"UPDATE task_emails SET claimed_by = ? WHERE claimed_by = ? AND sent_at IS NULL")) {
+			statement.setString(1, RELEASED);
+			statement.setString(2, runId);
+			statement.executeUpdate();
+		} catch (SQLException e) {
+			// the claims are taken over by another run once they time out
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Marks the emails of digests that were sent as sent, and then marks the tasks that
+	 * have been sent to all of their lecturers as sent.
+	 * @param dataSource The data source.
+	 * @param runId The id of the run, which claimed the emails.
+	 * @param digests The digests that were sent.
+	 * @param now The time that the run started, which is stored as the time that the
+	 * tasks were sent.
+	 * @return The number of tasks that were marked as sent.
+	 */
+	private int markAsSent(DataSource dataSource, String runId, List<TaskDigest> digests, LocalDateTime now) {
+		Set<Integer> taskIds = new LinkedHashSet<Integer>();
+		try (Connection connection = dataSource.getConnection()) {
+			for (TaskDigest digest : digests) {
+				try (PreparedStatement statement = connection.prepareStatement(
+						"UPDATE task_emails SET sent_at = ? WHERE claimed_by = ? AND sent_at IS NULL "
+						+ "AND user_id IN (SELECT user_id FROM users WHERE email = ?) AND task_id IN ("
+						+ LecturerServices.placeholders(digest.getTasks().size()) + ")")) {
+					statement.setTimestamp(1, Timestamp.valueOf(now));
+					statement.setString(2, runId);
+					statement.setString(3, digest.getRecipient());
+					for (int i = 0; i < digest.getTasks().size(); i++) {
+						int taskId = digest.getTasks().get(i).getTaskId();
+						statement.setInt(i + 4, taskId);
+						taskIds.add(taskId);
+					}
+					statement.executeUpdate();
+				}
+			}
+			try (PreparedStatement statement = connection.prepareStatement(
+					"UPDATE tasks SET email_sent_at = ? WHERE email_sent_at IS NULL AND task_id IN ("
+					+ LecturerServices.placeholders(taskIds.size()) + ") AND NOT EXISTS "
+					+ "(SELECT 1 FROM task_emails E WHERE E.task_id = tasks.task_id AND E.sent_at IS NULL)")) {
+				statement.setTimestamp(1, Timestamp.valueOf(now));
+				int i = 2;
+				for (Integer taskId : taskIds) {
+					statement.setInt(i++, taskId);
+				}
+				return statement.executeUpdate();
+			}
+		} catch (SQLException e) {
+			// the digests were already sent, so the failure is only reported
+			e.printStackTrace();
+			return 0;
+		}
+	}
+
+}
@@ -0,0 +1,295 @@
+package com.wisetasklecturer.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import com.wisetasklecturer.entities.DispatchReport;
+
+/**
+ * Schedules the sending of the emails of the pending tasks, at the time that every one of
+ * them is due (its date to send, at the time to send the notifications of its entry).
+ *
+ * All the tasks are held by a single {@link TimingWheel}, so thousands of pending tasks do
+ * not need thousands of timers (or threads). When a task is due, a run of the
+ * {@link TaskEmailDispatcher} is requested; the runs are executed one at a time on a
+ * separate thread, and the tasks that are due while a run is executing are all sent by
+ * a single run after it. The pending tasks are loaded from the tasks table at startup and
+ * then again every reload-minutes, so that the tasks created by the other microservices are
+ * scheduled as well. A reloaded task that is already due starts a run, unless the last run
+ * attempted it and could not send it (its emails were released, see
+ * {@link TaskEmailDispatcher}); it is sent by the next run instead, so a task that keeps
+ * failing does not start a run on every reload.
+ *
+ * Every instance of the service runs its own scheduler, so the instances start their runs
+ * at about the same time; the runs never send an email twice, since every email is claimed
+ * by a single run (see {@link TaskEmailDispatcher}), and the runs that find nothing to claim
+ * finish without sending anything.
+ * @author Theofanis Gkoufas
+ *
+ */
+@Component
+public class TaskSendScheduler {
+
+	private static final String PENDING_TASKS = "SELECT T.task_id, T.date_to_send, S.time_to_send_notif, "
+			// whether a run has attempted (or is attempting) to send the task
+			+ "EXISTS (SELECT 1 FROM task_emails E WHERE E.task_id = T.task_id AND E.sent_at IS NULL) "
+			+ "FROM tasks T "
+			+ "JOIN assessments A ON T.task_belongs_to_assessment = A.assessment_id "
+			+ "JOIN modules M ON A.assessment_belongsTo_module = M.module_id "
+			+ "JOIN settings S ON S.entry_FK = M.module_belongsTo_entry "
+			+ "WHERE T.isCompleted = 0 AND T.email_sent_at IS NULL "
+			// only the tasks that can be sent, i.e. that have a primary lecturer with an email
+			// address who has not been sent the task yet
+			+ "AND EXISTS (SELECT 1 FROM lecturer_modules LM JOIN users U ON U.user_id = LM.user_id "
+			+ "WHERE LM.module_id = M.module_id AND LM.lecturer_role = 'PRIMARY' "
+			+ "AND U.email IS NOT NULL AND U.email <> '' "
+			+ "AND NOT EXISTS (SELECT 1 FROM task_emails E WHERE E.task_id = T.task_id "
+			+ "AND E.user_id = LM.user_id AND E.sent_at IS NOT NULL))";
+
+	@Autowired
+	ApplicationContext context;
+
+	@Autowired
+	DigestSender digestSender;
+
+	@Autowired
+	TaskEmailDispatcher taskEmailDispatcher;
+
+	@Value("${wisetask.scheduler.enabled:true}")
+	private boolean enabled;
+
+	@Value("${wisetask.scheduler.tick-millis:1000}")
+	private long tickMillis;
+
+	@Value("${wisetask.scheduler.wheel-size:512}")
+	private int wheelSize;
+
+	@Value("${wisetask.scheduler.reload-minutes:15}")
+	private long reloadMinutes;
+
+	@Value("${wisetask.streaming.fetch-size:500}")
+	private int fetchSize;
+
+	private volatile TimingWheel wheel;
+
+	/*
+	 * Runs the dispatcher and the reloads of the pending tasks, so that the thread of the
+	 * wheel never waits for the database or the mail server.
+	 */
+	private ExecutorService worker;
+
+	private final Map<Integer, Scheduled> scheduledTasks = new ConcurrentHashMap<Integer, Scheduled>();
+
+	private final AtomicBoolean dispatchRequested = new AtomicBoolean();
+
+	private final LongAdder dispatchRuns = new LongAdder();
+
+	private final LongAdder dispatchFailures = new LongAdder();
+
+	private final LongAdder skippedTasks = new LongAdder();
+
+	private volatile DispatchReport lastReport;
+
+	/**
+	 * Starts the scheduler once the application has started, if a mail server is configured.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		if (!enabled || !digestSender.isConfigured()) {
+			return;
+		}
+		worker = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("task-dispatch-"));
+		wheel = new TimingWheel(tickMillis, wheelSize, "task-scheduler");
+		worker.execute(this::reload);
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (wheel != null) {
+			wheel.close();
+			worker.shutdownNow();
+		}
+	}
+
+	/**
+	 * Schedules newly created (or imported) tasks; the tasks that are already due are sent
+	 * right away. The tasks created by the other microservices are scheduled by the next reload.
+	 * @param taskIds The ids of the tasks.
+	 */
+	public void scheduleTasks(List<Integer> taskIds) {
+		if (wheel == null || taskIds.isEmpty()) {
+			return;
+		}
+		worker.execute(() -> load(PENDING_TASKS + " AND T.task_id IN ("
+				+ LecturerServices.placeholders(taskIds.size()) + ")", taskIds, null));
+	}
+
+	/**
+	 * Cancels the sending of tasks, e.g. because they have been completed.
+	 * @param taskIds The ids of the tasks.
+	 */
+	public void cancelTasks(Collection<Integer> taskIds) {
+		for (Integer taskId : taskIds) {
+			Scheduled scheduled = scheduledTasks.remove(taskId);
+			if (scheduled != null && scheduled.timeout != null) {
+				scheduled.timeout.cancel();
+			}
+		}
+	}
+
+	private void reload() {
+		try {
+			load(PENDING_TASKS, Collections.emptyList(), taskEmailDispatcher.getLastRunStartedAt());
+		} finally {
+			wheel.schedule(() -> worker.execute(this::reload), reloadMinutes, TimeUnit.MINUTES);
+		}
+	}
+
+	/**
+	 * Loads pending tasks and schedules them.
+	 * @param sql The query of the tasks.
+	 * @param taskIds The parameters of the query.
+	 * @param lastRunStartedAt The time that the last run of the dispatcher started, so that
+	 * the tasks that were already due at that time and were attempted by a run are skipped,
+	 * or null to send all the due tasks (e.g. because they are new).
+	 */
+	private void load(String sql, List<Integer> taskIds, LocalDateTime lastRunStartedAt) {
+		DataSource dataSource = context.getBean(DataSource.class);
+		LocalDateTime now = LocalDateTime.now();
+		boolean due = false;
+		try (Connection connection = dataSource.getConnection();
+			 PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setFetchSize(fetchSize);
+			for (int i = 0; i < taskIds.size(); i++) {
+				statement.setInt(i + 1, taskIds.get(i));
+			}
+			try (ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {
+					LocalDateTime sendAt = resultSet.getDate(2).toLocalDate().atTime(parseTime(resultSet.getString(3)));
+					if (lastRunStartedAt != null && !sendAt.isAfter(lastRunStartedAt) && resultSet.getBoolean(4)) {
+						skippedTasks.increment();
+					} else if (!sendAt.isAfter(now)) {
+						// e.g. a task that was imported or created by another service after its time
+						due = true;
+					} else {
+						schedule(resultSet.getInt(1), sendAt);
+					}
+				}
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		if (due) {
+			requestDispatch();
+		}
+	}
+
+	private void schedule(int taskId, LocalDateTime sendAt) {
+		Scheduled current = scheduledTasks.get(taskId);
+		if (current != null && current.sendAt.equals(sendAt)) {
+			return;
+		}
+		Scheduled scheduled = new Scheduled(sendAt);
+		Scheduled previous = scheduledTasks.put(taskId, scheduled);
+		if (previous != null && previous.timeout != null) {
+			previous.timeout.cancel();
+		}
+		long delayMillis = Duration.between(LocalDateTime.now(), sendAt).toMillis();
+		scheduled.timeout = wheel.schedule(() -> {
+			scheduledTasks.remove(taskId, scheduled);
+			requestDispatch();
+		}, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private static LocalTime parseTime(String timeToSend) {
+		if (timeToSend == null || timeToSend.trim().isEmpty()) {
+			return LocalTime.MIDNIGHT;
+		}
+		try {
+			return LocalTime.parse(timeToSend.trim());
+		} catch (DateTimeParseException e) {
+			return LocalTime.MIDNIGHT;
+		}
+	}
+
+	/*
+	 * Many tasks are usually due at the same time, so a run is only submitted if there is
+	 * no run waiting to start already.
+	 */
+	private void requestDispatch() {
+		if (dispatchRequested.compareAndSet(false, true)) {
+			worker.execute(() -> {
+				dispatchRequested.set(false);
+				dispatchRuns.increment();
+				try {
+					lastReport = taskEmailDispatcher.dispatchDueTasks();
+				} catch (RuntimeException e) {
+					dispatchFailures.increment();
+					e.printStackTrace();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Creates a snapshot of the statistics of the scheduler.
+	 * @return A map containing the statistics of the timing wheel (the number of pending
+	 * tasks and the schedule lag), the number of reloaded tasks that were skipped because
+	 * the last run could not send them, and the statistics of the runs of the dispatcher.
+	 */
+	public Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+		TimingWheel currentWheel = wheel;
+		snapshot.put("running", currentWheel != null);
+		snapshot.put("scheduledTasks", scheduledTasks.size());
+		snapshot.put("skippedTasks", skippedTasks.sum());
+		if (currentWheel != null) {
+			snapshot.put("wheel", currentWheel.snapshot());
+		}
+		snapshot.put("dispatchRuns", dispatchRuns.sum());
+		snapshot.put("dispatchFailures", dispatchFailures.sum());
+		snapshot.put("lastReport", lastReport);
+		return snapshot;
+	}
+
+	/**
+	 * The time that a task is scheduled for, along with its action on the wheel.
+	 */
+	private static final class Scheduled {
+
+		private final LocalDateTime sendAt;
+
+		private volatile TimingWheel.Timeout timeout;
+
+		private Scheduled(LocalDateTime sendAt) {
+			this.sendAt = sendAt;
+		}
+
+	}
+
+}
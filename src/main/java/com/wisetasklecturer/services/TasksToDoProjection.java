@@ -0,0 +1,237 @@
+package com.wisetasklecturer.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import com.wisetasklecturer.entities.TaskToDo;
+
+/**
+ * An in-memory copy (projection) of the to-do tasks of the lecturers, so that the to-do
+ * tasks can be served without querying the database every time.
+ *
+ * The tasks of a lecturer are loaded from the database the first time that they are
+ * requested, and then they are updated by this service every time that it adds or
+ * completes tasks. Since the tasks may also be changed by the other microservices, the
+ * tasks of a lecturer are loaded again from the database (reconciled) when they are older
+ * than reconcile-seconds. Only the tasks of the most recently used lecturers are kept.
+ * @author Theofanis Gkoufas
+ *
+ */
+@Component
+public class TasksToDoProjection {
+
+	/**
+	 * The order of the to-do tasks; by the date that they should be sent and then by their id.
+	 */
+	public static final Comparator<TaskToDo> ORDER =
+			Comparator.comparing(TaskToDo::getDateToSend).thenComparingInt(TaskToDo::getTaskId);
+
+	@Value("${wisetask.projection.enabled:true}")
+	private boolean enabled;
+
+	@Value("${wisetask.projection.maximum-lecturers:1000}")
+	private int maximumLecturers;
+
+	@Value("${wisetask.projection.reconcile-seconds:120}")
+	private long reconcileSeconds;
+
+	/*
+	 * Ordered by access, so the least recently used lecturer is evicted first. All the
+	 * accesses are synchronized on the map itself.
+	 */
+	private final Map<Integer, LecturerTasks> projections = new LinkedHashMap<Integer, LecturerTasks>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, LecturerTasks> eldest) {
+			boolean full = size() > maximumLecturers;
+			if (full) {
+				evictions.increment();
+			}
+			return full;
+		}
+	};
+
+	/*
+	 * Counts the modifications of the projections, so that we know whether the tasks
+	 * changed while they were being loaded from the database.
+	 */
+	private final AtomicLong modifications = new AtomicLong();
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder loads = new LongAdder();
+
+	private final LongAdder failedLoads = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @return Whether the to-do tasks should be served from the projection.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Retrieves the to-do tasks of a lecturer, loading them if they are not in the projection
+	 * or if they should be reconciled with the database.
+	 * @param lecturerID The id of the lecturer.
+	 * @param loader Loads the to-do tasks of the lecturer from the database, throwing an
+	 * exception if they could not be loaded (in which case nothing is kept in the projection,
+	 * and the next request loads them again).
+	 * @return The to-do tasks of the lecturer (in the order of {@link #ORDER}), which must
+	 * not be modified.
+	 */
+	public List<TaskToDo> get(int lecturerID, Supplier<List<TaskToDo>> loader) {
+		long now = System.nanoTime();
+		LecturerTasks current;
+		synchronized (projections) {
+			current = projections.get(lecturerID);
+		}
+		if (current != null && now - current.loadedAt < reconcileNanos()) {
+			hits.increment();
+			return current.tasks;
+		}
+		long modificationsBefore = modifications.get();
+		List<TaskToDo> tasks;
+		try {
+			tasks = sorted(loader.get());
+		} catch (RuntimeException e) {
+			failedLoads.increment();
+			throw e;
+		}
+		loads.increment();
+		// if the projection was modified in the meantime the loaded tasks might miss that
+		// modification, so they are loaded again on the next request
+		long loadedAt = modifications.get() == modificationsBefore ? now : now - reconcileNanos();
+		synchronized (projections) {
+			projections.put(lecturerID, new LecturerTasks(tasks, loadedAt));
+		}
+		return tasks;
+	}
+
+	/**
+	 * Adds new to-do tasks to the projections of the lecturers that are loaded (the rest
+	 * will find them once their tasks are loaded from the database).
+	 * @param tasksOfLecturers The new to-do tasks of each lecturer.
+	 */
+	public void add(Map<Integer, List<TaskToDo>> tasksOfLecturers) {
+		modifications.incrementAndGet();
+		synchronized (projections) {
+			for (Map.Entry<Integer, List<TaskToDo>> newTasks : tasksOfLecturers.entrySet()) {
+				LecturerTasks current = projections.get(newTasks.getKey());
+				if (current != null) {
+					List<TaskToDo> tasks = new ArrayList<TaskToDo>(current.tasks);
+					tasks.addAll(newTasks.getValue());
+					projections.put(newTasks.getKey(), new LecturerTasks(sorted(tasks), current.loadedAt));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes tasks (e.g. because they are completed) from all the projections.
+	 * @param taskIds The ids of the tasks.
+	 */
+	public void remove(Collection<Integer> taskIds) {
+		Set<Integer> removed = new HashSet<Integer>(taskIds);
+		modifications.incrementAndGet();
+		synchronized (projections) {
+			for (Map.Entry<Integer, LecturerTasks> projection : projections.entrySet()) {
+				List<TaskToDo> current = projection.getValue().tasks;
+				if (current.stream().anyMatch(task -> removed.contains(task.getTaskId()))) {
+					List<TaskToDo> tasks = new ArrayList<TaskToDo>(current);
+					tasks.removeIf(task -> removed.contains(task.getTaskId()));
+					projection.setValue(new LecturerTasks(Collections.unmodifiableList(tasks),
+														  projection.getValue().loadedAt));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return Whether the projection does not contain the tasks of any lecturer.
+	 */
+	public boolean isEmpty() {
+		synchronized (projections) {
+			return projections.isEmpty();
+		}
+	}
+
+	/**
+	 * Removes the tasks of all the lecturers, so that they are loaded again from the database.
+	 */
+	public void invalidateAll() {
+		modifications.incrementAndGet();
+		synchronized (projections) {
+			projections.clear();
+		}
+	}
+
+	/**
+	 * Creates a snapshot of the projection statistics.
+	 * @return A map containing the number of lecturers in the projection, the number of
+	 * requests served from the projection and the number of (failed) loads from the database.
+	 */
+	public Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+		int lecturers;
+		int tasks = 0;
+		synchronized (projections) {
+			lecturers = projections.size();
+			for (LecturerTasks projection : projections.values()) {
+				tasks += projection.tasks.size();
+			}
+		}
+		snapshot.put("enabled", enabled);
+		snapshot.put("lecturers", lecturers);
+		snapshot.put("maximumLecturers", maximumLecturers);
+		snapshot.put("tasks", tasks);
+		snapshot.put("hits", hits.sum());
+		snapshot.put("loads", loads.sum());
+		snapshot.put("failedLoads", failedLoads.sum());
+		snapshot.put("evictions", evictions.sum());
+		return snapshot;
+	}
+
+	private long reconcileNanos() {
+		return TimeUnit.SECONDS.toNanos(reconcileSeconds);
+	}
+
+	private static List<TaskToDo> sorted(List<TaskToDo> tasks) {
+		List<TaskToDo> sorted = new ArrayList<TaskToDo>(tasks);
+		sorted.sort(ORDER);
+		return Collections.unmodifiableList(sorted);
+	}
+
+	/**
+	 * The to-do tasks of a lecturer along with the time that they were loaded from the database.
+	 */
+	private static class LecturerTasks {
+
+		private final List<TaskToDo> tasks;
+
+		private final long loadedAt;
+
+		private LecturerTasks(List<TaskToDo> tasks, long loadedAt) {
+			this.tasks = tasks;
+			this.loadedAt = loadedAt;
+		}
+
+	}
+
+}
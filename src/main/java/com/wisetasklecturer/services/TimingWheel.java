@@ -0,0 +1,202 @@
+package com.wisetasklecturer.services;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * A hashed timing wheel, which holds any number of pending actions with a single thread.
+ *
+ * The wheel is made of wheel-size buckets, and the thread moves to the next bucket every
+ * tick. An action is put in the bucket of the tick that it is due, along with the number of
+ * rounds of the wheel that should pass before it is run, so scheduling and cancelling an
+ * action take constant time no matter how many actions are pending. The actions are run on
+ * the thread of the wheel, so they should only hand their work over to another thread, and
+ * an action that throws an exception does not affect the rest of them.
+ * @author Theofanis Gkoufas
+ *
+ */
+public final class TimingWheel implements AutoCloseable {
+
+	private final long tickNanos;
+
+	private final List<Set<Timeout>> buckets;
+
+	private final ScheduledExecutorService ticker;
+
+	private final long startNanos = System.nanoTime();
+
+	/*
+	 * The number of ticks that have been processed; along with the buckets it is guarded
+	 * by the lock.
+	 */
+	private long tick;
+
+	private int pending;
+
+	private final Object lock = new Object();
+
+	private final LongAdder expired = new LongAdder();
+
+	private final LongAdder failed = new LongAdder();
+
+	private final LongAdder totalLagNanos = new LongAdder();
+
+	private volatile long lastLagNanos;
+
+	private volatile long maxLagNanos;
+
+	/**
+	 * Creates a timing wheel and starts its thread.
+	 * @param tickMillis The duration of a tick, which is the precision of the wheel.
+	 * @param wheelSize The number of buckets.
+	 * @param threadName The name of the thread of the wheel.
+	 */
+	public TimingWheel(long tickMillis, int wheelSize, String threadName) {
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+		this.buckets = new ArrayList<Set<Timeout>>(wheelSize);
+		for (int i = 0; i < wheelSize; i++) {
+			buckets.add(new LinkedHashSet<Timeout>());
+		}
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(threadName + "-");
+		threadFactory.setDaemon(true);
+		this.ticker = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Schedules an action.
+	 * @param action The action, which should return quickly.
+	 * @param delay The time after which the action should run (a negative delay runs the
+	 * action on the next tick).
+	 * @param unit The unit of the delay.
+	 * @return The scheduled action, which can be cancelled.
+	 */
+	public Timeout schedule(Runnable action, long delay, TimeUnit unit) {
+		long deadlineNanos = System.nanoTime() + Math.max(0, unit.toNanos(delay));
+		// tick t is processed once (t + 1) ticks have passed since the start of the wheel
+		long deadlineTick = (deadlineNanos - startNanos + tickNanos - 1) / tickNanos - 1;
+		Timeout timeout = new Timeout(action, deadlineNanos);
+		synchronized (lock) {
+			long targetTick = Math.max(tick, deadlineTick);
+			timeout.rounds = (targetTick - tick) / buckets.size();
+			timeout.bucket = buckets.get((int) (targetTick % buckets.size()));
+			timeout.bucket.add(timeout);
+			pending++;
+		}
+		return timeout;
+	}
+
+	private void tick() {
+		List<Timeout> expiredTimeouts = new ArrayList<Timeout>();
+		synchronized (lock) {
+			Set<Timeout> bucket = buckets.get((int) (tick % buckets.size()));
+			for (Iterator<Timeout> timeouts = bucket.iterator(); timeouts.hasNext();) {
+				Timeout timeout = timeouts.next();
+				if (timeout.rounds == 0) {
+					timeouts.remove();
+					timeout.bucket = null;
+					pending--;
+					expiredTimeouts.add(timeout);
+				} else {
+					timeout.rounds--;
+				}
+			}
+			tick++;
+		}
+		long now = System.nanoTime();
+		for (Timeout timeout : expiredTimeouts) {
+			long lagNanos = Math.max(0, now - timeout.deadlineNanos);
+			lastLagNanos = lagNanos;
+			maxLagNanos = Math.max(maxLagNanos, lagNanos);
+			totalLagNanos.add(lagNanos);
+			expired.increment();
+			try {
+				timeout.action.run();
+			} catch (RuntimeException | Error e) {
+				// an exception must not stop the thread of the wheel (and the rest of the actions)
+				failed.increment();
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * @return The number of actions that are waiting to run.
+	 */
+	public int getPending() {
+		synchronized (lock) {
+			return pending;
+		}
+	}
+
+	/**
+	 * Creates a snapshot of the statistics of the wheel.
+	 * @return A map containing the number of pending/expired actions and the lag between the
+	 * time that the actions were due and the time that they ran.
+	 */
+	public Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+		long expiredCount = expired.sum();
+		snapshot.put("pending", getPending());
+		snapshot.put("expired", expiredCount);
+		snapshot.put("failed", failed.sum());
+		snapshot.put("tickMillis", TimeUnit.NANOSECONDS.toMillis(tickNanos));
+		snapshot.put("wheelSize", buckets.size());
+		snapshot.put("lastLagMillis", lastLagNanos / 1e6);
+		snapshot.put("maxLagMillis", maxLagNanos / 1e6);
+		snapshot.put("averageLagMillis", expiredCount == 0 ? 0.0 : totalLagNanos.sum() / 1e6 / expiredCount);
+		return snapshot;
+	}
+
+	@Override
+	public void close() {
+		ticker.shutdownNow();
+	}
+
+	/**
+	 * An action that is scheduled on the wheel.
+	 */
+	public final class Timeout {
+
+		private final Runnable action;
+
+		private final long deadlineNanos;
+
+		private long rounds;
+
+		private Set<Timeout> bucket;
+
+		private Timeout(Runnable action, long deadlineNanos) {
+			this.action = action;
+			this.deadlineNanos = deadlineNanos;
+		}
+
+		/**
+		 * Cancels the action, if it has not run yet.
+		 * @return Whether the action was cancelled.
+		 */
+		public boolean cancel() {
+			synchronized (lock) {
+				if (bucket == null) {
+					return false;
+				}
+				bucket.remove(this);
+				bucket = null;
+				pending--;
+				return true;
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,191 @@
+package com.wisetasklecturer.services;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import com.wisetasklecturer.entities.User;
+
+/**
+ * An in-process cache for the users that are retrieved from the users microservice.
+ * A lecturer's details almost never change, so instead of calling the users service
+ * on every request we keep the user for a limited amount of time (ttl). The cache is
+ * bounded, when it grows beyond its maximum size the entries that expire first are evicted.
+ *
+ * Concurrent requests for a user that is not cached share a single call to the users
+ * service; the first thread performs the call while the rest wait for its result.
+ * @author Theofanis Gkoufas
+ *
+ */
+@Component
+public class UserCache {
+
+	@Value("${wisetask.user-cache.ttl-seconds:300}")
+	private long ttlSeconds;
+
+	@Value("${wisetask.user-cache.maximum-size:1000}")
+	private int maximumSize;
+
+	private final Map<Integer, CachedUser> cache = new ConcurrentHashMap<Integer, CachedUser>();
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder loadFailures = new LongAdder();
+
+	private final LongAdder totalLoadNanos = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Retrieves a user from the cache, or loads it using the given loader if it is not
+	 * cached (or if it has expired).
+	 * @param userId The id of the user that we want to get.
+	 * @param loader The function that retrieves the user when it is not cached.
+	 * @return The user whose id matches the one given as an argument.
+	 */
+	public User get(int userId, IntFunction<User> loader) {
+		while (true) {
+			long now = System.nanoTime();
+			CachedUser current = cache.get(userId);
+			if (current != null && !current.isExpired(now)) {
+				hits.increment();
+				return await(current.user);
+			}
+			CachedUser loading = new CachedUser();
+			boolean owner = current == null ? cache.putIfAbsent(userId, loading) == null
+											: cache.replace(userId, current, loading);
+			if (!owner) {
+				// another thread started loading the same user, so we wait for that one instead
+				continue;
+			}
+			misses.increment();
+			evictIfFull();
+			return load(userId, loading, loader);
+		}
+	}
+
+	private User load(int userId, CachedUser loading, IntFunction<User> loader) {
+		long start = System.nanoTime();
+		User user;
+		try {
+			user = loader.apply(userId);
+		} catch (RuntimeException e) {
+			loadFailures.increment();
+			cache.remove(userId, loading);
+			loading.user.completeExceptionally(e);
+			throw e;
+		} finally {
+			totalLoadNanos.add(System.nanoTime() - start);
+		}
+		loading.expiresAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds);
+		if (user == null) {
+			cache.remove(userId, loading);
+		}
+		loading.user.complete(user);
+		return user;
+	}
+
+	private User await(CompletableFuture<User> user) {
+		try {
+			return user.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Removes the expired users and, if the cache is still full, the users that
+	 * would expire first, until a tenth of the capacity is free again.
+	 */
+	private void evictIfFull() {
+		if (cache.size() <= maximumSize) {
+			return;
+		}
+		long now = System.nanoTime();
+		cache.entrySet().removeIf(entry -> {
+			boolean expired = entry.getValue().isExpired(now);
+			if (expired) {
+				evictions.increment();
+			}
+			return expired;
+		});
+		int excess = cache.size() - (maximumSize - maximumSize / 10);
+		if (excess > 0) {
+			cache.entrySet().stream()
+					.filter(entry -> entry.getValue().user.isDone())
+					.sorted(Comparator.comparingLong(entry -> entry.getValue().expiresAt))
+					.limit(excess)
+					.forEach(entry -> {
+						if (cache.remove(entry.getKey(), entry.getValue())) {
+							evictions.increment();
+						}
+					});
+		}
+	}
+
+	/**
+	 * Removes a user from the cache, so that the next request retrieves it again from
+	 * the users service.
+	 * @param userId The id of the user that should be removed.
+	 */
+	public void invalidate(int userId) {
+		cache.remove(userId);
+	}
+
+	/**
+	 * Removes all the users from the cache.
+	 */
+	public void invalidateAll() {
+		cache.clear();
+	}
+
+	/**
+	 * Creates a snapshot of the cache statistics.
+	 * @return A map containing the hits, misses and the time spent loading users.
+	 */
+	public Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+		long hitCount = hits.sum();
+		long missCount = misses.sum();
+		snapshot.put("size", cache.size());
+		snapshot.put("maximumSize", maximumSize);
+		snapshot.put("ttlSeconds", ttlSeconds);
+		snapshot.put("hits", hitCount);
+		snapshot.put("misses", missCount);
+		snapshot.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+		snapshot.put("loadFailures", loadFailures.sum());
+		snapshot.put("averageLoadMillis", missCount == 0 ? 0.0
+				: (double) TimeUnit.NANOSECONDS.toMicros(totalLoadNanos.sum()) / missCount / 1000);
+		snapshot.put("evictions", evictions.sum());
+		return snapshot;
+	}
+
+	/**
+	 * A cached user. Until the user is loaded the entry never expires, so that all the
+	 * concurrent requests wait for the same call.
+	 */
+	private static class CachedUser {
+
+		private final CompletableFuture<User> user = new CompletableFuture<User>();
+
+		private volatile long expiresAt = Long.MAX_VALUE;
+
+		private boolean isExpired(long now) {
+			return user.isDone() && now - expiresAt >= 0;
+		}
+
+	}
+
+}
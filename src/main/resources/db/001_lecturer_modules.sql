@@ -0,0 +1,98 @@
+-- Normalized association between the lecturers (users) and the modules that they teach
+-- or moderate. The lecturer operations query this table by user_id instead of matching
+-- modules.primary_lecturer with LIKE '%username%', which required a full scan of the
+-- modules and could match a lecturer whose username contains another one's.
+--
+-- modules.primary_lecturer and modules.moderator_lecturer hold a username (or a comma
+-- separated list of usernames). The table is kept in sync with these columns by the
+-- triggers below, so it stays correct no matter which microservice edits the modules.
+--
+-- Run with the mysql client against the catmms schema, e.g.
+--   mysql -u newuser -p catmms < 001_lecturer_modules.sql
+
+CREATE TABLE IF NOT EXISTS lecturer_modules (
+	user_id INT NOT NULL,
+	module_id INT NOT NULL,
+	lecturer_role ENUM('PRIMARY', 'MODERATOR') NOT NULL,
+	PRIMARY KEY (user_id, lecturer_role, module_id),
+	KEY idx_lecturer_modules_module (module_id),
+	CONSTRAINT fk_lecturer_modules_user FOREIGN KEY (user_id)
+		REFERENCES users (user_id) ON DELETE CASCADE,
+	CONSTRAINT fk_lecturer_modules_module FOREIGN KEY (module_id)
+		REFERENCES modules (module_id) ON DELETE CASCADE
+);
+
+-- Migration of the existing data
+INSERT IGNORE INTO lecturer_modules (user_id, module_id, lecturer_role)
+SELECT U.user_id, M.module_id, 'PRIMARY'
+FROM modules M
+JOIN users U ON FIND_IN_SET(U.username, REPLACE(M.primary_lecturer, ' ', '')) > 0;
+
+INSERT IGNORE INTO lecturer_modules (user_id, module_id, lecturer_role)
+SELECT U.user_id, M.module_id, 'MODERATOR'
+FROM modules M
+JOIN users U ON FIND_IN_SET(U.username, REPLACE(M.moderator_lecturer, ' ', '')) > 0;
+
+DELIMITER //
+
+DROP TRIGGER IF EXISTS modules_lecturers_after_insert //
+CREATE TRIGGER modules_lecturers_after_insert AFTER INSERT ON modules
+FOR EACH ROW
+BEGIN
+	INSERT IGNORE INTO lecturer_modules (user_id, module_id, lecturer_role)
+	SELECT U.user_id, NEW.module_id, 'PRIMARY' FROM users U
+	WHERE FIND_IN_SET(U.username, REPLACE(NEW.primary_lecturer, ' ', '')) > 0;
+	INSERT IGNORE INTO lecturer_modules (user_id, module_id, lecturer_role)
+	SELECT U.user_id, NEW.module_id, 'MODERATOR' FROM users U
+	WHERE FIND_IN_SET(U.username, REPLACE(NEW.moderator_lecturer, ' ', '')) > 0;
+END //
+
+DROP TRIGGER IF EXISTS modules_lecturers_after_update //
+CREATE TRIGGER modules_lecturers_after_update AFTER UPDATE ON modules
+FOR EACH ROW
+BEGIN
+	IF NOT (NEW.primary_lecturer <=> OLD.primary_lecturer) THEN
+		DELETE FROM lecturer_modules
+		WHERE module_id = NEW.module_id AND lecturer_role = 'PRIMARY';
+		INSERT IGNORE INTO lecturer_modules (user_id, module_id, lecturer_role)
+		SELECT U.user_id, NEW.module_id, 'PRIMARY' FROM users U
+		WHERE FIND_IN_SET(U.username, REPLACE(NEW.primary_lecturer, ' ', '')) > 0;
+	END IF;
+	IF NOT (NEW.moderator_lecturer <=> OLD.moderator_lecturer) THEN
+		DELETE FROM lecturer_modules
+		WHERE module_id = NEW.module_id AND lecturer_role = 'MODERATOR';
+		INSERT IGNORE INTO lecturer_modules (user_id, module_id, lecturer_role)
+		SELECT U.user_id, NEW.module_id, 'MODERATOR' FROM users U
+		WHERE FIND_IN_SET(U.username, REPLACE(NEW.moderator_lecturer, ' ', '')) > 0;
+	END IF;
+END //
+
+-- A module may refer to a lecturer before the lecturer's account exists (or is renamed)
+DROP TRIGGER IF EXISTS users_lecturers_after_insert //
+CREATE TRIGGER users_lecturers_after_insert AFTER INSERT ON users
+FOR EACH ROW
+BEGIN
+	INSERT IGNORE INTO lecturer_modules (user_id, module_id, lecturer_role)
+	SELECT NEW.user_id, M.module_id, 'PRIMARY' FROM modules M
+	WHERE FIND_IN_SET(NEW.username, REPLACE(M.primary_lecturer, ' ', '')) > 0;
+	INSERT IGNORE INTO lecturer_modules (user_id, module_id, lecturer_role)
+	SELECT NEW.user_id, M.module_id, 'MODERATOR' FROM modules M
+	WHERE FIND_IN_SET(NEW.username, REPLACE(M.moderator_lecturer, ' ', '')) > 0;
+END //
+
+DROP TRIGGER IF EXISTS users_lecturers_after_update //
+CREATE TRIGGER users_lecturers_after_update AFTER UPDATE ON users
+FOR EACH ROW
+BEGIN
+	IF NOT (NEW.username <=> OLD.username) THEN
+		DELETE FROM lecturer_modules WHERE user_id = NEW.user_id;
+		INSERT IGNORE INTO lecturer_modules (user_id, module_id, lecturer_role)
+		SELECT NEW.user_id, M.module_id, 'PRIMARY' FROM modules M
+		WHERE FIND_IN_SET(NEW.username, REPLACE(M.primary_lecturer, ' ', '')) > 0;
+		INSERT IGNORE INTO lecturer_modules (user_id, module_id, lecturer_role)
+		SELECT NEW.user_id, M.module_id, 'MODERATOR' FROM modules M
+		WHERE FIND_IN_SET(NEW.username, REPLACE(M.moderator_lecturer, ' ', '')) > 0;
+	END IF;
+END //
+
+DELIMITER ;
@@ -0,0 +1,13 @@
+-- Records when the email of a task had been sent by the dispatcher of the due tasks to all
+-- the (primary) lecturers of its module, so that the dispatcher no longer selects it. The
+-- lecturers that a task was sent to, and the runs that claimed them, are recorded by
+-- 005_task_emails.sql, which is what keeps two runs (or instances) from sending it twice.
+--
+-- Run with the mysql client against the catmms schema, e.g.
+--   mysql -u newuser -p catmms < 002_task_email_sent.sql
+
+ALTER TABLE tasks
+	ADD COLUMN email_sent_at DATETIME NULL;
+
+-- The dispatcher selects the uncompleted tasks that have not been sent to everyone and are due.
+CREATE INDEX idx_tasks_due ON tasks (isCompleted, email_sent_at, date_to_send);
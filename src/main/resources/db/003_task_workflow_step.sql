@@ -0,0 +1,12 @@
+-- Records the workflow step (1 to 5) of the tasks that are generated by the service when
+-- the upload/deadline dates of an assessment are set, so that setting the dates again
+-- replaces the generated tasks instead of adding them twice. The tasks created by the
+-- lecturers themselves have no step.
+--
+-- Run with the mysql client against the catmms schema, e.g.
+--   mysql -u newuser -p catmms < 003_task_workflow_step.sql
+
+ALTER TABLE tasks
+	ADD COLUMN workflow_step TINYINT NULL;
+
+CREATE INDEX idx_tasks_assessment_step ON tasks (task_belongs_to_assessment, workflow_step);
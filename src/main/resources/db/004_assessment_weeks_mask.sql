@@ -0,0 +1,19 @@
+-- Adds the weeks of every assessment as an integer bitmask (week 1 is the lowest bit), along
+-- with its first and last week, so that the assessments of a week are selected with integer
+-- comparisons instead of parsing assessment_weeks on every row. The columns are generated
+-- from assessment_weeks, so the services that write the string keep working as they are.
+--
+-- Run with the mysql client against the catmms schema, e.g.
+--   mysql -u newuser -p catmms < 004_assessment_weeks_mask.sql
+
+ALTER TABLE assessments
+	ADD COLUMN assessment_weeks_mask INT UNSIGNED
+		AS (CONV(REVERSE(assessment_weeks), 2, 10)) STORED,
+	ADD COLUMN assessment_first_week TINYINT UNSIGNED
+		AS (LOCATE('1', assessment_weeks)) STORED,
+	ADD COLUMN assessment_last_week TINYINT UNSIGNED
+		AS (IF(LOCATE('1', assessment_weeks) = 0, 0,
+			   CHAR_LENGTH(assessment_weeks) - LOCATE('1', REVERSE(assessment_weeks)) + 1)) STORED;
+
+-- "assessments active in week N": first_week <= N AND last_week >= N AND MOD(FLOOR(mask / POW(2, N - 1)), 2) = 1
+CREATE INDEX idx_assessments_week_span ON assessments (assessment_first_week, assessment_last_week);
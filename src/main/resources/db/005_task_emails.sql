@@ -0,0 +1,34 @@
+-- Records every email of a task to one of the (primary) lecturers of its module. A run of
+-- the dispatcher of the due tasks claims the emails that it is going to send by inserting
+-- their rows (claimed_by is the id of the run) before sending anything, and the primary key
+-- makes sure that only one run (on any instance of the service) claims each of them. An email
+-- whose digest was sent gets its sent_at; the claims that were not sent are released at the
+-- end of the run (claimed_by = 'released'), so the next run takes them over and the scheduler
+-- knows that they were attempted, or taken over by another run once they are older than
+-- wisetask.mail.claim-timeout-minutes (if the instance stopped during the run).
+--
+-- Run with the mysql client against the catmms schema, e.g.
+--   mysql -u newuser -p catmms < 005_task_emails.sql
+
+CREATE TABLE IF NOT EXISTS task_emails (
+	task_id INT NOT NULL,
+	user_id INT NOT NULL,
+	claimed_by CHAR(36) NOT NULL,
+	claimed_at DATETIME NOT NULL,
+	sent_at DATETIME NULL,
+	PRIMARY KEY (task_id, user_id),
+	KEY idx_task_emails_claim (claimed_by, sent_at),
+	CONSTRAINT fk_task_emails_task FOREIGN KEY (task_id)
+		REFERENCES tasks (task_id) ON DELETE CASCADE,
+	CONSTRAINT fk_task_emails_user FOREIGN KEY (user_id)
+		REFERENCES users (user_id) ON DELETE CASCADE
+);
+
+-- Migration of the existing data; the tasks that were already sent were sent to all the
+-- primary lecturers of their modules
+INSERT IGNORE INTO task_emails (task_id, user_id, claimed_by, claimed_at, sent_at)
+SELECT T.task_id, LM.user_id, 'migration', T.email_sent_at, T.email_sent_at
+FROM tasks T
+JOIN assessments A ON T.task_belongs_to_assessment = A.assessment_id
+JOIN lecturer_modules LM ON LM.module_id = A.assessment_belongsTo_module AND LM.lecturer_role = 'PRIMARY'
+WHERE T.email_sent_at IS NOT NULL;
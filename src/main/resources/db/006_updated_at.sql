@@ -0,0 +1,20 @@
+-- Adds the time that every module, settings, assessment and task row was last changed, which
+-- MySQL keeps up to date on every insert and update (whether it is made by this service or by
+-- the other microservices). The version tag (ETag) of the data of a lecturer is derived from
+-- the rows of the modules of the lecturer: the number of the assessments and the tasks (which
+-- changes when one of them is deleted) and the time that the last of the rows changed.
+--
+-- Run with the mysql client against the catmms schema, e.g.
+--   mysql -u newuser -p catmms < 006_updated_at.sql
+
+ALTER TABLE modules
+	ADD COLUMN updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3);
+
+ALTER TABLE settings
+	ADD COLUMN updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3);
+
+ALTER TABLE assessments
+	ADD COLUMN updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3);
+
+ALTER TABLE tasks
+	ADD COLUMN updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3);
@@ -0,0 +1,111 @@
+package com.wisetasklecturer;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import org.h2.jdbcx.JdbcDataSource;
+import com.wisetasklecturer.entities.AssessmentType;
+import com.wisetasklecturer.entities.WorkflowStep;
+
+/**
+ * An embedded H2 database (in MySQL mode) with the tables of the catmms schema that the
+ * service reads and writes, along with the columns of the migrations under
+ * src/main/resources/db, for the tests of the queries and for the load test.
+ *
+ * {@link #createTables(Connection)} is the only copy of the schema of the tests; the
+ * benchmarks (under src/jmh/java, and LecturerModuleLookupBenchmark which creates the
+ * tables in a MySQL scratch schema) create their tables with it as well and only seed them.
+ * @author Theofanis Gkoufas
+ *
+ */
+public final class TestDatabase {
+
+	private static final AtomicInteger DATABASES = new AtomicInteger();
+
+	/*
+	 * The time that a row was last changed (db/006_updated_at.sql), which the database sets itself.
+	 */
+	private static final String UPDATED_AT = "updated_at TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3) "
+			+ "ON UPDATE CURRENT_TIMESTAMP(3) NOT NULL";
+
+	private TestDatabase() {
+	}
+
+	/**
+	 * Creates a new (empty) in-memory database, which is dropped once the JVM exits.
+	 * @return The data source of the database.
+	 * @throws SQLException If the tables could not be created.
+	 */
+	public static DataSource create() throws SQLException {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:test" + DATABASES.incrementAndGet()
+				+ ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+		try (Connection connection = dataSource.getConnection()) {
+			createTables(connection);
+		}
+		return dataSource;
+	}
+
+	/**
+	 * Drops the tables of {@link #createTables(Connection)}, if they exist.
+	 * @param connection A connection to the database.
+	 * @throws SQLException If the tables could not be dropped.
+	 */
+	public static void dropTables(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("DROP TABLE IF EXISTS task_emails, lecturer_modules, tasks, assessments, modules, "
+					+ "settings, entries, users");
+		}
+	}
+
+	/**
+	 * Creates the tables, with the offsets of every workflow step of every assessment type
+	 * in the settings (7 days by default).
+	 * @param connection A connection to the database.
+	 * @throws SQLException If the tables could not be created.
+	 */
+	public static void createTables(Connection connection) throws SQLException {
+		StringBuilder offsets = new StringBuilder();
+		for (AssessmentType type : AssessmentType.values()) {
+			for (WorkflowStep step : WorkflowStep.values()) {
+				offsets.append(", ").append(type.settingsColumn(step)).append(" INT NOT NULL DEFAULT 7");
+			}
+		}
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE users (user_id INT PRIMARY KEY, username VARCHAR(64), "
+					+ "password VARCHAR(128), user_type VARCHAR(16), email VARCHAR(128))");
+			statement.execute("CREATE TABLE entries (entry_id INT AUTO_INCREMENT PRIMARY KEY, entry_name VARCHAR(64), "
+					+ "user_id INT, date_created DATE)");
+			statement.execute("CREATE TABLE settings (settings_id INT AUTO_INCREMENT PRIMARY KEY, entry_FK INT, "
+					+ "week1_begin_date DATE, time_to_send_notif VARCHAR(8)" + offsets + ", " + UPDATED_AT + ")");
+			statement.execute("CREATE INDEX idx_settings_entry ON settings (entry_FK)");
+			statement.execute("CREATE TABLE modules (module_id INT AUTO_INCREMENT PRIMARY KEY, "
+					+ "module_name VARCHAR(128), module_code VARCHAR(16), primary_lecturer VARCHAR(128), "
+					+ "moderator_lecturer VARCHAR(128), curriculum VARCHAR(16), module_belongsTo_entry INT, "
+					+ UPDATED_AT + ")");
+			statement.execute("CREATE INDEX idx_modules_entry ON modules (module_belongsTo_entry)");
+			statement.execute("CREATE TABLE assessments (assessment_id INT AUTO_INCREMENT PRIMARY KEY, "
+					+ "assessment_type VARCHAR(32), assessment_weight INT, assessment_weeks VARCHAR(17), "
+					+ "assessment_upload_date DATE, assessment_deadline_date DATE, areDatesSet TINYINT DEFAULT 0, "
+					+ "assessment_belongsTo_module INT, assessment_weeks_mask INT, assessment_first_week TINYINT, "
+					+ "assessment_last_week TINYINT, " + UPDATED_AT + ")");
+			statement.execute("CREATE INDEX idx_assessments_module ON assessments (assessment_belongsTo_module)");
+			statement.execute("CREATE TABLE tasks (task_id INT AUTO_INCREMENT PRIMARY KEY, "
+					+ "task_description VARCHAR(255), date_to_send DATE, isCompleted TINYINT, "
+					+ "task_belongs_to_assessment INT, email_sent_at TIMESTAMP NULL, workflow_step TINYINT NULL, "
+					+ UPDATED_AT + ")");
+			statement.execute("CREATE INDEX idx_tasks_assessment ON tasks (task_belongs_to_assessment, workflow_step)");
+			statement.execute("CREATE INDEX idx_tasks_due ON tasks (isCompleted, email_sent_at, date_to_send)");
+			statement.execute("CREATE TABLE lecturer_modules (user_id INT NOT NULL, module_id INT NOT NULL, "
+					+ "lecturer_role VARCHAR(16) NOT NULL, PRIMARY KEY (user_id, lecturer_role, module_id))");
+			statement.execute("CREATE INDEX idx_lecturer_modules_module ON lecturer_modules (module_id)");
+			statement.execute("CREATE TABLE task_emails (task_id INT NOT NULL, user_id INT NOT NULL, "
+					+ "claimed_by CHAR(36) NOT NULL, claimed_at TIMESTAMP NOT NULL, sent_at TIMESTAMP NULL, "
+					+ "PRIMARY KEY (task_id, user_id))");
+			statement.execute("CREATE INDEX idx_task_emails_claim ON task_emails (claimed_by, sent_at)");
+		}
+	}
+
+}
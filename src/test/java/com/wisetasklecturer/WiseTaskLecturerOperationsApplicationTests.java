@@ -4,19 +4,28 @@ import static org.hamcrest.CoreMatchers.is;
 import java.sql.Date;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.web.server.ResponseStatusException;
 import com.wisetasklecturer.controllers.LecturerOperationsController;
+import com.wisetasklecturer.entities.LecturerDashboard;
 import com.wisetasklecturer.entities.PendingTaskToSet;
 import com.wisetasklecturer.entities.PendingTasksToSet;
+import com.wisetasklecturer.entities.SettedDates;
+import com.wisetasklecturer.entities.SettedDatesResult;
 import com.wisetasklecturer.entities.TaskToDo;
 import com.wisetasklecturer.entities.TasksToDo;
 import com.wisetasklecturer.services.LecturerServices;
@@ -117,4 +126,155 @@ class WiseTaskLecturerOperationsApplicationTests {
 		Assertions.assertEquals("application/json", response.getResponse().getContentType());
 	}
 	
+	@Test
+	public void testGetTasksToDoPage() throws Exception {
+		TasksToDo tasksToDo = new TasksToDo();
+		tasksToDo.setTasksToDo(new ArrayList<>());
+		tasksToDo.getTasksToDo().add(TaskToDo.builder()
+				.taskId(4)
+				.taskDescription("Today the grades of the assessment should be uploaded.")
+				.dateToSend(LocalDate.parse("2022-07-15"))
+				.moduleName("Continuous and Agile Software Engineering")
+				.curriculum("ASE")
+				.assessmentType("PROJECT")
+				.build());
+		tasksToDo.setNextCursor("MjAyMi0wNy0xNXw0");
+		Mockito.when(lecturerServices.getTasksToDo(1, null, 1)).thenReturn(tasksToDo);
+		mockMvc.perform(MockMvcRequestBuilders.get("/lecturers/getTasksToDo/1").param("size", "1"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.tasksToDo.length()", is(1)))
+				.andExpect(MockMvcResultMatchers.jsonPath("$.nextCursor", is("MjAyMi0wNy0xNXw0")));
+	}
+	
+	@Test
+	public void testGetTasksToDoNotModified() throws Exception {
+		Mockito.when(lecturerServices.getVersionTag("tasksToDo", 1)).thenReturn("\"tasksToDo-1-v7\"");
+		mockMvc.perform(MockMvcRequestBuilders.get("/lecturers/getTasksToDo/1")
+				.header("If-None-Match", "\"tasksToDo-1-v7\""))
+				.andExpect(MockMvcResultMatchers.status().isNotModified());
+		Mockito.verify(lecturerServices, Mockito.never()).getTasksToDo(1);
+	}
+	
+	@Test
+	public void testGetDashboard() throws Exception {
+		PendingTasksToSet pendingTasksToSet = new PendingTasksToSet();
+		pendingTasksToSet.setPendingTasksToSetList(new ArrayList<PendingTaskToSet>());
+		TasksToDo tasksToDo = new TasksToDo();
+		tasksToDo.setTasksToDo(new ArrayList<>());
+		tasksToDo.getTasksToDo().add(TaskToDo.builder()
+				.taskId(0)
+				.taskDescription("Today is the last day to finish creating the assessment.")
+				.dateToSend(LocalDate.parse("2022-05-20"))
+				.moduleName("Continuous and Agile Software Engineering")
+				.curriculum("ASE")
+				.assessmentType("PROJECT")
+				.build());
+		Mockito.when(lecturerServices.getDashboard(1)).thenReturn(LecturerDashboard.builder()
+				.pendingTasksToSet(pendingTasksToSet)
+				.tasksToDo(tasksToDo)
+				.build());
+		mockMvc.perform(MockMvcRequestBuilders.get("/lecturers/1/dashboard"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.pendingTasksToSet.pendingTasksToSetList.length()", is(0)))
+				.andExpect(MockMvcResultMatchers.jsonPath("$.tasksToDo.tasksToDo.length()", is(1)));
+	}
+	
+	@Test
+	public void testAddTasks() throws Exception {
+		Mockito.when(lecturerServices.addTasks(Mockito.anyList())).thenReturn(Arrays.asList(10, 11));
+		mockMvc.perform(MockMvcRequestBuilders.post("/lecturers/tasks/batch")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("[{\"assessmentID\": 3051, \"taskDescription\": \"Step 1\", \"dateToSend\": \"2022-05-20\"},"
+						+ "{\"assessmentID\": 3052, \"taskDescription\": \"Step 1\", \"dateToSend\": \"2022-05-21\"}]"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.length()", is(2)))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0]", is(10)));
+	}
+	
+	@Test
+	public void testUploadSettedDatesGeneratingTasks() throws Exception {
+		Mockito.when(lecturerServices.updateSettedDates(Mockito.anyList(), Mockito.eq(true)))
+			   .thenReturn(Arrays.asList(SettedDatesResult.builder()
+					   .assessmentId(3051)
+					   .status(SettedDatesResult.Status.UPDATED)
+					   .generatedTaskIds(Arrays.asList(20, 21, 22, 23, 24))
+					   .build()));
+		mockMvc.perform(MockMvcRequestBuilders.put("/lecturers/uploadSettedDates/batch")
+				.param("generateTasks", "true")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("[{\"assessmentID\": 3051, \"uploadDate\": \"2022-05-02\", \"deadlineDate\": \"2022-05-20\"}]"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].status", is("UPDATED")))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].generatedTaskIds.length()", is(5)));
+	}
+	
+	@Test
+	public void testUploadSettedDatesOfMissingAssessment() throws Exception {
+		// the single assessment goes through the batch update, with or without the tasks
+		Mockito.when(lecturerServices.updateSettedDates("2022-05-02", "2022-05-20", 9999, false))
+			   .thenCallRealMethod();
+		Mockito.when(lecturerServices.updateSettedDates(Mockito.anyList(), Mockito.eq(false)))
+			   .thenReturn(Arrays.asList(SettedDatesResult.builder()
+					   .assessmentId(9999)
+					   .status(SettedDatesResult.Status.NOT_FOUND)
+					   .build()));
+		mockMvc.perform(MockMvcRequestBuilders.put("/lecturers/uploadSettedDates")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"assessmentID\": \"9999\", \"uploadDate\": \"2022-05-02\", \"deadlineDate\": \"2022-05-20\"}"))
+				.andExpect(MockMvcResultMatchers.status().isNotFound());
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testUploadSettedDatesWithMixedResults() throws Exception {
+		ArgumentCaptor<List<SettedDates>> settedDates = ArgumentCaptor.forClass(List.class);
+		Mockito.when(lecturerServices.updateSettedDates(settedDates.capture(), Mockito.eq(false)))
+			   .thenReturn(Arrays.asList(
+					   SettedDatesResult.builder().assessmentId(3051).status(SettedDatesResult.Status.UPDATED).build(),
+					   SettedDatesResult.builder().assessmentId(9999).status(SettedDatesResult.Status.NOT_FOUND).build(),
+					   SettedDatesResult.builder().status(SettedDatesResult.Status.INVALID)
+							   .message("The assessmentID should be a number").build(),
+					   SettedDatesResult.builder().status(SettedDatesResult.Status.INVALID)
+							   .message("The assessmentID should be a number").build()));
+		mockMvc.perform(MockMvcRequestBuilders.put("/lecturers/uploadSettedDates/batch")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("[{\"assessmentID\": 3051, \"uploadDate\": \"2022-05-02\", \"deadlineDate\": \"2022-05-20\"},"
+						+ "{\"assessmentID\": \"9999\", \"uploadDate\": \"2022-05-02\", \"deadlineDate\": \"2022-05-20\"},"
+						+ "{\"assessmentID\": \"abc\", \"uploadDate\": \"2022-05-02\", \"deadlineDate\": \"2022-05-20\"},"
+						+ "{\"uploadDate\": \"2022-05-02\", \"deadlineDate\": \"2022-05-20\"}]"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.length()", is(4)))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0].status", is("UPDATED")))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[1].status", is("NOT_FOUND")))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[2].status", is("INVALID")))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[3].status", is("INVALID")));
+		// the invalid ids reach the service as null (which reports them as INVALID) instead of failing the batch
+		List<SettedDates> parsed = settedDates.getValue();
+		Assertions.assertEquals(4, parsed.size());
+		Assertions.assertEquals(3051, parsed.get(0).getAssessmentId());
+		Assertions.assertEquals(9999, parsed.get(1).getAssessmentId());
+		Assertions.assertNull(parsed.get(2).getAssessmentId());
+		Assertions.assertNull(parsed.get(3).getAssessmentId());
+	}
+	
+	@Test
+	public void testChangeTaskVisibilityOfMissingTask() throws Exception {
+		Mockito.doThrow(new ResponseStatusException(HttpStatus.NOT_FOUND))
+			   .when(lecturerServices).changeTaskVisibility(99);
+		mockMvc.perform(MockMvcRequestBuilders.put("/lecturers/changeTaskVisibility/99"))
+				.andExpect(MockMvcResultMatchers.status().isNotFound());
+	}
+	
+	@Test
+	public void testChangeTasksVisibility() throws Exception {
+		Mockito.when(lecturerServices.changeTasksVisibility(Arrays.asList(4, 5, 5, 99)))
+			   .thenReturn(Arrays.asList(99));
+		mockMvc.perform(MockMvcRequestBuilders.put("/lecturers/changeTaskVisibility")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("[4, 5, 5, 99]"))
+				.andExpect(MockMvcResultMatchers.status().isOk())
+				.andExpect(MockMvcResultMatchers.jsonPath("$.length()", is(1)))
+				.andExpect(MockMvcResultMatchers.jsonPath("$[0]", is(99)));
+	}
+	
 }
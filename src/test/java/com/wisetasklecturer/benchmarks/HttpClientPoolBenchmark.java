@@ -0,0 +1,174 @@
+package com.wisetasklecturer.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.wisetasklecturer.AppConfig;
+import com.wisetasklecturer.entities.User;
+import com.wisetasklecturer.monitoring.HttpClientPoolMetrics;
+
+/**
+ * Compares the latency of the calls to a sibling service through a RestTemplate backed by
+ * a SimpleClientHttpRequestFactory (HttpURLConnection, as the service used to do) with a
+ * RestTemplate backed by the pooled HttpClient of AppConfig.
+ *
+ * The benchmark runs in-process against a local stub of the users service, which answers
+ * GET /users/{id} after a configurable latency (gzip encoded if the client asks for it). A
+ * number of threads call it back to back, and the throughput, the latency percentiles,
+ * the connections that the stub accepted (the distinct client ports) and the bytes of the
+ * responses are reported for both clients, e.g.
+ * -Dbenchmark.threads=32 -Dbenchmark.calls=2000 -Dbenchmark.latencyMillis=2 -Dbenchmark.padding=2000
+ * @author Theofanis Gkoufas
+ *
+ */
+public class HttpClientPoolBenchmark {
+
+	private static final int THREADS = Integer.getInteger("benchmark.threads", 32);
+
+	private static final int CALLS_PER_THREAD = Integer.getInteger("benchmark.calls", 2000);
+
+	private static final int WARMUP_CALLS_PER_THREAD = Integer.getInteger("benchmark.warmupCalls", 200);
+
+	private static final int LATENCY_MILLIS = Integer.getInteger("benchmark.latencyMillis", 2);
+
+	// the length of a padding field of the response, so that its compression is noticeable
+	private static final int PADDING = Integer.getInteger("benchmark.padding", 2000);
+
+	private static final Set<Integer> CLIENT_PORTS = ConcurrentHashMap.newKeySet();
+
+	private static final LongAdder BYTES_SENT = new LongAdder();
+
+	public static void main(String[] args) throws Exception {
+		HttpServer usersService = stub();
+		String baseUrl = "http://localhost:" + usersService.getAddress().getPort();
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		System.out.printf("%-8s %10s %10s %10s %10s %10s %12s %12s%n", "client", "calls", "calls/s", "p50 ms",
+				"p99 ms", "max ms", "connections", "KB received");
+
+		run("simple", new SimpleClientHttpRequestFactory(), baseUrl, executor);
+
+		AppConfig config = new AppConfig();
+		PoolingHttpClientConnectionManager connectionManager =
+				config.getHttpClientConnectionManager(THREADS * 2, THREADS, 2000);
+		try (CloseableHttpClient httpClient = config.getHttpClient(connectionManager, 30, 10)) {
+			run("pooled", new HttpComponentsClientHttpRequestFactory(httpClient), baseUrl, executor);
+			System.out.println("pool: " + new HttpClientPoolMetrics(connectionManager).snapshot());
+		}
+
+		executor.shutdown();
+		usersService.stop(0);
+	}
+
+	private static void run(String name, ClientHttpRequestFactory requestFactory, String baseUrl,
+							ExecutorService executor) throws Exception {
+		RestTemplate restTemplate = new RestTemplate(requestFactory);
+		call(restTemplate, baseUrl, WARMUP_CALLS_PER_THREAD, executor);
+		CLIENT_PORTS.clear();
+		BYTES_SENT.reset();
+		long start = System.nanoTime();
+		long[] nanos = call(restTemplate, baseUrl, CALLS_PER_THREAD, executor);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		Arrays.sort(nanos);
+		System.out.printf("%-8s %10d %10.1f %10.2f %10.2f %10.2f %12d %12d%n", name, nanos.length,
+				nanos.length / seconds, percentile(nanos, 0.50), percentile(nanos, 0.99),
+				nanos[nanos.length - 1] / 1e6, CLIENT_PORTS.size(), BYTES_SENT.sum() / 1024);
+	}
+
+	/**
+	 * Calls GET /users/{id} the given number of times from every thread of the executor.
+	 * @return The latencies of all the calls.
+	 */
+	private static long[] call(RestTemplate restTemplate, String baseUrl, int callsPerThread,
+							   ExecutorService executor) throws Exception {
+		List<Future<long[]>> results = new ArrayList<Future<long[]>>();
+		for (int thread = 0; thread < THREADS; thread++) {
+			int firstId = thread * callsPerThread;
+			results.add(executor.submit(() -> {
+				long[] nanos = new long[callsPerThread];
+				for (int i = 0; i < callsPerThread; i++) {
+					long start = System.nanoTime();
+					User user = restTemplate.getForObject(baseUrl + "/users/{id}", User.class, firstId + i);
+					nanos[i] = System.nanoTime() - start;
+					if (user == null || user.getUserId() != firstId + i) {
+						throw new IllegalStateException("Unexpected user " + user);
+					}
+				}
+				return nanos;
+			}));
+		}
+		long[] nanos = new long[THREADS * callsPerThread];
+		for (int thread = 0; thread < THREADS; thread++) {
+			System.arraycopy(results.get(thread).get(), 0, nanos, thread * callsPerThread, callsPerThread);
+		}
+		return nanos;
+	}
+
+	private static double percentile(long[] sortedNanos, double percentile) {
+		int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+		return sortedNanos[Math.max(0, index)] / 1e6;
+	}
+
+	/**
+	 * Starts a stub of the users service, which records the client port of every call so that
+	 * the connections that were opened can be counted.
+	 */
+	private static HttpServer stub() throws IOException {
+		char[] padding = new char[PADDING];
+		Arrays.fill(padding, 'x');
+		String paddingField = new String(padding);
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/users/", (HttpExchange exchange) -> {
+			try {
+				CLIENT_PORTS.add(exchange.getRemoteAddress().getPort());
+				Thread.sleep(LATENCY_MILLIS);
+				String id = exchange.getRequestURI().getPath().substring("/users/".length());
+				byte[] body = ("{\"userId\": " + Integer.parseInt(id) + ", \"username\": \"lecturer" + id
+						+ "\", \"userType\": \"LECTURER\", \"email\": \"" + paddingField + "@example.com\"}")
+						.getBytes(StandardCharsets.UTF_8);
+				String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+				if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+					ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+					try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+						gzip.write(body);
+					}
+					body = compressed.toByteArray();
+					exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+				}
+				exchange.getResponseHeaders().set("Content-Type", "application/json");
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+				BYTES_SENT.add(body.length);
+			} catch (InterruptedException | NumberFormatException e) {
+				exchange.sendResponseHeaders(500, -1);
+			} finally {
+				exchange.close();
+			}
+		});
+		server.start();
+		return server;
+	}
+
+}
@@ -0,0 +1,166 @@
+package com.wisetasklecturer.benchmarks;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import com.wisetasklecturer.TestDatabase;
+
+/**
+ * Compares the latency of the query that retrieves the pending assessments of a lecturer
+ * when the modules are matched with primary_lecturer LIKE '%username%' and when they are
+ * matched through the indexed lecturer_modules table, as the modules table grows.
+ *
+ * The benchmark creates (and drops) the tables of {@link TestDatabase}, so it must be
+ * pointed at an empty scratch schema, e.g.
+ * -Dbenchmark.url=jdbc:mysql://localhost:3306/catmms_bench -Dbenchmark.username=newuser
+ * -Dbenchmark.password=... -Dbenchmark.sizes=1000,10000,100000
+ * @author Theofanis Gkoufas
+ *
+ */
+public class LecturerModuleLookupBenchmark {
+
+	private static final int MODULES_PER_LECTURER = 5;
+
+	private static final int WARMUP_ITERATIONS = 50;
+
+	private static final int MEASURED_ITERATIONS = 200;
+
+	private static final String SELECT = "SELECT M.module_name, M.curriculum, A.assessment_type, "
+			+ "A.assessment_weeks, A.assessment_id, S.week1_begin_date, A.assessment_weight "
+			+ "FROM modules M, assessments A, entries E, users U, settings S"
+			+ " WHERE E.entry_id = M.module_belongsTo_entry AND "
+			+ "M.module_id = A.assessment_belongsTo_module AND "
+			+ "U.user_id = E.user_id AND "
+			+ "E.entry_id = S.entry_FK AND ";
+
+	private static final String PATTERN_QUERY = SELECT
+			+ "M.primary_lecturer LIKE ? AND A.areDatesSet = 0";
+
+	private static final String INDEXED_QUERY = SELECT
+			+ "M.module_id IN (SELECT LM.module_id FROM lecturer_modules LM "
+			+ "WHERE LM.user_id = ? AND LM.lecturer_role = 'PRIMARY') AND A.areDatesSet = 0";
+
+	public static void main(String[] args) throws SQLException {
+		String url = System.getProperty("benchmark.url", "jdbc:mysql://localhost:3306/catmms_bench");
+		String username = System.getProperty("benchmark.username", "newuser");
+		String password = System.getProperty("benchmark.password", "");
+		int[] sizes = Arrays.stream(System.getProperty("benchmark.sizes", "1000,10000,100000").split(","))
+							.mapToInt(size -> Integer.parseInt(size.trim()))
+							.toArray();
+		try (Connection connection = DriverManager.getConnection(url, username, password)) {
+			System.out.printf("%10s %12s %12s %12s %12s %10s %10s%n", "modules", "like p50 ms", "like p99 ms",
+					"index p50 ms", "index p99 ms", "like rows", "index rows");
+			for (int size : sizes) {
+				TestDatabase.dropTables(connection);
+				TestDatabase.createTables(connection);
+				seed(connection, size);
+				// lecturer1 is also a prefix of lecturer10, lecturer11 etc.
+				int lecturerId = 1;
+				long[] pattern = measure(connection, PATTERN_QUERY, "%lecturer" + lecturerId + "%");
+				long[] indexed = measure(connection, INDEXED_QUERY, lecturerId);
+				System.out.printf("%10d %12.3f %12.3f %12.3f %12.3f %10d %10d%n", size,
+						percentile(pattern, 0.50), percentile(pattern, 0.99),
+						percentile(indexed, 0.50), percentile(indexed, 0.99),
+						countRows(connection, PATTERN_QUERY, "%lecturer" + lecturerId + "%"),
+						countRows(connection, INDEXED_QUERY, lecturerId));
+			}
+			TestDatabase.dropTables(connection);
+		}
+	}
+
+	private static void seed(Connection connection, int modules) throws SQLException {
+		int lecturers = Math.max(1, modules / MODULES_PER_LECTURER);
+		connection.setAutoCommit(false);
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("INSERT INTO users (user_id, username) VALUES (0, 'admin')");
+			statement.execute("INSERT INTO entries (entry_id, user_id) VALUES (1, 0)");
+			statement.execute("INSERT INTO settings (settings_id, entry_FK, week1_begin_date) VALUES (1, 1, '2022-02-07')");
+		}
+		try (PreparedStatement users = connection.prepareStatement("INSERT INTO users (user_id, username) VALUES (?, ?)")) {
+			for (int id = 1; id <= lecturers; id++) {
+				users.setInt(1, id);
+				users.setString(2, "lecturer" + id);
+				users.addBatch();
+			}
+			users.executeBatch();
+		}
+		try (PreparedStatement module = connection.prepareStatement(
+					"INSERT INTO modules (module_id, module_name, curriculum, primary_lecturer, module_belongsTo_entry) "
+					+ "VALUES (?, ?, 'SE', ?, 1)");
+			 PreparedStatement assessment = connection.prepareStatement(
+					"INSERT INTO assessments (assessment_id, assessment_type, assessment_weeks, assessment_weight, "
+					+ "areDatesSet, assessment_belongsTo_module) VALUES (?, 'PROJECT', '00000001111111000', 40, 0, ?)");
+			 PreparedStatement mapping = connection.prepareStatement(
+					"INSERT INTO lecturer_modules VALUES (?, ?, 'PRIMARY')")) {
+			for (int id = 1; id <= modules; id++) {
+				int lecturer = (id % lecturers) + 1;
+				module.setInt(1, id);
+				module.setString(2, "Module " + id);
+				module.setString(3, "lecturer" + lecturer);
+				module.addBatch();
+				assessment.setInt(1, id);
+				assessment.setInt(2, id);
+				assessment.addBatch();
+				mapping.setInt(1, lecturer);
+				mapping.setInt(2, id);
+				mapping.addBatch();
+				if (id % 1000 == 0) {
+					module.executeBatch();
+					assessment.executeBatch();
+					mapping.executeBatch();
+				}
+			}
+			module.executeBatch();
+			assessment.executeBatch();
+			mapping.executeBatch();
+		}
+		connection.commit();
+		connection.setAutoCommit(true);
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("ANALYZE TABLE users, modules, assessments, lecturer_modules");
+		}
+	}
+
+	private static long[] measure(Connection connection, String sql, Object parameter) throws SQLException {
+		long[] nanos = new long[MEASURED_ITERATIONS];
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setObject(1, parameter);
+			for (int i = 0; i < WARMUP_ITERATIONS + MEASURED_ITERATIONS; i++) {
+				long start = System.nanoTime();
+				try (ResultSet resultSet = statement.executeQuery()) {
+					while (resultSet.next()) {
+						resultSet.getString(1);
+					}
+				}
+				if (i >= WARMUP_ITERATIONS) {
+					nanos[i - WARMUP_ITERATIONS] = System.nanoTime() - start;
+				}
+			}
+		}
+		Arrays.sort(nanos);
+		return nanos;
+	}
+
+	private static int countRows(Connection connection, String sql, Object parameter) throws SQLException {
+		int rows = 0;
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setObject(1, parameter);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {
+					rows++;
+				}
+			}
+		}
+		return rows;
+	}
+
+	private static double percentile(long[] sortedNanos, double percentile) {
+		int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+		return sortedNanos[Math.max(0, index)] / 1_000_000.0;
+	}
+
+}
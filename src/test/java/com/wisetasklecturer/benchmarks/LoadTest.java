@@ -0,0 +1,462 @@
+package com.wisetasklecturer.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.wisetasklecturer.TestDatabase;
+import com.wisetasklecturer.WiseTaskLecturerOperationsApplication;
+import com.wisetasklecturer.entities.AssessmentWeeks;
+import com.wisetasklecturer.entities.WorkflowStep;
+
+/**
+ * An end-to-end load test of the lecturer endpoints, which needs nothing but the test
+ * classpath (including H2).
+ *
+ * The test starts the application on a random port against an embedded H2 database (in
+ * MySQL mode, see {@link TestDatabase}) seeded with the modules, assessments and tasks of a semester, and replaces
+ * the users service and the admin service with local HTTP stubs that answer after a
+ * configurable latency. A number of virtual users then send a mix of the five lecturer
+ * requests (retrieveDaysToSet, getTasksToDo, uploadSettedDates, tasks, changeTaskVisibility)
+ * back to back, and the throughput and the latency percentiles of every request are
+ * reported, e.g.
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.args="-Dloadtest.concurrency=64 -Dloadtest.duration-seconds=60"
+ *
+ * The options (system properties) are; loadtest.lecturers, loadtest.modules-per-lecturer,
+ * loadtest.concurrency, loadtest.warmup-seconds, loadtest.duration-seconds,
+ * loadtest.users-latency-millis, loadtest.admin-latency-millis, loadtest.lecturer-resolution
+ * and loadtest.mix (the weights of the requests, e.g. daysToSet=30,tasksToDo=40,setDates=10,
+ * addTask=10,completeTask=10).
+ * @author Theofanis Gkoufas
+ *
+ */
+public class LoadTest {
+
+	private static final int ASSESSMENTS_PER_MODULE = 3;
+
+	private static final int TASKS_PER_ASSESSMENT = WorkflowStep.values().length;
+
+	/*
+	 * The tasks created by the load test belong to these assessments, of a module without
+	 * lecturers, since the admin service (and the merge of the assessment that it returns)
+	 * is part of what POST /lecturers/tasks does.
+	 */
+	private static final int SCRATCH_ASSESSMENTS = 100;
+
+	private static final String[] TYPES = {"PROJECT", "QUIZ", "REPORT", "FINAL_EXAM", "ASSESSED_LAB"};
+
+	private static final String[] WEEKS = {"00000001111111000", "00000100000000000", "00000000000011111"};
+
+	private enum Request {
+		DAYS_TO_SET("daysToSet"), TASKS_TO_DO("tasksToDo"), SET_DATES("setDates"),
+		ADD_TASK("addTask"), COMPLETE_TASK("completeTask");
+
+		private final String option;
+
+		private Request(String option) {
+			this.option = option;
+		}
+	}
+
+	private final int lecturers = Integer.getInteger("loadtest.lecturers", 2000);
+
+	private final int modulesPerLecturer = Integer.getInteger("loadtest.modules-per-lecturer", 3);
+
+	private final int concurrency = Integer.getInteger("loadtest.concurrency", 32);
+
+	private final int warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 10);
+
+	private final int durationSeconds = Integer.getInteger("loadtest.duration-seconds", 30);
+
+	private final int usersLatencyMillis = Integer.getInteger("loadtest.users-latency-millis", 20);
+
+	private final int adminLatencyMillis = Integer.getInteger("loadtest.admin-latency-millis", 20);
+
+	private final String lecturerResolution = System.getProperty("loadtest.lecturer-resolution", "INDEXED");
+
+	private final int[] weights = weights(System.getProperty("loadtest.mix",
+			"daysToSet=30,tasksToDo=40,setDates=10,addTask=10,completeTask=10"));
+
+	private int assessments;
+
+	private int tasks;
+
+	private HttpClient client;
+
+	private String baseUrl;
+
+	public static void main(String[] args) throws Exception {
+		new LoadTest().run();
+	}
+
+	private void run() throws Exception {
+		HttpServer usersService = stub("/users/", usersLatencyMillis, id -> "{\"userId\": " + id
+				+ ", \"username\": \"lecturer" + id + "\", \"userType\": \"LECTURER\", \"email\": \"lecturer"
+				+ id + "@example.com\"}");
+		HttpServer adminService = stub("/admin/assessments/", adminLatencyMillis, id -> "{\"assessmentId\": "
+				+ id + ", \"assessmentType\": \"PROJECT\", \"assessmentWeight\": 40, \"weeks\": \""
+				+ WEEKS[0] + "\"}");
+		ConfigurableApplicationContext application = SpringApplication.run(WiseTaskLecturerOperationsApplication.class,
+				"--server.port=0",
+				"--spring.main.banner-mode=off",
+				"--logging.level.root=WARN",
+				"--spring.datasource.url=jdbc:h2:mem:loadtest;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+				"--spring.datasource.driver-class-name=org.h2.Driver",
+				"--spring.datasource.username=sa",
+				"--spring.datasource.password=",
+				"--spring.jpa.hibernate.ddl-auto=none",
+				"--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+				"--spring.datasource.hikari.maximum-pool-size=" + Math.max(20, concurrency),
+				"--wisetask.lecturer-resolution=" + lecturerResolution,
+				"--wisetask.users-service.url=http://localhost:" + usersService.getAddress().getPort(),
+				"--wisetask.admin-service.url=http://localhost:" + adminService.getAddress().getPort());
+		try {
+			long start = System.nanoTime();
+			try (Connection connection = application.getBean(DataSource.class).getConnection()) {
+				TestDatabase.createTables(connection);
+				seed(connection);
+			}
+			System.out.printf("seeded %d lecturers, %d assessments and %d tasks in %.1f s%n", lecturers,
+					assessments, tasks, (System.nanoTime() - start) / 1e9);
+			int port = ((ServletWebServerApplicationContext) application).getWebServer().getPort();
+			baseUrl = "http://localhost:" + port + "/lecturers";
+			client = HttpClient.newBuilder()
+					.executor(Executors.newFixedThreadPool(4))
+					.connectTimeout(Duration.ofSeconds(5))
+					.build();
+			System.out.printf("warming up for %d s with %d virtual users%n", warmupSeconds, concurrency);
+			drive(warmupSeconds);
+			System.out.printf("measuring for %d s with %d virtual users%n", durationSeconds, concurrency);
+			report(drive(durationSeconds), durationSeconds);
+		} finally {
+			application.close();
+			usersService.stop(0);
+			adminService.stop(0);
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Starts a stub of a sibling service, which answers GET {path}{id} with the json of
+	 * the given function after the given latency.
+	 */
+	private static HttpServer stub(String path, int latencyMillis, java.util.function.IntFunction<String> json)
+			throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext(path, (HttpExchange exchange) -> {
+			try {
+				Thread.sleep(latencyMillis);
+				byte[] body = json.apply(Integer.parseInt(exchange.getRequestURI().getPath().substring(path.length())))
+								  .getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().set("Content-Type", "application/json");
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			} catch (InterruptedException | NumberFormatException e) {
+				exchange.sendResponseHeaders(500, -1);
+			} finally {
+				exchange.close();
+			}
+		});
+		server.start();
+		return server;
+	}
+
+	/**
+	 * Seeds a semester: every lecturer is the primary lecturer of modules-per-lecturer modules,
+	 * every module has three assessments (the first of which has no dates set yet) and every
+	 * assessment has the tasks of its workflow steps.
+	 */
+	private void seed(Connection connection) throws SQLException {
+		connection.setAutoCommit(false);
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("INSERT INTO users VALUES (0, 'admin', '', 'ADMIN', 'admin@example.com')");
+			statement.execute("INSERT INTO entries VALUES (1, 'Semester 2', 0, DATE '2022-01-10')");
+			statement.execute("INSERT INTO settings (settings_id, entry_FK, week1_begin_date, time_to_send_notif) "
+					+ "VALUES (1, 1, DATE '2022-02-07', '09:00:00')");
+		}
+		int moduleId = 0;
+		try (PreparedStatement users = connection.prepareStatement("INSERT INTO users VALUES (?, ?, '', 'LECTURER', ?)");
+			 PreparedStatement modules = connection.prepareStatement(
+					 "INSERT INTO modules (module_id, module_name, module_code, primary_lecturer, moderator_lecturer, "
+					 + "curriculum, module_belongsTo_entry) VALUES (?, ?, ?, ?, NULL, ?, 1)");
+			 PreparedStatement mappings = connection.prepareStatement(
+					 "INSERT INTO lecturer_modules VALUES (?, ?, 'PRIMARY')");
+			 PreparedStatement assessmentRows = connection.prepareStatement(
+					 "INSERT INTO assessments (assessment_id, assessment_type, assessment_weight, assessment_weeks, "
+					 + "assessment_upload_date, assessment_deadline_date, areDatesSet, assessment_belongsTo_module, "
+					 + "assessment_weeks_mask, assessment_first_week, assessment_last_week) "
+					 + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+			 PreparedStatement taskRows = connection.prepareStatement(
+					 "INSERT INTO tasks (task_id, task_description, date_to_send, isCompleted, "
+					 + "task_belongs_to_assessment, email_sent_at, workflow_step) VALUES (?, ?, ?, ?, ?, NULL, ?)")) {
+			for (int lecturer = 1; lecturer <= lecturers; lecturer++) {
+				users.setInt(1, lecturer);
+				users.setString(2, "lecturer" + lecturer);
+				users.setString(3, "lecturer" + lecturer + "@example.com");
+				users.addBatch();
+				for (int m = 0; m < modulesPerLecturer; m++) {
+					moduleId++;
+					addModule(modules, moduleId, "lecturer" + lecturer);
+					mappings.setInt(1, lecturer);
+					mappings.setInt(2, moduleId);
+					mappings.addBatch();
+					for (int a = 0; a < ASSESSMENTS_PER_MODULE; a++) {
+						addAssessment(assessmentRows, taskRows, moduleId, a, a != 0);
+					}
+				}
+				users.executeBatch();
+				modules.executeBatch();
+				mappings.executeBatch();
+				assessmentRows.executeBatch();
+				taskRows.executeBatch();
+			}
+			moduleId++;
+			addModule(modules, moduleId, null);
+			for (int a = 0; a < SCRATCH_ASSESSMENTS; a++) {
+				addAssessment(assessmentRows, taskRows, moduleId, a % ASSESSMENTS_PER_MODULE, false);
+			}
+			modules.executeBatch();
+			assessmentRows.executeBatch();
+			taskRows.executeBatch();
+		}
+		try (Statement statement = connection.createStatement()) {
+			// the rows were inserted with their ids, so the identities continue after them
+			statement.execute("ALTER TABLE modules ALTER COLUMN module_id RESTART WITH " + (moduleId + 1));
+			statement.execute("ALTER TABLE assessments ALTER COLUMN assessment_id RESTART WITH " + (assessments + 1));
+			statement.execute("ALTER TABLE tasks ALTER COLUMN task_id RESTART WITH " + (tasks + 1));
+		}
+		connection.commit();
+		connection.setAutoCommit(true);
+	}
+
+	private static void addModule(PreparedStatement modules, int moduleId, String primaryLecturer) throws SQLException {
+		modules.setInt(1, moduleId);
+		modules.setString(2, "Continuous and Agile Software Engineering " + moduleId);
+		modules.setString(3, "M" + moduleId);
+		modules.setString(4, primaryLecturer);
+		modules.setString(5, moduleId % 2 == 0 ? "WM" : "CS");
+		modules.addBatch();
+	}
+
+	private void addAssessment(PreparedStatement assessmentRows, PreparedStatement taskRows, int moduleId,
+							   int index, boolean datesSet) throws SQLException {
+		int assessmentId = ++assessments;
+		assessmentRows.setInt(1, assessmentId);
+		assessmentRows.setString(2, TYPES[assessmentId % TYPES.length]);
+		assessmentRows.setInt(3, 20 + 10 * index);
+		assessmentRows.setString(4, WEEKS[index]);
+		assessmentRows.setDate(5, datesSet ? java.sql.Date.valueOf("2022-03-14") : null);
+		assessmentRows.setDate(6, datesSet ? java.sql.Date.valueOf("2022-04-01") : null);
+		assessmentRows.setInt(7, datesSet ? 1 : 0);
+		assessmentRows.setInt(8, moduleId);
+		// the columns that MySQL generates from assessment_weeks (db/004_assessment_weeks_mask.sql)
+		AssessmentWeeks weeks = AssessmentWeeks.parse(WEEKS[index]);
+		assessmentRows.setInt(9, weeks.toMask());
+		assessmentRows.setInt(10, weeks.firstWeek());
+		assessmentRows.setInt(11, weeks.lastWeek());
+		assessmentRows.addBatch();
+		if (!datesSet) {
+			return;
+		}
+		for (WorkflowStep step : WorkflowStep.values()) {
+			int taskId = ++tasks;
+			taskRows.setInt(1, taskId);
+			taskRows.setString(2, step.getTaskDescription());
+			taskRows.setDate(3, java.sql.Date.valueOf(LocalDate.of(2022, 3, 1).plusDays(taskId % 90)));
+			taskRows.setInt(4, step.getNumber() <= 2 ? 1 : 0);
+			taskRows.setInt(5, assessmentId);
+			taskRows.setInt(6, step.getNumber());
+			taskRows.addBatch();
+		}
+	}
+
+	private static int[] weights(String mix) {
+		int[] weights = new int[Request.values().length];
+		for (String entry : mix.split(",")) {
+			String[] option = entry.trim().split("=");
+			for (Request request : Request.values()) {
+				if (request.option.equals(option[0].trim())) {
+					weights[request.ordinal()] = Integer.parseInt(option[1].trim());
+				}
+			}
+		}
+		return weights;
+	}
+
+	private Request nextRequest(ThreadLocalRandom random) {
+		int choice = random.nextInt(Arrays.stream(weights).sum());
+		for (Request request : Request.values()) {
+			choice -= weights[request.ordinal()];
+			if (choice < 0) {
+				return request;
+			}
+		}
+		return Request.TASKS_TO_DO;
+	}
+
+	/**
+	 * Runs the virtual users for the given duration.
+	 * @return The latencies of every request (in nanoseconds) and the number of failures.
+	 */
+	private Map<Request, Recorder> drive(int seconds) throws InterruptedException {
+		ExecutorService virtualUsers = Executors.newFixedThreadPool(concurrency);
+		long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		List<Map<Request, Recorder>> recorders = new ArrayList<Map<Request, Recorder>>();
+		for (int i = 0; i < concurrency; i++) {
+			Map<Request, Recorder> recorder = new LinkedHashMap<Request, Recorder>();
+			for (Request request : Request.values()) {
+				recorder.put(request, new Recorder());
+			}
+			recorders.add(recorder);
+			virtualUsers.execute(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				while (System.nanoTime() < end) {
+					Request request = nextRequest(random);
+					long start = System.nanoTime();
+					boolean succeeded = send(request, random);
+					recorder.get(request).record(System.nanoTime() - start, succeeded);
+				}
+			});
+		}
+		virtualUsers.shutdown();
+		virtualUsers.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+		Map<Request, Recorder> total = new LinkedHashMap<Request, Recorder>();
+		for (Request request : Request.values()) {
+			Recorder merged = new Recorder();
+			for (Map<Request, Recorder> recorder : recorders) {
+				merged.add(recorder.get(request));
+			}
+			total.put(request, merged);
+		}
+		return total;
+	}
+
+	private boolean send(Request request, ThreadLocalRandom random) {
+		int lecturer = random.nextInt(lecturers) + 1;
+		HttpRequest.Builder builder;
+		switch (request) {
+		case DAYS_TO_SET:
+			builder = HttpRequest.newBuilder(URI.create(baseUrl + "/retrieveDaysToSet/" + lecturer)).GET();
+			break;
+		case TASKS_TO_DO:
+			builder = HttpRequest.newBuilder(URI.create(baseUrl + "/getTasksToDo/" + lecturer)).GET();
+			break;
+		case SET_DATES:
+			LocalDate upload = LocalDate.of(2022, 3, 1).plusDays(random.nextInt(60));
+			builder = HttpRequest.newBuilder(URI.create(baseUrl + "/uploadSettedDates"))
+					.PUT(json("{\"assessmentID\": \"" + (random.nextInt(assessments - SCRATCH_ASSESSMENTS) + 1)
+							+ "\", \"uploadDate\": \"" + upload + "\", \"deadlineDate\": \"" + upload.plusDays(14) + "\"}"));
+			break;
+		case ADD_TASK:
+			builder = HttpRequest.newBuilder(URI.create(baseUrl + "/tasks"))
+					.POST(json("{\"assessmentID\": " + (assessments - random.nextInt(SCRATCH_ASSESSMENTS))
+							+ ", \"taskDescription\": \"Load test task\", \"dateToSend\": \""
+							+ LocalDate.of(2022, 3, 1).plusDays(random.nextInt(90)) + "\"}"));
+			break;
+		default:
+			builder = HttpRequest.newBuilder(URI.create(baseUrl + "/changeTaskVisibility/" + (random.nextInt(tasks) + 1)))
+					.PUT(HttpRequest.BodyPublishers.noBody());
+		}
+		try {
+			HttpResponse<Void> response = client.send(builder.timeout(Duration.ofSeconds(30)).build(),
+					HttpResponse.BodyHandlers.discarding());
+			return response.statusCode() < 400;
+		} catch (IOException e) {
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private static HttpRequest.BodyPublisher json(String body) {
+		return HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8);
+	}
+
+	private static void report(Map<Request, Recorder> results, int seconds) {
+		System.out.printf("%-14s %10s %8s %10s %10s %10s %10s %10s%n", "request", "count", "errors", "req/s",
+				"p50 ms", "p99 ms", "p999 ms", "max ms");
+		Recorder total = new Recorder();
+		for (Map.Entry<Request, Recorder> result : results.entrySet()) {
+			print(result.getKey().option, result.getValue(), seconds);
+			total.add(result.getValue());
+		}
+		print("total", total, seconds);
+	}
+
+	private static void print(String name, Recorder recorder, int seconds) {
+		long[] nanos = Arrays.copyOf(recorder.nanos, recorder.count);
+		Arrays.sort(nanos);
+		System.out.printf("%-14s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n", name, recorder.count,
+				recorder.errors, recorder.count / (double) seconds, percentile(nanos, 0.50),
+				percentile(nanos, 0.99), percentile(nanos, 0.999),
+				nanos.length == 0 ? 0.0 : nanos[nanos.length - 1] / 1e6);
+	}
+
+	private static double percentile(long[] sortedNanos, double percentile) {
+		if (sortedNanos.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+		return sortedNanos[Math.max(0, index)] / 1e6;
+	}
+
+	/**
+	 * The latencies of the requests of a virtual user (so it needs no synchronization).
+	 */
+	private static final class Recorder {
+
+		private long[] nanos = new long[1024];
+
+		private int count;
+
+		private int errors;
+
+		private void record(long latencyNanos, boolean succeeded) {
+			if (count == nanos.length) {
+				nanos = Arrays.copyOf(nanos, count * 2);
+			}
+			nanos[count++] = latencyNanos;
+			if (!succeeded) {
+				errors++;
+			}
+		}
+
+		private void add(Recorder other) {
+			for (int i = 0; i < other.count; i++) {
+				record(other.nanos[i], true);
+			}
+			errors += other.errors;
+		}
+
+	}
+
+}
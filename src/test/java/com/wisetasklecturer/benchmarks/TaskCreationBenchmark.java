@@ -0,0 +1,56 @@
+package com.wisetasklecturer.benchmarks;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Compares the throughput of creating tasks one by one through POST /lecturers/tasks
+ * with creating them through POST /lecturers/tasks/batch.
+ *
+ * The benchmark runs against a running instance of the service (and of the admin service,
+ * which is called by the single-task endpoint) and inserts real rows, so it should be
+ * pointed at a test database, e.g.
+ * -Dbenchmark.baseUrl=http://localhost:8027 -Dbenchmark.assessmentId=1 -Dbenchmark.tasks=500
+ * @author Theofanis Gkoufas
+ *
+ */
+public class TaskCreationBenchmark {
+
+	public static void main(String[] args) {
+		String baseUrl = System.getProperty("benchmark.baseUrl", "http://localhost:8027");
+		int assessmentId = Integer.parseInt(System.getProperty("benchmark.assessmentId", "1"));
+		int tasks = Integer.parseInt(System.getProperty("benchmark.tasks", "500"));
+		int batchSize = Integer.parseInt(System.getProperty("benchmark.batchSize", "100"));
+		RestTemplate restTemplate = new RestTemplate();
+		List<Map<String, Object>> definitions = new ArrayList<Map<String, Object>>(tasks);
+		for (int i = 0; i < tasks; i++) {
+			Map<String, Object> definition = new HashMap<String, Object>();
+			definition.put("assessmentID", assessmentId);
+			definition.put("taskDescription", "Benchmark task " + i);
+			definition.put("dateToSend", LocalDate.now().plusDays(i % 30).toString());
+			definitions.add(definition);
+		}
+
+		long start = System.nanoTime();
+		for (Map<String, Object> definition : definitions) {
+			restTemplate.postForLocation(baseUrl + "/lecturers/tasks", definition);
+		}
+		double singleSeconds = (System.nanoTime() - start) / 1e9;
+
+		start = System.nanoTime();
+		for (int from = 0; from < tasks; from += batchSize) {
+			restTemplate.postForObject(baseUrl + "/lecturers/tasks/batch",
+					definitions.subList(from, Math.min(tasks, from + batchSize)), List.class);
+		}
+		double batchSeconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("single: %d tasks in %.3f s (%.1f tasks/s)%n", tasks, singleSeconds, tasks / singleSeconds);
+		System.out.printf("batch:  %d tasks in %.3f s (%.1f tasks/s, %d per request)%n", tasks, batchSeconds,
+				tasks / batchSeconds, batchSize);
+	}
+
+}
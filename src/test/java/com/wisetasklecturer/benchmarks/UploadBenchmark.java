@@ -0,0 +1,164 @@
+package com.wisetasklecturer.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.RequestContext;
+import org.apache.commons.fileupload.disk.DiskFileItemFactory;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+
+/**
+ * Compares reading an uploaded file through ServletFileUpload.parseRequest() with the default
+ * DiskFileItemFactory (which stores every part above its threshold in a temporary file) with
+ * reading it through the streaming API (getItemIterator), which is what POST /imports/workbook
+ * uses. For each file size it reports the wall time and the bytes written by the process
+ * (wchar and write_bytes of /proc/self/io, so the disk I/O is only reported on Linux).
+ *
+ * The benchmark runs in-process and does not need a running instance, e.g.
+ * -Dbenchmark.sizesMb=1,10,50 -Dbenchmark.iterations=5
+ * @author Theofanis Gkoufas
+ *
+ */
+public class UploadBenchmark {
+
+	private static final String BOUNDARY = "----UploadBenchmarkBoundary";
+
+	public static void main(String[] args) throws Exception {
+		String[] sizes = System.getProperty("benchmark.sizesMb", "1,10,50").split(",");
+		int iterations = Integer.parseInt(System.getProperty("benchmark.iterations", "5"));
+		System.out.printf("%8s %10s %14s %14s %10s %14s %14s%n", "size MB", "disk ms", "disk wchar",
+				"disk written", "stream ms", "stream wchar", "stream written");
+		for (String size : sizes) {
+			byte[] body = multipartBody(Integer.parseInt(size.trim()) * 1024 * 1024);
+			// warm up both paths once
+			readWithFactory(body);
+			readStreaming(body);
+			long[] disk = measure(() -> readWithFactory(body), iterations);
+			long[] stream = measure(() -> readStreaming(body), iterations);
+			System.out.printf("%8s %10.1f %14d %14d %10.1f %14d %14d%n", size.trim(),
+					disk[0] / 1e6, disk[1], disk[2], stream[0] / 1e6, stream[1], stream[2]);
+		}
+	}
+
+	private static long readWithFactory(byte[] body) throws IOException, FileUploadException {
+		ServletFileUpload upload = new ServletFileUpload(new DiskFileItemFactory());
+		List<FileItem> items = upload.parseRequest(context(body));
+		long read = 0;
+		for (FileItem item : items) {
+			try (InputStream content = item.getInputStream()) {
+				read += consume(content);
+			}
+			item.delete();
+		}
+		return read;
+	}
+
+	private static long readStreaming(byte[] body) throws IOException, FileUploadException {
+		ServletFileUpload upload = new ServletFileUpload();
+		FileItemIterator items = upload.getItemIterator(context(body));
+		long read = 0;
+		while (items.hasNext()) {
+			FileItemStream item = items.next();
+			try (InputStream content = item.openStream()) {
+				read += consume(content);
+			}
+		}
+		return read;
+	}
+
+	private static long consume(InputStream content) throws IOException {
+		byte[] buffer = new byte[8192];
+		long read = 0;
+		int count;
+		while ((count = content.read(buffer)) != -1) {
+			read += count;
+		}
+		return read;
+	}
+
+	/**
+	 * @return The average wall time (ns), and the average wchar and write_bytes per iteration.
+	 */
+	private static long[] measure(Upload upload, int iterations) throws Exception {
+		long[] ioBefore = processIo();
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			upload.read();
+		}
+		long nanos = System.nanoTime() - start;
+		long[] ioAfter = processIo();
+		return new long[] {nanos / iterations, (ioAfter[0] - ioBefore[0]) / iterations,
+				(ioAfter[1] - ioBefore[1]) / iterations};
+	}
+
+	private static long[] processIo() {
+		long[] io = new long[2];
+		try {
+			for (String line : Files.readAllLines(Paths.get("/proc/self/io"))) {
+				if (line.startsWith("wchar:")) {
+					io[0] = Long.parseLong(line.substring(6).trim());
+				} else if (line.startsWith("write_bytes:")) {
+					io[1] = Long.parseLong(line.substring(12).trim());
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			// not available on this platform, the disk I/O is reported as 0
+		}
+		return io;
+	}
+
+	private static byte[] multipartBody(int fileSize) throws IOException {
+		byte[] file = new byte[fileSize];
+		new Random(42).nextBytes(file);
+		ByteArrayOutputStream body = new ByteArrayOutputStream(fileSize + 512);
+		body.write(("--" + BOUNDARY + "\r\n"
+				+ "Content-Disposition: form-data; name=\"workbook\"; filename=\"semester.xlsx\"\r\n"
+				+ "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+		body.write(file);
+		body.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+		return body.toByteArray();
+	}
+
+	private static RequestContext context(byte[] body) {
+		return new RequestContext() {
+
+			@Override
+			public String getCharacterEncoding() {
+				return "UTF-8";
+			}
+
+			@Override
+			public String getContentType() {
+				return "multipart/form-data; boundary=" + BOUNDARY;
+			}
+
+			@Override
+			public int getContentLength() {
+				return body.length;
+			}
+
+			@Override
+			public InputStream getInputStream() {
+				return new ByteArrayInputStream(body);
+			}
+
+		};
+	}
+
+	private interface Upload {
+
+		long read() throws Exception;
+
+	}
+
+}
@@ -0,0 +1,54 @@
+package com.wisetasklecturer.entities;
+
+import java.time.LocalDate;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A test class responsible for testing the bitmask of the weeks of the assessments.
+ * @author Theofanis Gkoufas
+ *
+ */
+class AssessmentWeeksTests {
+
+	@Test
+	public void testParseAndFormat() {
+		AssessmentWeeks weeks = AssessmentWeeks.parse("00000001111111000");
+		Assertions.assertEquals(0b11111110000000, weeks.toMask());
+		Assertions.assertEquals(8, weeks.firstWeek());
+		Assertions.assertEquals(14, weeks.lastWeek());
+		Assertions.assertEquals(7, weeks.cardinality());
+		Assertions.assertTrue(weeks.get(8));
+		Assertions.assertFalse(weeks.get(7));
+		Assertions.assertEquals("00000001111111000", weeks.toString());
+		Assertions.assertEquals(weeks, AssessmentWeeks.valueOf(weeks.toMask()));
+	}
+
+	@Test
+	public void testSetClearAndNextSetWeek() {
+		AssessmentWeeks weeks = AssessmentWeeks.parse("00000100000000000").set(10).set(32);
+		Assertions.assertEquals(6, weeks.nextSetWeek(1));
+		Assertions.assertEquals(10, weeks.nextSetWeek(7));
+		Assertions.assertEquals(32, weeks.nextSetWeek(11));
+		Assertions.assertEquals(32, weeks.lastWeek());
+		Assertions.assertEquals(0, weeks.clear(32).nextSetWeek(11));
+		Assertions.assertTrue(AssessmentWeeks.parse("0000").isEmpty());
+	}
+
+	@Test
+	public void testWindowDates() {
+		LocalDate week1 = LocalDate.parse("2022-04-04");
+		AssessmentWeeks weeks = AssessmentWeeks.parse("00000001111111000");
+		Assertions.assertEquals(LocalDate.parse("2022-05-23"), weeks.startDate(week1));
+		Assertions.assertEquals(LocalDate.parse("2022-07-10"), weeks.endDate(week1));
+		Assertions.assertNull(AssessmentWeeks.parse("000").startDate(week1));
+	}
+
+	@Test
+	public void testInvalidWeeks() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> AssessmentWeeks.parse("0012"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> AssessmentWeeks.parse("0".repeat(33)));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> AssessmentWeeks.weekMask(0));
+	}
+
+}
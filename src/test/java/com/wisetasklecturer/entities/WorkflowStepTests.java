@@ -0,0 +1,74 @@
+package com.wisetasklecturer.entities;
+
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+import javax.persistence.Column;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A test class responsible for testing the dates of the workflow steps of the assessments,
+ * and the columns of the settings that hold their offsets.
+ * @author Theofanis Gkoufas
+ *
+ */
+class WorkflowStepTests {
+
+	private static final LocalDate UPLOAD_DATE = LocalDate.parse("2022-03-07");
+
+	private static final LocalDate DEADLINE_DATE = LocalDate.parse("2022-03-28");
+
+	@Test
+	public void testStepsBeforeTheUploadDate() {
+		Assertions.assertEquals(LocalDate.parse("2022-02-28"), WorkflowStep.READY.dateToSend(UPLOAD_DATE, DEADLINE_DATE, 7));
+		Assertions.assertEquals(LocalDate.parse("2022-03-04"),
+				WorkflowStep.MODERATION.dateToSend(UPLOAD_DATE, DEADLINE_DATE, 3));
+		// across the end of a month, and with no offset at all
+		Assertions.assertEquals(LocalDate.parse("2022-02-26"), WorkflowStep.READY.dateToSend(UPLOAD_DATE, DEADLINE_DATE, 9));
+		Assertions.assertEquals(UPLOAD_DATE, WorkflowStep.MODERATION.dateToSend(UPLOAD_DATE, DEADLINE_DATE, 0));
+	}
+
+	@Test
+	public void testStepsAfterTheDeadlineDate() {
+		Assertions.assertEquals(LocalDate.parse("2022-04-11"),
+				WorkflowStep.CORRECTION.dateToSend(UPLOAD_DATE, DEADLINE_DATE, 14));
+		Assertions.assertEquals(LocalDate.parse("2022-04-04"),
+				WorkflowStep.POST_MODERATION.dateToSend(UPLOAD_DATE, DEADLINE_DATE, 7));
+		Assertions.assertEquals(DEADLINE_DATE, WorkflowStep.GRADES_UPLOAD.dateToSend(UPLOAD_DATE, DEADLINE_DATE, 0));
+	}
+
+	@Test
+	public void testStepNumbers() {
+		for (WorkflowStep step : WorkflowStep.values()) {
+			Assertions.assertEquals(step, WorkflowStep.of(step.getNumber()));
+			Assertions.assertTrue(step.getTaskDescription().startsWith("Step " + step.getNumber() + ": "));
+		}
+		Assertions.assertNull(WorkflowStep.of(0));
+		Assertions.assertNull(WorkflowStep.of(6));
+	}
+
+	@Test
+	public void testEveryOffsetIsAColumnOfTheSettings() {
+		Set<String> columns = new HashSet<String>();
+		for (Field field : Settings.class.getDeclaredFields()) {
+			Column column = field.getAnnotation(Column.class);
+			if (column != null && column.name().contains("_step")) {
+				columns.add(column.name());
+			}
+		}
+		Set<String> offsetColumns = new HashSet<String>();
+		for (AssessmentType type : AssessmentType.values()) {
+			for (WorkflowStep step : WorkflowStep.values()) {
+				offsetColumns.add(type.settingsColumn(step));
+			}
+		}
+		Assertions.assertEquals(AssessmentType.values().length * WorkflowStep.values().length, offsetColumns.size());
+		Assertions.assertEquals(columns, offsetColumns);
+		Assertions.assertEquals("quiz_step1_preDaysUntilReady", AssessmentType.QUIZ.settingsColumn(WorkflowStep.READY));
+		Assertions.assertEquals("assessedL_step5_gradesUpload",
+				AssessmentType.ASSESSED_LAB.settingsColumn(WorkflowStep.GRADES_UPLOAD));
+	}
+
+}
@@ -0,0 +1,49 @@
+package com.wisetasklecturer.monitoring;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * A test class responsible for testing the timers of the queries and their outcomes.
+ * @author Theofanis Gkoufas
+ *
+ */
+class QueryMetricsTests {
+
+	private SimpleMeterRegistry meterRegistry;
+
+	private QueryMetrics queryMetrics;
+
+	@BeforeEach
+	public void setUp() {
+		meterRegistry = new SimpleMeterRegistry();
+		queryMetrics = new QueryMetrics();
+		ReflectionTestUtils.setField(queryMetrics, "meterRegistry", meterRegistry);
+	}
+
+	@Test
+	public void testQueriesAreRecordedWithTheirOutcome() {
+		try (QueryTimer timer = queryMetrics.time("tasksToDo")) {
+			timer.success();
+		}
+		// a query that throws before it succeeds
+		Assertions.assertThrows(IllegalStateException.class, () -> {
+			try (QueryTimer timer = queryMetrics.time("tasksToDo")) {
+				throw new IllegalStateException("Connection refused");
+			}
+		});
+		try (QueryTimer timer = queryMetrics.time("tasksToDo")) {
+			// a query whose failure is caught, so it never succeeds
+		}
+		Assertions.assertEquals(1, count("tasksToDo", "SUCCESS"));
+		Assertions.assertEquals(2, count("tasksToDo", "ERROR"));
+	}
+
+	private long count(String query, String outcome) {
+		return meterRegistry.get(QueryMetrics.TIMER).tag("query", query).tag("outcome", outcome).timer().count();
+	}
+
+}
@@ -0,0 +1,167 @@
+package com.wisetasklecturer.monitoring;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import com.wisetasklecturer.entities.SlowQuery;
+
+/**
+ * A test class responsible for testing the tracing of the statements and the slow query log.
+ * @author Theofanis Gkoufas
+ *
+ */
+class TracingDataSourceTests {
+
+	private SlowQueryLog slowQueryLog;
+
+	private PreparedStatement statement;
+
+	private ResultSet resultSet;
+
+	private DataSource dataSource;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		slowQueryLog = new SlowQueryLog();
+		ReflectionTestUtils.setField(slowQueryLog, "enabled", true);
+		// every statement is slow
+		ReflectionTestUtils.setField(slowQueryLog, "thresholdMillis", 0L);
+		ReflectionTestUtils.setField(slowQueryLog, "bufferSize", 2);
+		ReflectionTestUtils.setField(slowQueryLog, "redactParameters", true);
+		slowQueryLog.init();
+		resultSet = Mockito.mock(ResultSet.class);
+		Mockito.when(resultSet.next()).thenReturn(true, true, true, false);
+		statement = Mockito.mock(PreparedStatement.class);
+		Mockito.when(statement.executeQuery()).thenReturn(resultSet);
+		Connection connection = Mockito.mock(Connection.class);
+		Mockito.when(connection.prepareStatement(Mockito.anyString())).thenReturn(statement);
+		DataSource pool = Mockito.mock(DataSource.class);
+		Mockito.when(pool.getConnection()).thenReturn(connection);
+		dataSource = new TracingDataSource(pool, slowQueryLog);
+	}
+
+	@Test
+	public void testQueryIsRecordedWithItsRowsAndParameters() throws Exception {
+		try (Connection connection = dataSource.getConnection();
+			 PreparedStatement traced = connection.prepareStatement("SELECT * FROM modules WHERE primary_lecturer LIKE ?")) {
+			traced.setInt(2, 42);
+			traced.setString(1, "%lecturer%");
+			try (ResultSet rows = traced.executeQuery()) {
+				while (rows.next()) {
+				}
+			}
+		}
+		List<SlowQuery> slowQueries = slowQueryLog.recent();
+		Assertions.assertEquals(1, slowQueries.size());
+		SlowQuery slowQuery = slowQueries.get(0);
+		Assertions.assertEquals("SELECT * FROM modules WHERE primary_lecturer LIKE ?", slowQuery.getSql());
+		Assertions.assertEquals(3, slowQuery.getRows());
+		Assertions.assertEquals(Arrays.asList("'%<8 chars>%'", "42"), slowQuery.getParameters());
+		Assertions.assertNull(slowQuery.getError());
+	}
+
+	@Test
+	public void testBatchAndFailedStatementsAreRecorded() throws Exception {
+		Mockito.when(statement.executeBatch()).thenReturn(new int[] {1, 1, 0});
+		Mockito.when(statement.executeUpdate()).thenThrow(new SQLException("Deadlock found"));
+		try (Connection connection = dataSource.getConnection();
+			 PreparedStatement traced = connection.prepareStatement("UPDATE tasks SET isCompleted = 1 WHERE task_id = ?")) {
+			for (int taskId = 1; taskId <= 3; taskId++) {
+				traced.setInt(1, taskId);
+				traced.addBatch();
+			}
+			traced.executeBatch();
+			Assertions.assertThrows(SQLException.class, traced::executeUpdate);
+		}
+		List<SlowQuery> slowQueries = slowQueryLog.recent();
+		Assertions.assertEquals(2, slowQueries.size());
+		Assertions.assertTrue(slowQueries.get(0).getError().contains("Deadlock found"));
+		Assertions.assertEquals(3, slowQueries.get(1).getBatchSize());
+		Assertions.assertEquals(2, slowQueries.get(1).getRows());
+		Assertions.assertEquals(1L, slowQueryLog.snapshot().get("failedStatements"));
+	}
+
+	@Test
+	public void testOnlyTheLastQueriesAreKept() throws Exception {
+		try (Connection connection = dataSource.getConnection()) {
+			for (String sql : new String[] {"SELECT 1", "SELECT 2", "SELECT 3"}) {
+				try (PreparedStatement traced = connection.prepareStatement(sql)) {
+					traced.executeQuery().close();
+				}
+			}
+		}
+		List<SlowQuery> slowQueries = slowQueryLog.recent();
+		Assertions.assertEquals(2, slowQueries.size());
+		Assertions.assertEquals("SELECT 3", slowQueries.get(0).getSql());
+		Assertions.assertEquals("SELECT 2", slowQueries.get(1).getSql());
+		Assertions.assertEquals(3L, slowQueryLog.snapshot().get("slowStatements"));
+	}
+
+	@Test
+	public void testProxiesEqualOnlyThemselves() throws Exception {
+		try (Connection connection = dataSource.getConnection();
+			 PreparedStatement traced = connection.prepareStatement("SELECT 1");
+			 ResultSet rows = traced.executeQuery()) {
+			for (Object proxy : new Object[] {connection, traced, rows}) {
+				Assertions.assertEquals(proxy, proxy);
+				Assertions.assertEquals(System.identityHashCode(proxy), proxy.hashCode());
+			}
+			Assertions.assertNotEquals(statement, traced);
+			Assertions.assertNotEquals(traced, statement);
+			Assertions.assertNotEquals(resultSet, rows);
+			Assertions.assertNotEquals(connection, dataSource.getConnection());
+		}
+	}
+
+	@Test
+	public void testProxiesOfTheConnectionAndStatementAreReturned() throws Exception {
+		try (Connection connection = dataSource.getConnection();
+			 PreparedStatement traced = connection.prepareStatement("SELECT 1");
+			 ResultSet rows = traced.executeQuery()) {
+			Assertions.assertSame(connection, traced.getConnection());
+			Assertions.assertSame(traced, rows.getStatement());
+		}
+	}
+
+	@Test
+	public void testResultSetOfExecuteIsTraced() throws Exception {
+		Mockito.when(statement.execute()).thenReturn(true);
+		Mockito.when(statement.getResultSet()).thenReturn(resultSet);
+		try (Connection connection = dataSource.getConnection();
+			 PreparedStatement traced = connection.prepareStatement("SELECT * FROM tasks WHERE task_id = ?")) {
+			traced.setInt(1, 7);
+			Assertions.assertTrue(traced.execute());
+			// the query is recorded once its rows have been fetched
+			Assertions.assertTrue(slowQueryLog.recent().isEmpty());
+			try (ResultSet rows = traced.getResultSet()) {
+				Assertions.assertSame(traced, rows.getStatement());
+				while (rows.next()) {
+				}
+				Assertions.assertEquals(1, slowQueryLog.recent().size());
+			}
+		}
+		List<SlowQuery> slowQueries = slowQueryLog.recent();
+		Assertions.assertEquals(1, slowQueries.size());
+		Assertions.assertEquals("SELECT * FROM tasks WHERE task_id = ?", slowQueries.get(0).getSql());
+		Assertions.assertEquals(3, slowQueries.get(0).getRows());
+		Assertions.assertEquals(Arrays.asList("7"), slowQueries.get(0).getParameters());
+	}
+
+	@Test
+	public void testParametersAreRedacted() {
+		Assertions.assertEquals("'<21 chars>'", SlowQueryLog.render("lecturer1@example.com", true));
+		Assertions.assertEquals("'lecturer1'", SlowQueryLog.render("lecturer1", false));
+		Assertions.assertEquals("NULL", SlowQueryLog.render(null, true));
+		Assertions.assertEquals("2022-03-14", SlowQueryLog.render(java.sql.Date.valueOf("2022-03-14"), true));
+	}
+
+}
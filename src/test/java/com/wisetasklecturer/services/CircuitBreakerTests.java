@@ -0,0 +1,146 @@
+package com.wisetasklecturer.services;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * A test class responsible for testing the circuit breaker and the bulkhead of the calls to the
+ * other microservices.
+ * @author Theofanis Gkoufas
+ *
+ */
+class CircuitBreakerTests {
+
+	@Test
+	public void testBreakerOpensAfterConsecutiveFailures() {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(3, 1, TimeUnit.MINUTES);
+		for (int i = 0; i < 2; i++) {
+			Assertions.assertTrue(circuitBreaker.tryAcquire());
+			circuitBreaker.onFailure();
+		}
+		// a success resets the failures in a row
+		Assertions.assertTrue(circuitBreaker.tryAcquire());
+		circuitBreaker.onSuccess();
+		for (int i = 0; i < 3; i++) {
+			Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+			Assertions.assertTrue(circuitBreaker.tryAcquire());
+			circuitBreaker.onFailure();
+		}
+		Assertions.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+		Assertions.assertFalse(circuitBreaker.tryAcquire());
+		Assertions.assertEquals(1, circuitBreaker.getTimesOpened());
+	}
+
+	@Test
+	public void testHalfOpenBreakerAllowsOneTrialCall() throws Exception {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(1, 50, TimeUnit.MILLISECONDS);
+		circuitBreaker.tryAcquire();
+		circuitBreaker.onFailure();
+		Thread.sleep(100);
+		Assertions.assertTrue(circuitBreaker.tryAcquire());
+		Assertions.assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+		Assertions.assertFalse(circuitBreaker.tryAcquire());
+		// a failed trial call opens the breaker again
+		circuitBreaker.onFailure();
+		Assertions.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+		Assertions.assertEquals(2, circuitBreaker.getTimesOpened());
+		Thread.sleep(100);
+		Assertions.assertTrue(circuitBreaker.tryAcquire());
+		circuitBreaker.onSuccess();
+		Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+		Assertions.assertTrue(circuitBreaker.tryAcquire());
+	}
+
+	@Test
+	public void testLateSuccessesDoNotCloseTheBreaker() throws Exception {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(1, 50, TimeUnit.MILLISECONDS);
+		// two calls are allowed while the breaker is closed, and the second one fails first
+		Assertions.assertTrue(circuitBreaker.tryAcquire());
+		Assertions.assertTrue(circuitBreaker.tryAcquire());
+		circuitBreaker.onFailure();
+		circuitBreaker.onSuccess();
+		Assertions.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+		Thread.sleep(100);
+		Assertions.assertTrue(circuitBreaker.tryAcquire());
+		// a call of another thread finishes while the trial call is in progress
+		Thread lateCall = new Thread(circuitBreaker::onSuccess);
+		lateCall.start();
+		lateCall.join();
+		Assertions.assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+		Assertions.assertFalse(circuitBreaker.tryAcquire());
+		circuitBreaker.onSuccess();
+		Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+	}
+
+	@Test
+	public void testExceptionsOfTheCallerAreNotFailures() throws Exception {
+		DownstreamService service = new DownstreamService("users", new RestTemplate(),
+				new CircuitBreaker(1, 50, TimeUnit.MILLISECONDS), 1, 0, true);
+		Assertions.assertThrows(IllegalStateException.class, () -> service.call(restTemplate -> {
+			throw new IllegalStateException("Unexpected response");
+		}, () -> "local"));
+		Assertions.assertEquals(CircuitBreaker.State.CLOSED, service.getState());
+		Assertions.assertEquals(0L, service.snapshot().get("failures"));
+		Assertions.assertEquals("local", service.call(restTemplate -> {
+			throw new ResourceAccessException("Read timed out");
+		}, () -> "local"));
+		Assertions.assertEquals(CircuitBreaker.State.OPEN, service.getState());
+		Thread.sleep(100);
+		// the permit of the trial call is given back, so the next call is the trial call
+		Assertions.assertThrows(IllegalStateException.class, () -> service.call(restTemplate -> {
+			throw new IllegalStateException("Unexpected response");
+		}, () -> "local"));
+		Assertions.assertEquals(CircuitBreaker.State.HALF_OPEN, service.getState());
+		Assertions.assertEquals("remote", service.call(restTemplate -> "remote", () -> "local"));
+		Assertions.assertEquals(CircuitBreaker.State.CLOSED, service.getState());
+		Assertions.assertEquals(1L, service.snapshot().get("failures"));
+		Assertions.assertEquals(1, service.snapshot().get("availablePermits"));
+	}
+
+	@Test
+	public void testFailedCallsAreAnsweredByTheFallback() {
+		DownstreamService service = new DownstreamService("users", new RestTemplate(),
+				new CircuitBreaker(2, 1, TimeUnit.MINUTES), 1, 0, true);
+		for (int i = 0; i < 3; i++) {
+			Assertions.assertEquals("local", service.call(restTemplate -> {
+				throw new ResourceAccessException("Read timed out");
+			}, () -> "local"));
+		}
+		Assertions.assertEquals(CircuitBreaker.State.OPEN, service.getState());
+		Assertions.assertEquals(2L, service.snapshot().get("failures"));
+		Assertions.assertEquals(1L, service.snapshot().get("rejectedByCircuitBreaker"));
+		Assertions.assertEquals(3L, service.snapshot().get("fallbacks"));
+		ResponseStatusException e = Assertions.assertThrows(ResponseStatusException.class,
+				() -> service.call(restTemplate -> "remote", null));
+		Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatus());
+	}
+
+	@Test
+	public void testClientErrorsDoNotOpenTheBreaker() {
+		DownstreamService service = new DownstreamService("admin", new RestTemplate(),
+				new CircuitBreaker(1, 1, TimeUnit.MINUTES), 1, 0, true);
+		Assertions.assertThrows(HttpClientErrorException.class, () -> service.call(restTemplate -> {
+			throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+		}, () -> "local"));
+		Assertions.assertEquals(CircuitBreaker.State.CLOSED, service.getState());
+		Assertions.assertEquals("remote", service.call(restTemplate -> "remote", () -> "local"));
+	}
+
+	@Test
+	public void testFullBulkheadRejectsCalls() throws Exception {
+		DownstreamService service = new DownstreamService("users", new RestTemplate(),
+				new CircuitBreaker(1, 1, TimeUnit.MINUTES), 1, 10, true);
+		Assertions.assertEquals("local", service.call(restTemplate ->
+				service.call(nested -> "remote", () -> "local"), () -> "outer"));
+		Assertions.assertEquals(1L, service.snapshot().get("rejectedByBulkhead"));
+		Assertions.assertEquals(1, service.snapshot().get("availablePermits"));
+		Assertions.assertEquals(CircuitBreaker.State.CLOSED, service.getState());
+	}
+
+}
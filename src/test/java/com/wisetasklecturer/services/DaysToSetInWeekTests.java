@@ -0,0 +1,141 @@
+package com.wisetasklecturer.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import com.wisetasklecturer.TestDatabase;
+import com.wisetasklecturer.entities.AssessmentWeeks;
+import com.wisetasklecturer.entities.PendingTaskToSet;
+import com.wisetasklecturer.entities.PendingTasksToSet;
+import com.wisetasklecturer.monitoring.QueryMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * A test class responsible for testing which of the assessments of a lecturer are selected
+ * for a week of the semester against an embedded database, whose weeks bitmask and first/last
+ * week columns are seeded the way that MySQL generates them; assessments with gaps between
+ * their weeks, an assessment of another lecturer and an assessment whose dates are set.
+ * @author Theofanis Gkoufas
+ *
+ */
+class DaysToSetInWeekTests {
+
+	private LecturerServices lecturerServices;
+
+	private DataSource dataSource;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		dataSource = TestDatabase.create();
+		seed();
+		lecturerServices = new LecturerServices();
+		ApplicationContext context = Mockito.mock(ApplicationContext.class);
+		Mockito.when(context.getBean(DataSource.class)).thenReturn(dataSource);
+		Mockito.when(context.getBean(PendingTasksToSet.class)).thenAnswer(invocation -> {
+			PendingTasksToSet pendingTasksToSet = new PendingTasksToSet();
+			pendingTasksToSet.setPendingTasksToSetList(new ArrayList<PendingTaskToSet>());
+			return pendingTasksToSet;
+		});
+		lecturerServices.context = context;
+		lecturerServices.lecturerResolution = LecturerResolution.INDEXED;
+		QueryMetrics queryMetrics = new QueryMetrics();
+		ReflectionTestUtils.setField(queryMetrics, "meterRegistry", new SimpleMeterRegistry());
+		lecturerServices.queryMetrics = queryMetrics;
+		ReflectionTestUtils.setField(lecturerServices, "defaultPageSize", 10);
+		ReflectionTestUtils.setField(lecturerServices, "maximumPageSize", 100);
+	}
+
+	@Test
+	public void testAssessmentsOfTheWeekAreSelected() {
+		Assertions.assertEquals(Arrays.asList(), assessmentIdsInWeek(1));
+		Assertions.assertEquals(Arrays.asList(1, 3), assessmentIdsInWeek(2));
+		// the week is between the first and last week of the quizzes, but none of them takes place
+		Assertions.assertEquals(Arrays.asList(), assessmentIdsInWeek(3));
+		Assertions.assertEquals(Arrays.asList(1), assessmentIdsInWeek(4));
+		Assertions.assertEquals(Arrays.asList(2, 3), assessmentIdsInWeek(8));
+		Assertions.assertEquals(Arrays.asList(2, 3), assessmentIdsInWeek(14));
+		Assertions.assertEquals(Arrays.asList(3), assessmentIdsInWeek(17));
+		Assertions.assertEquals(Arrays.asList(), assessmentIdsInWeek(AssessmentWeeks.MAX_WEEKS));
+	}
+
+	@Test
+	public void testWindowIsComputedFromTheWeeksBitmask() {
+		List<PendingTaskToSet> pendingTasks = lecturerServices.retrieveDaysToSetInWeek(1, 8, null, 10)
+				.getPendingTasksToSetList();
+		PendingTaskToSet project = pendingTasks.get(0);
+		Assertions.assertEquals(AssessmentWeeks.parse("00000001111111000").toMask(), project.getAssessmentWeeksMask());
+		// week 8 starts 7 weeks after 2022-02-07, and week 14 ends 6 days after it starts
+		Assertions.assertEquals(LocalDate.of(2022, 3, 28), project.getWindowStartDate());
+		Assertions.assertEquals(LocalDate.of(2022, 5, 15), project.getWindowEndDate());
+	}
+
+	private List<Integer> assessmentIdsInWeek(int week) {
+		List<Integer> assessmentIds = new ArrayList<Integer>();
+		for (PendingTaskToSet pendingTask : lecturerServices.retrieveDaysToSetInWeek(1, week, null, 10)
+				.getPendingTasksToSetList()) {
+			assessmentIds.add(pendingTask.getAssessmentId());
+		}
+		return assessmentIds;
+	}
+
+	private void seed() throws SQLException {
+		execute("INSERT INTO users VALUES (0, 'admin', '', 'ADMIN', 'admin@wisetask.test'), "
+				+ "(1, 'alice', '', 'LECTURER', 'alice@wisetask.test'), "
+				+ "(2, 'bob', '', 'LECTURER', 'bob@wisetask.test')");
+		execute("INSERT INTO entries VALUES (1, 'Semester 2', 0, DATE '2022-01-10')");
+		execute("INSERT INTO settings (settings_id, entry_FK, week1_begin_date, time_to_send_notif) "
+				+ "VALUES (1, 1, DATE '2022-02-07', '00:00:00')");
+		execute("INSERT INTO modules (module_id, module_name, module_code, primary_lecturer, moderator_lecturer, "
+				+ "curriculum, module_belongsTo_entry) VALUES (1, 'Databases', 'DB', 'alice', NULL, 'CS', 1), "
+				+ "(2, 'Networks', 'NT', 'bob', NULL, 'CS', 1)");
+		execute("INSERT INTO lecturer_modules VALUES (1, 1, 'PRIMARY'), (2, 2, 'PRIMARY')");
+		// two quizzes (weeks 2 and 4), a project, a report of every other week, the quizzes of
+		// the other lecturer and a quiz whose dates are already set
+		insertAssessment(1, "QUIZ", "01010000000000000", 1, 0);
+		insertAssessment(2, "PROJECT", "00000001111111000", 1, 0);
+		insertAssessment(3, "REPORT", "01000001010101001", 1, 0);
+		insertAssessment(4, "QUIZ", "01010001000000001", 2, 0);
+		insertAssessment(5, "QUIZ", "01000001000000001", 1, 1);
+	}
+
+	private void insertAssessment(int assessmentId, String type, String weeks, int moduleId, int areDatesSet)
+			throws SQLException {
+		// the columns that MySQL generates from assessment_weeks (db/004_assessment_weeks_mask.sql)
+		AssessmentWeeks assessmentWeeks = AssessmentWeeks.parse(weeks);
+		try (Connection connection = dataSource.getConnection();
+			 PreparedStatement statement = connection.prepareStatement("INSERT INTO assessments (assessment_id, "
+					 + "assessment_type, assessment_weight, assessment_weeks, areDatesSet, assessment_belongsTo_module, "
+					 + "assessment_weeks_mask, assessment_first_week, assessment_last_week) "
+					 + "VALUES (?, ?, 10, ?, ?, ?, ?, ?, ?)")) {
+			statement.setInt(1, assessmentId);
+			statement.setString(2, type);
+			statement.setString(3, weeks);
+			statement.setInt(4, areDatesSet);
+			statement.setInt(5, moduleId);
+			statement.setInt(6, assessmentWeeks.toMask());
+			statement.setInt(7, assessmentWeeks.firstWeek());
+			statement.setInt(8, assessmentWeeks.lastWeek());
+			statement.executeUpdate();
+		}
+	}
+
+	private void execute(String sql) throws SQLException {
+		try (Connection connection = dataSource.getConnection();
+			 Statement statement = connection.createStatement()) {
+			statement.execute(sql);
+		}
+	}
+
+}
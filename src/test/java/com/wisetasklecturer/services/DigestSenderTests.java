@@ -0,0 +1,92 @@
+package com.wisetasklecturer.services;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import com.wisetasklecturer.entities.TaskToDo;
+
+/**
+ * A test class responsible for testing the sending of the digests of the due tasks,
+ * against an in-process SMTP server.
+ * @author Theofanis Gkoufas
+ *
+ */
+class DigestSenderTests {
+
+	private LocalSmtpServer smtpServer;
+
+	private ThreadPoolTaskExecutor mailExecutor;
+
+	private DigestSender digestSender;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		smtpServer = new LocalSmtpServer();
+		JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+		mailSender.setHost("localhost");
+		mailSender.setPort(smtpServer.getPort());
+		mailExecutor = new ThreadPoolTaskExecutor();
+		mailExecutor.setCorePoolSize(2);
+		mailExecutor.initialize();
+		digestSender = new DigestSender();
+		digestSender.mailSender = mailSender;
+		digestSender.mailExecutor = mailExecutor;
+		ReflectionTestUtils.setField(digestSender, "from", "wisetask@localhost");
+		ReflectionTestUtils.setField(digestSender, "messagesPerConnection", 5);
+		ReflectionTestUtils.setField(digestSender, "maxAttempts", 3);
+		ReflectionTestUtils.setField(digestSender, "initialBackoffMillis", 10L);
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		mailExecutor.shutdown();
+		smtpServer.close();
+	}
+
+	@Test
+	public void testDigestsShareConnections() {
+		AtomicInteger sentDigests = new AtomicInteger();
+		DigestSender.Result result = digestSender.send(digests(20), sent -> sentDigests.addAndGet(sent.size()));
+		Assertions.assertEquals(20, result.sent.get());
+		Assertions.assertEquals(20, sentDigests.get());
+		Assertions.assertEquals(20, smtpServer.getRecipients().size());
+		// one connection per chunk of 5 messages
+		Assertions.assertEquals(4, smtpServer.getConnectionCount());
+	}
+
+	@Test
+	public void testFailedDigestIsRetried() {
+		smtpServer.failOnce("lecturer3@wisetask.test");
+		DigestSender.Result result = digestSender.send(digests(5), sent -> {});
+		Assertions.assertEquals(5, result.sent.get());
+		Assertions.assertEquals(1, result.retries.get());
+		Assertions.assertEquals(0, result.failed.get());
+		Assertions.assertTrue(smtpServer.getRecipients().contains("lecturer3@wisetask.test"));
+	}
+
+	private static List<TaskDigest> digests(int count) {
+		List<TaskDigest> digests = new ArrayList<TaskDigest>();
+		for (int i = 0; i < count; i++) {
+			TaskDigest digest = new TaskDigest("lecturer" + i + "@wisetask.test");
+			digest.getTasks().add(TaskToDo.builder()
+					.taskId(i)
+					.taskDescription("Send the assessment to the moderator")
+					.dateToSend(LocalDate.now())
+					.moduleName("Software Engineering")
+					.curriculum("SE")
+					.assessmentType("PROJECT")
+					.build());
+			digests.add(digest);
+		}
+		return digests;
+	}
+
+}
@@ -0,0 +1,191 @@
+package com.wisetasklecturer.services;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import com.wisetasklecturer.TestDatabase;
+import com.wisetasklecturer.entities.ImportProgress;
+
+/**
+ * A test class responsible for testing the parsing of the imported workbooks.
+ * @author Theofanis Gkoufas
+ *
+ */
+class ImportJobTests {
+
+	private File workbook;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		workbook = File.createTempFile("import-test-", ".xlsx");
+	}
+
+	@AfterEach
+	public void tearDown() {
+		workbook.delete();
+	}
+
+	@Test
+	public void testSheetsAreReadInOrder() throws Exception {
+		XSSFWorkbook excel = new XSSFWorkbook();
+		CellStyle dateStyle = excel.createCellStyle();
+		dateStyle.setDataFormat(excel.getCreationHelper().createDataFormat().getFormat("d/m/yy"));
+		Sheet tasks = excel.createSheet("Tasks");
+		header(tasks, "module_code", "assessment_type", "task_description", "Date_To_Send");
+		Row task = tasks.createRow(1);
+		task.createCell(0).setCellValue("CS1");
+		task.createCell(1).setCellValue("project");
+		task.createCell(2).setCellValue("Mark the reports");
+		Cell dateToSend = task.createCell(3);
+		dateToSend.setCellValue(new GregorianCalendar(2022, 2, 7).getTime());
+		dateToSend.setCellStyle(dateStyle);
+		Sheet modules = excel.createSheet("modules");
+		header(modules, "module_code", "module_name", "entry_id");
+		Row module = modules.createRow(1);
+		module.createCell(0).setCellValue("CS1");
+		module.createCell(1).setCellValue("Introduction to Programming");
+		module.createCell(2).setCellValue(3);
+		try (FileOutputStream output = new FileOutputStream(workbook)) {
+			excel.write(output);
+		}
+
+		List<ImportJob.Row> rows = parse();
+		Assertions.assertEquals(2, rows.size());
+		Assertions.assertEquals(ImportJob.Sheet.MODULES, rows.get(0).sheet);
+		Assertions.assertEquals("CS1", rows.get(0).values.get("module_code"));
+		Assertions.assertEquals(ImportJob.Sheet.TASKS, rows.get(1).sheet);
+		Assertions.assertEquals(2, rows.get(1).number);
+		Assertions.assertEquals("2022-03-07", rows.get(1).values.get("date_to_send"));
+	}
+
+	@Test
+	public void testMissingColumnsFailTheImport() throws Exception {
+		XSSFWorkbook excel = new XSSFWorkbook();
+		header(excel.createSheet("modules"), "module_code", "module_name");
+		try (FileOutputStream output = new FileOutputStream(workbook)) {
+			excel.write(output);
+		}
+		ImportJob job = new ImportJob("1", "modules.xlsx", this::open, null, 10, 10, 10, taskIds -> {}, () -> {});
+		job.parse();
+		ImportProgress progress = job.progress();
+		Assertions.assertEquals(ImportProgress.Status.FAILED, progress.getStatus());
+		Assertions.assertTrue(progress.getFailure().contains("entry_id"));
+	}
+
+	@Test
+	public void testSkippedParseFinishesTheWriter() throws Exception {
+		DataSource dataSource = Mockito.mock(DataSource.class);
+		Mockito.when(dataSource.getConnection()).thenReturn(Mockito.mock(Connection.class));
+		AtomicInteger finished = new AtomicInteger();
+		ImportJob job = new ImportJob("1", "semester.xlsx", this::open, dataSource, 10, 10, 10, taskIds -> {},
+				finished::incrementAndGet);
+		Thread writer = new Thread(job::write);
+		writer.start();
+		job.skipParse("The workbook could not be read: rejected");
+		writer.join(5000);
+		// the writer no longer waits for rows that will never come
+		Assertions.assertFalse(writer.isAlive());
+		ImportProgress progress = job.progress();
+		Assertions.assertEquals(ImportProgress.Status.FAILED, progress.getStatus());
+		Assertions.assertEquals("The workbook could not be read: rejected", progress.getFailure());
+		Assertions.assertNotNull(progress.getFinishedAt());
+		Assertions.assertEquals(1, finished.get());
+	}
+
+	@Test
+	public void testIdsOfTheImportedTasksAreHandedOver() throws Exception {
+		XSSFWorkbook excel = new XSSFWorkbook();
+		Sheet modules = excel.createSheet("modules");
+		header(modules, "module_code", "module_name", "entry_id");
+		Row module = modules.createRow(1);
+		module.createCell(0).setCellValue("CS1");
+		module.createCell(1).setCellValue("Introduction to Programming");
+		module.createCell(2).setCellValue(1);
+		Sheet assessments = excel.createSheet("assessments");
+		header(assessments, "module_code", "assessment_type", "assessment_weight", "assessment_weeks");
+		Row assessment = assessments.createRow(1);
+		assessment.createCell(0).setCellValue("CS1");
+		assessment.createCell(1).setCellValue("quiz");
+		assessment.createCell(2).setCellValue(10);
+		assessment.createCell(3).setCellValue("00000100000000000");
+		Sheet tasks = excel.createSheet("tasks");
+		header(tasks, "module_code", "assessment_type", "task_description", "date_to_send");
+		for (int i = 1; i <= 3; i++) {
+			Row task = tasks.createRow(i);
+			task.createCell(0).setCellValue("CS1");
+			task.createCell(1).setCellValue("quiz");
+			task.createCell(2).setCellValue("Step " + i);
+			task.createCell(3).setCellValue("2022-03-0" + i);
+		}
+		try (FileOutputStream output = new FileOutputStream(workbook)) {
+			excel.write(output);
+		}
+		DataSource dataSource = TestDatabase.create();
+		List<Integer> importedTaskIds = Collections.synchronizedList(new ArrayList<Integer>());
+		// batches of two rows, so the tasks are handed over as they are committed
+		ImportJob job = new ImportJob("1", "semester.xlsx", this::open, dataSource, 2, 10, 10, importedTaskIds::addAll,
+				() -> {});
+		Thread writer = new Thread(job::write);
+		writer.start();
+		job.parse();
+		writer.join(5000);
+		Assertions.assertEquals(ImportProgress.Status.COMPLETED, job.progress().getStatus());
+		List<Integer> taskIds = new ArrayList<Integer>();
+		try (Connection connection = dataSource.getConnection();
+			 java.sql.Statement statement = connection.createStatement();
+			 ResultSet resultSet = statement.executeQuery("SELECT task_id FROM tasks ORDER BY task_id")) {
+			while (resultSet.next()) {
+				taskIds.add(resultSet.getInt(1));
+			}
+		}
+		Assertions.assertEquals(3, taskIds.size());
+		Assertions.assertEquals(taskIds, importedTaskIds);
+	}
+
+	private List<ImportJob.Row> parse() {
+		ImportJob job = new ImportJob("1", "semester.xlsx", this::open, null, 10, 10, 10, taskIds -> {}, () -> {});
+		job.parse();
+		@SuppressWarnings("unchecked")
+		BlockingQueue<ImportJob.Row> queue = (BlockingQueue<ImportJob.Row>) ReflectionTestUtils.getField(job, "rows");
+		List<ImportJob.Row> rows = new ArrayList<ImportJob.Row>();
+		for (ImportJob.Row row : queue) {
+			if (row.sheet != null) {
+				rows.add(row);
+			}
+		}
+		return rows;
+	}
+
+	private OPCPackage open() throws Exception {
+		return OPCPackage.open(workbook.getPath(), PackageAccess.READ);
+	}
+
+	private static void header(Sheet sheet, String... columns) {
+		Row header = sheet.createRow(0);
+		for (int i = 0; i < columns.length; i++) {
+			header.createCell(i).setCellValue(columns[i]);
+		}
+	}
+
+}
@@ -0,0 +1,225 @@
+package com.wisetasklecturer.services;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.wisetasklecturer.entities.PendingTaskToSet;
+import com.wisetasklecturer.entities.PendingTasksToSet;
+import com.wisetasklecturer.entities.TaskToDo;
+import com.wisetasklecturer.entities.TasksToDo;
+import com.wisetasklecturer.monitoring.QueryMetrics;
+import com.wisetasklecturer.repositories.TasksRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * A test class responsible for testing the lecturer operations of the service layer,
+ * with mocks of the repository and of the components that follow the changes.
+ * @author Theofanis Gkoufas
+ *
+ */
+class LecturerServicesTests {
+
+	private LecturerServices lecturerServices;
+
+	private TasksRepository tasksRepository;
+
+	private ObjectMapper objectMapper;
+
+	@BeforeEach
+	public void setUp() {
+		lecturerServices = new LecturerServices();
+		tasksRepository = Mockito.mock(TasksRepository.class);
+		lecturerServices.tasksRepository = tasksRepository;
+		lecturerServices.tasksToDoProjection = Mockito.mock(TasksToDoProjection.class);
+		lecturerServices.taskSendScheduler = Mockito.mock(TaskSendScheduler.class);
+		QueryMetrics queryMetrics = new QueryMetrics();
+		ReflectionTestUtils.setField(queryMetrics, "meterRegistry", new SimpleMeterRegistry());
+		lecturerServices.queryMetrics = queryMetrics;
+	}
+
+	@Test
+	public void testBulkCompletionReturnsTheMissingTasks() {
+		List<Integer> completed = new ArrayList<Integer>();
+		Mockito.when(tasksRepository.markAsCompleted(Mockito.anyCollection())).thenAnswer(invocation -> {
+			completed.addAll(invocation.<Collection<Integer>>getArgument(0));
+			return 2;
+		});
+		Mockito.when(tasksRepository.findExistingIds(Mockito.anyCollection())).thenReturn(Arrays.asList(1, 2));
+		List<Integer> missing = lecturerServices.changeTasksVisibility(Arrays.asList(1, 2, 2, 99, 1, 98));
+		// every task is updated once, and the missing ones are returned once, in the given order
+		Assertions.assertEquals(Arrays.asList(1, 2, 99, 98), completed);
+		Assertions.assertEquals(Arrays.asList(99, 98), missing);
+		Mockito.verify(lecturerServices.tasksToDoProjection).remove(Mockito.anyCollection());
+		Mockito.verify(lecturerServices.taskSendScheduler).cancelTasks(Mockito.anyCollection());
+	}
+
+	@Test
+	public void testBulkCompletionOfExistingTasks() {
+		Mockito.when(tasksRepository.markAsCompleted(Mockito.anyCollection())).thenReturn(2);
+		Assertions.assertTrue(lecturerServices.changeTasksVisibility(Arrays.asList(5, 6, 5)).isEmpty());
+		// all the distinct tasks matched, so there is no need to look for the missing ones
+		Mockito.verify(tasksRepository, Mockito.never()).findExistingIds(Mockito.anyCollection());
+	}
+
+	@Test
+	public void testBulkCompletionOfNoTasks() {
+		Assertions.assertTrue(lecturerServices.changeTasksVisibility(Arrays.asList()).isEmpty());
+		Mockito.verifyNoInteractions(tasksRepository);
+	}
+
+	@Test
+	public void testNonNumericCursorIsRejected() {
+		lecturerServices.lecturerResolution = LecturerResolution.INDEXED;
+		String cursor = PageCursor.encode("not-a-number");
+		ResponseStatusException e = Assertions.assertThrows(ResponseStatusException.class,
+				() -> lecturerServices.retrieveDaysToSet(1, cursor, 10));
+		Assertions.assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+		e = Assertions.assertThrows(ResponseStatusException.class,
+				() -> lecturerServices.retrieveDaysToSetInWeek(1, 3, cursor, 10));
+		Assertions.assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+		e = Assertions.assertThrows(ResponseStatusException.class,
+				() -> lecturerServices.retrieveDaysToSet(1, PageCursor.encode(1, 2), 10));
+		Assertions.assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+	}
+
+	@Test
+	public void testStreamedDaysToSetAreIdenticalToTheBufferedOnes() throws Exception {
+		useRows(new Object[] {"Continuous and Agile \"Software\" Engineering", "WM", "PROJECT",
+							  "00000001111111000", 3051, java.sql.Date.valueOf("2022-02-07"), 40, 16256L},
+				new Object[] {"Fundamentals of Computing \u2013 \u03a9", "CS", "ASSESSED_LAB", "00000100000000000", 3052,
+							  java.sql.Date.valueOf("2022-02-07"), 10, 32L},
+				new Object[] {"Databases", null, "QUIZ", "not weeks", 3053, java.sql.Date.valueOf("2022-02-07"), 5, 0L});
+		String buffered = objectMapper.writeValueAsString(lecturerServices.retrieveDaysToSet(1));
+		ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+		lecturerServices.streamDaysToSet(1, streamed);
+		Assertions.assertEquals(buffered, streamed.toString(StandardCharsets.UTF_8.name()));
+		Assertions.assertTrue(buffered.contains("3053"));
+	}
+
+	@Test
+	public void testStreamedTasksToDoAreIdenticalToTheBufferedOnes() throws Exception {
+		useRows(new Object[] {"Today is the last day to finish creating the assessment.\nType: PROJECT",
+							  java.sql.Date.valueOf("2022-05-20"), "Continuous and Agile Software Engineering", "ASE",
+							  "PROJECT", 4},
+				new Object[] {"Today the grades of the assessment should be uploaded.",
+							  java.sql.Date.valueOf("2022-07-15"), "Databases \"\u03a9\"", null, "QUIZ", 7});
+		String buffered = objectMapper.writeValueAsString(lecturerServices.getTasksToDo(1));
+		ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+		lecturerServices.streamTasksToDo(1, streamed);
+		Assertions.assertEquals(buffered, streamed.toString(StandardCharsets.UTF_8.name()));
+		Assertions.assertTrue(buffered.contains("2022-07-15"));
+	}
+
+	@Test
+	public void testStreamedEmptyListsAreIdenticalToTheBufferedOnes() throws Exception {
+		useRows();
+		ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+		lecturerServices.streamDaysToSet(1, streamed);
+		Assertions.assertEquals(objectMapper.writeValueAsString(lecturerServices.retrieveDaysToSet(1)),
+				streamed.toString(StandardCharsets.UTF_8.name()));
+		streamed.reset();
+		lecturerServices.streamTasksToDo(1, streamed);
+		Assertions.assertEquals(objectMapper.writeValueAsString(lecturerServices.getTasksToDo(1)),
+				streamed.toString(StandardCharsets.UTF_8.name()));
+	}
+
+	@Test
+	public void testFailedQueryOfProjectedTasksIsNotCached() throws Exception {
+		useRows();
+		TasksToDoProjection projection = new TasksToDoProjection();
+		ReflectionTestUtils.setField(projection, "enabled", true);
+		ReflectionTestUtils.setField(projection, "maximumLecturers", 10);
+		ReflectionTestUtils.setField(projection, "reconcileSeconds", 300L);
+		lecturerServices.tasksToDoProjection = projection;
+		DataSource dataSource = lecturerServices.context.getBean(DataSource.class);
+		Connection connection = dataSource.getConnection();
+		Mockito.when(dataSource.getConnection()).thenThrow(new SQLException("Connection refused"));
+		ResponseStatusException e = Assertions.assertThrows(ResponseStatusException.class,
+				() -> lecturerServices.getTasksToDo(1));
+		Assertions.assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, e.getStatus());
+		Assertions.assertTrue(projection.isEmpty());
+		// once the database is back the tasks are loaded, instead of an empty list being served
+		Mockito.doReturn(connection).when(dataSource).getConnection();
+		useRowsOf(connection, new Object[] {"Today the grades of the assessment should be uploaded.",
+				java.sql.Date.valueOf("2022-07-15"), "Databases", "DB", "QUIZ", 7});
+		Assertions.assertEquals(1, lecturerServices.getTasksToDo(1).getTasksToDo().size());
+	}
+
+	/**
+	 * Makes every query of the service (buffered or streamed) return the given rows, through
+	 * the object mapper that Spring Boot configures for the responses.
+	 */
+	private void useRows(Object[]... rows) throws SQLException {
+		objectMapper = Jackson2ObjectMapperBuilder.json()
+				.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+				.build();
+		lecturerServices.objectMapper = objectMapper;
+		lecturerServices.lecturerResolution = LecturerResolution.INDEXED;
+		Connection connection = Mockito.mock(Connection.class);
+		useRowsOf(connection, rows);
+		DataSource dataSource = Mockito.mock(DataSource.class);
+		Mockito.when(dataSource.getConnection()).thenReturn(connection);
+		ApplicationContext context = Mockito.mock(ApplicationContext.class);
+		Mockito.when(context.getBean(DataSource.class)).thenReturn(dataSource);
+		Mockito.when(context.getBean(PendingTasksToSet.class)).thenAnswer(invocation -> {
+			PendingTasksToSet pendingTasksToSet = new PendingTasksToSet();
+			pendingTasksToSet.setPendingTasksToSetList(new ArrayList<PendingTaskToSet>());
+			return pendingTasksToSet;
+		});
+		Mockito.when(context.getBean(TasksToDo.class)).thenAnswer(invocation -> {
+			TasksToDo tasksToDo = new TasksToDo();
+			tasksToDo.setTasksToDo(new ArrayList<TaskToDo>());
+			return tasksToDo;
+		});
+		lecturerServices.context = context;
+	}
+
+	/**
+	 * Makes every statement of the connection return the given rows.
+	 */
+	private static void useRowsOf(Connection connection, Object[]... rows) throws SQLException {
+		PreparedStatement statement = Mockito.mock(PreparedStatement.class);
+		Mockito.when(statement.executeQuery()).thenAnswer(invocation -> resultSet(rows));
+		Mockito.when(connection.prepareStatement(Mockito.anyString())).thenReturn(statement);
+		Mockito.when(connection.prepareStatement(Mockito.anyString(), Mockito.anyInt(), Mockito.anyInt()))
+			   .thenReturn(statement);
+	}
+
+	/**
+	 * Creates a result set over the given rows, whose columns are read by their index.
+	 */
+	private static ResultSet resultSet(Object[]... rows) throws SQLException {
+		ResultSet resultSet = Mockito.mock(ResultSet.class);
+		int[] row = {-1};
+		Mockito.when(resultSet.next()).thenAnswer(invocation -> ++row[0] < rows.length);
+		Mockito.when(resultSet.getString(Mockito.anyInt()))
+			   .thenAnswer(invocation -> rows[row[0]][invocation.<Integer>getArgument(0) - 1]);
+		Mockito.when(resultSet.getInt(Mockito.anyInt()))
+			   .thenAnswer(invocation -> rows[row[0]][invocation.<Integer>getArgument(0) - 1]);
+		Mockito.when(resultSet.getDate(Mockito.anyInt()))
+			   .thenAnswer(invocation -> rows[row[0]][invocation.<Integer>getArgument(0) - 1]);
+		Mockito.when(resultSet.getLong(Mockito.anyInt()))
+			   .thenAnswer(invocation -> rows[row[0]][invocation.<Integer>getArgument(0) - 1]);
+		return resultSet;
+	}
+
+}
@@ -0,0 +1,145 @@
+package com.wisetasklecturer.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal in-process SMTP server, which accepts every message and keeps the recipients
+ * of the messages that it received, so that the sending of emails can be tested without
+ * a real mail server. Recipients can be made to fail (once) with a temporary error.
+ * @author Theofanis Gkoufas
+ *
+ */
+class LocalSmtpServer implements AutoCloseable {
+
+	private final ServerSocket serverSocket;
+
+	private final ExecutorService connections = Executors.newCachedThreadPool();
+
+	private final List<String> recipients = Collections.synchronizedList(new ArrayList<String>());
+
+	private final Set<String> failOnce = ConcurrentHashMap.newKeySet();
+
+	private final AtomicInteger connectionCount = new AtomicInteger();
+
+	private volatile Runnable onMessage = () -> {};
+
+	LocalSmtpServer() throws IOException {
+		serverSocket = new ServerSocket(0);
+		connections.execute(this::accept);
+	}
+
+	int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * @return The recipients of the messages received so far.
+	 */
+	List<String> getRecipients() {
+		synchronized (recipients) {
+			return new ArrayList<String>(recipients);
+		}
+	}
+
+	int getConnectionCount() {
+		return connectionCount.get();
+	}
+
+	/**
+	 * Makes the next message to a recipient fail with a temporary error (451).
+	 * @param recipient The email address of the recipient.
+	 */
+	void failOnce(String recipient) {
+		failOnce.add(recipient);
+	}
+
+	/**
+	 * Runs an action whenever a message starts being received, i.e. while it is being sent.
+	 * @param action The action.
+	 */
+	void onMessage(Runnable action) {
+		onMessage = action;
+	}
+
+	private void accept() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				connectionCount.incrementAndGet();
+				connections.execute(() -> serve(socket));
+			} catch (IOException e) {
+				return;
+			}
+		}
+	}
+
+	private void serve(Socket socket) {
+		try (Socket client = socket;
+			 BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+			 PrintWriter out = new PrintWriter(client.getOutputStream(), true)) {
+			reply(out, "220 localhost");
+			List<String> messageRecipients = new ArrayList<String>();
+			String line;
+			while ((line = in.readLine()) != null) {
+				String command = line.toUpperCase();
+				if (command.startsWith("EHLO") || command.startsWith("HELO")) {
+					reply(out, "250 localhost");
+				} else if (command.startsWith("MAIL FROM")) {
+					messageRecipients.clear();
+					reply(out, "250 OK");
+				} else if (command.startsWith("RCPT TO")) {
+					String recipient = line.substring(line.indexOf('<') + 1, line.indexOf('>'));
+					if (failOnce.remove(recipient)) {
+						reply(out, "451 Try again later");
+					} else {
+						messageRecipients.add(recipient);
+						reply(out, "250 OK");
+					}
+				} else if (command.equals("DATA")) {
+					onMessage.run();
+					reply(out, "354 End data with <CR><LF>.<CR><LF>");
+					while ((line = in.readLine()) != null && !line.equals(".")) {
+						// the content of the message is not kept
+					}
+					recipients.addAll(messageRecipients);
+					reply(out, "250 OK");
+				} else if (command.equals("QUIT")) {
+					reply(out, "221 Bye");
+					return;
+				} else {
+					// RSET, NOOP etc.
+					messageRecipients.clear();
+					reply(out, "250 OK");
+				}
+			}
+		} catch (IOException e) {
+			// the client closed the connection
+		}
+	}
+
+	private static void reply(PrintWriter out, String reply) {
+		out.print(reply + "\r\n");
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+		connections.shutdownNow();
+	}
+
+}
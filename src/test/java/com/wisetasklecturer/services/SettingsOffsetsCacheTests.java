@@ -0,0 +1,98 @@
+package com.wisetasklecturer.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import com.wisetasklecturer.entities.AssessmentType;
+import com.wisetasklecturer.entities.WorkflowStep;
+
+/**
+ * A test class responsible for testing the compiled settings (step offsets) and their cache.
+ * @author Theofanis Gkoufas
+ *
+ */
+class SettingsOffsetsCacheTests {
+
+	private SettingsOffsetsCache cache;
+
+	private Connection connection;
+
+	private PreparedStatement statement;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		cache = new SettingsOffsetsCache();
+		ReflectionTestUtils.setField(cache, "ttlSeconds", 600L);
+		// a settings row of entry 7, whose offset of every column is the length of its name
+		ResultSet resultSet = Mockito.mock(ResultSet.class);
+		Mockito.when(resultSet.next()).thenReturn(true, false);
+		Mockito.when(resultSet.getInt(Mockito.anyString()))
+			   .thenAnswer(invocation -> ((String) invocation.getArgument(0)).length());
+		Mockito.when(resultSet.getInt("entry_FK")).thenReturn(7);
+		statement = Mockito.mock(PreparedStatement.class);
+		Mockito.when(statement.executeQuery()).thenReturn(resultSet);
+		connection = Mockito.mock(Connection.class);
+		Mockito.when(connection.prepareStatement(Mockito.anyString())).thenReturn(statement);
+	}
+
+	@Test
+	public void testSettingsAreCompiled() throws Exception {
+		StepOffsets offsets = cache.getAll(connection, Collections.singletonList(7)).get(7);
+		Assertions.assertEquals("quiz_step3_postCorrectionDays".length(),
+				offsets.offset(AssessmentType.QUIZ, WorkflowStep.CORRECTION));
+		Assertions.assertEquals("assessedL_step1_preDaysUntilReady".length(),
+				offsets.offset(AssessmentType.ASSESSED_LAB, WorkflowStep.READY));
+	}
+
+	@Test
+	public void testDatesToSend() {
+		int[][] matrix = new int[AssessmentType.values().length][WorkflowStep.values().length];
+		matrix[AssessmentType.REPORT.ordinal()] = new int[] {7, 3, 10, 12, 14};
+		StepOffsets offsets = StepOffsets.of(1, matrix);
+		LocalDate upload = LocalDate.parse("2022-05-02");
+		LocalDate deadline = LocalDate.parse("2022-05-20");
+		Assertions.assertEquals(LocalDate.parse("2022-04-25"),
+				offsets.dateToSend(AssessmentType.REPORT, WorkflowStep.READY, upload, deadline));
+		Assertions.assertEquals(LocalDate.parse("2022-04-29"),
+				offsets.dateToSend(AssessmentType.REPORT, WorkflowStep.MODERATION, upload, deadline));
+		Assertions.assertEquals(LocalDate.parse("2022-06-03"),
+				offsets.dateToSend(AssessmentType.REPORT, WorkflowStep.GRADES_UPLOAD, upload, deadline));
+		Assertions.assertEquals(0, offsets.offset(AssessmentType.QUIZ, WorkflowStep.GRADES_UPLOAD));
+	}
+
+	@Test
+	public void testEntriesAreLoadedOnceUntilInvalidated() throws Exception {
+		cache.getAll(connection, Collections.singletonList(7));
+		Map<Integer, StepOffsets> offsets = cache.getAll(connection, Collections.singletonList(7));
+		Assertions.assertEquals(1, offsets.size());
+		Mockito.verify(statement, Mockito.times(1)).executeQuery();
+		cache.invalidate(7);
+		cache.getAll(connection, Collections.singletonList(7));
+		Mockito.verify(statement, Mockito.times(2)).executeQuery();
+		Assertions.assertEquals(1L, cache.snapshot().get("hits"));
+	}
+
+	@Test
+	public void testSettingsLoadedDuringAnInvalidationAreNotCached() throws Exception {
+		ResultSet resultSet = statement.executeQuery();
+		Mockito.when(resultSet.next()).thenAnswer(invocation -> {
+			cache.invalidateAll();
+			return true;
+		}).thenReturn(false);
+		// the settings are returned, but they may have been loaded before the change
+		Assertions.assertEquals(1, cache.getAll(connection, Collections.singletonList(7)).size());
+		Assertions.assertEquals(0, cache.snapshot().get("size"));
+		Mockito.when(resultSet.next()).thenReturn(true, false);
+		cache.getAll(connection, Collections.singletonList(7));
+		Assertions.assertEquals(1, cache.snapshot().get("size"));
+	}
+
+}
@@ -0,0 +1,200 @@
+package com.wisetasklecturer.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import com.wisetasklecturer.TestDatabase;
+import com.wisetasklecturer.entities.SettedDates;
+import com.wisetasklecturer.entities.SettedDatesResult;
+import com.wisetasklecturer.monitoring.QueryMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * A test class responsible for testing the generation of the tasks of the workflow steps
+ * against an embedded database; a quiz and a project of an entry whose settings have a few
+ * distinct offsets, and a quiz of an entry that has no settings.
+ * @author Theofanis Gkoufas
+ *
+ */
+class StepTasksGenerationTests {
+
+	private LecturerServices lecturerServices;
+
+	private DataSource dataSource;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		dataSource = TestDatabase.create();
+		seed();
+		lecturerServices = new LecturerServices();
+		ApplicationContext context = Mockito.mock(ApplicationContext.class);
+		Mockito.when(context.getBean(DataSource.class)).thenReturn(dataSource);
+		Mockito.when(context.getBean("dataSource", DataSource.class)).thenReturn(dataSource);
+		lecturerServices.context = context;
+		SettingsOffsetsCache settingsOffsetsCache = new SettingsOffsetsCache();
+		ReflectionTestUtils.setField(settingsOffsetsCache, "ttlSeconds", 600L);
+		lecturerServices.settingsOffsetsCache = settingsOffsetsCache;
+		lecturerServices.tasksToDoProjection = Mockito.mock(TasksToDoProjection.class);
+		lecturerServices.taskSendScheduler = Mockito.mock(TaskSendScheduler.class);
+		QueryMetrics queryMetrics = new QueryMetrics();
+		ReflectionTestUtils.setField(queryMetrics, "meterRegistry", new SimpleMeterRegistry());
+		lecturerServices.queryMetrics = queryMetrics;
+	}
+
+	@Test
+	public void testTasksOfEveryStepAreGenerated() throws Exception {
+		List<SettedDatesResult> results = lecturerServices.updateSettedDates(Arrays.asList(
+				dates(1, "2022-03-07", "2022-03-28"), dates(2, "2022-03-07", "2022-03-28"),
+				dates(3, "2022-03-07", "2022-03-28"), dates(99, "2022-03-07", "2022-03-28")), true);
+		Assertions.assertEquals(SettedDatesResult.Status.UPDATED, results.get(0).getStatus());
+		Assertions.assertEquals(SettedDatesResult.Status.UPDATED, results.get(1).getStatus());
+		// the quiz of the entry without settings gets no tasks
+		Assertions.assertEquals(SettedDatesResult.Status.UPDATED, results.get(2).getStatus());
+		Assertions.assertTrue(results.get(2).getGeneratedTaskIds().isEmpty());
+		Assertions.assertEquals(SettedDatesResult.Status.NOT_FOUND, results.get(3).getStatus());
+
+		// the quiz has its own offsets for the first and third steps, the rest are 7 days
+		Map<Integer, Object[]> quizTasks = stepTasks(1);
+		Assertions.assertEquals(Arrays.asList("2022-02-26", "2022-02-28", "2022-04-11", "2022-04-04", "2022-04-04"),
+				datesOf(quizTasks));
+		Map<Integer, Object[]> projectTasks = stepTasks(2);
+		Assertions.assertEquals(Arrays.asList("2022-02-28", "2022-02-28", "2022-04-04", "2022-04-04", "2022-04-04"),
+				datesOf(projectTasks));
+		// every generated key is returned with the assessment that its task belongs to
+		Assertions.assertEquals(taskIdsOf(quizTasks), results.get(0).getGeneratedTaskIds());
+		Assertions.assertEquals(taskIdsOf(projectTasks), results.get(1).getGeneratedTaskIds());
+		Mockito.verify(lecturerServices.taskSendScheduler, Mockito.never()).cancelTasks(Mockito.anyCollection());
+	}
+
+	@Test
+	public void testPendingTasksAreReplacedWhenTheDatesAreSetAgain() throws Exception {
+		lecturerServices.updateSettedDates(Arrays.asList(dates(1, "2022-03-07", "2022-03-28")), true);
+		Map<Integer, Object[]> before = stepTasks(1);
+		// the first step is completed, the second has been sent and the third has been sent
+		// to one of the lecturers, so only the last two are still pending
+		execute("UPDATE tasks SET isCompleted = 1 WHERE task_id = " + before.get(1)[0]);
+		execute("UPDATE tasks SET email_sent_at = NOW() WHERE task_id = " + before.get(2)[0]);
+		execute("INSERT INTO task_emails (task_id, user_id, claimed_by, claimed_at, sent_at) VALUES ("
+				+ before.get(3)[0] + ", 1, 'run', NOW(), NOW())");
+		execute("INSERT INTO tasks (task_id, task_description, date_to_send, isCompleted, "
+				+ "task_belongs_to_assessment) VALUES (100, 'Book a room', DATE '2022-03-01', 0, 1)");
+
+		List<SettedDatesResult> results = lecturerServices.updateSettedDates(Arrays.asList(
+				dates(1, "2022-03-14", "2022-04-04")), true);
+		Map<Integer, Object[]> after = stepTasks(1);
+		Assertions.assertEquals(Arrays.asList(1, 2, 3, 4, 5), new ArrayList<Integer>(after.keySet()));
+		for (int step = 1; step <= 3; step++) {
+			Assertions.assertArrayEquals(before.get(step), after.get(step));
+		}
+		Assertions.assertEquals(Arrays.asList(after.get(4)[0], after.get(5)[0]), results.get(0).getGeneratedTaskIds());
+		Assertions.assertEquals("2022-04-11", after.get(4)[1].toString());
+		Assertions.assertEquals("2022-04-11", after.get(5)[1].toString());
+		Assertions.assertEquals(0, count("SELECT COUNT(*) FROM tasks WHERE task_id IN ("
+				+ before.get(4)[0] + ", " + before.get(5)[0] + ")"));
+		// the task that the lecturer added is not one of the steps
+		Assertions.assertEquals(1, count("SELECT COUNT(*) FROM tasks WHERE task_id = 100"));
+
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<Collection<Integer>> cancelled = ArgumentCaptor.forClass(Collection.class);
+		Mockito.verify(lecturerServices.taskSendScheduler).cancelTasks(cancelled.capture());
+		Assertions.assertEquals(new HashSet<Object>(Arrays.asList(before.get(4)[0], before.get(5)[0])),
+				new HashSet<Object>(cancelled.getValue()));
+	}
+
+	private static SettedDates dates(int assessmentId, String uploadDate, String deadlineDate) {
+		return SettedDates.builder()
+				.assessmentId(assessmentId)
+				.uploadDate(uploadDate)
+				.deadlineDate(deadlineDate)
+				.build();
+	}
+
+	private void seed() throws SQLException {
+		execute("INSERT INTO users VALUES (1, 'alice', '', 'LECTURER', 'alice@wisetask.test')");
+		execute("INSERT INTO entries VALUES (1, 'Semester 2', 0, DATE '2022-01-10'), "
+				+ "(2, 'Semester 1', 0, DATE '2021-09-01')");
+		execute("INSERT INTO settings (settings_id, entry_FK, week1_begin_date, time_to_send_notif) "
+				+ "VALUES (1, 1, DATE '2022-02-07', '00:00:00')");
+		execute("UPDATE settings SET quiz_step1_preDaysUntilReady = 9, quiz_step3_postCorrectionDays = 14");
+		execute("INSERT INTO modules (module_id, module_name, module_code, primary_lecturer, moderator_lecturer, "
+				+ "curriculum, module_belongsTo_entry) VALUES (1, 'Databases', 'DB', 'alice', NULL, 'CS', 1), "
+				+ "(2, 'Networks', 'NT', 'alice', NULL, 'CS', 2)");
+		execute("INSERT INTO lecturer_modules VALUES (1, 1, 'PRIMARY'), (1, 2, 'PRIMARY')");
+		execute("INSERT INTO assessments (assessment_id, assessment_type, assessment_weight, "
+				+ "assessment_weeks, assessment_belongsTo_module) VALUES "
+				+ "(1, 'QUIZ', 10, '00000100000000000', 1), "
+				+ "(2, 'PROJECT', 40, '00000001111111000', 1), "
+				+ "(3, 'QUIZ', 10, '00000100000000000', 2)");
+	}
+
+	/**
+	 * Retrieves the generated tasks of an assessment, as {task id, date to send} by step.
+	 */
+	private Map<Integer, Object[]> stepTasks(int assessmentId) throws SQLException {
+		Map<Integer, Object[]> tasks = new TreeMap<Integer, Object[]>();
+		try (Connection connection = dataSource.getConnection();
+			 PreparedStatement statement = connection.prepareStatement(
+					 "SELECT workflow_step, task_id, date_to_send FROM tasks "
+					 + "WHERE task_belongs_to_assessment = ? AND workflow_step IS NOT NULL")) {
+			statement.setInt(1, assessmentId);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {
+					Assertions.assertNull(tasks.put(resultSet.getInt(1),
+							new Object[] {resultSet.getInt(2), resultSet.getDate(3).toLocalDate()}));
+				}
+			}
+		}
+		return tasks;
+	}
+
+	private static List<Object> taskIdsOf(Map<Integer, Object[]> stepTasks) {
+		List<Object> taskIds = new ArrayList<Object>();
+		for (Object[] task : stepTasks.values()) {
+			taskIds.add(task[0]);
+		}
+		return taskIds;
+	}
+
+	private static List<String> datesOf(Map<Integer, Object[]> stepTasks) {
+		List<String> dates = new ArrayList<String>();
+		for (Object[] task : stepTasks.values()) {
+			dates.add(((LocalDate) task[1]).toString());
+		}
+		return dates;
+	}
+
+	private void execute(String sql) throws SQLException {
+		try (Connection connection = dataSource.getConnection();
+			 Statement statement = connection.createStatement()) {
+			statement.execute(sql);
+		}
+	}
+
+	private long count(String sql) throws SQLException {
+		try (Connection connection = dataSource.getConnection();
+			 Statement statement = connection.createStatement();
+			 ResultSet resultSet = statement.executeQuery(sql)) {
+			resultSet.next();
+			return resultSet.getLong(1);
+		}
+	}
+
+}
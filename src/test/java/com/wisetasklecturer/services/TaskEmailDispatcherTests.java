@@ -0,0 +1,232 @@
+package com.wisetasklecturer.services;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationContext;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import com.wisetasklecturer.TestDatabase;
+import com.wisetasklecturer.entities.DispatchReport;
+
+/**
+ * A test class responsible for testing the dispatcher of the due tasks against an embedded
+ * database and an in-process SMTP server; a module with three primary lecturers (one of
+ * whom has no email address), two due tasks, a task that is not due yet and a completed one.
+ * @author Theofanis Gkoufas
+ *
+ */
+class TaskEmailDispatcherTests {
+
+	private static final String ALICE = "alice@wisetask.test";
+
+	private static final String BOB = "bob@wisetask.test";
+
+	private LocalSmtpServer smtpServer;
+
+	private ThreadPoolTaskExecutor mailExecutor;
+
+	private DigestSender digestSender;
+
+	private DataSource dataSource;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		smtpServer = new LocalSmtpServer();
+		JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+		mailSender.setHost("localhost");
+		mailSender.setPort(smtpServer.getPort());
+		mailExecutor = new ThreadPoolTaskExecutor();
+		mailExecutor.setCorePoolSize(2);
+		mailExecutor.initialize();
+		digestSender = new DigestSender();
+		digestSender.mailSender = mailSender;
+		digestSender.mailExecutor = mailExecutor;
+		ReflectionTestUtils.setField(digestSender, "from", "wisetask@localhost");
+		ReflectionTestUtils.setField(digestSender, "messagesPerConnection", 5);
+		ReflectionTestUtils.setField(digestSender, "maxAttempts", 1);
+		ReflectionTestUtils.setField(digestSender, "initialBackoffMillis", 10L);
+		dataSource = TestDatabase.create();
+		seed();
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		mailExecutor.shutdown();
+		smtpServer.close();
+	}
+
+	@Test
+	public void testEveryTaskIsSentOnceToEveryPrimaryLecturer() throws Exception {
+		TaskEmailDispatcher dispatcher = dispatcher();
+		Assertions.assertNull(dispatcher.getLastRunStartedAt());
+		DispatchReport report = dispatcher.dispatchDueTasks();
+		Assertions.assertNotNull(dispatcher.getLastRunStartedAt());
+		Assertions.assertEquals(4, report.getDueTasks());
+		Assertions.assertEquals(2, report.getDigestsSent());
+		Assertions.assertEquals(2, report.getTasksMarkedSent());
+		Assertions.assertEquals(Arrays.asList(ALICE, BOB), sortedRecipients());
+		Assertions.assertEquals(2, count("SELECT COUNT(*) FROM tasks WHERE email_sent_at IS NOT NULL"));
+
+		report = dispatcher().dispatchDueTasks();
+		Assertions.assertEquals(0, report.getDueTasks());
+		Assertions.assertEquals(0, report.getDigestsSent());
+		Assertions.assertEquals(2, smtpServer.getRecipients().size());
+	}
+
+	@Test
+	public void testConcurrentRunsSendEveryEmailOnce() throws Exception {
+		TaskEmailDispatcher first = dispatcher();
+		TaskEmailDispatcher second = dispatcher();
+		CompletableFuture<DispatchReport> firstRun = CompletableFuture.supplyAsync(first::dispatchDueTasks);
+		CompletableFuture<DispatchReport> secondRun = CompletableFuture.supplyAsync(second::dispatchDueTasks);
+		long digestsSent = firstRun.get().getDigestsSent() + secondRun.get().getDigestsSent();
+		Assertions.assertEquals(4, firstRun.get().getDueTasks() + secondRun.get().getDueTasks());
+		Assertions.assertEquals(2, digestsSent);
+		Assertions.assertEquals(Arrays.asList(ALICE, BOB), sortedRecipients());
+		Assertions.assertEquals(4, count("SELECT COUNT(*) FROM task_emails WHERE sent_at IS NOT NULL"));
+	}
+
+	@Test
+	public void testFailedEmailIsSentAgainByTheNextRun() throws Exception {
+		smtpServer.failOnce(BOB);
+		DispatchReport report = dispatcher().dispatchDueTasks();
+		Assertions.assertEquals(1, report.getDigestsSent());
+		Assertions.assertEquals(1, report.getDigestsFailed());
+		// the tasks have not been sent to all of their lecturers yet
+		Assertions.assertEquals(0, report.getTasksMarkedSent());
+		Assertions.assertEquals(2, count("SELECT COUNT(*) FROM task_emails WHERE sent_at IS NOT NULL"));
+		Assertions.assertEquals(2, count("SELECT COUNT(*) FROM task_emails WHERE claimed_by = 'released'"));
+
+		report = dispatcher().dispatchDueTasks();
+		Assertions.assertEquals(2, report.getDueTasks());
+		Assertions.assertEquals(1, report.getDigestsSent());
+		Assertions.assertEquals(2, report.getTasksMarkedSent());
+		Assertions.assertEquals(Arrays.asList(ALICE, BOB), sortedRecipients());
+	}
+
+	@Test
+	public void testClaimsOfOtherRunsAreOnlyTakenOverOnceTheyTimeOut() throws Exception {
+		LocalDateTime now = LocalDateTime.now();
+		// a run that is still sending task 1 to alice, and a run that stopped before sending task 2 to her
+		claim(1, 1, "running", now);
+		claim(2, 1, "stopped", now.minusHours(2));
+		DispatchReport report = dispatcher().dispatchDueTasks();
+		Assertions.assertEquals(3, report.getDueTasks());
+		Assertions.assertEquals(2, report.getDigestsSent());
+		Assertions.assertEquals(1, report.getTasksMarkedSent());
+		Assertions.assertEquals(1, count("SELECT COUNT(*) FROM task_emails WHERE claimed_by = 'running' "
+				+ "AND sent_at IS NULL"));
+		Assertions.assertEquals(1, count("SELECT COUNT(*) FROM tasks WHERE task_id = 1 AND email_sent_at IS NULL"));
+	}
+
+	@Test
+	public void testNoConnectionIsHeldWhileSending() throws Exception {
+		AtomicInteger openConnections = new AtomicInteger();
+		AtomicInteger openWhileSending = new AtomicInteger();
+		DataSource database = dataSource;
+		dataSource = Mockito.mock(DataSource.class);
+		Mockito.when(dataSource.getConnection()).thenAnswer(invocation -> {
+			Connection connection = database.getConnection();
+			openConnections.incrementAndGet();
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] {Connection.class}, (proxy, method, arguments) -> {
+						if (method.getName().equals("close")) {
+							openConnections.decrementAndGet();
+						}
+						try {
+							return method.invoke(connection, arguments);
+						} catch (InvocationTargetException e) {
+							throw e.getCause();
+						}
+					});
+		});
+		smtpServer.onMessage(() -> openWhileSending.accumulateAndGet(openConnections.get(), Math::max));
+		DispatchReport report = dispatcher().dispatchDueTasks();
+		Assertions.assertEquals(2, report.getDigestsSent());
+		Assertions.assertEquals(0, openWhileSending.get());
+		Assertions.assertEquals(0, openConnections.get());
+	}
+
+	private TaskEmailDispatcher dispatcher() {
+		ApplicationContext context = Mockito.mock(ApplicationContext.class);
+		Mockito.when(context.getBean(DataSource.class)).thenReturn(dataSource);
+		TaskEmailDispatcher dispatcher = new TaskEmailDispatcher();
+		dispatcher.context = context;
+		dispatcher.digestSender = digestSender;
+		ReflectionTestUtils.setField(dispatcher, "pageSize", 2);
+		ReflectionTestUtils.setField(dispatcher, "claimTimeoutMinutes", 60L);
+		return dispatcher;
+	}
+
+	private void seed() throws SQLException {
+		LocalDate today = LocalDate.now();
+		try (Connection connection = dataSource.getConnection();
+			 Statement statement = connection.createStatement()) {
+			statement.execute("INSERT INTO users VALUES (1, 'alice', '', 'LECTURER', '" + ALICE + "'), "
+					+ "(2, 'bob', '', 'LECTURER', '" + BOB + "'), (3, 'carol', '', 'LECTURER', '')");
+			statement.execute("INSERT INTO entries VALUES (1, 'Semester 2', 0, DATE '2022-01-10')");
+			statement.execute("INSERT INTO settings (settings_id, entry_FK, week1_begin_date, time_to_send_notif) "
+					+ "VALUES (1, 1, DATE '2022-02-07', '00:00:00')");
+			statement.execute("INSERT INTO modules (module_id, module_name, module_code, primary_lecturer, moderator_lecturer, "
+					+ "curriculum, module_belongsTo_entry) VALUES (1, 'Databases', 'DB', 'alice,bob,carol', NULL, 'CS', 1)");
+			statement.execute("INSERT INTO lecturer_modules VALUES (1, 1, 'PRIMARY'), (2, 1, 'PRIMARY'), "
+					+ "(3, 1, 'PRIMARY')");
+			statement.execute("INSERT INTO assessments (assessment_id, assessment_type, assessment_weight, "
+					+ "assessment_weeks, assessment_belongsTo_module) VALUES (1, 'QUIZ', 10, '00000100000000000', 1)");
+			statement.execute("INSERT INTO tasks (task_id, task_description, date_to_send, isCompleted, "
+					+ "task_belongs_to_assessment) VALUES "
+					+ "(1, 'Upload the quiz', DATE '" + today.minusDays(1) + "', 0, 1), "
+					+ "(2, 'Mark the quiz', DATE '" + today + "', 0, 1), "
+					+ "(3, 'Upload the grades', DATE '" + today.plusDays(7) + "', 0, 1), "
+					+ "(4, 'Write the quiz', DATE '" + today.minusDays(7) + "', 1, 1)");
+		}
+	}
+
+	private void claim(int taskId, int userId, String runId, LocalDateTime claimedAt) throws SQLException {
+		try (Connection connection = dataSource.getConnection();
+			 PreparedStatement statement = connection.prepareStatement(
+					 "INSERT INTO task_emails (task_id, user_id, claimed_by, claimed_at) VALUES (?, ?, ?, ?)")) {
+			statement.setInt(1, taskId);
+			statement.setInt(2, userId);
+			statement.setString(3, runId);
+			statement.setTimestamp(4, Timestamp.valueOf(claimedAt));
+			statement.executeUpdate();
+		}
+	}
+
+	private long count(String sql) throws SQLException {
+		try (Connection connection = dataSource.getConnection();
+			 Statement statement = connection.createStatement();
+			 ResultSet resultSet = statement.executeQuery(sql)) {
+			resultSet.next();
+			return resultSet.getLong(1);
+		}
+	}
+
+	private List<String> sortedRecipients() {
+		List<String> recipients = smtpServer.getRecipients();
+		Collections.sort(recipients);
+		return recipients;
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.wisetasklecturer.services;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import com.wisetasklecturer.TestDatabase;
+
+/**
+ * A test class responsible for testing which of the pending tasks are scheduled by the
+ * reloads of the scheduler, against an embedded database; a task that is due next week and
+ * a task that was due yesterday.
+ * @author Theofanis Gkoufas
+ *
+ */
+class TaskSendSchedulerTests {
+
+	private DataSource dataSource;
+
+	private TaskEmailDispatcher taskEmailDispatcher;
+
+	private TaskSendScheduler scheduler;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		dataSource = TestDatabase.create();
+		seed();
+		ApplicationContext context = Mockito.mock(ApplicationContext.class);
+		Mockito.when(context.getBean(DataSource.class)).thenReturn(dataSource);
+		taskEmailDispatcher = Mockito.mock(TaskEmailDispatcher.class);
+		// the last run started an hour ago, after the task of yesterday was due
+		Mockito.when(taskEmailDispatcher.getLastRunStartedAt()).thenReturn(LocalDateTime.now().minusHours(1));
+		scheduler = new TaskSendScheduler();
+		scheduler.context = context;
+		scheduler.taskEmailDispatcher = taskEmailDispatcher;
+		ReflectionTestUtils.setField(scheduler, "fetchSize", 100);
+		ReflectionTestUtils.setField(scheduler, "reloadMinutes", 15L);
+		ReflectionTestUtils.setField(scheduler, "wheel", new TimingWheel(100, 64, "test-scheduler"));
+		ReflectionTestUtils.setField(scheduler, "worker", Executors.newSingleThreadExecutor());
+	}
+
+	@AfterEach
+	public void tearDown() {
+		scheduler.stop();
+	}
+
+	@Test
+	public void testDueTasksThatWereNeverAttemptedAreSent() {
+		ReflectionTestUtils.invokeMethod(scheduler, "reload");
+		// the task of yesterday was created after the last run, e.g. by an import
+		Mockito.verify(taskEmailDispatcher, Mockito.timeout(5000)).dispatchDueTasks();
+		Assertions.assertEquals(0L, scheduler.snapshot().get("skippedTasks"));
+		Assertions.assertEquals(1, scheduler.snapshot().get("scheduledTasks"));
+	}
+
+	@Test
+	public void testDueTasksThatTheLastRunCouldNotSendAreSkipped() throws Exception {
+		execute("INSERT INTO task_emails (task_id, user_id, claimed_by, claimed_at) VALUES (1, 1, '"
+				+ TaskEmailDispatcher.RELEASED + "', NOW())");
+		ReflectionTestUtils.invokeMethod(scheduler, "reload");
+		Assertions.assertEquals(1L, scheduler.snapshot().get("skippedTasks"));
+		Assertions.assertEquals(1, scheduler.snapshot().get("scheduledTasks"));
+		Mockito.verify(taskEmailDispatcher, Mockito.never()).dispatchDueTasks();
+	}
+
+	private void seed() throws SQLException {
+		LocalDate today = LocalDate.now();
+		execute("INSERT INTO users VALUES (1, 'alice', '', 'LECTURER', 'alice@wisetask.test')");
+		execute("INSERT INTO entries VALUES (1, 'Semester 2', 0, DATE '2022-01-10')");
+		execute("INSERT INTO settings (settings_id, entry_FK, week1_begin_date, time_to_send_notif) "
+				+ "VALUES (1, 1, DATE '2022-02-07', '00:00:00')");
+		execute("INSERT INTO modules (module_id, module_name, module_code, primary_lecturer, moderator_lecturer, "
+				+ "curriculum, module_belongsTo_entry) VALUES (1, 'Databases', 'DB', 'alice', NULL, 'CS', 1)");
+		execute("INSERT INTO lecturer_modules VALUES (1, 1, 'PRIMARY')");
+		execute("INSERT INTO assessments (assessment_id, assessment_type, assessment_weight, "
+				+ "assessment_weeks, assessment_belongsTo_module) VALUES (1, 'QUIZ', 10, '00000100000000000', 1)");
+		execute("INSERT INTO tasks (task_id, task_description, date_to_send, isCompleted, "
+				+ "task_belongs_to_assessment) VALUES "
+				+ "(1, 'Upload the quiz', DATE '" + today.minusDays(1) + "', 0, 1), "
+				+ "(2, 'Upload the grades', DATE '" + today.plusDays(7) + "', 0, 1)");
+	}
+
+	private void execute(String sql) throws SQLException {
+		try (Connection connection = dataSource.getConnection();
+			 Statement statement = connection.createStatement()) {
+			statement.execute(sql);
+		}
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.wisetasklecturer.services;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import com.wisetasklecturer.entities.TaskToDo;
+
+/**
+ * A test class responsible for testing the in-memory projection of the to-do tasks.
+ * @author Theofanis Gkoufas
+ *
+ */
+class TasksToDoProjectionTests {
+
+	private TasksToDoProjection projection;
+
+	@BeforeEach
+	public void setUp() {
+		projection = new TasksToDoProjection();
+		ReflectionTestUtils.setField(projection, "enabled", true);
+		ReflectionTestUtils.setField(projection, "maximumLecturers", 2);
+		ReflectionTestUtils.setField(projection, "reconcileSeconds", 300L);
+	}
+
+	@Test
+	public void testTasksAreLoadedOnce() {
+		AtomicInteger loads = new AtomicInteger();
+		for (int i = 0; i < 3; i++) {
+			projection.get(1, () -> {
+				loads.incrementAndGet();
+				return Arrays.asList(task(2, 5), task(1, 5));
+			});
+		}
+		Assertions.assertEquals(1, loads.get());
+		Assertions.assertEquals(1, projection.get(1, Collections::emptyList).get(0).getTaskId());
+	}
+
+	@Test
+	public void testAddAndRemoveKeepTheOrder() {
+		projection.get(1, () -> Arrays.asList(task(1, 1), task(3, 3)));
+		projection.add(Collections.singletonMap(1, Collections.singletonList(task(2, 2))));
+		projection.remove(Collections.singletonList(3));
+		List<TaskToDo> tasks = projection.get(1, Collections::emptyList);
+		Assertions.assertEquals(2, tasks.size());
+		Assertions.assertEquals(1, tasks.get(0).getTaskId());
+		Assertions.assertEquals(2, tasks.get(1).getTaskId());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedLecturerIsEvicted() {
+		projection.get(1, Collections::emptyList);
+		projection.get(2, Collections::emptyList);
+		projection.get(1, Collections::emptyList);
+		projection.get(3, Collections::emptyList);
+		Assertions.assertEquals(2, projection.snapshot().get("lecturers"));
+		Assertions.assertEquals(1L, projection.snapshot().get("evictions"));
+	}
+
+	@Test
+	public void testFailedLoadIsNotKept() {
+		Assertions.assertThrows(IllegalStateException.class, () -> projection.get(1, () -> {
+			throw new IllegalStateException("The database is down");
+		}));
+		Assertions.assertTrue(projection.isEmpty());
+		Assertions.assertEquals(1L, projection.snapshot().get("failedLoads"));
+		// the next request loads the tasks again
+		Assertions.assertEquals(1, projection.get(1, () -> Arrays.asList(task(1, 1))).size());
+		Assertions.assertEquals(1L, projection.snapshot().get("loads"));
+	}
+
+	private static TaskToDo task(int taskId, int day) {
+		return TaskToDo.builder().taskId(taskId).dateToSend(LocalDate.of(2022, 3, day)).build();
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.wisetasklecturer.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A test class responsible for testing the timing wheel that schedules the task emails.
+ * @author Theofanis Gkoufas
+ *
+ */
+class TimingWheelTests {
+
+	private TimingWheel wheel;
+
+	@BeforeEach
+	public void setUp() {
+		// a small wheel, so that most of the actions need more than one round
+		wheel = new TimingWheel(20, 4, "test-wheel");
+	}
+
+	@AfterEach
+	public void tearDown() {
+		wheel.close();
+	}
+
+	@Test
+	public void testActionsRunAfterTheirDelay() throws Exception {
+		CountDownLatch ran = new CountDownLatch(100);
+		AtomicInteger early = new AtomicInteger();
+		for (int i = 0; i < 100; i++) {
+			long delay = i * 5;
+			long scheduledAt = System.nanoTime();
+			wheel.schedule(() -> {
+				if (System.nanoTime() - scheduledAt < TimeUnit.MILLISECONDS.toNanos(delay)) {
+					early.incrementAndGet();
+				}
+				ran.countDown();
+			}, delay, TimeUnit.MILLISECONDS);
+		}
+		Assertions.assertTrue(ran.await(5, TimeUnit.SECONDS));
+		Assertions.assertEquals(0, early.get());
+		Assertions.assertEquals(0, wheel.getPending());
+	}
+
+	@Test
+	public void testCancelledActionsDoNotRun() throws Exception {
+		AtomicInteger ran = new AtomicInteger();
+		List<TimingWheel.Timeout> timeouts = new ArrayList<TimingWheel.Timeout>();
+		for (int i = 0; i < 10; i++) {
+			timeouts.add(wheel.schedule(ran::incrementAndGet, 200, TimeUnit.MILLISECONDS));
+		}
+		for (TimingWheel.Timeout timeout : timeouts.subList(0, 5)) {
+			Assertions.assertTrue(timeout.cancel());
+		}
+		Thread.sleep(500);
+		Assertions.assertEquals(5, ran.get());
+		Assertions.assertFalse(timeouts.get(9).cancel());
+	}
+
+	@Test
+	public void testFailingActionDoesNotStopTheWheel() throws Exception {
+		CountDownLatch ran = new CountDownLatch(1);
+		wheel.schedule(() -> {
+			throw new IllegalStateException("The action failed");
+		}, 10, TimeUnit.MILLISECONDS);
+		wheel.schedule(ran::countDown, 100, TimeUnit.MILLISECONDS);
+		Assertions.assertTrue(ran.await(5, TimeUnit.SECONDS));
+		Assertions.assertEquals(1L, wheel.snapshot().get("failed"));
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.wisetasklecturer.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import com.wisetasklecturer.entities.User;
+
+/**
+ * A test class responsible for testing the cache of users.
+ * @author Theofanis Gkoufas
+ *
+ */
+class UserCacheTests {
+
+	private UserCache userCache;
+
+	@BeforeEach
+	public void setUp() {
+		userCache = new UserCache();
+		ReflectionTestUtils.setField(userCache, "ttlSeconds", 300L);
+		ReflectionTestUtils.setField(userCache, "maximumSize", 10);
+	}
+
+	@Test
+	public void testConcurrentMissesLoadOnce() throws Exception {
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<User>> results = new ArrayList<Future<User>>();
+		for (int i = 0; i < 8; i++) {
+			results.add(executor.submit(() -> userCache.get(1, id -> {
+				loads.incrementAndGet();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return User.builder().userId(id).username("lecturer").build();
+			})));
+		}
+		Thread.sleep(100);
+		release.countDown();
+		for (Future<User> result : results) {
+			Assertions.assertEquals("lecturer", result.get(5, TimeUnit.SECONDS).getUsername());
+		}
+		executor.shutdown();
+		Assertions.assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void testInvalidateReloadsUser() {
+		AtomicInteger loads = new AtomicInteger();
+		userCache.get(1, id -> User.builder().userId(id).username("user" + loads.incrementAndGet()).build());
+		Assertions.assertEquals("user1", userCache.get(1, id -> null).getUsername());
+		userCache.invalidate(1);
+		Assertions.assertEquals("user2",
+				userCache.get(1, id -> User.builder().userId(id).username("user" + loads.incrementAndGet()).build())
+						.getUsername());
+	}
+
+	@Test
+	public void testCacheIsBounded() {
+		for (int i = 0; i < 50; i++) {
+			userCache.get(i, id -> User.builder().userId(id).build());
+		}
+		Assertions.assertTrue((int) userCache.snapshot().get("size") <= 10);
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.wisetasklecturer.services;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import com.wisetasklecturer.TestDatabase;
+import com.wisetasklecturer.monitoring.QueryMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * A test class responsible for testing the version tags (ETags) of the data of the lecturers
+ * against an embedded database; two lecturers whose assessments and tasks are changed by this
+ * service or by another one.
+ * @author Theofanis Gkoufas
+ *
+ */
+class VersionTagTests {
+
+	private LecturerServices lecturerServices;
+
+	private ApplicationContext context;
+
+	private DataSource dataSource;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		dataSource = TestDatabase.create();
+		seed();
+		lecturerServices = new LecturerServices();
+		context = Mockito.mock(ApplicationContext.class);
+		Mockito.when(context.getBean(DataSource.class)).thenReturn(dataSource);
+		lecturerServices.context = context;
+		lecturerServices.lecturerResolution = LecturerResolution.INDEXED;
+		QueryMetrics queryMetrics = new QueryMetrics();
+		ReflectionTestUtils.setField(queryMetrics, "meterRegistry", new SimpleMeterRegistry());
+		lecturerServices.queryMetrics = queryMetrics;
+	}
+
+	@Test
+	public void testTagOnlyChangesWithTheDataOfTheLecturer() throws Exception {
+		String alice = lecturerServices.getVersionTag("tasksToDo", 1);
+		String bob = lecturerServices.getVersionTag("tasksToDo", 2);
+		Assertions.assertTrue(alice.startsWith("\"tasksToDo-1-"));
+		Assertions.assertEquals(alice, lecturerServices.getVersionTag("tasksToDo", 1));
+		Assertions.assertNotEquals(alice, lecturerServices.getVersionTag("daysToSet", 1));
+
+		// a task of alice is completed
+		execute("UPDATE tasks SET isCompleted = 1 WHERE task_id = 1");
+		Assertions.assertNotEquals(alice, lecturerServices.getVersionTag("tasksToDo", 1));
+		Assertions.assertEquals(bob, lecturerServices.getVersionTag("tasksToDo", 2));
+		alice = lecturerServices.getVersionTag("tasksToDo", 1);
+
+		// a task of bob is deleted
+		execute("DELETE FROM tasks WHERE task_id = 3");
+		Assertions.assertNotEquals(bob, lecturerServices.getVersionTag("tasksToDo", 2));
+		Assertions.assertEquals(alice, lecturerServices.getVersionTag("tasksToDo", 1));
+
+		// the admin service creates an assessment of alice
+		execute("INSERT INTO assessments (assessment_id, assessment_type, assessment_weight, assessment_weeks, "
+				+ "assessment_belongsTo_module) VALUES (3, 'PROJECT', 40, '00000001111111000', 1)");
+		Assertions.assertNotEquals(alice, lecturerServices.getVersionTag("tasksToDo", 1));
+	}
+
+	@Test
+	public void testTagIsNotCreatedWithoutTheDatabase() throws Exception {
+		DataSource unavailable = Mockito.mock(DataSource.class);
+		Mockito.when(unavailable.getConnection()).thenThrow(new SQLException("Connection refused"));
+		Mockito.when(context.getBean(DataSource.class)).thenReturn(unavailable);
+		Assertions.assertNull(lecturerServices.getVersionTag("tasksToDo", 1));
+	}
+
+	private void seed() throws SQLException {
+		execute("INSERT INTO users VALUES (0, 'admin', '', 'ADMIN', 'admin@wisetask.test'), "
+				+ "(1, 'alice', '', 'LECTURER', 'alice@wisetask.test'), "
+				+ "(2, 'bob', '', 'LECTURER', 'bob@wisetask.test')");
+		execute("INSERT INTO entries VALUES (1, 'Semester 2', 0, DATE '2022-01-10')");
+		execute("INSERT INTO settings (settings_id, entry_FK, week1_begin_date, time_to_send_notif) "
+				+ "VALUES (1, 1, DATE '2022-02-07', '00:00:00')");
+		execute("INSERT INTO modules (module_id, module_name, module_code, primary_lecturer, moderator_lecturer, "
+				+ "curriculum, module_belongsTo_entry) VALUES (1, 'Databases', 'DB', 'alice', NULL, 'CS', 1), "
+				+ "(2, 'Networks', 'NT', 'bob', NULL, 'CS', 1)");
+		execute("INSERT INTO lecturer_modules VALUES (1, 1, 'PRIMARY'), (2, 2, 'PRIMARY')");
+		execute("INSERT INTO assessments (assessment_id, assessment_type, assessment_weight, assessment_weeks, "
+				+ "assessment_belongsTo_module) VALUES (1, 'QUIZ', 10, '00000100000000000', 1), "
+				+ "(2, 'QUIZ', 10, '00000100000000000', 2)");
+		execute("INSERT INTO tasks (task_id, task_description, date_to_send, isCompleted, "
+				+ "task_belongs_to_assessment) VALUES (1, 'Upload the quiz', DATE '2022-03-01', 0, 1), "
+				+ "(2, 'Upload the grades', DATE '2022-03-15', 0, 1), "
+				+ "(3, 'Upload the quiz', DATE '2022-03-01', 0, 2)");
+		// the rows were last changed long ago, so that every change made by the tests is a later one
+		for (String table : new String[] {"modules", "settings", "assessments", "tasks"}) {
+			execute("UPDATE " + table + " SET updated_at = TIMESTAMP '2022-03-01 09:00:00'");
+		}
+	}
+
+	private void execute(String sql) throws SQLException {
+		try (Connection connection = dataSource.getConnection();
+			 Statement statement = connection.createStatement()) {
+			statement.execute(sql);
+		}
+	}
+
+}